@@ -0,0 +1,106 @@
+package com.dynamicmarket.market;
+
+import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a full player inventory against the market, once by scanning every category
+ * as findItemByMaterial did before the material index and once through the index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MaterialLookupBenchmark {
+
+    // Storage, hotbar, armour and off hand
+    private static final int INVENTORY_SLOTS = 41;
+
+    @Param({"10000"})
+    public int itemCount;
+
+    @Param({"40"})
+    public int categoryCount;
+
+    private List<MarketCategory> categories;
+    private MarketRepository repository;
+    private ItemStack[] inventory;
+
+    @Setup
+    public void setUp() {
+        Material[] materials = Arrays.stream(Material.values())
+            .filter(material -> material != Material.AIR && !material.name().startsWith("LEGACY_"))
+            .toArray(Material[]::new);
+
+        categories = new ArrayList<>();
+        for (int i = 0; i < categoryCount; i++) {
+            categories.add(new MarketCategory("category" + i, Material.CHEST, "Category " + i, List.of(), i));
+        }
+        for (int i = 0; i < itemCount; i++) {
+            Material material = materials[i % materials.length];
+            String category = "category" + (i % categoryCount);
+            MarketItem item = new MarketItem("item" + i, material, material.name(), List.of(), category,
+                new MarketItem.Snapshot(10.0, 5.0, 100, 0, 0, 0L));
+            categories.get(i % categoryCount).addItem(item);
+        }
+        repository = new MarketRepository(categories);
+
+        // Mostly sellable stacks, with a few empty slots
+        Random random = new Random(42);
+        int sold = Math.min(materials.length, itemCount);
+        inventory = new ItemStack[INVENTORY_SLOTS];
+        for (int i = 0; i < INVENTORY_SLOTS; i++) {
+            if (i % 8 != 7) {
+                inventory[i] = new ItemStack(materials[random.nextInt(sold)], 64);
+            }
+        }
+    }
+
+    @Benchmark
+    public MarketItem[] scanCategories() {
+        MarketItem[] resolved = new MarketItem[inventory.length];
+        for (int i = 0; i < inventory.length; i++) {
+            ItemStack stack = inventory[i];
+            if (stack != null) {
+                resolved[i] = findByScan(stack.getType());
+            }
+        }
+        return resolved;
+    }
+
+    @Benchmark
+    public MarketItem[] materialIndex() {
+        return repository.resolveItems(inventory);
+    }
+
+    private MarketItem findByScan(Material material) {
+        for (MarketCategory category : categories) {
+            MarketItem item = category.getItemByMaterial(material);
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
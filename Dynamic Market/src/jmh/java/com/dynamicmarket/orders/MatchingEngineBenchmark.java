@@ -0,0 +1,150 @@
+package com.dynamicmarket.orders;
+
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Sustained order throughput of the matching engine, through its thread hand-off, with a
+ * book kept at a fixed depth. Orders are sent in batches without waiting for each one, as
+ * the main thread does, and the batch is done once its last future completes.
+ * The target is 50k operations per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchingEngineBenchmark {
+
+    private static final int BATCH = 1000;
+    private static final int PRICE_LEVELS = 100;
+    private static final long BEST_BID = 999;
+    private static final long BEST_ASK = 1001;
+    private static final int AMOUNT = 16;
+
+    @Param({"10000"})
+    public int restingOrders;
+
+    @Param({"50"})
+    public int items;
+
+    private MatchingEngine engine;
+    private UUID[] makers;
+    private UUID taker;
+    private String[] itemIds;
+    private long nextId;
+    private int nextItem;
+
+    @Setup
+    public void setUp() {
+        engine = new MatchingEngine(Logger.getLogger("MatchingEngineBenchmark"), new IgnoringListener(), Integer.MAX_VALUE);
+        makers = new UUID[100];
+        for (int i = 0; i < makers.length; i++) {
+            makers[i] = UUID.randomUUID();
+        }
+        taker = UUID.randomUUID();
+        itemIds = new String[items];
+        for (int i = 0; i < items; i++) {
+            itemIds[i] = "item" + i;
+        }
+
+        CompletableFuture<Order> last = null;
+        while (nextId < restingOrders) {
+            last = engine.submit(resting(nextId++));
+        }
+        if (last != null) {
+            last.join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    /**
+     * One operation places an order that rests and cancels the oldest order still in the book
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Order insertAndCancel() {
+        CompletableFuture<Order> last = null;
+        for (int i = 0; i < BATCH; i++) {
+            long id = nextId++;
+            engine.submit(resting(id));
+            last = engine.cancel(id - restingOrders, null);
+        }
+        return last.join();
+    }
+
+    /**
+     * One operation places an ask at the best price and a buy that fills the oldest ask there,
+     * so the book keeps its depth
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Order fillAndReplenish() {
+        CompletableFuture<Order> last = null;
+        for (int i = 0; i < BATCH; i++) {
+            String itemId = itemIds[nextItem++ % itemIds.length];
+            long id = nextId++;
+            engine.submit(order(id, makers[(int) (id % makers.length)], itemId, Order.Side.SELL, BEST_ASK));
+            last = engine.submit(order(nextId++, taker, itemId, Order.Side.BUY, BEST_ASK));
+        }
+        return last.join();
+    }
+
+    /**
+     * Order that does not cross the book: bids below and asks above the spread, spread
+     * evenly over the items and price levels
+     */
+    private Order resting(long id) {
+        long slot = id / 2;
+        String itemId = itemIds[(int) (slot % itemIds.length)];
+        long level = (slot / itemIds.length) % PRICE_LEVELS;
+        UUID player = makers[(int) (id % makers.length)];
+        return id % 2 == 0
+            ? order(id, player, itemId, Order.Side.BUY, BEST_BID - level)
+            : order(id, player, itemId, Order.Side.SELL, BEST_ASK + level);
+    }
+
+    private static Order order(long id, UUID player, String itemId, Order.Side side, long priceCents) {
+        return new Order(id, player, "Player", itemId, Material.STONE, side, priceCents, AMOUNT, AMOUNT, id);
+    }
+
+    /**
+     * Stands in for OrderManager, which only queues the events for persistence and settlement
+     */
+    private static final class IgnoringListener implements MatchingEngine.Listener {
+
+        @Override
+        public void onFill(Fill fill) {
+        }
+
+        @Override
+        public void onCancel(Order order) {
+        }
+
+        @Override
+        public void onChange(Order order) {
+        }
+    }
+}
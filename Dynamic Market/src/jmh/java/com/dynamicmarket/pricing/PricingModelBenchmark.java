@@ -0,0 +1,76 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of quoting and applying trades under each built-in pricing model, from a single
+ * unit up to a full inventory. Models are built with the defaults of config.yml.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingModelBenchmark {
+
+    private static final double MIN_PRICE = 0.1;
+    private static final double MAX_PRICE = 1000.0;
+
+    @Param({LinearPricingModel.NAME, ConstantProductPricingModel.NAME, ElasticityPricingModel.NAME})
+    public String model;
+
+    // One unit, a stack and a full inventory of stacks
+    @Param({"1", "64", "2304"})
+    public int amount;
+
+    private PricingModel pricingModel;
+    private MarketItem.Snapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        switch (model) {
+            case ConstantProductPricingModel.NAME:
+                pricingModel = new ConstantProductPricingModel(256.0, MIN_PRICE, MAX_PRICE);
+                break;
+            case ElasticityPricingModel.NAME:
+                pricingModel = new ElasticityPricingModel(0.005, 64.0, MIN_PRICE, MAX_PRICE);
+                break;
+            default:
+                pricingModel = new LinearPricingModel(0.005, MIN_PRICE, MAX_PRICE);
+        }
+        snapshot = new MarketItem.Snapshot(10.0, 5.0, 5000, 0, 0, 0L);
+    }
+
+    @Benchmark
+    public PriceQuote quoteBuy() {
+        return PricingEngine.quoteBuy(pricingModel, snapshot, amount);
+    }
+
+    @Benchmark
+    public PriceQuote quoteSell() {
+        return PricingEngine.quoteSell(pricingModel, snapshot, amount);
+    }
+
+    /**
+     * Buys and sells back the same amount, as the trade path applies them
+     */
+    @Benchmark
+    public MarketItem.Snapshot roundTrip() {
+        MarketItem.Snapshot bought = pricingModel.afterBuy(snapshot, amount).withStock(snapshot.getStock() - amount);
+        return pricingModel.afterSell(bought, amount);
+    }
+}
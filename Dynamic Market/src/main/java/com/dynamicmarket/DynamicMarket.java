@@ -4,10 +4,22 @@ import com.dynamicmarket.commands.*;
 import com.dynamicmarket.config.ConfigManager;
 import com.dynamicmarket.data.DataManager;
 import com.dynamicmarket.economy.VaultEconomy;
+import com.dynamicmarket.gui.ItemRenderCache;
+import com.dynamicmarket.gui.PriceChartRenderer;
+import com.dynamicmarket.gui.PriceTicker;
 import com.dynamicmarket.listeners.*;
 import com.dynamicmarket.market.MarketManager;
+import com.dynamicmarket.managers.BackupManager;
 import com.dynamicmarket.managers.PermissionManager;
+import com.dynamicmarket.managers.PersistenceManager;
+import com.dynamicmarket.managers.PriceHistoryManager;
+import com.dynamicmarket.managers.OrderManager;
+import com.dynamicmarket.managers.StockLedger;
+import com.dynamicmarket.managers.SyncManager;
+import com.dynamicmarket.managers.TransactionJournal;
+import com.dynamicmarket.pricing.PricingEngine;
 import com.dynamicmarket.utils.MarketScheduler;
+import com.dynamicmarket.utils.TickBudgetExecutor;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class DynamicMarket extends JavaPlugin {
@@ -17,8 +29,20 @@ public class DynamicMarket extends JavaPlugin {
     private MarketManager marketManager;
     private ConfigManager configManager;
     private DataManager dataManager;
+    private PersistenceManager persistenceManager;
+    private TransactionJournal transactionJournal;
     private com.dynamicmarket.managers.PermissionManager permissionManager;
     private MarketScheduler marketScheduler;
+    private final ItemRenderCache itemRenderCache = new ItemRenderCache();
+    private final PriceChartRenderer priceChartRenderer = new PriceChartRenderer(this);
+    private PriceTicker priceTicker;
+    private TickBudgetExecutor tickBudgetExecutor;
+    private PricingEngine pricingEngine;
+    private PriceHistoryManager priceHistoryManager;
+    private OrderManager orderManager;
+    private SyncManager syncManager;
+    private StockLedger stockLedger;
+    private BackupManager backupManager;
     
     @Override
     public void onEnable() {
@@ -34,9 +58,19 @@ public class DynamicMarket extends JavaPlugin {
         // Initialize managers
         this.configManager = new ConfigManager(this);
         this.dataManager = new DataManager(this);
+        this.persistenceManager = new PersistenceManager(this, dataManager.getDatabaseManager());
+        this.transactionJournal = new TransactionJournal(this, dataManager.getDatabaseManager());
+        this.backupManager = new BackupManager(this, dataManager.getDatabaseManager());
+        this.priceHistoryManager = new PriceHistoryManager(this, dataManager.getDatabaseManager());
         this.vaultEconomy = new VaultEconomy(this);
         this.permissionManager = new PermissionManager(this);
+        this.priceTicker = new PriceTicker(this);
+        this.tickBudgetExecutor = new TickBudgetExecutor(this);
+        this.pricingEngine = new PricingEngine(this);
+        this.syncManager = new SyncManager(this);
+        this.stockLedger = new StockLedger(this, dataManager.getDatabaseManager());
         this.marketManager = new MarketManager(this);
+        this.orderManager = new OrderManager(this, dataManager.getDatabaseManager());
         this.marketScheduler = new MarketScheduler(this);
         
         // Check economy setup
@@ -54,6 +88,11 @@ public class DynamicMarket extends JavaPlugin {
         
         // Start scheduler
         marketScheduler.startTasks();
+        priceTicker.start();
+        tickBudgetExecutor.start();
+        syncManager.start();
+        stockLedger.start();
+        backupManager.start();
         
         getLogger().info("DynamicMarket has been enabled!");
         getLogger().info("Economy: " + vaultEconomy.getEconomyName());
@@ -66,8 +105,55 @@ public class DynamicMarket extends JavaPlugin {
             marketScheduler.stopTasks();
         }
         
+        if (priceTicker != null) {
+            priceTicker.stop();
+        }
+        
+        // Settles queued fills, which still need the journal and the economy
+        if (orderManager != null) {
+            orderManager.shutdown();
+        }
+        
+        // Finish deferred main-thread work before the data it touches is written
+        if (tickBudgetExecutor != null) {
+            tickBudgetExecutor.stop();
+        }
+        
+        // Publish the last local changes to the other servers
+        if (syncManager != null) {
+            syncManager.shutdown();
+        }
+        
+        // Leased stock goes back for the other servers to sell
+        if (stockLedger != null) {
+            stockLedger.shutdown();
+        }
+        
+        // Let a running backup finish while the database is still open
+        if (backupManager != null) {
+            backupManager.shutdown();
+        }
+        
+        // Write only the items that changed since their last save
+        if (persistenceManager != null) {
+            persistenceManager.shutdown();
+        }
+        
+        // Lets the next start skip the database load
+        if (marketManager != null && dataManager != null) {
+            marketManager.saveStartupSnapshot();
+        }
+        
+        if (priceHistoryManager != null) {
+            priceHistoryManager.save();
+        }
+        
+        if (transactionJournal != null) {
+            transactionJournal.shutdown();
+        }
+        
         if (dataManager != null) {
-            dataManager.saveAllData();
+            dataManager.getDatabaseManager().closeConnection();
         }
         
         if (permissionManager != null) {
@@ -120,6 +206,14 @@ public class DynamicMarket extends JavaPlugin {
         return dataManager;
     }
     
+    public PersistenceManager getPersistenceManager() {
+        return persistenceManager;
+    }
+    
+    public TransactionJournal getTransactionJournal() {
+        return transactionJournal;
+    }
+    
     public PermissionManager getPermissionManager() {
         return permissionManager;
     }
@@ -127,6 +221,46 @@ public class DynamicMarket extends JavaPlugin {
     public MarketScheduler getMarketScheduler() {
         return marketScheduler;
     }
+    
+    public OrderManager getOrderManager() {
+        return orderManager;
+    }
+    
+    public PriceHistoryManager getPriceHistoryManager() {
+        return priceHistoryManager;
+    }
+    
+    public SyncManager getSyncManager() {
+        return syncManager;
+    }
+    
+    public BackupManager getBackupManager() {
+        return backupManager;
+    }
+    
+    public StockLedger getStockLedger() {
+        return stockLedger;
+    }
+    
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+    
+    public TickBudgetExecutor getTickBudgetExecutor() {
+        return tickBudgetExecutor;
+    }
+    
+    public PriceTicker getPriceTicker() {
+        return priceTicker;
+    }
+    
+    public ItemRenderCache getItemRenderCache() {
+        return itemRenderCache;
+    }
+    
+    public PriceChartRenderer getPriceChartRenderer() {
+        return priceChartRenderer;
+    }
 
 	public Object getDatabaseManager() {
 		// TODO Auto-generated method stub
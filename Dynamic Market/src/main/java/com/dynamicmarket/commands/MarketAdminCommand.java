@@ -1,13 +1,26 @@
 package com.dynamicmarket.commands;
 
 import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.config.MarketSettings;
 import com.dynamicmarket.data.MarketCategory;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.gui.ItemRenderCache;
+import com.dynamicmarket.gui.PriceChartRenderer;
+import com.dynamicmarket.managers.BackupManager;
+import com.dynamicmarket.managers.OrderManager;
+import com.dynamicmarket.managers.StockLedger;
+import com.dynamicmarket.managers.TransactionJournal;
+import com.dynamicmarket.orders.MatchingEngine;
+import com.dynamicmarket.storage.StorageBackend;
+import com.dynamicmarket.sync.Replicator;
+import com.dynamicmarket.utils.TickBudgetExecutor;
 import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.TabCompleter;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Arrays;
 import java.util.List;
 import org.bukkit.command.CommandSender;
@@ -30,7 +43,7 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         if (args.length == 1) {
             // Suggest subcommands
             List<String> subcommands = Arrays.asList(
-                "addcategory", "removecategory", "add", "remove", "setprice", "move",
+                "addcategory", "removecategory", "add", "remove", "setprice", "rename", "move",
                 "reset", "info", "list", "reload", "backup", "restore",
                 "stock", "addstock", "removestock"
             );
@@ -45,6 +58,7 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
                 case "add":
                 case "remove":
                 case "setprice":
+                case "rename":
                 case "move":
                 case "info":
                 case "stock":
@@ -71,6 +85,20 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
                          }
                     }
                     break;
+                case "backup":
+                    if (args.length == 2 && "list".startsWith(args[1].toLowerCase())) {
+                        completions.add("list");
+                    }
+                    break;
+                case "restore":
+                    if (args.length == 2) {
+                        for (BackupManager.Backup backup : plugin.getBackupManager().listBackups()) {
+                            if (backup.getId().startsWith(args[1])) {
+                                completions.add(backup.getId());
+                            }
+                        }
+                    }
+                    break;
             }
         }
         return completions;
@@ -120,6 +148,10 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
                 handleSetPrice(sender, args);
                 break;
                 
+            case "rename":
+                handleRename(sender, args);
+                break;
+                
             case "move":
                 handleMoveItem(sender, args);
                 break;
@@ -142,7 +174,7 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
                 break;
                 
             case "backup":
-                handleBackup(sender);
+                handleBackup(sender, args);
                 break;
                 
             case "restore":
@@ -178,13 +210,14 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§e/marketadmin add <category> <price> §7- Add held item to market");
         sender.sendMessage("§e/marketadmin remove <category> <item> §7- Remove item from market");
         sender.sendMessage("§e/marketadmin setprice <category> <item> <buy> [sell] §7- Set prices");
+        sender.sendMessage("§e/marketadmin rename <category> <item> <name> §7- Set display name (& colors)");
         sender.sendMessage("§e/marketadmin move <from> <to> <item> §7- Move item between categories");
         sender.sendMessage("§e/marketadmin reset §7- Reset market to defaults");
         sender.sendMessage("§e/marketadmin info [category] §7- Show market/category info");
         sender.sendMessage("§e/marketadmin list [category] §7- List categories/items");
         sender.sendMessage("§e/marketadmin reload §7- Reload market data");
-        sender.sendMessage("§e/marketadmin backup §7- Create market backup");
-        sender.sendMessage("§e/marketadmin restore <file> §7- Restore from backup");
+        sender.sendMessage("§e/marketadmin backup [list] §7- Create or list market backups");
+        sender.sendMessage("§e/marketadmin restore <id> §7- Restore from backup");
         sender.sendMessage("§e/marketadmin stock <category> <item> <amount> §7- Set item stock");
         sender.sendMessage("§7Example: /marketadmin stock Tools DIAMOND_PICKAXE 100");
         sender.sendMessage("§e/marketadmin addstock <category> <item> <amount> §7- Increase item stock");
@@ -233,7 +266,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         
         // Add category to market
         plugin.getMarketManager().addCategory(categoryName, iconMaterial, displayName, Arrays.asList(), 0);
-        plugin.getMarketManager().saveMarketData();
         
         sender.sendMessage("§a§lCategory created successfully!");
         sender.sendMessage("§7▪ §eName: §f" + categoryName);
@@ -277,7 +309,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         
         // Remove category
         plugin.getMarketManager().removeCategory(categoryName);
-        plugin.getMarketManager().saveMarketData();
         
         sender.sendMessage("§a§lCategory removed successfully!");
         sender.sendMessage("§7▪ §eCategory: §f" + categoryName);
@@ -355,7 +386,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         
         // Add item to category
         plugin.getMarketManager().addItemToCategory(categoryName, marketItem);
-        plugin.getMarketManager().saveMarketData();
         
         String itemName = marketItem.getDisplayName() != null ? 
             marketItem.getDisplayName() : 
@@ -417,7 +447,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         
         // Remove item
         plugin.getMarketManager().removeItemFromCategory(categoryName, item.getId());
-        plugin.getMarketManager().saveMarketData();
         
         String displayName = item.getDisplayName() != null ? 
             item.getDisplayName() : 
@@ -502,10 +531,14 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         double oldBuyPrice = item.getBuyPrice();
         double oldSellPrice = item.getSellPrice();
         
-        item.setBuyPrice(buyPrice);
-        item.setSellPrice(sellPrice);
+        // Held to the configured price limits, like every other price change
+        MarketSettings settings = plugin.getConfigManager().getSettings();
+        buyPrice = settings.clampPrice(buyPrice);
+        sellPrice = settings.clampPrice(sellPrice);
+        double newBuyPrice = buyPrice;
+        double newSellPrice = sellPrice;
+        item.update(s -> s.withPrices(newBuyPrice, newSellPrice));
         
-        plugin.getMarketManager().saveMarketData();
         
         String displayName = item.getDisplayName() != null ? 
             item.getDisplayName() : 
@@ -519,6 +552,64 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         plugin.getLogger().info("Prices for '" + displayName + "' updated by " + sender.getName());
     }
     
+    private void handleRename(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("market.admin.rename")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+        
+        if (args.length < 4) {
+            sender.sendMessage("§cUsage: /marketadmin rename <category> <item> <display_name>");
+            sender.sendMessage("§7Example: /marketadmin rename Tools DIAMOND_PICKAXE &bDiamond Pick");
+            return;
+        }
+        
+        String categoryName = args[1];
+        String itemName = args[2].toUpperCase();
+        
+        MarketCategory category = plugin.getMarketManager().getCategory(categoryName);
+        if (category == null) {
+            sender.sendMessage("§cCategory '" + categoryName + "' does not exist!");
+            return;
+        }
+        
+        Material material;
+        try {
+            material = Material.valueOf(itemName);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage("§cInvalid item: " + itemName);
+            return;
+        }
+        
+        MarketItem item = null;
+        for (MarketItem marketItem : category.getItems().values()) {
+            if (marketItem.getMaterial() == material) {
+                item = marketItem;
+                break;
+            }
+        }
+        
+        if (item == null) {
+            sender.sendMessage("§cItem '" + itemName + "' not found in category '" + categoryName + "'!");
+            return;
+        }
+        
+        String oldName = item.getDisplayName() != null ?
+            item.getDisplayName() :
+            material.name().toLowerCase().replace("_", " ");
+        String newName = String.join(" ", Arrays.copyOfRange(args, 3, args.length)).replace('&', '§');
+        
+        if (!plugin.getMarketManager().renameItem(item.getId(), newName)) {
+            sender.sendMessage("§cItem '" + itemName + "' was removed from the market!");
+            return;
+        }
+        
+        sender.sendMessage("§a§lItem renamed successfully!");
+        sender.sendMessage("§7▪ §eName: §f" + oldName + " §7→ §f" + newName);
+        
+        plugin.getLogger().info("Item '" + item.getId() + "' renamed to '" + newName + "' by " + sender.getName());
+    }
+    
     private void handleMoveItem(CommandSender sender, String[] args) {
         if (!sender.hasPermission("market.admin.move")) {
             sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
@@ -570,7 +661,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         }
         
         plugin.getMarketManager().moveItem(fromCategory, toCategory, itemToMove.getId());
-        plugin.getMarketManager().saveMarketData();
         
         sender.sendMessage("§a§lItem moved successfully!");
         sender.sendMessage("§7▪ §eItem: §f" + material.name().toLowerCase().replace("_", " "));
@@ -596,7 +686,6 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         
         // Reset market
         plugin.getMarketManager().resetMarket();
-        plugin.getMarketManager().saveMarketData();
         
         sender.sendMessage("§a§lMarket reset to defaults successfully!");
         sender.sendMessage("§7All data has been restored to the original configuration.");
@@ -618,11 +707,8 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("");
         sender.sendMessage("§c§l=== MARKET ADMIN INFO ===");
         
-        int totalCategories = plugin.getMarketManager().getAllCategories().size();
-        int totalItems = 0;
-        for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            totalItems += category.getItems().size();
-        }
+        int totalCategories = plugin.getMarketManager().getRepository().getCategoryCount();
+        int totalItems = plugin.getMarketManager().getRepository().getItemCount();
         
         sender.sendMessage("§7▪ §eTotal Categories: §f" + totalCategories);
         sender.sendMessage("§7▪ §eTotal Items: §f" + totalItems);
@@ -634,6 +720,63 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§7▪ §eData Manager: §cInactive");
         }
         
+        // Show connection pool usage
+        if (plugin.getDataManager() != null && plugin.getDataManager().getDatabaseManager().getBackend() != null) {
+            StorageBackend backend = plugin.getDataManager().getDatabaseManager().getBackend();
+            sender.sendMessage("§7▪ §eStorage: §f" + backend.getName() + " §7(active " + backend.getActiveConnections()
+                + ", idle " + backend.getIdleConnections() + ", max " + backend.getMaximumPoolSize()
+                + ", waiting " + backend.getThreadsAwaitingConnection() + ")");
+        }
+        
+        // Show GUI render cache effectiveness
+        ItemRenderCache renderCache = plugin.getItemRenderCache();
+        sender.sendMessage("§7▪ §eRender Cache: §f" + renderCache.size() + " items §7(hits " + renderCache.getHits()
+            + ", misses " + renderCache.getMisses() + ", " + String.format("%.1f", renderCache.getHitRate() * 100) + "% hit rate)");
+        PriceChartRenderer chartRenderer = plugin.getPriceChartRenderer();
+        sender.sendMessage("§7▪ §eChart Cache: §f" + chartRenderer.size() + " frames §7(hits " + chartRenderer.getHits()
+            + ", misses " + chartRenderer.getMisses() + ", " + String.format("%.1f", chartRenderer.getHitRate() * 100) + "% hit rate)");
+        sender.sendMessage("§7▪ §eLive Prices: §f" + plugin.getPriceTicker().getWatchedItemCount() + " watched items §7("
+            + plugin.getPriceTicker().getSlotUpdateCount() + " slot updates)");
+        
+        // Show order book activity
+        OrderManager orderManager = plugin.getOrderManager();
+        if (orderManager != null) {
+            MatchingEngine engine = orderManager.getEngine();
+            sender.sendMessage("§7▪ §eOrder Book: §f" + engine.getOpenOrderCount() + " open orders in " + engine.getBookCount()
+                + " books §7(" + engine.getInsertedCount() + " placed, " + engine.getCancelledCount() + " cancelled, "
+                + engine.getFillCount() + " fills, " + orderManager.getPendingSettlementCount() + " settling)");
+        }
+        
+        // Show cross-server sync traffic
+        Replicator replicator = plugin.getSyncManager().getReplicator();
+        if (replicator != null) {
+            sender.sendMessage("§7▪ §eSync: §f" + replicator.getPeerCount() + " peers over " + replicator.getBusName() + " §7("
+                + replicator.getPublishedDeltaCount() + " sent, " + replicator.getAppliedDeltaCount() + " applied, "
+                + replicator.getStalePriceCount() + " stale prices, " + replicator.getGapCount() + " gaps)");
+        }
+        
+        // Show stock reservation traffic
+        StockLedger ledger = plugin.getStockLedger();
+        if (ledger.isEnabled()) {
+            sender.sendMessage("§7▪ §eStock Leases: §f" + ledger.getLeasedUnits() + " units leased §7(" + ledger.getHits() + " hits, "
+                + ledger.getMisses() + " misses, " + ledger.getConflictCount() + " conflicts, " + ledger.getRefusedCount() + " refused)");
+        }
+        
+        // Show main-thread budget usage
+        TickBudgetExecutor budget = plugin.getTickBudgetExecutor();
+        sender.sendMessage("§7▪ §eTick Budget: §f" + budget.getQueueDepth() + " queued tasks §7(last "
+            + String.format("%.2f", budget.getLastTickMillis()) + "ms, peak " + String.format("%.2f", budget.getPeakTickMillis())
+            + "ms of " + String.format("%.1f", budget.getBudgetMillis()) + "ms, " + budget.getCarriedOverCount() + " ticks carried over)");
+        
+        // Show transaction journal backpressure
+        TransactionJournal journal = plugin.getTransactionJournal();
+        if (journal != null) {
+            sender.sendMessage("§7▪ §eJournal Queue: §f" + journal.getQueueDepth() + "/" + journal.getCapacity()
+                + " §7(peak " + journal.getPeakDepth() + ", " + journal.getOverflowPolicy().name().toLowerCase() + ")");
+            sender.sendMessage("§7▪ §eJournal Written: §f" + journal.getWrittenCount()
+                + " §7| Dropped: §f" + journal.getDroppedCount() + " §7| Blocked: §f" + journal.getBlockedCount());
+        }
+        
         // Show categories
         sender.sendMessage("");
         sender.sendMessage("§7Categories:");
@@ -750,24 +893,43 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         }
     }
     
-    private void handleBackup(CommandSender sender) {
+    private void handleBackup(CommandSender sender, String[] args) {
         if (!sender.hasPermission("market.admin.backup")) {
             sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
             return;
         }
         
-        try {
-            plugin.getMarketManager().createBackup();
+        if (args.length > 1 && args[1].equalsIgnoreCase("list")) {
+            List<BackupManager.Backup> backups = plugin.getBackupManager().listBackups();
+            if (backups.isEmpty()) {
+                sender.sendMessage("§7No backups yet. Create one with §e/marketadmin backup§7.");
+                return;
+            }
+            sender.sendMessage("§6§l=== MARKET BACKUPS ===");
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            for (BackupManager.Backup backup : backups) {
+                sender.sendMessage("§7▪ §e" + backup.getId() + " §7- " + dateFormat.format(new Date(backup.getCreatedAt()))
+                    + ", " + formatSize(backup.getSize()));
+            }
+            return;
+        }
+        
+        sender.sendMessage("§7Creating market backup...");
+        plugin.getMarketManager().createBackup((backup, error) -> {
+            if (error != null) {
+                sender.sendMessage("§cFailed to create backup: " + error.getMessage());
+                return;
+            }
             sender.sendMessage("§a§lBackup created successfully!");
-            sender.sendMessage("§7▪ §eFile: §fmarket-data backup created in backups folder");
-            
-            plugin.getLogger().info("Market backup created by " + sender.getName());
+            sender.sendMessage("§7▪ §eId: §f" + backup.getId());
+            sender.sendMessage("§7▪ §eFile: §fbackups/" + backup.getFile().getName() + " §7(" + formatSize(backup.getSize()) + ")");
             
-        } catch (Exception e) {
-            sender.sendMessage("§cFailed to create backup! Check console for errors.");
-            plugin.getLogger().severe("Failed to create backup: " + e.getMessage());
-            e.printStackTrace();
-        }
+            plugin.getLogger().info("Market backup " + backup.getId() + " created by " + sender.getName());
+        });
+    }
+    
+    private static String formatSize(long bytes) {
+        return bytes < 1024 * 1024 ? String.format("%.1f KiB", bytes / 1024.0) : String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
     }
     
     private void handleSetStock(CommandSender sender, String[] args) {
@@ -809,8 +971,10 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
+        int previousStock = item.getStock();
         item.setStock(amount);
-        plugin.getMarketManager().saveMarketData();
+        plugin.getStockLedger().adjust(item, amount - previousStock);
+        plugin.getPersistenceManager().requestFlush();
         sender.sendMessage("§aStock for §e" + itemName + "§a in category §e" + categoryName + "§a set to §e" + amount + "§a.");
     }
 
@@ -854,7 +1018,8 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         }
 
         item.setStock(item.getStock() + amountToAdd);
-        plugin.getMarketManager().saveMarketData();
+        plugin.getStockLedger().adjust(item, amountToAdd);
+        plugin.getPersistenceManager().requestFlush();
         sender.sendMessage("§aAdded §e" + amountToAdd + "§a stock to §e" + itemName + "§a in category §e" + categoryName + "§a. New stock: §e" + item.getStock() + "§a.");
     }
 
@@ -904,7 +1069,8 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         }
 
         item.setStock(currentStock - amountToRemove);
-        plugin.getMarketManager().saveMarketData();
+        plugin.getStockLedger().adjust(item, -amountToRemove);
+        plugin.getPersistenceManager().requestFlush();
         sender.sendMessage("§aRemoved §e" + amountToRemove + "§a stock from §e" + itemName + "§a in category §e" + categoryName + "§a. New stock: §e" + item.getStock() + "§a.");
     }
 
@@ -915,23 +1081,22 @@ public class MarketAdminCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length < 2) {
-            sender.sendMessage("§cUsage: /marketadmin restore <backup_file>");
+            sender.sendMessage("§cUsage: /marketadmin restore <backup_id>");
+            sender.sendMessage("§7Use §e/marketadmin backup list §7to see available backups.");
             return;
         }
         
-        String backupFile = args[1];
-        
-        try {
-            plugin.getMarketManager().restoreFromBackup(backupFile);
+        String backupId = args[1];
+        sender.sendMessage("§7Verifying and restoring backup §e" + backupId + "§7...");
+        plugin.getMarketManager().restoreFromBackup(backupId, (backup, error) -> {
+            if (error != null) {
+                sender.sendMessage("§cFailed to restore from backup: " + error.getMessage());
+                return;
+            }
             sender.sendMessage("§a§lMarket restored from backup successfully!");
-            sender.sendMessage("§7▪ §eFile: §f" + backupFile);
-            
-            plugin.getLogger().info("Market restored from backup by " + sender.getName() + ": " + backupFile);
+            sender.sendMessage("§7▪ §eBackup: §f" + backup.getId());
             
-        } catch (Exception e) {
-            sender.sendMessage("§cFailed to restore from backup! Check console for errors.");
-            plugin.getLogger().severe("Failed to restore from backup: " + e.getMessage());
-            e.printStackTrace();
-        }
+            plugin.getLogger().info("Market restored from backup by " + sender.getName() + ": " + backup.getId());
+        });
     }
 }
\ No newline at end of file
@@ -2,12 +2,21 @@ package com.dynamicmarket.commands;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
 import com.dynamicmarket.gui.MarketGUI;
+import com.dynamicmarket.gui.SearchResultsGUI;
+import com.dynamicmarket.managers.OrderManager;
+import com.dynamicmarket.market.MarketRepository;
+import com.dynamicmarket.orders.Order;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class MarketCommand implements CommandExecutor {
     
     private final DynamicMarket plugin;
@@ -69,7 +78,7 @@ public class MarketCommand implements CommandExecutor {
                     player.sendMessage("§cUsage: /market search <item_name>");
                     return true;
                 }
-                searchItems(player, args[1]);
+                searchItems(player, String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
                 break;
                 
             case "category":
@@ -81,6 +90,15 @@ public class MarketCommand implements CommandExecutor {
                 openCategoryDirectly(player, args[1]);
                 break;
                 
+            case "order":
+            case "orders":
+                if (!player.hasPermission("market.orders")) {
+                    player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+                    return true;
+                }
+                handleOrderCommand(player, args);
+                break;
+                
             case "reload":
                 if (!player.hasPermission("market.admin.reload")) {
                     player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
@@ -127,6 +145,10 @@ public class MarketCommand implements CommandExecutor {
         player.sendMessage("§e/market balance §7- Show your current balance");
         player.sendMessage("§e/market search <item> §7- Search for items");
         player.sendMessage("§e/market category <name> §7- Open specific category");
+        player.sendMessage("§e/market order <buy|sell> <item> <amount> <price> §7- Place a limit order");
+        player.sendMessage("§e/market order cancel <id> §7- Cancel one of your orders");
+        player.sendMessage("§e/market order book <item> §7- Show the best bids and asks");
+        player.sendMessage("§e/market orders [claim] §7- List your orders or collect bought items");
         player.sendMessage("");
         player.sendMessage("§7Available categories:");
         
@@ -147,13 +169,11 @@ public class MarketCommand implements CommandExecutor {
         player.sendMessage("");
         player.sendMessage("§7Market Statistics:");
         
-        int totalCategories = plugin.getMarketManager().getAllCategories().size();
-        int totalItems = plugin.getMarketManager().getAllCategories().stream()
-            .mapToInt(category -> category.getItems().size())
-            .sum();
+        MarketRepository repository = plugin.getMarketManager().getRepository();
+        int totalCategories = repository.getCategoryCount();
+        int totalItems = repository.getItemCount();
             
-        int totalStock = plugin.getMarketManager().getAllCategories().stream()
-            .flatMap(category -> category.getItems().values().stream())
+        int totalStock = repository.getItems().stream()
             .mapToInt(item -> item.getStock())
             .sum();
             
@@ -183,21 +203,19 @@ public class MarketCommand implements CommandExecutor {
         String mostExpensiveItem = "None";
         String cheapestItem = "None";
         
-        for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (var item : category.getItems().values()) {
-                if (item.getBuyPrice() > highestPrice) {
-                    highestPrice = item.getBuyPrice();
-                    mostExpensiveItem = item.getDisplayName() != null ? 
-                        item.getDisplayName() : 
-                        item.getMaterial().name().toLowerCase().replace("_", " ");
-                }
-                
-                if (item.getBuyPrice() < lowestPrice) {
-                    lowestPrice = item.getBuyPrice();
-                    cheapestItem = item.getDisplayName() != null ? 
-                        item.getDisplayName() : 
-                        item.getMaterial().name().toLowerCase().replace("_", " ");
-                }
+        for (var item : plugin.getMarketManager().getRepository().getItems()) {
+            if (item.getBuyPrice() > highestPrice) {
+                highestPrice = item.getBuyPrice();
+                mostExpensiveItem = item.getDisplayName() != null ? 
+                    item.getDisplayName() : 
+                    item.getMaterial().name().toLowerCase().replace("_", " ");
+            }
+            
+            if (item.getBuyPrice() < lowestPrice) {
+                lowestPrice = item.getBuyPrice();
+                cheapestItem = item.getDisplayName() != null ? 
+                    item.getDisplayName() : 
+                    item.getMaterial().name().toLowerCase().replace("_", " ");
             }
         }
         
@@ -227,11 +245,9 @@ public class MarketCommand implements CommandExecutor {
     private void showAffordableItems(Player player, double balance) {
         int affordableCount = 0;
         
-        for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (var item : category.getItems().values()) {
-                if (item.getBuyPrice() <= balance && item.getStock() > 0) {
-                    affordableCount++;
-                }
+        for (var item : plugin.getMarketManager().getRepository().getItems()) {
+            if (item.getBuyPrice() <= balance && item.getStock() > 0) {
+                affordableCount++;
             }
         }
         
@@ -244,38 +260,13 @@ public class MarketCommand implements CommandExecutor {
     }
     
     private void searchItems(Player player, String searchTerm) {
-        player.sendMessage("");
-        player.sendMessage("§6§l=== SEARCH RESULTS FOR: " + searchTerm.toUpperCase() + " ===");
-        
-        boolean found = false;
-        
-        for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (var item : category.getItems().values()) {
-                String itemName = item.getDisplayName() != null ? 
-                    item.getDisplayName() : 
-                    item.getMaterial().name().toLowerCase().replace("_", " ");
-                    
-                if (itemName.toLowerCase().contains(searchTerm.toLowerCase()) ||
-                    item.getMaterial().name().toLowerCase().contains(searchTerm.toLowerCase())) {
-                    
-                    found = true;
-                    String stockStatus = item.getStock() > 0 ? "§a" + item.getStock() + " in stock" : "§cOut of stock";
-                    
-                    player.sendMessage("§7▪ §e" + itemName + " §7(" + category.getName() + ")");
-                    player.sendMessage("  §7Buy: §a$" + String.format("%.2f", item.getBuyPrice()) + 
-                                     " §7| Sell: §a$" + String.format("%.2f", item.getSellPrice()) + 
-                                     " §7| " + stockStatus);
-                }
-            }
-        }
-        
-        if (!found) {
+        List<MarketItem> results = plugin.getMarketManager().searchItems(searchTerm, SearchResultsGUI.MAX_RESULTS);
+        if (results.isEmpty()) {
             player.sendMessage("§cNo items found matching '" + searchTerm + "'");
             player.sendMessage("§7Try using different keywords or browse categories with §e/market");
+            return;
         }
-        
-        player.sendMessage("§6§l" + "=".repeat(20 + searchTerm.length()));
-        player.sendMessage("");
+        new SearchResultsGUI(plugin, player, searchTerm, results).open();
     }
     
     private void openCategoryDirectly(Player player, String categoryName) {
@@ -299,6 +290,123 @@ public class MarketCommand implements CommandExecutor {
         }
     }
     
+    private void handleOrderCommand(Player player, String[] args) {
+        OrderManager orderManager = plugin.getOrderManager();
+        String action = args.length > 1 ? args[1].toLowerCase() : "list";
+        
+        switch (action) {
+            case "buy":
+            case "sell":
+                if (args.length < 5) {
+                    player.sendMessage("§cUsage: /market order " + action + " <item> <amount> <price>");
+                    return;
+                }
+                MarketItem item = resolveItem(args[2]);
+                if (item == null) {
+                    player.sendMessage("§cItem '" + args[2] + "' is not traded on the market!");
+                    return;
+                }
+                int amount;
+                double price;
+                try {
+                    amount = Integer.parseInt(args[3]);
+                    price = Double.parseDouble(args[4]);
+                } catch (NumberFormatException e) {
+                    player.sendMessage("§cAmount and price must be numbers!");
+                    return;
+                }
+                orderManager.placeOrder(player, item, action.equals("buy") ? Order.Side.BUY : Order.Side.SELL, amount, price);
+                break;
+                
+            case "cancel":
+                if (args.length < 3) {
+                    player.sendMessage("§cUsage: /market order cancel <id>");
+                    return;
+                }
+                try {
+                    orderManager.cancelOrder(player, Long.parseLong(args[2].replace("#", "")));
+                } catch (NumberFormatException e) {
+                    player.sendMessage("§cInvalid order id: " + args[2]);
+                }
+                break;
+                
+            case "book":
+                if (args.length < 3) {
+                    player.sendMessage("§cUsage: /market order book <item>");
+                    return;
+                }
+                MarketItem bookItem = resolveItem(args[2]);
+                if (bookItem == null) {
+                    player.sendMessage("§cItem '" + args[2] + "' is not traded on the market!");
+                    return;
+                }
+                orderManager.getDepth(bookItem.getId(), 5, depth -> {
+                    player.sendMessage("");
+                    player.sendMessage("§6§l=== ORDER BOOK: " + bookItem.getDisplayName() + " §6§l===");
+                    // Asks from the highest shown down to the best, so the spread sits in the middle
+                    for (int i = depth[1].length - 1; i >= 0; i--) {
+                        player.sendMessage("§c  Ask §f$" + String.format("%.2f", Order.toPrice(depth[1][i][0])) + " §7x §f" + depth[1][i][1]);
+                    }
+                    if (depth[0].length == 0 && depth[1].length == 0) {
+                        player.sendMessage("§7No open orders.");
+                    }
+                    for (long[] level : depth[0]) {
+                        player.sendMessage("§a  Bid §f$" + String.format("%.2f", Order.toPrice(level[0])) + " §7x §f" + level[1]);
+                    }
+                });
+                break;
+                
+            case "claim":
+                int delivered = orderManager.claim(player);
+                int waiting = orderManager.getClaimCount(player.getUniqueId());
+                if (delivered == 0 && waiting == 0) {
+                    player.sendMessage("§7You have no items waiting.");
+                } else {
+                    player.sendMessage("§aDelivered §e" + delivered + " §aitem(s)."
+                        + (waiting > 0 ? " §e" + waiting + " §7still waiting; make room and try again." : ""));
+                }
+                break;
+                
+            case "list":
+                orderManager.getOrders(player, orders -> {
+                    player.sendMessage("");
+                    player.sendMessage("§6§l=== YOUR ORDERS ===");
+                    if (orders.isEmpty()) {
+                        player.sendMessage("§7You have no open orders.");
+                    }
+                    for (Order order : orders) {
+                        MarketItem orderItem = plugin.getMarketManager().findItemById(order.getItemId());
+                        String name = orderItem != null ? orderItem.getDisplayName() : order.getItemId();
+                        player.sendMessage("§7▪ §e#" + order.getId() + " "
+                            + (order.getSide() == Order.Side.BUY ? "§aBUY" : "§cSELL") + " §f" + name
+                            + " §7" + order.getFilled() + "/" + order.getAmount() + " filled at §f$"
+                            + String.format("%.2f", Order.toPrice(order.getPrice())));
+                    }
+                    int claimable = orderManager.getClaimCount(player.getUniqueId());
+                    if (claimable > 0) {
+                        player.sendMessage("§e" + claimable + " §7item(s) waiting; use §e/market orders claim");
+                    }
+                });
+                break;
+                
+            default:
+                player.sendMessage("§cUsage: /market order <buy|sell|cancel|book|claim|list>");
+                break;
+        }
+    }
+    
+    /**
+     * Finds a market item by id, falling back to its material name
+     */
+    private MarketItem resolveItem(String name) {
+        MarketItem item = plugin.getMarketManager().findItemById(name.toLowerCase());
+        if (item == null) {
+            Material material = Material.matchMaterial(name);
+            item = material != null ? plugin.getMarketManager().findItemByMaterial(material) : null;
+        }
+        return item;
+    }
+    
     private void reloadMarket(Player player) {
         try {
             plugin.getConfigManager().loadConfig();
@@ -152,8 +152,9 @@ public class MarketSettingsCommand implements CommandExecutor {
             return;
         }
         
-        // Save configuration
+        // Save configuration and publish the new settings
         plugin.getConfigManager().saveConfig();
+        plugin.getConfigManager().refreshSettings();
         
         // Get new value for confirmation
         Object newValue = getSettingValue(setting);
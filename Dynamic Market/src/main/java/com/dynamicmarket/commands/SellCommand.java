@@ -2,6 +2,7 @@ package com.dynamicmarket.commands;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.gui.SellGUI;
+import com.dynamicmarket.managers.BatchSaleEngine;
 import com.dynamicmarket.managers.SellHandler;
 import com.dynamicmarket.data.MarketItem;
 import org.bukkit.Material;
@@ -197,29 +198,14 @@ public class SellCommand implements CommandExecutor {
     }
     
     private void sellAllSellableItems(Player player) {
-        SellHandler sellHandler = new SellHandler(plugin);
-        double totalEarned = 0.0;
-        int totalItemsSold = 0;
-        int itemTypesSold = 0;
+        BatchSaleEngine.SaleReceipt receipt = new BatchSaleEngine(plugin).sellInventory(player, player.getInventory());
+        double totalEarned = receipt.getTotalEarned();
+        int totalItemsSold = receipt.getTotalItemsSold();
+        int itemTypesSold = receipt.getItemTypesSold();
         
-        // Get all unique materials in player inventory
-        for (ItemStack item : player.getInventory().getContents()) {
-            if (item == null || item.getType() == Material.AIR) {
-                continue;
-            }
-            
-            MarketItem marketItem = plugin.getMarketManager().findItemByMaterial(item.getType());
-            if (marketItem != null) {
-                int maxAmount = sellHandler.getMaxSellableAmount(player, marketItem);
-                if (maxAmount > 0) {
-                    double earned = sellHandler.processSaleQuiet(player, marketItem, maxAmount);
-                    if (earned > 0) {
-                        totalEarned += earned;
-                        totalItemsSold += maxAmount;
-                        itemTypesSold++;
-                    }
-                }
-            }
+        if (!receipt.isPaid()) {
+            player.sendMessage("§cThe sale could not be completed! Your items were not removed.");
+            return;
         }
         
         if (totalEarned > 0) {
@@ -278,7 +264,7 @@ public class SellCommand implements CommandExecutor {
         player.sendMessage("§7▪ §eYou have: §f" + playerAmount + " items");
         
         if (playerAmount > 0) {
-            double totalValue = marketItem.getSellPrice() * playerAmount;
+            double totalValue = plugin.getPricingEngine().quoteSell(marketItem, playerAmount).getTotal();
             player.sendMessage("§7▪ §eTotal value: §a$" + String.format("%.2f", totalValue));
             
             // Show different quantity values
@@ -286,10 +272,10 @@ public class SellCommand implements CommandExecutor {
             player.sendMessage("§7§l▪ Sell Values:");
             player.sendMessage("§7  1x: §a$" + String.format("%.2f", marketItem.getSellPrice()));
             if (playerAmount >= 16) {
-                player.sendMessage("§7  16x: §a$" + String.format("%.2f", marketItem.getSellPrice() * 16));
+                player.sendMessage("§7  16x: §a$" + String.format("%.2f", plugin.getPricingEngine().quoteSell(marketItem, 16).getTotal()));
             }
             if (playerAmount >= 64) {
-                player.sendMessage("§7  64x: §a$" + String.format("%.2f", marketItem.getSellPrice() * 64));
+                player.sendMessage("§7  64x: §a$" + String.format("%.2f", plugin.getPricingEngine().quoteSell(marketItem, 64).getTotal()));
             }
             player.sendMessage("§7  All (" + playerAmount + "x): §a$" + String.format("%.2f", totalValue));
         } else {
@@ -309,17 +295,20 @@ public class SellCommand implements CommandExecutor {
         double totalValue = 0.0;
         
         // Check each unique item type in inventory
-        for (ItemStack item : player.getInventory().getContents()) {
+        ItemStack[] contents = player.getInventory().getContents();
+        MarketItem[] resolved = plugin.getMarketManager().resolveItems(contents);
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
             if (item == null || item.getType() == Material.AIR) {
                 continue;
             }
             
-            MarketItem marketItem = plugin.getMarketManager().findItemByMaterial(item.getType());
+            MarketItem marketItem = resolved[slot];
             if (marketItem != null) {
                 int amount = sellHandler.getMaxSellableAmount(player, marketItem);
                 if (amount > 0) {
                     foundAny = true;
-                    double itemValue = marketItem.getSellPrice() * amount;
+                    double itemValue = plugin.getPricingEngine().quoteSell(marketItem, amount).getTotal();
                     totalValue += itemValue;
                     
                     String itemName = marketItem.getDisplayName() != null ? 
@@ -214,7 +214,7 @@ Map<String, MarketCategory> categories = new HashMap<>(plugin.getMarketManager()
         int oldSlot = category.getGuiSlot();
 
         category.setGuiSlot(slot);
-        plugin.getMarketManager().saveMarketData();
+        plugin.getMarketManager().saveCategory(category);
 
         sender.sendMessage("§a§lSlot updated successfully!");
         sender.sendMessage("§7▪ §eCategory: §f" + categoryName);
@@ -229,11 +229,11 @@ Map<String, MarketCategory> categories = new HashMap<>(plugin.getMarketManager()
 
         for (MarketCategory category : categories.values()) {
             category.setGuiSlot(slot);
+            plugin.getMarketManager().saveCategory(category);
             slot++;
             if (slot % 9 == 0) slot++; // skip borders
         }
 
-        plugin.getMarketManager().saveMarketData();
         sender.sendMessage("§aAll slots have been automatically assigned!");
         showAllSlots(sender);
     }
@@ -7,6 +7,12 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.ChatColor;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 public class ConfigManager {
@@ -16,6 +22,11 @@ public class ConfigManager {
     private File configFile;
     private FileConfiguration messagesConfig;
     private File messagesFile;
+    // Compiled messages by key, rebuilt on every load and reload
+    private volatile Map<String, MessageTemplate> messageTemplates = Collections.emptyMap();
+    // Typed settings, swapped as a whole whenever the configuration changes
+    private volatile MarketSettings settings;
+    private final List<Consumer<MarketSettings>> settingsListeners = new CopyOnWriteArrayList<>();
     
     public ConfigManager(DynamicMarket plugin) {
         this.plugin = plugin;
@@ -42,6 +53,40 @@ public class ConfigManager {
         // Set default values if they don't exist
         setDefaults();
         saveConfig();
+        compileMessages();
+        refreshSettings();
+    }
+    
+    /**
+     * Pre-compiles every message so getMessage is a single map lookup.
+     * A key can be written in full or without its "messages." or
+     * "market.messages." prefix; the full path wins, as it did when the
+     * three paths were tried in order.
+     */
+    private void compileMessages() {
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        for (String path : messagesConfig.getKeys(true)) {
+            if (messagesConfig.isConfigurationSection(path)) {
+                continue;
+            }
+            String message = messagesConfig.getString(path);
+            if (message != null) {
+                templates.put(path, MessageTemplate.compile(ChatColor.translateAlternateColorCodes('&', message)));
+            }
+        }
+        
+        Map<String, MessageTemplate> aliases = new HashMap<>(templates);
+        addAliases(aliases, templates, "messages.");
+        addAliases(aliases, templates, "market.messages.");
+        messageTemplates = Collections.unmodifiableMap(aliases);
+    }
+    
+    private static void addAliases(Map<String, MessageTemplate> aliases, Map<String, MessageTemplate> templates, String prefix) {
+        for (Map.Entry<String, MessageTemplate> entry : templates.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                aliases.putIfAbsent(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
     }
     
     private void setDefaults() {
@@ -126,19 +171,52 @@ public class ConfigManager {
     public void reloadConfig() {
         config = YamlConfiguration.loadConfiguration(configFile);
         messagesConfig = YamlConfiguration.loadConfiguration(messagesFile);
+        compileMessages();
+        refreshSettings();
+    }
+    
+    /**
+     * Rebuilds the settings snapshot from the configuration and notifies listeners.
+     * Call after changing the configuration directly through getConfig().
+     */
+    public void refreshSettings() {
+        MarketSettings updated = MarketSettings.from(config);
+        settings = updated;
+        for (Consumer<MarketSettings> listener : settingsListeners) {
+            try {
+                listener.accept(updated);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Settings listener failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Registers a listener called with the new settings after every change
+     */
+    public void addSettingsListener(Consumer<MarketSettings> listener) {
+        settingsListeners.add(listener);
+    }
+    
+    public void removeSettingsListener(Consumer<MarketSettings> listener) {
+        settingsListeners.remove(listener);
+    }
+    
+    public MarketSettings getSettings() {
+        return settings;
     }
     
     // Getter methods for configuration values
     public double getPriceAdjustmentRate() {
-        return config.getDouble("market.price-adjustment-rate", 0.005);
+        return settings.getPriceAdjustmentRate();
     }
     
     public double getMinPrice() {
-        return config.getDouble("market.min-price", 0.1);
+        return settings.getMinPrice();
     }
     
     public double getMaxPrice() {
-        return config.getDouble("market.max-price", 1000.0);
+        return settings.getMaxPrice();
     }
 
     public double getDouble(String path, double defaultValue) {
@@ -158,68 +236,70 @@ public class ConfigManager {
     }
     
     public int getAutoSaveInterval() {
-        return config.getInt("market.auto-save-interval", 300);
+        return settings.getAutoSaveInterval();
     }
     
     public String getMarketTitle() {
-        return config.getString("gui.market-title", "§6§lDynamic Market");
+        return settings.getMarketTitle();
     }
     
     public String getCategoryTitle() {
-        return config.getString("gui.category-title", "§6§l{category} - Market");
+        return settings.getCategoryTitle();
     }
     
     public String getSellTitle() {
-        return config.getString("gui.sell-title", "§6§lSell Items");
+        return settings.getSellTitle();
     }
     
     public String getMessage(String key) {
-        String message = messagesConfig.getString(key);
-        if (message == null) {
-            message = messagesConfig.getString("messages." + key);
-        }
-        if (message == null) {
-            message = messagesConfig.getString("market.messages." + key);
-        }
-        return message != null ? ChatColor.translateAlternateColorCodes('&', message) : "§cMessage not found: " + key;
+        MessageTemplate template = messageTemplates.get(key);
+        return template != null ? template.getText() : "§cMessage not found: " + key;
     }
     
     public String getMessage(String key, String... replacements) {
-        String message = getMessage(key);
-        
-        for (int i = 0; i < replacements.length; i += 2) {
-            if (i + 1 < replacements.length) {
-                message = message.replace("{" + replacements[i] + "}", replacements[i + 1]);
-            }
+        MessageTemplate template = messageTemplates.get(key);
+        if (template == null) {
+            return "§cMessage not found: " + key;
         }
-        
-        return message;
+        return template.render(replacements);
+    }
+    
+    /**
+     * Compiled template for a message key, or null if there is no such message
+     */
+    public MessageTemplate getMessageTemplate(String key) {
+        return messageTemplates.get(key);
     }
     
     // Setter methods for configuration values
     public void setPriceAdjustmentRate(double rate) {
         config.set("market.price-adjustment-rate", rate);
         saveConfig();
+        refreshSettings();
     }
     
     public void setMinPrice(double price) {
         config.set("market.min-price", price);
         saveConfig();
+        refreshSettings();
     }
     
     public void setMaxPrice(double price) {
         config.set("market.max-price", price);
         saveConfig();
+        refreshSettings();
     }
     
     public void setAutoSaveInterval(int interval) {
         config.set("market.auto-save-interval", interval);
         saveConfig();
+        refreshSettings();
     }
     
     public void setSetting(String key, Object value) {
         config.set(key, value);
         saveConfig();
+        refreshSettings();
     }
     
     public FileConfiguration getConfig() {
@@ -0,0 +1,80 @@
+package com.dynamicmarket.config;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Immutable snapshot of the settings read on the trade and GUI paths.
+ * Built once per load, reload or setting change, so reads are plain field loads
+ * instead of walks through the configuration tree.
+ */
+public final class MarketSettings {
+    
+    private final double priceAdjustmentRate;
+    private final double minPrice;
+    private final double maxPrice;
+    private final int autoSaveInterval;
+    private final int lowStockThreshold;
+    private final double confirmationThreshold;
+    private final String marketTitle;
+    private final String categoryTitle;
+    private final String sellTitle;
+    
+    private MarketSettings(FileConfiguration config) {
+        this.priceAdjustmentRate = config.getDouble("market.price-adjustment-rate", 0.005);
+        this.minPrice = config.getDouble("market.min-price", 0.1);
+        this.maxPrice = config.getDouble("market.max-price", 1000.0);
+        this.autoSaveInterval = config.getInt("market.auto-save-interval", 300);
+        this.lowStockThreshold = config.getInt("low-stock-threshold", 10);
+        this.confirmationThreshold = config.getDouble("confirmation-threshold", 100.0);
+        this.marketTitle = config.getString("gui.market-title", "§6§lDynamic Market");
+        this.categoryTitle = config.getString("gui.category-title", "§6§l{category} - Market");
+        this.sellTitle = config.getString("gui.sell-title", "§6§lSell Items");
+    }
+    
+    public static MarketSettings from(FileConfiguration config) {
+        return new MarketSettings(config);
+    }
+    
+    public double getPriceAdjustmentRate() {
+        return priceAdjustmentRate;
+    }
+    
+    public double getMinPrice() {
+        return minPrice;
+    }
+    
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+    
+    /**
+     * Limits a price to the configured range
+     */
+    public double clampPrice(double price) {
+        return Math.max(minPrice, Math.min(maxPrice, price));
+    }
+    
+    public int getAutoSaveInterval() {
+        return autoSaveInterval;
+    }
+    
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+    
+    public double getConfirmationThreshold() {
+        return confirmationThreshold;
+    }
+    
+    public String getMarketTitle() {
+        return marketTitle;
+    }
+    
+    public String getCategoryTitle() {
+        return categoryTitle;
+    }
+    
+    public String getSellTitle() {
+        return sellTitle;
+    }
+}
@@ -0,0 +1,100 @@
+package com.dynamicmarket.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, pre-parsed message with its colors already translated.
+ * The text is split once into literal segments and {placeholder} names, so
+ * rendering is a single pass instead of one String.replace per placeholder.
+ */
+public final class MessageTemplate {
+    
+    private final String text;
+    // literals[i] is followed by placeholders[i]; the last literal has no placeholder
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+    
+    private MessageTemplate(String text, String[] literals, String[] placeholders) {
+        this.text = text;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+    
+    /**
+     * Parses a message whose colors have already been translated
+     */
+    public static MessageTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        
+        int start = 0;
+        int open = text.indexOf('{');
+        while (open >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            // A nested '{' means the first one was a literal brace
+            int nested = text.indexOf('{', open + 1);
+            if (nested >= 0 && nested < close) {
+                open = nested;
+                continue;
+            }
+            literals.add(text.substring(start, open));
+            placeholders.add(text.substring(open + 1, close));
+            start = close + 1;
+            open = text.indexOf('{', start);
+        }
+        literals.add(text.substring(start));
+        
+        return new MessageTemplate(text, literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+    
+    /**
+     * Fills in the placeholders from name/value pairs.
+     * Placeholders without a value are kept as written.
+     */
+    public String render(String... replacements) {
+        if (placeholders.length == 0 || replacements == null || replacements.length < 2) {
+            return text;
+        }
+        
+        StringBuilder builder = new StringBuilder(literalLength + placeholders.length * 8);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            String value = lookup(placeholders[i], replacements);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append('{').append(placeholders[i]).append('}');
+            }
+        }
+        builder.append(literals[placeholders.length]);
+        return builder.toString();
+    }
+    
+    private static String lookup(String name, String[] replacements) {
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            if (name.equals(replacements[i])) {
+                return replacements[i + 1];
+            }
+        }
+        return null;
+    }
+    
+    public boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+    
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,249 @@
+package com.dynamicmarket.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-width OHLC+volume candles in a ring buffer of primitive arrays.
+ * Samples are folded into the newest candle as they arrive, so recording is O(1)
+ * and the buffer only grows up to its capacity, overwriting the oldest candle after that.
+ */
+public final class CandleSeries {
+    
+    private static final int INITIAL_CAPACITY = 8;
+    
+    private final long width;
+    private final int capacity;
+    
+    private long[] start;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private long[] volume;
+    private int head = -1;
+    private int size;
+    
+    // Earliest bucket changed since the last drainDirty, Long.MAX_VALUE if none
+    private long dirtyFrom = Long.MAX_VALUE;
+    
+    public CandleSeries(long width, int capacity) {
+        this.width = width;
+        this.capacity = Math.max(1, capacity);
+        allocate(Math.min(INITIAL_CAPACITY, this.capacity));
+    }
+    
+    private void allocate(int length) {
+        start = new long[length];
+        open = new double[length];
+        high = new double[length];
+        low = new double[length];
+        close = new double[length];
+        volume = new long[length];
+    }
+    
+    /**
+     * Folds a price sample and traded volume into the candle of its time bucket.
+     * Samples older than the newest candle are folded into the newest one.
+     */
+    public synchronized void record(long time, double price, long tradedVolume) {
+        long bucket = time - Math.floorMod(time, width);
+        if (size > 0 && bucket <= start[head]) {
+            high[head] = Math.max(high[head], price);
+            low[head] = Math.min(low[head], price);
+            close[head] = price;
+            volume[head] += tradedVolume;
+            dirtyFrom = Math.min(dirtyFrom, start[head]);
+            return;
+        }
+        append(bucket, price, price, price, price, tradedVolume);
+        dirtyFrom = Math.min(dirtyFrom, bucket);
+    }
+    
+    /**
+     * Restores a stored candle; candles must be restored oldest first
+     */
+    public synchronized void restore(Candle candle) {
+        if (size > 0 && candle.getStart() <= start[head]) {
+            return;
+        }
+        append(candle.getStart(), candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume());
+    }
+    
+    private void append(long bucket, double o, double h, double l, double c, long v) {
+        if (size == start.length && size < capacity) {
+            grow();
+        }
+        head = (head + 1) % start.length;
+        start[head] = bucket;
+        open[head] = o;
+        high[head] = h;
+        low[head] = l;
+        close[head] = c;
+        volume[head] = v;
+        size = Math.min(size + 1, start.length);
+    }
+    
+    private void grow() {
+        int length = Math.min(capacity, start.length * 2);
+        long[] oldStart = start;
+        double[] oldOpen = open;
+        double[] oldHigh = high;
+        double[] oldLow = low;
+        double[] oldClose = close;
+        long[] oldVolume = volume;
+        allocate(length);
+        // Unroll the ring so the oldest candle lands at index 0
+        for (int i = 0; i < size; i++) {
+            int from = index(oldStart.length, size - 1 - i);
+            start[i] = oldStart[from];
+            open[i] = oldOpen[from];
+            high[i] = oldHigh[from];
+            low[i] = oldLow[from];
+            close[i] = oldClose[from];
+            volume[i] = oldVolume[from];
+        }
+        head = size - 1;
+    }
+    
+    private int index(int length, int back) {
+        return Math.floorMod(head - back, length);
+    }
+    
+    /**
+     * Candle the given number of buckets back from the newest one, or null
+     */
+    public synchronized Candle get(int back) {
+        if (back < 0 || back >= size) {
+            return null;
+        }
+        return candleAt(index(start.length, back));
+    }
+    
+    public Candle latest() {
+        return get(0);
+    }
+    
+    /**
+     * Up to count of the newest candles, oldest first
+     */
+    public synchronized List<Candle> last(int count) {
+        int n = Math.min(count, size);
+        List<Candle> candles = new ArrayList<>(n);
+        for (int back = n - 1; back >= 0; back--) {
+            candles.add(candleAt(index(start.length, back)));
+        }
+        return candles;
+    }
+    
+    /**
+     * Volume traded in the newest buckets buckets, counted back from now
+     */
+    public synchronized long getVolume(long now, int buckets) {
+        long from = now - Math.floorMod(now, width) - (long) (buckets - 1) * width;
+        long total = 0;
+        for (int back = 0; back < size; back++) {
+            int i = index(start.length, back);
+            if (start[i] < from) {
+                break;
+            }
+            total += volume[i];
+        }
+        return total;
+    }
+    
+    /**
+     * Candles changed since the last call, oldest first
+     */
+    public synchronized List<Candle> drainDirty() {
+        if (dirtyFrom == Long.MAX_VALUE) {
+            return List.of();
+        }
+        List<Candle> changed = new ArrayList<>();
+        for (int back = size - 1; back >= 0; back--) {
+            int i = index(start.length, back);
+            if (start[i] >= dirtyFrom) {
+                changed.add(candleAt(i));
+            }
+        }
+        dirtyFrom = Long.MAX_VALUE;
+        return changed;
+    }
+    
+    /**
+     * Marks candles from the given bucket on as changed again, e.g. after a failed write
+     */
+    public synchronized void markDirtyFrom(long bucket) {
+        dirtyFrom = Math.min(dirtyFrom, bucket);
+    }
+    
+    private Candle candleAt(int i) {
+        return new Candle(start[i], open[i], high[i], low[i], close[i], volume[i]);
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    public long getWidth() {
+        return width;
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    public synchronized void clear() {
+        Arrays.fill(start, 0L);
+        head = -1;
+        size = 0;
+        dirtyFrom = Long.MAX_VALUE;
+    }
+    
+    /**
+     * One immutable OHLC+volume candle
+     */
+    public static final class Candle {
+        
+        private final long start;
+        private final double open;
+        private final double high;
+        private final double low;
+        private final double close;
+        private final long volume;
+        
+        public Candle(long start, double open, double high, double low, double close, long volume) {
+            this.start = start;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+        
+        public long getStart() {
+            return start;
+        }
+        
+        public double getOpen() {
+            return open;
+        }
+        
+        public double getHigh() {
+            return high;
+        }
+        
+        public double getLow() {
+            return low;
+        }
+        
+        public double getClose() {
+            return close;
+        }
+        
+        public long getVolume() {
+            return volume;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.dynamicmarket.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Orders in which the items of a category can be listed.
+ * Orders that depend on trading change while they are shown, so they are live:
+ * a sorted copy of them is only reused for a short while.
+ */
+public enum ItemSort {
+
+    NAME("Name", false),
+    PRICE("Price", true),
+    STOCK("Stock", true),
+    POPULARITY("Popularity", true);
+
+    private final String displayName;
+    private final boolean live;
+
+    ItemSort(String displayName, boolean live) {
+        this.displayName = displayName;
+        this.live = live;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Parses a sort name from the config, case-insensitively
+     */
+    public static ItemSort fromName(String name, ItemSort fallback) {
+        if (name != null) {
+            for (ItemSort sort : values()) {
+                if (sort.name().equalsIgnoreCase(name)) {
+                    return sort;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    public ItemSort next() {
+        ItemSort[] values = values();
+        return values[(ordinal() + 1) % values.length];
+    }
+
+    /**
+     * Sorts a copy of the items; ties are broken by id, so equal keys keep a stable order
+     */
+    public MarketItem[] sort(Collection<MarketItem> items) {
+        // Keys are read once per item, as trades may change them while sorting
+        Entry[] entries = new Entry[items.size()];
+        int n = 0;
+        for (MarketItem item : items) {
+            if (n == entries.length) {
+                break;
+            }
+            entries[n++] = new Entry(item, this);
+        }
+
+        Comparator<Entry> order = switch (this) {
+            case NAME -> Comparator.comparing((Entry entry) -> entry.name);
+            case PRICE -> Comparator.comparingDouble((Entry entry) -> entry.value);
+            case STOCK, POPULARITY -> Comparator.comparingDouble((Entry entry) -> -entry.value);
+        };
+        Arrays.sort(entries, 0, n, order.thenComparing(entry -> entry.item.getId()));
+
+        MarketItem[] sorted = new MarketItem[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = entries[i].item;
+        }
+        return sorted;
+    }
+
+    /**
+     * Name shown for an item, without color codes, in lower case
+     */
+    public static String sortName(MarketItem item) {
+        String name = item.getDisplayName();
+        if (name == null || name.isEmpty()) {
+            return item.getMaterial().name().toLowerCase().replace('_', ' ');
+        }
+        return name.replaceAll("§[0-9a-fk-orx]", "").toLowerCase();
+    }
+
+    private static final class Entry {
+
+        private final MarketItem item;
+        private final String name;
+        private final double value;
+
+        private Entry(MarketItem item, ItemSort sort) {
+            this.item = item;
+            MarketItem.Snapshot snapshot = item.snapshot();
+            this.name = sort == NAME ? sortName(item) : null;
+            this.value = switch (sort) {
+                case NAME -> 0;
+                case PRICE -> snapshot.getBuyPrice();
+                case STOCK -> snapshot.getStock();
+                case POPULARITY -> (double) snapshot.getTotalBought() + snapshot.getTotalSold();
+            };
+        }
+    }
+}
@@ -5,12 +5,19 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MarketCategory {
     
+    private static final long LIVE_SORT_MILLIS = 1000L;
+    
     private String name;
     private Material icon;
     private String displayName;
@@ -18,13 +25,17 @@ public class MarketCategory {
     private int guiSlot;
     private Map<String, MarketItem> items;
     
+    // Sorted copies of the items per sort, dropped when items are added or removed
+    private final AtomicReferenceArray<SortedItems> sortedItems = new AtomicReferenceArray<>(ItemSort.values().length);
+    private final AtomicInteger structureVersion = new AtomicInteger();
+    
     public MarketCategory(String name, Material icon, String displayName, List<String> description, int guiSlot) {
         this.name = name;
         this.icon = icon;
         this.displayName = displayName;
         this.description = description != null ? description : new ArrayList<>();
         this.guiSlot = guiSlot;
-        this.items = new HashMap<>();
+        this.items = new ConcurrentHashMap<>();
     }
     
     public ItemStack createCategoryIcon() {
@@ -48,10 +59,13 @@ public class MarketCategory {
     
     public void addItem(MarketItem item) {
         items.put(item.getId(), item);
+        structureVersion.incrementAndGet();
     }
     
     public void removeItem(String itemId) {
-        items.remove(itemId);
+        if (items.remove(itemId) != null) {
+            structureVersion.incrementAndGet();
+        }
     }
     
     public MarketItem getItem(String itemId) {
@@ -88,6 +102,30 @@ public class MarketCategory {
     
     public void clearItems() {
         items.clear();
+        structureVersion.incrementAndGet();
+    }
+    
+    /**
+     * The items in the given order, as an immutable list that pages can be sliced from.
+     * The same list is returned until items are added or removed; live orders are
+     * sorted again at most once a second.
+     */
+    public List<MarketItem> getSortedItems(ItemSort sort) {
+        int version = structureVersion.get();
+        long now = System.currentTimeMillis();
+        SortedItems cached = sortedItems.get(sort.ordinal());
+        if (cached == null || cached.version != version || (sort.isLive() && now - cached.sortedAt > LIVE_SORT_MILLIS)) {
+            cached = new SortedItems(sort.sort(items.values()), version, now);
+            sortedItems.set(sort.ordinal(), cached);
+        }
+        return cached.items;
+    }
+    
+    /**
+     * Drops the sorted copies, for changes to the items that sorting looks at, like a new name
+     */
+    public void invalidateSortedItems() {
+        structureVersion.incrementAndGet();
     }
     
     // Getters and Setters
@@ -135,6 +173,19 @@ public class MarketCategory {
         return new HashMap<>(items);
     }
     
+    private static final class SortedItems {
+        
+        private final List<MarketItem> items;
+        private final int version;
+        private final long sortedAt;
+        
+        private SortedItems(MarketItem[] items, int version, long sortedAt) {
+            this.items = Collections.unmodifiableList(Arrays.asList(items));
+            this.version = version;
+            this.sortedAt = sortedAt;
+        }
+    }
+    
     @Override
     public String toString() {
         return "MarketCategory{" +
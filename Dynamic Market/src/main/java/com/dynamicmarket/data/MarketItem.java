@@ -1,24 +1,37 @@
 package com.dynamicmarket.data;
 
+import com.dynamicmarket.pricing.PriceQuote;
+import com.dynamicmarket.pricing.PricingModel;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public class MarketItem {
     
-    private String id;
-    private Material material;
-    private String displayName;
-    private List<String> lore;
-    private double buyPrice;
-    private double sellPrice;
-    private int stock;
-    private int totalSold;
-    private int totalBought;
-    private long lastUpdated;
-    private String category;
+    private volatile String id;
+    private volatile Material material;
+    private volatile String displayName;
+    private volatile List<String> lore;
+    private volatile String category;
+    
+    // Prices, stock and counters change together, so they live in one immutable
+    // snapshot that is replaced with compare-and-swap
+    private final AtomicReference<Snapshot> state;
+    
+    // Dirty tracking for incremental persistence; new items start dirty until written
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile Consumer<MarketItem> dirtyListener;
+    private volatile Consumer<MarketItem> changeListener;
+    
+    // Bumped on every change, so renders of an older version can be told apart
+    private final AtomicLong version = new AtomicLong();
     
     public MarketItem(String id, Material material, String displayName, List<String> lore, 
                      double buyPrice, double sellPrice, int stock, String category) {
@@ -26,15 +39,23 @@ public class MarketItem {
         this.material = material;
         this.displayName = displayName;
         this.lore = lore;
-        this.buyPrice = buyPrice;
-        this.sellPrice = sellPrice;
-        this.stock = stock;
-        this.totalSold = 0;
-        this.totalBought = 0;
-        this.lastUpdated = System.currentTimeMillis();
+        this.state = new AtomicReference<>(new Snapshot(buyPrice, sellPrice, stock, 0, 0, System.currentTimeMillis()));
         this.category = category;
     }
     
+    /**
+     * Recreates a stored item; it starts clean, as it matches what was stored
+     */
+    public MarketItem(String id, Material material, String displayName, List<String> lore, String category, Snapshot state) {
+        this.id = id;
+        this.material = material;
+        this.displayName = displayName;
+        this.lore = lore;
+        this.state = new AtomicReference<>(state);
+        this.category = category;
+        this.dirty.set(false);
+    }
+    
     public ItemStack createItemStack(int amount) {
         ItemStack item = new ItemStack(material, amount);
         ItemMeta meta = item.getItemMeta();
@@ -52,44 +73,145 @@ public class MarketItem {
         return item;
     }
     
-    public void updatePriceOnBuy(int amount) {
-        totalBought += amount;
-        // Increase buy price by 0.5% per item bought
-        buyPrice = Math.min(1000.0, buyPrice * (1 + (amount * 0.005)));
-        // Decrease sell price slightly
-        sellPrice = Math.max(0.1, sellPrice * (1 - (amount * 0.0025)));
-        lastUpdated = System.currentTimeMillis();
+    /**
+     * Applies a quoted purchase in one step: prices move along the model, stock drops and
+     * the purchase is counted, so no reader sees the new price with the old stock.
+     * The move starts from the quoted snapshot, unless another trade replaced it first.
+     * @return the snapshot that was installed
+     */
+    public Snapshot applyBuy(PriceQuote quote, PricingModel model) {
+        int amount = quote.getAmount();
+        long now = System.currentTimeMillis();
+        return update(s -> {
+            Snapshot priced = model.afterBuy(s, amount);
+            return new Snapshot(priced.buyPrice, priced.sellPrice, Math.max(0, s.stock - amount),
+                s.totalSold, s.totalBought + amount, now);
+        });
     }
     
-    public void updatePriceOnSell(int amount) {
-        totalSold += amount;
-        stock += amount;
-        // Decrease buy price slightly
-        buyPrice = Math.max(0.1, buyPrice * (1 - (amount * 0.0025)));
-        // Decrease sell price by 0.5% per item sold
-        sellPrice = Math.max(0.1, sellPrice * (1 - (amount * 0.005)));
-        lastUpdated = System.currentTimeMillis();
+    /**
+     * Applies a quoted sale in one step: prices move along the model, stock grows and
+     * the sale is counted. The move starts from the quoted snapshot, unless another
+     * trade replaced it first.
+     * @return the snapshot that was installed
+     */
+    public Snapshot applySell(PriceQuote quote, PricingModel model) {
+        int amount = quote.getAmount();
+        long now = System.currentTimeMillis();
+        return update(s -> {
+            Snapshot priced = model.afterSell(s, amount);
+            return new Snapshot(priced.buyPrice, priced.sellPrice, s.stock + amount,
+                s.totalSold + amount, s.totalBought, now);
+        });
     }
     
     public void increaseStock(int amount) {
-        stock += amount;
-    }
-    
-    public void updatePricesAfterSell(int amount) {
-        updatePriceOnSell(amount);
+        update(s -> s.withStock(s.stock + amount));
     }
     
     public void recordSell(int amount) {
-        totalSold += amount;
-        lastUpdated = System.currentTimeMillis();
+        update(s -> new Snapshot(s.buyPrice, s.sellPrice, s.stock, s.totalSold + amount, s.totalBought, System.currentTimeMillis()));
     }
     
     public boolean canBuy(int amount) {
-        return stock >= amount;
+        return state.get().stock >= amount;
     }
     
     public void decreaseStock(int amount) {
-        stock = Math.max(0, stock - amount);
+        update(s -> s.withStock(Math.max(0, s.stock - amount)));
+    }
+    
+    /**
+     * Current prices, stock and counters as one consistent value
+     */
+    public Snapshot snapshot() {
+        return state.get();
+    }
+    
+    /**
+     * Atomically replaces the snapshot, retrying the function if another thread got there first.
+     * The function may run more than once and must not have side effects.
+     * @return the snapshot that was installed
+     */
+    public Snapshot update(UnaryOperator<Snapshot> function) {
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = state.get();
+            next = function.apply(current);
+            if (next == current) {
+                return current;
+            }
+        } while (!state.compareAndSet(current, next));
+        markDirty();
+        return next;
+    }
+    
+    /**
+     * Installs a snapshot computed elsewhere, only if nothing changed since it was read
+     */
+    public boolean compareAndSet(Snapshot expected, Snapshot next) {
+        if (!state.compareAndSet(expected, next)) {
+            return false;
+        }
+        if (next != expected) {
+            markDirty();
+        }
+        return true;
+    }
+    
+    /**
+     * Flags this item as changed so the next persistence flush writes it
+     */
+    public void markDirty() {
+        version.incrementAndGet();
+        if (dirty.compareAndSet(false, true)) {
+            Consumer<MarketItem> listener = dirtyListener;
+            if (listener != null) {
+                listener.accept(this);
+            }
+        }
+        
+        Consumer<MarketItem> listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+    
+    /**
+     * Flags this item dirty again after its write failed; not a change, so the version stays
+     * and no listener is told
+     */
+    public void restoreDirty() {
+        dirty.set(true);
+    }
+    
+    /**
+     * Clears the dirty flag
+     * @return true if the item was dirty
+     */
+    public boolean clearDirty() {
+        return dirty.getAndSet(false);
+    }
+    
+    public boolean isDirty() {
+        return dirty.get();
+    }
+    
+    public long getVersion() {
+        return version.get();
+    }
+    
+    public void setDirtyListener(Consumer<MarketItem> dirtyListener) {
+        this.dirtyListener = dirtyListener;
+    }
+    
+    /**
+     * Sets a listener notified on every change, unlike the dirty listener which
+     * only hears about the first change since the last save
+     */
+    public void setChangeListener(Consumer<MarketItem> changeListener) {
+        this.changeListener = changeListener;
     }
     
     // Getters and Setters
@@ -99,6 +221,7 @@ public class MarketItem {
     
     public void setId(String id) {
         this.id = id;
+        markDirty();
     }
     
     public Material getMaterial() {
@@ -107,6 +230,7 @@ public class MarketItem {
     
     public void setMaterial(Material material) {
         this.material = material;
+        markDirty();
     }
     
     public String getDisplayName() {
@@ -115,6 +239,7 @@ public class MarketItem {
     
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
+        markDirty();
     }
     
     public List<String> getLore() {
@@ -123,63 +248,59 @@ public class MarketItem {
     
     public void setLore(List<String> lore) {
         this.lore = lore;
+        markDirty();
     }
     
     public double getBuyPrice() {
-        return buyPrice;
+        return state.get().buyPrice;
     }
     
     public void setBuyPrice(double buyPrice) {
-        this.buyPrice = Math.max(0.1, Math.min(1000.0, buyPrice));
+        update(s -> s.withBuyPrice(buyPrice));
     }
     
     public double getSellPrice() {
-        return sellPrice;
+        return state.get().sellPrice;
     }
     
     public void setSellPrice(double sellPrice) {
-        this.sellPrice = Math.max(0.1, Math.min(1000.0, sellPrice));
+        update(s -> s.withSellPrice(sellPrice));
     }
     
     public int getStock() {
-        return stock;
+        return state.get().stock;
     }
     
     public void setStock(int stock) {
-        this.stock = Math.max(0, stock);
+        update(s -> s.withStock(Math.max(0, stock)));
     }
     
     public int getTotalSold() {
-        return totalSold;
+        return state.get().totalSold;
     }
     
     public void setTotalSold(int totalSold) {
-        this.totalSold = totalSold;
+        update(s -> new Snapshot(s.buyPrice, s.sellPrice, s.stock, totalSold, s.totalBought, s.lastUpdated));
     }
     
     public int getTotalBought() {
-        return totalBought;
+        return state.get().totalBought;
     }
     
     public void setTotalBought(int totalBought) {
-        this.totalBought = totalBought;
+        update(s -> new Snapshot(s.buyPrice, s.sellPrice, s.stock, s.totalSold, totalBought, s.lastUpdated));
     }
     
     public long getLastUpdated() {
-        return lastUpdated;
+        return state.get().lastUpdated;
     }
     
     public void setLastUpdated(long lastUpdated) {
-        this.lastUpdated = lastUpdated;
+        update(s -> s.withLastUpdated(lastUpdated));
     }
 
     public void recordBuy(int amount) {
-        totalBought += amount;
-        lastUpdated = System.currentTimeMillis();
-    }
-
-    public void updatePricesAfterBuy(int amount) {
-        updatePriceOnBuy(amount);
+        update(s -> new Snapshot(s.buyPrice, s.sellPrice, s.stock, s.totalSold, s.totalBought + amount, System.currentTimeMillis()));
     }
 
     public String getCategory() {
@@ -188,5 +309,72 @@ public class MarketItem {
 
     public void setCategory(String category) {
         this.category = category;
+        markDirty();
+    }
+    
+    /**
+     * Immutable prices, stock and trade counters of an item at one point in time
+     */
+    public static final class Snapshot {
+        
+        private final double buyPrice;
+        private final double sellPrice;
+        private final int stock;
+        private final int totalSold;
+        private final int totalBought;
+        private final long lastUpdated;
+        
+        public Snapshot(double buyPrice, double sellPrice, int stock, int totalSold, int totalBought, long lastUpdated) {
+            this.buyPrice = buyPrice;
+            this.sellPrice = sellPrice;
+            this.stock = stock;
+            this.totalSold = totalSold;
+            this.totalBought = totalBought;
+            this.lastUpdated = lastUpdated;
+        }
+        
+        public Snapshot withBuyPrice(double buyPrice) {
+            return new Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+        }
+        
+        public Snapshot withSellPrice(double sellPrice) {
+            return new Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+        }
+        
+        public Snapshot withPrices(double buyPrice, double sellPrice) {
+            return new Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+        }
+        
+        public Snapshot withStock(int stock) {
+            return new Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+        }
+        
+        public Snapshot withLastUpdated(long lastUpdated) {
+            return new Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+        }
+        
+        public double getBuyPrice() {
+            return buyPrice;
+        }
+        
+        public double getSellPrice() {
+            return sellPrice;
+        }
+        
+        public int getStock() {
+            return stock;
+        }
+        
+        public int getTotalSold() {
+            return totalSold;
+        }
+        
+        public int getTotalBought() {
+            return totalBought;
+        }
+        
+        public long getLastUpdated() {
+            return lastUpdated;
+        }
     }
-}
\ No newline at end of file
+}
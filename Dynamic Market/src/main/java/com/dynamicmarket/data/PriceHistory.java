@@ -0,0 +1,84 @@
+package com.dynamicmarket.data;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price history of one market item: the buy price sampled on every change,
+ * rolled up into minute, hour and day candles. Volume is the number of units
+ * bought or sold since the previous sample.
+ */
+public final class PriceHistory {
+    
+    public enum Resolution {
+        MINUTE(0, TimeUnit.MINUTES.toMillis(1)),
+        HOUR(1, TimeUnit.HOURS.toMillis(1)),
+        DAY(2, TimeUnit.DAYS.toMillis(1));
+        
+        private final int code;
+        private final long width;
+        
+        Resolution(int code, long width) {
+            this.code = code;
+            this.width = width;
+        }
+        
+        /**
+         * Value stored in the resolution column
+         */
+        public int getCode() {
+            return code;
+        }
+        
+        public long getWidth() {
+            return width;
+        }
+        
+        public static Resolution fromCode(int code) {
+            for (Resolution resolution : values()) {
+                if (resolution.code == code) {
+                    return resolution;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private final Map<Resolution, CandleSeries> series = new EnumMap<>(Resolution.class);
+    // Trade counter at the previous sample, -1 until the first one
+    private long lastTradeCount = -1;
+    
+    public PriceHistory(Map<Resolution, Integer> capacities) {
+        for (Resolution resolution : Resolution.values()) {
+            series.put(resolution, new CandleSeries(resolution.getWidth(), capacities.getOrDefault(resolution, 1)));
+        }
+    }
+    
+    /**
+     * Samples a snapshot into every resolution
+     */
+    public void record(MarketItem.Snapshot snapshot, long time) {
+        long tradeCount = (long) snapshot.getTotalBought() + snapshot.getTotalSold();
+        long traded;
+        synchronized (this) {
+            // Counters can be reset by admins, which is not trading
+            traded = lastTradeCount < 0 ? 0 : Math.max(0, tradeCount - lastTradeCount);
+            lastTradeCount = tradeCount;
+        }
+        for (CandleSeries candles : series.values()) {
+            candles.record(time, snapshot.getBuyPrice(), traded);
+        }
+    }
+    
+    public CandleSeries getSeries(Resolution resolution) {
+        return series.get(resolution);
+    }
+    
+    /**
+     * Units traded during the current and previous hour, O(1)
+     */
+    public long getRecentHourlyVolume(long now) {
+        return series.get(Resolution.HOUR).getVolume(now, 2);
+    }
+}
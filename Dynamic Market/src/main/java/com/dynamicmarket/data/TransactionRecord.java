@@ -0,0 +1,79 @@
+package com.dynamicmarket.data;
+
+/**
+ * Immutable row of the transactions table, captured at the time of the trade
+ */
+public final class TransactionRecord {
+
+    // Stored codes of the transaction_type column
+    public static final int TYPE_BUY = 0;
+    public static final int TYPE_SELL = 1;
+    public static final int TYPE_OTHER = 2;
+
+    private final String playerUuid;
+    private final String playerName;
+    private final String itemId;
+    private final String category;
+    private final String transactionType;
+    private final int amount;
+    private final double price;
+    private final long timestamp;
+
+    public TransactionRecord(String playerUuid, String playerName, String itemId, String category,
+                             String transactionType, int amount, double price, long timestamp) {
+        this.playerUuid = playerUuid;
+        this.playerName = playerName;
+        this.itemId = itemId;
+        this.category = category;
+        this.transactionType = transactionType;
+        this.amount = amount;
+        this.price = price;
+        this.timestamp = timestamp;
+    }
+
+    public String getPlayerUuid() {
+        return playerUuid;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getTransactionType() {
+        return transactionType;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getTypeCode() {
+        return typeCode(transactionType);
+    }
+
+    public static int typeCode(String transactionType) {
+        if ("BUY".equalsIgnoreCase(transactionType)) {
+            return TYPE_BUY;
+        }
+        if ("SELL".equalsIgnoreCase(transactionType)) {
+            return TYPE_SELL;
+        }
+        return TYPE_OTHER;
+    }
+}
@@ -3,6 +3,7 @@ package com.dynamicmarket.economy;
 import com.dynamicmarket.DynamicMarket;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
@@ -145,7 +146,7 @@ public class VaultEconomy {
      * @param amount the amount to deposit
      * @return true if deposit was successful
      */
-    public boolean depositPlayer(Player player, double amount) {
+    public boolean depositPlayer(OfflinePlayer player, double amount) {
         if (!isEnabled()) {
             plugin.getLogger().warning("Attempted to deposit $" + amount + " to " + player.getName() + " but economy is disabled!");
             return false;
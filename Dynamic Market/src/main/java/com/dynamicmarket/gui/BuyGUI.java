@@ -2,6 +2,7 @@ package com.dynamicmarket.gui;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
 import com.dynamicmarket.managers.PurchaseHandler;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -62,8 +63,9 @@ public class BuyGUI implements org.bukkit.inventory.InventoryHolder {
             }
             
             // Add market information
-            lore.add("§7▪ §eBuy Price: §a$" + String.format("%.2f", marketItem.getBuyPrice()));
-            lore.add("§7▪ §eTotal Cost: §a$" + String.format("%.2f", marketItem.getBuyPrice() * selectedQuantity));
+            PriceQuote quote = quote();
+            lore.add("§7▪ §eBuy Price: §a$" + String.format("%.2f", quote.getStartPrice()));
+            lore.add("§7▪ §eTotal Cost: §a$" + String.format("%.2f", quote.getTotal()));
             lore.add("§7▪ §eStock: §f" + marketItem.getStock());
             lore.add("");
             lore.add("§7Selected Quantity: §e" + selectedQuantity);
@@ -75,6 +77,13 @@ public class BuyGUI implements org.bukkit.inventory.InventoryHolder {
         return item;
     }
     
+    /**
+     * Price of the selected quantity along the item's price curve
+     */
+    private PriceQuote quote() {
+        return plugin.getPricingEngine().quoteBuy(marketItem, selectedQuantity);
+    }
+    
     private void updateQuantityControls() {
         // Decrease quantity button
         ItemStack decreaseItem = new ItemStack(Material.PURPLE_STAINED_GLASS_PANE);
@@ -106,10 +115,10 @@ public class BuyGUI implements org.bukkit.inventory.InventoryHolder {
         if (confirmMeta != null) {
             confirmMeta.setDisplayName("§f§lConfirm Purchase: " + selectedQuantity + "x");
             List<String> confirmLore = new ArrayList<>();
-            double totalCost = marketItem.getBuyPrice() * selectedQuantity;
-            confirmLore.add("§7Total cost: §a$" + String.format("%.2f", totalCost));
+            PriceQuote quote = quote();
+            confirmLore.add("§7Total cost: §a$" + String.format("%.2f", quote.getTotal()));
             confirmLore.add("§7Item: §f" + marketItem.getMaterial().name());
-            confirmLore.add("§7Price each: §a$" + String.format("%.2f", marketItem.getBuyPrice()));
+            confirmLore.add("§7Price each: §a$" + String.format("%.2f", quote.getAveragePrice()));
             confirmMeta.setLore(confirmLore);
             confirmItem.setItemMeta(confirmMeta);
         }
@@ -158,6 +167,18 @@ public class BuyGUI implements org.bukkit.inventory.InventoryHolder {
             backItem.setItemMeta(backMeta);
         }
         inventory.setItem(45, backItem);
+        
+        // Price chart button
+        ItemStack chartItem = new ItemStack(Material.MAP);
+        ItemMeta chartMeta = chartItem.getItemMeta();
+        if (chartMeta != null) {
+            chartMeta.setDisplayName("§e§lPrice Chart");
+            List<String> chartLore = new ArrayList<>();
+            chartLore.add("§7Click to view recent price candles");
+            chartMeta.setLore(chartLore);
+            chartItem.setItemMeta(chartMeta);
+        }
+        inventory.setItem(49, chartItem);
     }
     
     public void handleClick(int slot, boolean isRightClick, boolean isShiftClick) {
@@ -185,6 +206,9 @@ public class BuyGUI implements org.bukkit.inventory.InventoryHolder {
             }
             updateQuantityControls();
         }
+        else if (slot == 49) { // Price chart
+            new PriceChartGUI(plugin, player, marketItem, () -> new BuyGUI(plugin, player, marketItem).open()).open();
+        }
         else if (slot == 45) { // Back button
             // Return to category GUI
             player.closeInventory();
@@ -1,6 +1,7 @@
 package com.dynamicmarket.gui;
 
 import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.ItemSort;
 import com.dynamicmarket.data.MarketCategory;
 import com.dynamicmarket.data.MarketItem;
 import com.dynamicmarket.managers.PurchaseHandler;
@@ -12,9 +13,12 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
+public class CategoryGUI implements org.bukkit.inventory.InventoryHolder, ItemView {
     
     private final DynamicMarket plugin;
     private final Player player;
@@ -22,6 +26,16 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
     private Inventory inventory;
     private int currentPage;
     private final int itemsPerPage = 28; // 4 rows of 7 items
+    private ItemSort sort;
+    
+    // The order being paged through; kept until refreshed, so pages neither skip nor repeat items
+    private List<MarketItem> items;
+    
+    // Item id -> slot for the page on screen, used for live price updates
+    private final Map<String, Integer> itemSlots = new HashMap<>();
+    
+    // Slot -> item on screen, so a click always hits the item that was shown
+    private final MarketItem[] slotItems = new MarketItem[54];
 
     
     public CategoryGUI(DynamicMarket plugin, Player player, MarketCategory category) {
@@ -29,6 +43,8 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
         this.player = player;
         this.category = category;
         this.currentPage = 0;
+        this.sort = ItemSort.fromName(plugin.getConfigManager().getConfig().getString("gui.category-sort"), ItemSort.NAME);
+        this.items = category.getSortedItems(sort);
         createInventory();
     }
     
@@ -43,17 +59,22 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
     private void populateInventory() {
         // Clear inventory
         inventory.clear();
+        plugin.getPriceTicker().unwatch(this, itemSlots.keySet());
+        itemSlots.clear();
+        Arrays.fill(slotItems, null);
         
         // Add items from current page
-        List<MarketItem> items = category.getAllItems();
+        currentPage = Math.max(0, Math.min(currentPage, getTotalPages() - 1));
         int startIndex = currentPage * itemsPerPage;
         int endIndex = Math.min(startIndex + itemsPerPage, items.size());
+        List<MarketItem> page = items.subList(startIndex, Math.max(startIndex, endIndex));
         
         int slot = 10; // Start from slot 10 (second row, second column)
-        for (int i = startIndex; i < endIndex; i++) {
-            MarketItem item = items.get(i);
-            ItemStack displayItem = createItemDisplay(item);
+        for (MarketItem item : page) {
+            ItemStack displayItem = plugin.getItemRenderCache().get(item, CategoryGUI::createItemDisplay);
             inventory.setItem(slot, displayItem);
+            itemSlots.put(item.getId(), slot);
+            slotItems[slot] = item;
             
             slot++;
             // Skip border slots
@@ -65,6 +86,8 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
             }
         }
         
+        plugin.getPriceTicker().watch(this, page);
+        
         // Add decorative items
         addDecorativeItems();
         
@@ -72,7 +95,11 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
         addNavigationItems();
     }
     
-    private ItemStack createItemDisplay(MarketItem marketItem) {
+    /**
+     * Renders a market item with its prices, stock and click hints; shared with search results
+     */
+    static ItemStack createItemDisplay(MarketItem marketItem) {
+        MarketItem.Snapshot snapshot = marketItem.snapshot();
         ItemStack item = marketItem.createItemStack(1);
         ItemMeta meta = item.getItemMeta();
         
@@ -97,23 +124,23 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
             }
             
             // Add market information
-            lore.add("§7▪ §eBuy Price: §a$" + String.format("%.2f", marketItem.getBuyPrice()));
-            lore.add("§7▪ §eSell Price: §c$" + String.format("%.2f", marketItem.getSellPrice()));
-            lore.add("§7▪ §eStock: §f" + marketItem.getStock());
+            lore.add("§7▪ §eBuy Price: §a$" + String.format("%.2f", snapshot.getBuyPrice()));
+            lore.add("§7▪ §eSell Price: §c$" + String.format("%.2f", snapshot.getSellPrice()));
+            lore.add("§7▪ §eStock: §f" + snapshot.getStock());
             
             // Add trading statistics
-            if (marketItem.getTotalBought() > 0 || marketItem.getTotalSold() > 0) {
+            if (snapshot.getTotalBought() > 0 || snapshot.getTotalSold() > 0) {
                 lore.add("");
                 lore.add("§7§l▪ Trading Statistics:");
-                lore.add("§7  Bought: §e" + marketItem.getTotalBought());
-                lore.add("§7  Sold: §e" + marketItem.getTotalSold());
+                lore.add("§7  Bought: §e" + snapshot.getTotalBought());
+                lore.add("§7  Sold: §e" + snapshot.getTotalSold());
             }
             
             // Add stock status
             lore.add("");
-            if (marketItem.getStock() <= 0) {
+            if (snapshot.getStock() <= 0) {
                 lore.add("§c§l⚠ OUT OF STOCK");
-            } else if (marketItem.getStock() <= 10) {
+            } else if (snapshot.getStock() <= 10) {
                 lore.add("§6§l⚠ LOW STOCK");
             } else {
                 lore.add("§a§l✓ IN STOCK");
@@ -121,12 +148,13 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
             
             // Add purchase/sell instructions
             lore.add("");
-            if (marketItem.getStock() > 0) {
+            if (snapshot.getStock() > 0) {
                 lore.add("§a§l▶ Left click to buy");
                 lore.add("§c§l▶ Right click to sell");
             } else {
                 lore.add("§c§l✗ Cannot purchase - No stock");
             }
+            lore.add("§e§l▶ Shift click for price chart");
             
             meta.setLore(lore);
             item.setItemMeta(meta);
@@ -178,9 +206,20 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
         ItemStack categoryInfo = category.createCategoryIcon();
         inventory.setItem(4, categoryInfo);
         
+        // Sort order
+        ItemStack sortItem = new ItemStack(Material.HOPPER);
+        ItemMeta sortMeta = sortItem.getItemMeta();
+        if (sortMeta != null) {
+            sortMeta.setDisplayName("§b§lSort: " + sort.getDisplayName());
+            List<String> sortLore = new ArrayList<>();
+            sortLore.add("§7Click to sort by " + sort.next().getDisplayName().toLowerCase());
+            sortMeta.setLore(sortLore);
+            sortItem.setItemMeta(sortMeta);
+        }
+        inventory.setItem(47, sortItem);
+        
         // Page navigation
-        List<MarketItem> items = category.getAllItems();
-        int totalPages = (int) Math.ceil((double) items.size() / itemsPerPage);
+        int totalPages = getTotalPages();
         
         if (totalPages > 1) {
             // Previous page
@@ -239,11 +278,12 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
         inventory.setItem(53, refreshItem);
     }
     
+    private int getTotalPages() {
+        return Math.max(1, (items.size() + itemsPerPage - 1) / itemsPerPage);
+    }
+    
     public void nextPage() {
-        List<MarketItem> items = category.getAllItems();
-        int totalPages = (int) Math.ceil((double) items.size() / itemsPerPage);
-        
-        if (currentPage < totalPages - 1) {
+        if (currentPage < getTotalPages() - 1) {
             currentPage++;
             populateInventory();
         }
@@ -256,10 +296,41 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
         }
     }
     
+    /**
+     * Redraws the page with the current order of the items
+     */
     public void refresh() {
+        items = category.getSortedItems(sort);
         populateInventory();
     }
     
+    /**
+     * Switches to the next sort order, back on the first page
+     */
+    public void cycleSort() {
+        sort = sort.next();
+        currentPage = 0;
+        refresh();
+    }
+    
+    @Override
+    public boolean updateItem(MarketItem item) {
+        Integer slot = itemSlots.get(item.getId());
+        if (slot == null) {
+            return false;
+        }
+        inventory.setItem(slot, plugin.getItemRenderCache().get(item, CategoryGUI::createItemDisplay));
+        return true;
+    }
+    
+    /**
+     * Stops live price updates once the view is closed
+     */
+    public void handleClose() {
+        plugin.getPriceTicker().unwatch(this, itemSlots.keySet());
+        itemSlots.clear();
+    }
+    
     public void handleClick(int slot, boolean isRightClick, boolean isShiftClick) {
         // Previeni il movimento degli item
         if (slot < 0 || slot >= inventory.getSize()) {
@@ -277,10 +348,18 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
             return;
         }
         
-        // Check if clicked slot contains a market item
-        ItemStack clickedItem = inventory.getItem(slot);
-        if (clickedItem == null || clickedItem.getType() == Material.AIR || 
-            clickedItem.getType() == Material.GRAY_STAINED_GLASS_PANE) {
+        if (slot == 50) { // Next page
+            nextPage();
+            return;
+        }
+        
+        if (slot == 47) { // Sort order
+            cycleSort();
+            return;
+        }
+        
+        if (slot == 53) { // Refresh
+            refresh();
             return;
         }
         
@@ -289,15 +368,19 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
             return;
         }
         
-        // Calculate the index in the items list based on the slot
-        int index = slotToIndex(slot) + (currentPage * itemsPerPage);
-        
-        List<MarketItem> items = category.getAllItems();
-        if (index >= items.size()) {
+        MarketItem marketItem = slotItems[slot];
+        if (marketItem == null) {
             return;
         }
         
-        MarketItem marketItem = items.get(index);
+        if (isShiftClick) {
+            // Come back to the same page and order
+            new PriceChartGUI(plugin, player, marketItem, () -> {
+                refresh();
+                open();
+            }).open();
+            return;
+        }
         
         // Open buy or sell GUI based on click type
         if (isRightClick) {
@@ -341,12 +424,6 @@ public class CategoryGUI implements org.bukkit.inventory.InventoryHolder {
                (slot >= 37 && slot <= 43);
     }
     
-    private int slotToIndex(int slot) {
-        // Convert GUI slot to index in items list
-        int row = slot / 9 - 1; // -1 because first row is at index 0
-        int col = slot % 9 - 1; // -1 because first column is at index 0
-        return row * 7 + col;
-    }
 
 
 }
\ No newline at end of file
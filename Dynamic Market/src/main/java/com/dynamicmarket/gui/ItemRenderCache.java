@@ -0,0 +1,76 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Shares rendered item displays between every open GUI.
+ * Entries are keyed by item id and stamped with the item's version, so any
+ * change to the item makes its next lookup render a fresh stack.
+ */
+public class ItemRenderCache {
+    
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    /**
+     * Returns a copy of the cached display for the item, rendering it first if missing or stale
+     */
+    public ItemStack get(MarketItem item, Function<MarketItem, ItemStack> renderer) {
+        long version = item.getVersion();
+        Entry entry = entries.get(item.getId());
+        // Same id may be reused by a new item after a reload, so the instance must match too
+        if (entry != null && entry.item == item && entry.version == version) {
+            hits.incrementAndGet();
+            return entry.stack.clone();
+        }
+        
+        misses.incrementAndGet();
+        ItemStack rendered = renderer.apply(item);
+        entries.put(item.getId(), new Entry(item, version, rendered.clone()));
+        return rendered;
+    }
+    
+    public void invalidate(String itemId) {
+        entries.remove(itemId);
+    }
+    
+    public void clear() {
+        entries.clear();
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+    
+    private static final class Entry {
+        private final MarketItem item;
+        private final long version;
+        private final ItemStack stack;
+        
+        private Entry(MarketItem item, long version, ItemStack stack) {
+            this.item = item;
+            this.version = version;
+            this.stack = stack;
+        }
+    }
+}
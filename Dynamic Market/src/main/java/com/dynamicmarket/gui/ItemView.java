@@ -0,0 +1,15 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * An open view that shows market items and redraws them as they change
+ */
+public interface ItemView {
+
+    /**
+     * Redraws the slot of a single item if the view shows it
+     * @return true if a slot was updated
+     */
+    boolean updateItem(MarketItem item);
+}
@@ -169,10 +169,8 @@ public class MarketGUI implements org.bukkit.inventory.InventoryHolder {
             statsMeta.setDisplayName("§b§lMarket Statistics");
             List<String> statsLore = new ArrayList<>();
             
-            int totalCategories = plugin.getMarketManager().getAllCategories().size();
-            int totalItems = plugin.getMarketManager().getAllCategories().stream()
-                .mapToInt(MarketCategory::getItemCount)
-                .sum();
+            int totalCategories = plugin.getMarketManager().getRepository().getCategoryCount();
+            int totalItems = plugin.getMarketManager().getRepository().getItemCount();
             
             statsLore.add("§7Total Categories: §e" + totalCategories);
             statsLore.add("§7Total Items: §e" + totalItems);
@@ -0,0 +1,168 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.CandleSeries;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PriceChartGUI implements org.bukkit.inventory.InventoryHolder {
+    
+    private static final int BACK_SLOT = 45;
+    private static final int MINUTE_SLOT = 48;
+    private static final int HOUR_SLOT = 49;
+    private static final int DAY_SLOT = 50;
+    private static final int INFO_SLOT = 53;
+    
+    private final DynamicMarket plugin;
+    private final Player player;
+    private final MarketItem marketItem;
+    private final Runnable back;
+    private Inventory inventory;
+    private PriceHistory.Resolution resolution = PriceHistory.Resolution.HOUR;
+    
+    /**
+     * @param back reopens the view the chart was opened from
+     */
+    public PriceChartGUI(DynamicMarket plugin, Player player, MarketItem marketItem, Runnable back) {
+        this.plugin = plugin;
+        this.player = player;
+        this.marketItem = marketItem;
+        this.back = back;
+        createInventory();
+    }
+    
+    private void createInventory() {
+        inventory = Bukkit.createInventory(this, 54, "Chart " + marketItem.getDisplayName());
+        populateInventory();
+    }
+    
+    private void populateInventory() {
+        inventory.clear();
+        
+        // Chart cells are shared with every other viewer of this item and resolution
+        ItemStack[] cells = plugin.getPriceChartRenderer().render(marketItem, resolution);
+        for (int slot = 0; slot < cells.length; slot++) {
+            inventory.setItem(slot, cells[slot]);
+        }
+        
+        ItemStack glassPane = button(Material.GRAY_STAINED_GLASS_PANE, " ", null);
+        for (int slot = 45; slot < 54; slot++) {
+            inventory.setItem(slot, glassPane);
+        }
+        
+        inventory.setItem(BACK_SLOT, button(Material.ARROW, "§c§l← Back", null));
+        inventory.setItem(MINUTE_SLOT, resolutionButton(PriceHistory.Resolution.MINUTE, "Minutes"));
+        inventory.setItem(HOUR_SLOT, resolutionButton(PriceHistory.Resolution.HOUR, "Hours"));
+        inventory.setItem(DAY_SLOT, resolutionButton(PriceHistory.Resolution.DAY, "Days"));
+        inventory.setItem(INFO_SLOT, createInfoItem());
+    }
+    
+    private ItemStack resolutionButton(PriceHistory.Resolution option, String label) {
+        boolean selected = option == resolution;
+        List<String> lore = new ArrayList<>();
+        lore.add(selected ? "§a§l✓ Showing" : "§7Click to show " + label.toLowerCase() + " candles");
+        return button(selected ? Material.CLOCK : Material.PAPER, (selected ? "§a§l" : "§e") + label, lore);
+    }
+    
+    private ItemStack createInfoItem() {
+        ItemStack item = marketItem.createItemStack(1);
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) {
+            return item;
+        }
+        
+        MarketItem.Snapshot snapshot = marketItem.snapshot();
+        List<String> lore = new ArrayList<>();
+        lore.add("§7▪ §eBuy Price: §a$" + String.format("%.2f", snapshot.getBuyPrice()));
+        lore.add("§7▪ §eSell Price: §c$" + String.format("%.2f", snapshot.getSellPrice()));
+        
+        PriceHistory history = plugin.getPriceHistoryManager().getHistory(marketItem.getId());
+        List<CandleSeries.Candle> candles = history != null
+            ? history.getSeries(resolution).last(PriceChartRenderer.COLUMNS)
+            : List.of();
+        if (!candles.isEmpty()) {
+            CandleSeries.Candle first = candles.get(0);
+            CandleSeries.Candle last = candles.get(candles.size() - 1);
+            double high = -Double.MAX_VALUE;
+            double low = Double.MAX_VALUE;
+            long volume = 0;
+            for (CandleSeries.Candle candle : candles) {
+                high = Math.max(high, candle.getHigh());
+                low = Math.min(low, candle.getLow());
+                volume += candle.getVolume();
+            }
+            double change = first.getOpen() > 0 ? (last.getClose() - first.getOpen()) / first.getOpen() * 100 : 0.0;
+            
+            lore.add("");
+            lore.add("§7Over the chart:");
+            lore.add("§7▪ §eChange: " + (change >= 0 ? "§a+" : "§c") + String.format("%.1f", change) + "%");
+            lore.add("§7▪ §eHigh: §a$" + String.format("%.2f", high));
+            lore.add("§7▪ §eLow: §c$" + String.format("%.2f", low));
+            lore.add("§7▪ §eVolume: §f" + volume);
+        } else {
+            lore.add("");
+            lore.add("§7No trades recorded yet.");
+        }
+        
+        meta.setLore(lore);
+        item.setItemMeta(meta);
+        return item;
+    }
+    
+    private static ItemStack button(Material material, String name, List<String> lore) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            if (lore != null) {
+                meta.setLore(lore);
+            }
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+    
+    public void handleClick(int slot) {
+        switch (slot) {
+            case BACK_SLOT:
+                back.run();
+                break;
+            case MINUTE_SLOT:
+                showResolution(PriceHistory.Resolution.MINUTE);
+                break;
+            case HOUR_SLOT:
+                showResolution(PriceHistory.Resolution.HOUR);
+                break;
+            case DAY_SLOT:
+                showResolution(PriceHistory.Resolution.DAY);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void showResolution(PriceHistory.Resolution selected) {
+        if (selected != resolution) {
+            resolution = selected;
+            populateInventory();
+        }
+    }
+    
+    public void open() {
+        player.openInventory(inventory);
+    }
+    
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+}
@@ -0,0 +1,189 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.CandleSeries;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the last candles of an item as a 9x5 inventory-grid chart.
+ * Frames are cached per item and resolution and stamped with the item version
+ * and the current time bucket, so every viewer of the same chart shares one render.
+ */
+public class PriceChartRenderer {
+    
+    public static final int COLUMNS = 9;
+    public static final int ROWS = 5;
+    
+    private final DynamicMarket plugin;
+    private final Map<String, Frame> frames = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    public PriceChartRenderer(DynamicMarket plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Chart cells in slot order (row by row), shared between viewers; callers must not modify them
+     */
+    public ItemStack[] render(MarketItem item, PriceHistory.Resolution resolution) {
+        long now = System.currentTimeMillis();
+        long bucket = now - Math.floorMod(now, resolution.getWidth());
+        long version = item.getVersion();
+        String key = item.getId() + ":" + resolution.name();
+        
+        Frame frame = frames.get(key);
+        if (frame != null && frame.item == item && frame.version == version && frame.bucket == bucket) {
+            hits.incrementAndGet();
+            return frame.cells;
+        }
+        
+        misses.incrementAndGet();
+        ItemStack[] cells = draw(item, resolution);
+        frames.put(key, new Frame(item, version, bucket, cells));
+        return cells;
+    }
+    
+    private ItemStack[] draw(MarketItem item, PriceHistory.Resolution resolution) {
+        ItemStack[] cells = new ItemStack[COLUMNS * ROWS];
+        ItemStack background = pane(Material.BLACK_STAINED_GLASS_PANE, " ", null);
+        
+        PriceHistory history = plugin.getPriceHistoryManager().getHistory(item.getId());
+        List<CandleSeries.Candle> candles = history != null
+            ? history.getSeries(resolution).last(COLUMNS)
+            : List.of();
+        
+        // Scale every column to the range of the visible candles
+        double low = Double.MAX_VALUE;
+        double high = -Double.MAX_VALUE;
+        for (CandleSeries.Candle candle : candles) {
+            low = Math.min(low, candle.getLow());
+            high = Math.max(high, candle.getHigh());
+        }
+        double range = high - low;
+        
+        // Right-align so the newest candle is always in the last column
+        int offset = COLUMNS - candles.size();
+        for (int column = 0; column < COLUMNS; column++) {
+            CandleSeries.Candle candle = column >= offset ? candles.get(column - offset) : null;
+            if (candle == null) {
+                for (int row = 0; row < ROWS; row++) {
+                    cells[row * COLUMNS + column] = background;
+                }
+                continue;
+            }
+            
+            boolean rising = candle.getClose() >= candle.getOpen();
+            int bodyTop = level(Math.max(candle.getOpen(), candle.getClose()), low, range);
+            int bodyBottom = level(Math.min(candle.getOpen(), candle.getClose()), low, range);
+            int wickTop = level(candle.getHigh(), low, range);
+            int wickBottom = level(candle.getLow(), low, range);
+            
+            List<String> lore = describe(candle, resolution);
+            ItemStack body = pane(rising ? Material.LIME_STAINED_GLASS_PANE : Material.RED_STAINED_GLASS_PANE,
+                (rising ? "§a" : "§c") + "$" + String.format("%.2f", candle.getClose()), lore);
+            ItemStack wick = pane(Material.WHITE_STAINED_GLASS_PANE, "§f$" + String.format("%.2f", candle.getClose()), lore);
+            ItemStack empty = pane(Material.BLACK_STAINED_GLASS_PANE, "§7$" + String.format("%.2f", candle.getClose()), lore);
+            
+            for (int row = 0; row < ROWS; row++) {
+                // Row 0 is the top of the chart
+                int level = ROWS - 1 - row;
+                ItemStack cell;
+                if (level >= bodyBottom && level <= bodyTop) {
+                    cell = body;
+                } else if (level >= wickBottom && level <= wickTop) {
+                    cell = wick;
+                } else {
+                    cell = empty;
+                }
+                cells[row * COLUMNS + column] = cell;
+            }
+        }
+        return cells;
+    }
+    
+    private static int level(double price, double low, double range) {
+        if (range <= 0) {
+            return ROWS / 2;
+        }
+        return (int) Math.round((price - low) / range * (ROWS - 1));
+    }
+    
+    private static List<String> describe(CandleSeries.Candle candle, PriceHistory.Resolution resolution) {
+        String pattern = resolution == PriceHistory.Resolution.DAY ? "yyyy-MM-dd" : "MM-dd HH:mm";
+        List<String> lore = new ArrayList<>();
+        lore.add("§7" + new SimpleDateFormat(pattern).format(new Date(candle.getStart())));
+        lore.add("§7▪ §eOpen: §f$" + String.format("%.2f", candle.getOpen()));
+        lore.add("§7▪ §eHigh: §a$" + String.format("%.2f", candle.getHigh()));
+        lore.add("§7▪ §eLow: §c$" + String.format("%.2f", candle.getLow()));
+        lore.add("§7▪ §eClose: §f$" + String.format("%.2f", candle.getClose()));
+        lore.add("§7▪ §eVolume: §f" + candle.getVolume());
+        return lore;
+    }
+    
+    private static ItemStack pane(Material material, String name, List<String> lore) {
+        ItemStack pane = new ItemStack(material);
+        ItemMeta meta = pane.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            if (lore != null) {
+                meta.setLore(lore);
+            }
+            pane.setItemMeta(meta);
+        }
+        return pane;
+    }
+    
+    public void invalidate(String itemId) {
+        for (PriceHistory.Resolution resolution : PriceHistory.Resolution.values()) {
+            frames.remove(itemId + ":" + resolution.name());
+        }
+    }
+    
+    public void clear() {
+        frames.clear();
+    }
+    
+    public int size() {
+        return frames.size();
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+    
+    private static final class Frame {
+        private final MarketItem item;
+        private final long version;
+        private final long bucket;
+        private final ItemStack[] cells;
+        
+        private Frame(MarketItem item, long version, long bucket, ItemStack[] cells) {
+            this.item = item;
+            this.version = version;
+            this.bucket = bucket;
+            this.cells = cells;
+        }
+    }
+}
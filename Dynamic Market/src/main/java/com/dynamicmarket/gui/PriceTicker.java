@@ -0,0 +1,114 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes price and stock changes into open category and search views.
+ * Changes are coalesced and applied once per tick, and only the slots showing a
+ * changed item are redrawn, so the cost follows the number of changes.
+ */
+public class PriceTicker {
+    
+    private final DynamicMarket plugin;
+    
+    // Item id -> views currently showing that item
+    private final Map<String, Set<ItemView>> viewers = new ConcurrentHashMap<>();
+    private final Set<MarketItem> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong slotUpdates = new AtomicLong();
+    private BukkitTask task;
+    
+    public PriceTicker(DynamicMarket plugin) {
+        this.plugin = plugin;
+    }
+    
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+    
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        pending.clear();
+        viewers.clear();
+    }
+    
+    /**
+     * Registers a view as showing the given items
+     */
+    public void watch(ItemView view, Collection<MarketItem> items) {
+        for (MarketItem item : items) {
+            viewers.computeIfAbsent(item.getId(), id -> ConcurrentHashMap.newKeySet()).add(view);
+        }
+    }
+    
+    /**
+     * Removes a view from the given item ids
+     */
+    public void unwatch(ItemView view, Collection<String> itemIds) {
+        for (String itemId : itemIds) {
+            viewers.computeIfPresent(itemId, (id, views) -> {
+                views.remove(view);
+                return views.isEmpty() ? null : views;
+            });
+        }
+    }
+    
+    /**
+     * Called from any thread whenever an item changes
+     */
+    public void onItemChanged(MarketItem item) {
+        // Nobody is looking at it, so there is nothing to redraw
+        if (viewers.containsKey(item.getId())) {
+            pending.add(item);
+        }
+    }
+    
+    private void tick() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        List<MarketItem> changed = new ArrayList<>(pending.size());
+        Iterator<MarketItem> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            changed.add(iterator.next());
+            iterator.remove();
+        }
+        
+        for (MarketItem item : changed) {
+            Set<ItemView> views = viewers.get(item.getId());
+            if (views == null) {
+                continue;
+            }
+            for (ItemView view : views) {
+                if (view.updateItem(item)) {
+                    slotUpdates.incrementAndGet();
+                }
+            }
+        }
+    }
+    
+    public int getWatchedItemCount() {
+        return viewers.size();
+    }
+    
+    public long getSlotUpdateCount() {
+        return slotUpdates.get();
+    }
+}
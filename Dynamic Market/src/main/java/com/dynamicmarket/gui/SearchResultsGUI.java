@@ -0,0 +1,213 @@
+package com.dynamicmarket.gui;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranked results of a market search, paged like a category
+ */
+public class SearchResultsGUI implements InventoryHolder, ItemView {
+
+    // Four pages of results
+    public static final int MAX_RESULTS = 112;
+
+    private static final int ITEMS_PER_PAGE = 28;
+    private static final int[] ITEM_SLOTS = {
+        10, 11, 12, 13, 14, 15, 16,
+        19, 20, 21, 22, 23, 24, 25,
+        28, 29, 30, 31, 32, 33, 34,
+        37, 38, 39, 40, 41, 42, 43
+    };
+
+    private final DynamicMarket plugin;
+    private final Player player;
+    private final String query;
+    private final List<MarketItem> results;
+    private final Inventory inventory;
+    private int currentPage;
+
+    // Item id -> slot, for live price updates, and slot -> item, for clicks
+    private final Map<String, Integer> itemSlots = new HashMap<>();
+    private final MarketItem[] slotItems = new MarketItem[54];
+
+    public SearchResultsGUI(DynamicMarket plugin, Player player, String query, List<MarketItem> results) {
+        this.plugin = plugin;
+        this.player = player;
+        this.query = query;
+        this.results = results;
+
+        String shown = query.length() > 16 ? query.substring(0, 16) + "…" : query;
+        String title = plugin.getConfigManager().getConfig().getString("gui.titles.search", "§b§lSearch: {query}")
+            .replace("{query}", shown);
+        this.inventory = Bukkit.createInventory(this, 54, title);
+        populateInventory();
+    }
+
+    private void populateInventory() {
+        inventory.clear();
+        plugin.getPriceTicker().unwatch(this, itemSlots.keySet());
+        itemSlots.clear();
+        Arrays.fill(slotItems, null);
+
+        int start = currentPage * ITEMS_PER_PAGE;
+        List<MarketItem> page = results.subList(Math.min(start, results.size()), Math.min(start + ITEMS_PER_PAGE, results.size()));
+        for (int i = 0; i < page.size(); i++) {
+            MarketItem item = page.get(i);
+            int slot = ITEM_SLOTS[i];
+            inventory.setItem(slot, plugin.getItemRenderCache().get(item, CategoryGUI::createItemDisplay));
+            itemSlots.put(item.getId(), slot);
+            slotItems[slot] = item;
+        }
+        plugin.getPriceTicker().watch(this, page);
+
+        addBorder();
+        addNavigationItems();
+    }
+
+    private void addBorder() {
+        ItemStack glassPane = button(Material.LIGHT_BLUE_STAINED_GLASS_PANE, " ");
+        for (int slot = 0; slot < 54; slot++) {
+            boolean edge = slot < 9 || slot >= 45 || slot % 9 == 0 || slot % 9 == 8;
+            if (edge) {
+                inventory.setItem(slot, glassPane);
+            }
+        }
+    }
+
+    private void addNavigationItems() {
+        int totalPages = getTotalPages();
+
+        inventory.setItem(4, button(Material.COMPASS, "§b§lSearch: §f" + query,
+            "§7" + results.size() + (results.size() == MAX_RESULTS ? "+" : "") + " matching items",
+            "§7Best matches first"));
+        inventory.setItem(45, button(Material.ARROW, "§c§l← Back to Market", "§7Return to the main market"));
+
+        if (currentPage > 0) {
+            inventory.setItem(48, button(Material.SPECTRAL_ARROW, "§e§l← Previous Page", "§7Page " + currentPage + " of " + totalPages));
+        }
+        if (totalPages > 1) {
+            inventory.setItem(49, button(Material.PAPER, "§6§lPage " + (currentPage + 1) + " of " + totalPages));
+        }
+        if (currentPage < totalPages - 1) {
+            inventory.setItem(50, button(Material.SPECTRAL_ARROW, "§e§lNext Page →", "§7Page " + (currentPage + 2) + " of " + totalPages));
+        }
+
+        inventory.setItem(53, button(Material.NAME_TAG, "§a§lNew Search", "§7Type §e/market search <name>"));
+    }
+
+    private static ItemStack button(Material material, String name, String... lore) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            meta.setLore(new ArrayList<>(Arrays.asList(lore)));
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    private int getTotalPages() {
+        return Math.max(1, (results.size() + ITEMS_PER_PAGE - 1) / ITEMS_PER_PAGE);
+    }
+
+    public void handleClick(int slot, boolean isRightClick, boolean isShiftClick) {
+        if (slot < 0 || slot >= inventory.getSize()) {
+            return;
+        }
+
+        switch (slot) {
+            case 45:
+                new MarketGUI(plugin, player).open();
+                return;
+            case 48:
+                if (currentPage > 0) {
+                    currentPage--;
+                    populateInventory();
+                }
+                return;
+            case 50:
+                if (currentPage < getTotalPages() - 1) {
+                    currentPage++;
+                    populateInventory();
+                }
+                return;
+            case 53:
+                player.closeInventory();
+                player.sendMessage("§7Type §e/market search <name> §7to search again.");
+                return;
+            default:
+                break;
+        }
+
+        MarketItem marketItem = slotItems[slot];
+        if (marketItem == null) {
+            return;
+        }
+
+        if (isShiftClick) {
+            new PriceChartGUI(plugin, player, marketItem, () -> {
+                populateInventory();
+                open();
+            }).open();
+        } else if (isRightClick) {
+            ItemStack playerItem = null;
+            for (ItemStack item : player.getInventory().getContents()) {
+                if (item != null && item.getType() == marketItem.getMaterial()) {
+                    playerItem = item.clone();
+                    break;
+                }
+            }
+            if (playerItem != null) {
+                new SellItemGUI(plugin, player, marketItem, playerItem).open();
+            } else {
+                player.sendMessage("§cYou don't have any " + marketItem.getDisplayName() + " to sell!");
+            }
+        } else {
+            new BuyGUI(plugin, player, marketItem).open();
+        }
+    }
+
+    @Override
+    public boolean updateItem(MarketItem item) {
+        Integer slot = itemSlots.get(item.getId());
+        if (slot == null) {
+            return false;
+        }
+        inventory.setItem(slot, plugin.getItemRenderCache().get(item, CategoryGUI::createItemDisplay));
+        return true;
+    }
+
+    /**
+     * Stops live price updates once the view is closed
+     */
+    public void handleClose() {
+        plugin.getPriceTicker().unwatch(this, itemSlots.keySet());
+        itemSlots.clear();
+    }
+
+    public void open() {
+        player.openInventory(inventory);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+}
@@ -1,8 +1,7 @@
 package com.dynamicmarket.gui;
 
 import com.dynamicmarket.DynamicMarket;
-import com.dynamicmarket.data.MarketItem;
-import com.dynamicmarket.managers.SellHandler;
+import com.dynamicmarket.managers.BatchSaleEngine;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
@@ -11,7 +10,6 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,117 +37,52 @@ public class SellGUI implements org.bukkit.inventory.InventoryHolder {
         inventory.clear();
     }
     
+    /**
+     * Sells the contents and hands back the rest within this tick: the sale is one atomic step
+     * over a single inventory, and items handed back later were lost if the player left first
+     */
     public void handleClose() {
-        Map<MarketItem, Integer> itemsToSell = new HashMap<>();
-        Map<Integer, ItemStack> unsoldItems = new HashMap<>();
+        BatchSaleEngine.SaleReceipt receipt = new BatchSaleEngine(plugin).sellInventory(player, inventory);
         
-        // First, collect all items and their total amounts
-        for (int slot = 0; slot < inventory.getSize(); slot++) {
-            ItemStack item = inventory.getItem(slot);
-            if (item != null && item.getType() != Material.AIR) {
-                MarketItem marketItem = plugin.getMarketManager().findItemByMaterial(item.getType());
-                
-                if (marketItem == null) {
-                    plugin.getLogger().info("MarketItem non trovato per il materiale: " + item.getType());
-                    unsoldItems.put(slot, item);
-                } else if (itemMatches(item, marketItem)) {
-                    // Add to the total amount for this market item
-                    itemsToSell.merge(marketItem, item.getAmount(), Integer::sum);
-                    plugin.getLogger().info("Item aggiunto per la vendita: " + item.getType() + " x" + item.getAmount());
-                } else {
-                    plugin.getLogger().info("Item non corrisponde al MarketItem: " + item.getType());
-                    plugin.getLogger().info("MarketItem display name: " + marketItem.getDisplayName());
-                    plugin.getLogger().info("MarketItem lore: " + marketItem.getLore());
-                    if (item.hasItemMeta()) {
-                        plugin.getLogger().info("Item display name: " + item.getItemMeta().getDisplayName());
-                        plugin.getLogger().info("Item lore: " + item.getItemMeta().getLore());
-                    } else {
-                        plugin.getLogger().info("Item non ha metadata");
-                    }
-                    unsoldItems.put(slot, item);
+        if (!receipt.isPaid()) {
+            // Nothing was sold, so hand everything back
+            List<ItemStack> items = new ArrayList<>();
+            for (ItemStack item : inventory.getContents()) {
+                if (item != null && item.getType() != Material.AIR) {
+                    items.add(item.clone());
                 }
             }
+            inventory.clear();
+            returnItems(items);
+            player.sendMessage("§cThe sale could not be completed! Your items have been returned.");
+            return;
         }
         
         // Return unsold items to player
-        for (ItemStack item : unsoldItems.values()) {
-            player.getInventory().addItem(item);
+        List<ItemStack> unsold = new ArrayList<>();
+        for (ItemStack item : receipt.getUnsoldItems()) {
+            unsold.add(item.clone());
+        }
+        inventory.clear();
+        if (!unsold.isEmpty()) {
+            returnItems(unsold);
             player.sendMessage(plugin.getConfigManager().getMessage("market.sell.not-sellable"));
         }
         
-        // Now process all sales
-        if (!itemsToSell.isEmpty()) {
-            double totalEarnings = 0.0;
-            
-            for (Map.Entry<MarketItem, Integer> entry : itemsToSell.entrySet()) {
-                MarketItem marketItem = entry.getKey();
-                int amount = entry.getValue();
-                
-                SellHandler sellHandler = new SellHandler(plugin);
-                double earnings = sellHandler.processSaleQuiet(player, marketItem, amount);
-                if (earnings > 0) {
-                    totalEarnings += earnings;
-                }
-            }
-            
-            if (totalEarnings > 0) {
-                player.sendMessage(plugin.getConfigManager().getMessage("market.sell.all-success",
-                    "earnings", String.format("%.2f", totalEarnings)));
-            }
+        if (receipt.getTotalEarned() > 0) {
+            player.sendMessage(plugin.getConfigManager().getMessage("market.sell.all-success",
+                "earnings", String.format("%.2f", receipt.getTotalEarned())));
         }
     }
     
-    private boolean itemMatches(ItemStack item, MarketItem marketItem) {
-        // Per gli item base come le Oak Planks, confronta solo il materiale
-        if (isBasicItem(item.getType())) {
-            return item.getType() == marketItem.getMaterial();
-        }
-        
-        // Basic material check
-        if (item.getType() != marketItem.getMaterial()) {
-            return false;
-        }
-        
-        // Se l'oggetto di mercato non ha un nome specifico o lore, confronta solo il materiale
-        if ((marketItem.getDisplayName() == null || marketItem.getDisplayName().isEmpty()) &&
-            (marketItem.getLore() == null || marketItem.getLore().isEmpty())) {
-            return true;
-        }
-        
-        // Se l'oggetto del giocatore non ha metadata, non può corrispondere a un oggetto con nome o lore
-        if (!item.hasItemMeta()) {
-            return false;
-        }
-        
-        // Controlla il nome dell'oggetto se specificato
-        if (marketItem.getDisplayName() != null && !marketItem.getDisplayName().isEmpty()) {
-            if (!item.getItemMeta().hasDisplayName() || 
-                !item.getItemMeta().getDisplayName().equals(marketItem.getDisplayName())) {
-                return false;
-            }
-        }
-        
-        // Controlla il lore dell'oggetto se specificato
-        if (marketItem.getLore() != null && !marketItem.getLore().isEmpty()) {
-            if (!item.getItemMeta().hasLore() || 
-                !item.getItemMeta().getLore().equals(marketItem.getLore())) {
-                return false;
-            }
+    /**
+     * Gives stacks back straight away, dropping whatever no longer fits at the player's feet
+     */
+    private void returnItems(List<ItemStack> items) {
+        Map<Integer, ItemStack> leftover = player.getInventory().addItem(items.toArray(new ItemStack[0]));
+        for (ItemStack item : leftover.values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), item);
         }
-        
-        return true;
-    }
-    
-    private boolean isBasicItem(Material material) {
-        // Lista di materiali base che dovrebbero essere confrontati solo per tipo
-        return material == Material.OAK_PLANKS ||
-               material == Material.SPRUCE_PLANKS ||
-               material == Material.BIRCH_PLANKS ||
-               material == Material.JUNGLE_PLANKS ||
-               material == Material.ACACIA_PLANKS ||
-               material == Material.DARK_OAK_PLANKS ||
-               material == Material.CRIMSON_PLANKS ||
-               material == Material.WARPED_PLANKS;
     }
     
     public void refresh() {
@@ -2,6 +2,7 @@ package com.dynamicmarket.gui;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
 import com.dynamicmarket.managers.SellHandler;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -76,8 +77,9 @@ public class SellItemGUI implements org.bukkit.inventory.InventoryHolder {
             }
             
             // Add market information
-            lore.add("§7▪ §eSell Price: §a$" + String.format("%.2f", marketItem.getSellPrice()));
-            lore.add("§7▪ §eTotal Value: §a$" + String.format("%.2f", marketItem.getSellPrice() * selectedQuantity));
+            PriceQuote quote = quote();
+            lore.add("§7▪ §eSell Price: §a$" + String.format("%.2f", quote.getStartPrice()));
+            lore.add("§7▪ §eTotal Value: §a$" + String.format("%.2f", quote.getTotal()));
             lore.add("§7▪ §eAvailable: §f" + availableQuantity);
             lore.add("");
             lore.add("§7Selected Quantity: §e" + selectedQuantity);
@@ -89,6 +91,13 @@ public class SellItemGUI implements org.bukkit.inventory.InventoryHolder {
         return item;
     }
     
+    /**
+     * Price of the selected quantity along the item's price curve
+     */
+    private PriceQuote quote() {
+        return plugin.getPricingEngine().quoteSell(marketItem, selectedQuantity);
+    }
+    
     private void updateQuantityControls() {
         // Decrease quantity button
         ItemStack decreaseItem = new ItemStack(Material.PURPLE_STAINED_GLASS_PANE);
@@ -120,10 +129,10 @@ public class SellItemGUI implements org.bukkit.inventory.InventoryHolder {
         if (confirmMeta != null) {
             confirmMeta.setDisplayName("§f§lConfirm Sale: " + selectedQuantity + "x");
             List<String> confirmLore = new ArrayList<>();
-            double totalValue = marketItem.getSellPrice() * selectedQuantity;
-            confirmLore.add("§7Total value: §a$" + String.format("%.2f", totalValue));
+            PriceQuote quote = quote();
+            confirmLore.add("§7Total value: §a$" + String.format("%.2f", quote.getTotal()));
             confirmLore.add("§7Item: §f" + marketItem.getMaterial().name());
-            confirmLore.add("§7Price each: §a$" + String.format("%.2f", marketItem.getSellPrice()));
+            confirmLore.add("§7Price each: §a$" + String.format("%.2f", quote.getAveragePrice()));
             confirmMeta.setLore(confirmLore);
             confirmItem.setItemMeta(confirmMeta);
         }
@@ -5,6 +5,8 @@ import com.dynamicmarket.data.MarketCategory;
 import com.dynamicmarket.gui.BuyGUI;
 import com.dynamicmarket.gui.CategoryGUI;
 import com.dynamicmarket.gui.MarketGUI;
+import com.dynamicmarket.gui.PriceChartGUI;
+import com.dynamicmarket.gui.SearchResultsGUI;
 import com.dynamicmarket.gui.SellGUI;
 import com.dynamicmarket.gui.SellItemGUI;
 import com.dynamicmarket.managers.ConfirmationGUI;
@@ -49,7 +51,9 @@ public class InventoryClickListener implements Listener {
         if (holder instanceof CategoryGUI || 
             holder instanceof MarketGUI || 
             holder instanceof BuyGUI || 
-            holder instanceof SellItemGUI) {
+            holder instanceof SellItemGUI || 
+            holder instanceof PriceChartGUI ||
+            holder instanceof SearchResultsGUI) {
             event.setCancelled(true);
             
             // Handle specific GUI clicks
@@ -70,6 +74,14 @@ public class InventoryClickListener implements Listener {
                     SellItemGUI gui = (SellItemGUI) holder;
                     gui.handleClick(event.getSlot(), event.isRightClick(), event.isShiftClick());
                 }
+                else if (holder instanceof PriceChartGUI) {
+                    PriceChartGUI gui = (PriceChartGUI) holder;
+                    gui.handleClick(event.getSlot());
+                }
+                else if (holder instanceof SearchResultsGUI) {
+                    SearchResultsGUI gui = (SearchResultsGUI) holder;
+                    gui.handleClick(event.getSlot(), event.isRightClick(), event.isShiftClick());
+                }
             }
             return;
         }
@@ -94,7 +106,7 @@ public class InventoryClickListener implements Listener {
         }
         
         // Cancel drag events for all other GUIs
-        if (isMarketGUI(title) || isCategoryGUI(title) || 
+        if (holder instanceof PriceChartGUI || holder instanceof SearchResultsGUI || isMarketGUI(title) || isCategoryGUI(title) || 
             isConfirmationGUI(title) || isBuyGUI(title) || isSellItemGUI(title)) {
             event.setCancelled(true);
         }
@@ -117,7 +129,7 @@ public class InventoryClickListener implements Listener {
         }
         
         // Cancel move events for all other GUIs
-        if (isMarketGUI(title) || isCategoryGUI(title) || 
+        if (holder instanceof PriceChartGUI || holder instanceof SearchResultsGUI || isMarketGUI(title) || isCategoryGUI(title) || 
             isConfirmationGUI(title) || isBuyGUI(title) || isSellItemGUI(title)) {
             event.setCancelled(true);
         }
@@ -135,6 +147,10 @@ public class InventoryClickListener implements Listener {
         if (holder instanceof SellGUI) {
             SellGUI sellGUI = (SellGUI) holder;
             sellGUI.handleClose();
+        } else if (holder instanceof CategoryGUI) {
+            ((CategoryGUI) holder).handleClose();
+        } else if (holder instanceof SearchResultsGUI) {
+            ((SearchResultsGUI) holder).handleClose();
         }
     }
     
@@ -188,4 +204,4 @@ public class InventoryClickListener implements Listener {
         
         return null;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -33,6 +33,20 @@ public class PlayerJoinListener implements Listener {
             }, 60L); // 3 seconds delay
         }
         
+        // Hand over items bought through the order book while offline
+        if (plugin.getOrderManager().getClaimCount(player.getUniqueId()) > 0) {
+            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                int delivered = plugin.getOrderManager().claim(player);
+                int waiting = plugin.getOrderManager().getClaimCount(player.getUniqueId());
+                if (delivered > 0) {
+                    player.sendMessage("§aDelivered §e" + delivered + " §aitem(s) from your filled market orders.");
+                }
+                if (waiting > 0) {
+                    player.sendMessage("§e" + waiting + " §7more item(s) are waiting; make room and use §e/market orders claim");
+                }
+            }, 40L);
+        }
+        
         // Log player join for market statistics
         plugin.getLogger().info("Player " + player.getName() + " joined - Market system ready");
     }
@@ -54,10 +68,8 @@ public class PlayerJoinListener implements Listener {
         player.sendMessage("");
         
         // Show current market statistics
-        int totalCategories = plugin.getMarketManager().getAllCategories().size();
-        int totalItems = plugin.getMarketManager().getAllCategories().stream()
-            .mapToInt(category -> category.getAllItems().size())
-            .sum();
+        int totalCategories = plugin.getMarketManager().getRepository().getCategoryCount();
+        int totalItems = plugin.getMarketManager().getRepository().getItemCount();
             
         player.sendMessage("§7▪ §eMarket Status: §a" + totalCategories + " categories, " + totalItems + " items available");
         
@@ -90,15 +102,13 @@ public class PlayerJoinListener implements Listener {
         int lowStockCount = 0;
         int outOfStockCount = 0;
         
-        int lowStockThreshold = plugin.getConfigManager().getConfig().getInt("low-stock-threshold", 10);
+        int lowStockThreshold = plugin.getConfigManager().getSettings().getLowStockThreshold();
         
-        for (com.dynamicmarket.data.MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (com.dynamicmarket.data.MarketItem item : category.getAllItems()) {
-                if (item.getStock() <= 0) {
-                    outOfStockCount++;
-                } else if (item.getStock() <= lowStockThreshold) {
-                    lowStockCount++;
-                }
+        for (com.dynamicmarket.data.MarketItem item : plugin.getMarketManager().getRepository().getItems()) {
+            if (item.getStock() <= 0) {
+                outOfStockCount++;
+            } else if (item.getStock() <= lowStockThreshold) {
+                lowStockCount++;
             }
         }
         
@@ -130,14 +140,12 @@ public class PlayerJoinListener implements Listener {
         double maxPrice = plugin.getConfigManager().getMaxPrice();
         double minPrice = plugin.getConfigManager().getMinPrice();
         
-        for (com.dynamicmarket.data.MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (com.dynamicmarket.data.MarketItem item : category.getAllItems()) {
-                if (item.getBuyPrice() >= maxPrice * 0.9) { // 90% of max price
-                    highPriceCount++;
-                }
-                if (item.getBuyPrice() <= minPrice * 1.1) { // 110% of min price
-                    lowPriceCount++;
-                }
+        for (com.dynamicmarket.data.MarketItem item : plugin.getMarketManager().getRepository().getItems()) {
+            if (item.getBuyPrice() >= maxPrice * 0.9) { // 90% of max price
+                highPriceCount++;
+            }
+            if (item.getBuyPrice() <= minPrice * 1.1) { // 110% of min price
+                lowPriceCount++;
             }
         }
         
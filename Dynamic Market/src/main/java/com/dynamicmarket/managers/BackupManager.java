@@ -0,0 +1,382 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.market.MarketManager;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Point-in-time snapshots of the database in the backups folder.
+ * A snapshot is taken with VACUUM INTO on a background thread, so writers are not
+ * blocked, then gzipped with a SHA-256 checksum in a sha256sum-compatible side file
+ * and rotated by count. A restore is verified, unpacked, copied in and read back on
+ * that thread too; only the swap of the market state runs on the main thread.
+ */
+public class BackupManager {
+
+    private static final String PREFIX = "market-";
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final File directory;
+    private final ExecutorService executor;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final boolean autoBackup;
+    private final long intervalHours;
+    private final int maxBackups;
+    private final boolean compress;
+    private BukkitTask autoBackupTask;
+
+    public BackupManager(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        this.directory = new File(plugin.getDataFolder(), "backups");
+
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        this.autoBackup = config.getBoolean("database.backup.enabled", true);
+        this.intervalHours = Math.max(1L, config.getLong("database.backup.interval", 24L));
+        this.maxBackups = Math.max(1, config.getInt("database.backup.max-backups", 7));
+        this.compress = config.getBoolean("database.backup.compress", true);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DynamicMarket-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts automatic backups; only the sqlite backend can snapshot itself
+     */
+    public void start() {
+        if (!autoBackup || autoBackupTask != null || !"sqlite".equals(databaseManager.getBackend().getName())) {
+            return;
+        }
+        long ticks = intervalHours * 72000L;
+        autoBackupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> createBackup((backup, error) -> {
+            if (backup != null) {
+                plugin.getLogger().info("Automatic market backup " + backup.getId() + " created.");
+            }
+        }), ticks, ticks);
+    }
+
+    /**
+     * Stops automatic backups and waits for a running one to finish
+     */
+    public void shutdown() {
+        if (autoBackupTask != null) {
+            autoBackupTask.cancel();
+            autoBackupTask = null;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("A market backup was still running at shutdown.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes a snapshot in the background
+     * @param callback receives the backup, or the error, on the main thread; may be null
+     */
+    public void createBackup(BiConsumer<Backup, Exception> callback) {
+        submit(callback, () -> {
+            Backup backup = takeSnapshot();
+            rotate();
+            complete(callback, backup, null);
+            return true;
+        });
+    }
+
+    /**
+     * Verifies, unpacks, copies in and reads back a snapshot in the background, then swaps it in
+     * on the main thread
+     * @param callback receives the restored backup, or the error, on the main thread; may be null
+     */
+    public void restore(String backupId, BiConsumer<Backup, Exception> callback) {
+        submit(callback, () -> {
+            Backup backup = findBackup(backupId);
+            if (backup == null) {
+                throw new FileNotFoundException("No backup with id " + backupId);
+            }
+            File unpacked = unpack(backup);
+            MarketManager marketManager = plugin.getMarketManager();
+            MarketManager.RestoredMarket restored;
+            marketManager.detachForRestore();
+            try {
+                restored = marketManager.readSnapshot(unpacked);
+            } catch (RuntimeException e) {
+                marketManager.reattachAfterFailedRestore();
+                throw e;
+            } finally {
+                deleteQuietly(unpacked);
+            }
+            if (!restored.isCopied()) {
+                // The database still holds the current market, which simply carries on
+                marketManager.reattachAfterFailedRestore();
+                throw new IOException("Backup " + backup.getId() + " could not be copied into the database");
+            }
+
+            // Stays busy until the swap is done, so no backup runs half-way through it
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    marketManager.applyRestore(restored);
+                    plugin.getLogger().info("Market restored from backup " + backup.getId());
+                    complete(callback, backup, null);
+                } finally {
+                    busy.set(false);
+                }
+            });
+            return false;
+        });
+    }
+
+    private interface Job {
+
+        /**
+         * @return true if the job is finished, false if it handed off work that clears the busy flag itself
+         */
+        boolean run() throws Exception;
+    }
+
+    private void submit(BiConsumer<Backup, Exception> callback, Job job) {
+        if (!busy.compareAndSet(false, true)) {
+            complete(callback, null, new IllegalStateException("Another backup or restore is still running"));
+            return;
+        }
+        executor.execute(() -> {
+            boolean finished = true;
+            try {
+                finished = job.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Market backup task failed", e);
+                complete(callback, null, e);
+            } finally {
+                if (finished) {
+                    busy.set(false);
+                }
+            }
+        });
+    }
+
+    private void complete(BiConsumer<Backup, Exception> callback, Backup backup, Exception error) {
+        if (callback == null) {
+            return;
+        }
+        if (Bukkit.isPrimaryThread()) {
+            callback.accept(backup, error);
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> callback.accept(backup, error));
+        }
+    }
+
+    private Backup takeSnapshot() throws Exception {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        // Pending item changes go into the snapshot
+        plugin.getPersistenceManager().flush();
+
+        String id = newId();
+        File raw = new File(directory, PREFIX + id + ".vacuum");
+        File target = new File(directory, PREFIX + id + (compress ? ".db.gz" : ".db"));
+        File partial = new File(directory, target.getName() + ".part");
+        try {
+            databaseManager.getBackend().backupTo(raw);
+
+            MessageDigest digest = sha256();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(raw.toPath()));
+                 OutputStream out = openOutput(partial, digest)) {
+                in.transferTo(out);
+            }
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            String checksum = HexFormat.of().formatHex(digest.digest());
+            Files.writeString(checksumFile(target).toPath(), checksum + "  " + target.getName() + "\n", StandardCharsets.US_ASCII);
+            return new Backup(id, target, target.length(), target.lastModified());
+        } finally {
+            deleteQuietly(raw);
+            deleteQuietly(partial);
+        }
+    }
+
+    private OutputStream openOutput(File file, MessageDigest digest) throws IOException {
+        // The checksum covers the bytes on disk, so `sha256sum -c` can check a backup too
+        OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())), digest);
+        return compress ? new GZIPOutputStream(out, 65536) : out;
+    }
+
+    /**
+     * Checks a backup against its checksum while unpacking it next to it
+     * @return the unpacked database file
+     */
+    private File unpack(Backup backup) throws Exception {
+        File checksumFile = checksumFile(backup.getFile());
+        if (!checksumFile.isFile()) {
+            throw new IOException("Backup " + backup.getId() + " has no checksum file");
+        }
+        String expected = Files.readString(checksumFile.toPath(), StandardCharsets.US_ASCII).trim().split("\\s+")[0];
+
+        File unpacked = new File(directory, "restore-" + backup.getId() + ".db");
+        MessageDigest digest = sha256();
+        try (DigestInputStream checked = new DigestInputStream(new BufferedInputStream(Files.newInputStream(backup.getFile().toPath())), digest)) {
+            InputStream in = backup.isCompressed() ? new GZIPInputStream(checked, 65536) : checked;
+            Files.copy(in, unpacked.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            // Include any bytes the decompressor left unread
+            checked.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            deleteQuietly(unpacked);
+            throw e;
+        }
+
+        String actual = HexFormat.of().formatHex(digest.digest());
+        if (!actual.equalsIgnoreCase(expected)) {
+            deleteQuietly(unpacked);
+            throw new IOException("Backup " + backup.getId() + " does not match its checksum");
+        }
+        return unpacked;
+    }
+
+    /**
+     * Deletes the oldest backups beyond the configured number
+     */
+    private void rotate() {
+        List<Backup> backups = listBackups();
+        for (int i = maxBackups; i < backups.size(); i++) {
+            File file = backups.get(i).getFile();
+            deleteQuietly(file);
+            deleteQuietly(checksumFile(file));
+        }
+    }
+
+    /**
+     * Backups in the backups folder, newest first
+     */
+    public List<Backup> listBackups() {
+        List<Backup> backups = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && (name.endsWith(".db") || name.endsWith(".db.gz")));
+        if (files == null) {
+            return backups;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            String id = name.substring(PREFIX.length(), name.length() - (name.endsWith(".gz") ? ".db.gz".length() : ".db".length()));
+            backups.add(new Backup(id, file, file.length(), file.lastModified()));
+        }
+        backups.sort(Comparator.comparing(Backup::getId).reversed());
+        return backups;
+    }
+
+    /**
+     * Finds a backup by id or file name
+     */
+    public Backup findBackup(String idOrName) {
+        for (Backup backup : listBackups()) {
+            if (backup.getId().equals(idOrName) || backup.getFile().getName().equals(idOrName)) {
+                return backup;
+            }
+        }
+        return null;
+    }
+
+    public boolean isBusy() {
+        return busy.get();
+    }
+
+    private String newId() {
+        String base = LocalDateTime.now().format(ID_FORMAT);
+        String id = base;
+        for (int n = 2; findBackup(id) != null; n++) {
+            id = base + "-" + n;
+        }
+        return id;
+    }
+
+    private static File checksumFile(File backup) {
+        return new File(backup.getParentFile(), backup.getName() + CHECKSUM_SUFFIX);
+    }
+
+    private static MessageDigest sha256() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256");
+    }
+
+    private void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not delete " + file, e);
+        }
+    }
+
+    /**
+     * One snapshot file in the backups folder
+     */
+    public static final class Backup {
+
+        private final String id;
+        private final File file;
+        private final long size;
+        private final long createdAt;
+
+        public Backup(String id, File file, long size, long createdAt) {
+            this.id = id;
+            this.file = file;
+            this.size = size;
+            this.createdAt = createdAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public boolean isCompressed() {
+            return file.getName().endsWith(".gz");
+        }
+    }
+}
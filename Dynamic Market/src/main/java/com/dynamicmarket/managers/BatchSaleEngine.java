@@ -0,0 +1,197 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
+import com.dynamicmarket.pricing.PricingEngine;
+import com.dynamicmarket.pricing.PricingModel;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sells a whole inventory at once: one scan, one removal pass, one deposit
+ * and one batch of transaction rows, however many item types are involved.
+ */
+public class BatchSaleEngine {
+    
+    private final DynamicMarket plugin;
+    private final SellHandler sellHandler;
+    
+    public BatchSaleEngine(DynamicMarket plugin) {
+        this.plugin = plugin;
+        this.sellHandler = new SellHandler(plugin);
+    }
+    
+    /**
+     * Sells every sellable stack in the inventory on behalf of the player.
+     * Sold stacks are removed from the inventory; everything else is left in place
+     * and listed on the receipt.
+     */
+    public SaleReceipt sellInventory(Player player, Inventory inventory) {
+        ItemStack[] contents = inventory.getContents();
+        MarketItem[] resolved = plugin.getMarketManager().resolveItems(contents);
+        
+        // Group by market item in a single pass, clearing sold slots on the copy
+        Map<MarketItem, Integer> amounts = new LinkedHashMap<>();
+        List<ItemStack> unsold = new ArrayList<>();
+        ItemStack[] remaining = new ItemStack[contents.length];
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
+            if (item == null || item.getType() == Material.AIR) {
+                continue;
+            }
+            
+            MarketItem marketItem = resolved[slot];
+            if (marketItem != null && sellHandler.isSellable(item, marketItem)) {
+                amounts.merge(marketItem, item.getAmount(), Integer::sum);
+            } else {
+                remaining[slot] = item;
+                unsold.add(item);
+            }
+        }
+        
+        if (amounts.isEmpty()) {
+            return new SaleReceipt(Collections.emptyList(), unsold, true);
+        }
+        
+        // Quote every line along its price curve, before any of them moves the market
+        List<SaleLine> lines = new ArrayList<>(amounts.size());
+        double totalEarned = 0.0;
+        for (Map.Entry<MarketItem, Integer> entry : amounts.entrySet()) {
+            PricingModel model = plugin.getPricingEngine().getModel(entry.getKey().getCategory());
+            PriceQuote quote = PricingEngine.quoteSell(model, entry.getKey().snapshot(), entry.getValue());
+            lines.add(new SaleLine(entry.getKey(), quote, model));
+            totalEarned += quote.getTotal();
+        }
+        
+        if (!plugin.getVaultEconomy().depositPlayer(player, totalEarned)) {
+            return new SaleReceipt(Collections.emptyList(), unsold, false);
+        }
+        inventory.setContents(remaining);
+        if (inventory.equals(player.getInventory())) {
+            player.updateInventory();
+        }
+        
+        // Apply the market side and queue every transaction row for the same journal batch
+        String playerUuid = player.getUniqueId().toString();
+        for (SaleLine line : lines) {
+            MarketItem marketItem = line.getMarketItem();
+            marketItem.applySell(line.getQuote(), line.model);
+            plugin.getStockLedger().release(marketItem, line.getAmount());
+            plugin.getTransactionJournal().record(
+                playerUuid,
+                player.getName(),
+                marketItem.getId(),
+                marketItem.getCategory(),
+                "SELL",
+                line.getAmount(),
+                line.getUnitPrice()
+            );
+        }
+        
+        return new SaleReceipt(lines, unsold, true);
+    }
+    
+    /**
+     * One item type on a sale receipt
+     */
+    public static class SaleLine {
+        private final MarketItem marketItem;
+        private final PriceQuote quote;
+        private final PricingModel model;
+        
+        public SaleLine(MarketItem marketItem, PriceQuote quote, PricingModel model) {
+            this.marketItem = marketItem;
+            this.quote = quote;
+            this.model = model;
+        }
+        
+        public MarketItem getMarketItem() {
+            return marketItem;
+        }
+        
+        public int getAmount() {
+            return quote.getAmount();
+        }
+        
+        /**
+         * Average price per unit along the curve
+         */
+        public double getUnitPrice() {
+            return quote.getAveragePrice();
+        }
+        
+        public double getEarned() {
+            return quote.getTotal();
+        }
+        
+        public PriceQuote getQuote() {
+            return quote;
+        }
+    }
+    
+    /**
+     * Result of a batch sale
+     */
+    public static class SaleReceipt {
+        private final List<SaleLine> lines;
+        private final List<ItemStack> unsoldItems;
+        private final boolean paid;
+        
+        public SaleReceipt(List<SaleLine> lines, List<ItemStack> unsoldItems, boolean paid) {
+            this.lines = lines;
+            this.unsoldItems = unsoldItems;
+            this.paid = paid;
+        }
+        
+        public List<SaleLine> getLines() {
+            return lines;
+        }
+        
+        /**
+         * Stacks that were left in the inventory because the market does not buy them
+         */
+        public List<ItemStack> getUnsoldItems() {
+            return unsoldItems;
+        }
+        
+        /**
+         * False if the deposit failed, in which case nothing was sold
+         */
+        public boolean isPaid() {
+            return paid;
+        }
+        
+        public boolean isEmpty() {
+            return lines.isEmpty();
+        }
+        
+        public int getItemTypesSold() {
+            return lines.size();
+        }
+        
+        public int getTotalItemsSold() {
+            int total = 0;
+            for (SaleLine line : lines) {
+                total += line.getAmount();
+            }
+            return total;
+        }
+        
+        public double getTotalEarned() {
+            double total = 0.0;
+            for (SaleLine line : lines) {
+                total += line.getEarned();
+            }
+            return total;
+        }
+    }
+}
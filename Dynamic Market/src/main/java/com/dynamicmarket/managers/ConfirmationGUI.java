@@ -2,6 +2,7 @@ package com.dynamicmarket.managers;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
@@ -18,15 +19,17 @@ public class ConfirmationGUI {
     private final Player player;
     private final MarketItem marketItem;
     private final int amount;
+    private final PriceQuote quote;
     private final double totalCost;
     private Inventory inventory;
     
-    public ConfirmationGUI(DynamicMarket plugin, Player player, MarketItem marketItem, int amount, double totalCost) {
+    public ConfirmationGUI(DynamicMarket plugin, Player player, MarketItem marketItem, PriceQuote quote) {
         this.plugin = plugin;
         this.player = player;
         this.marketItem = marketItem;
-        this.amount = amount;
-        this.totalCost = totalCost;
+        this.amount = quote.getAmount();
+        this.quote = quote;
+        this.totalCost = quote.getTotal();
         createInventory();
     }
     
@@ -58,8 +61,10 @@ public class ConfirmationGUI {
             lore.add("§7You are about to purchase:");
             lore.add("");
             lore.add("§7▪ §eAmount: §f" + amount);
-            lore.add("§7▪ §ePrice per item: §a$" + String.format("%.2f", marketItem.getBuyPrice()));
+            lore.add("§7▪ §ePrice per item: §a$" + String.format("%.2f", quote.getAveragePrice()));
             lore.add("§7▪ §eTotal cost: §c$" + String.format("%.2f", totalCost));
+            lore.add("§7▪ §ePrice after: §f$" + String.format("%.2f", quote.getEndPrice())
+                + " §7(" + String.format("%+.1f", quote.getPriceImpact() * 100) + "%)");
             lore.add("");
             double balance = plugin.getVaultEconomy().getBalance(player);
             lore.add("§7▪ §eYour balance: §a$" + String.format("%.2f", balance));
@@ -197,13 +202,13 @@ public class ConfirmationGUI {
         
         // Process the purchase
         PurchaseHandler purchaseHandler = new PurchaseHandler(plugin);
-        boolean success = purchaseHandler.processPurchase(player, marketItem, amount);
-        
-        if (success) {
-            player.sendMessage("§a§lPurchase confirmed and completed!");
-        } else {
-            player.sendMessage("§c§lPurchase failed! Please try again.");
-        }
+        purchaseHandler.processPurchase(player, marketItem, amount, success -> {
+            if (success) {
+                player.sendMessage("§a§lPurchase confirmed and completed!");
+            } else {
+                player.sendMessage("§c§lPurchase failed! Please try again.");
+            }
+        });
     }
     
     private void cancelPurchase() {
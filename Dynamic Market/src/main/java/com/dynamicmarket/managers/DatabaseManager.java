@@ -2,8 +2,17 @@ package com.dynamicmarket.managers;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.CandleSeries;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
+import com.dynamicmarket.data.TransactionRecord;
+import com.dynamicmarket.orders.Order;
+import com.dynamicmarket.storage.MySQLStorageBackend;
+import com.dynamicmarket.storage.SQLiteStorageBackend;
+import com.dynamicmarket.storage.SchemaMigrations;
+import com.dynamicmarket.storage.StorageBackend;
 import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
 
 import java.io.File;
 import java.io.IOException;
@@ -12,19 +21,52 @@ import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 public class DatabaseManager {
     
     private final DynamicMarket plugin;
-    private Connection connection;
+    private StorageBackend backend;
     private final String databasePath;
     
+    // Statements that differ between SQL dialects, built once per backend
+    private String saveItemSql;
+    private String saveCategorySql;
+    private String saveCandleSql;
+    private String saveOrderSql;
+    private String saveClaimSql;
+    
+    // With stock reservation the stock column is moved only by reserve and return
+    // statements, so item writes insert the row once and then leave stock alone
+    private boolean stockReserved;
+    private String insertItemSql;
+    private String updateItemSql;
+    private int schemaVersion;
+    
+    // Interned ids of item and category names in the transaction log
+    private final Map<String, Integer> itemRefs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> categoryRefs = new ConcurrentHashMap<>();
+    
     public DatabaseManager(DynamicMarket plugin) {
+        this(plugin, null);
+    }
+    
+    /**
+     * Opens the market on the given backend instead of the configured one, e.g. an in-memory database in tests
+     */
+    DatabaseManager(DynamicMarket plugin, StorageBackend backend) {
         this.plugin = plugin;
-        this.databasePath = plugin.getDataFolder().getAbsolutePath() + File.separator + "market.db";
+        this.backend = backend;
+        String filename = plugin.getConfigManager().getConfig().getString("database.sqlite.filename", "market.db");
+        this.databasePath = plugin.getDataFolder().getAbsolutePath() + File.separator + filename;
         initializeDatabase();
     }
     
@@ -33,35 +75,76 @@ public class DatabaseManager {
             // Create plugin data folder if it doesn't exist
             plugin.getDataFolder().mkdirs();
             
-            // Connect to the database using SQLite JDBC driver
-            connection = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+            // Open the connection pool for the configured backend
+            if (backend == null) {
+                backend = createBackend();
+            }
+            saveItemSql = backend.upsert("market_items", "id", "category", "material", "display_name", "lore",
+                "buy_price", "sell_price", "stock", "total_sold", "total_bought", "last_updated");
+            saveCategorySql = backend.upsert("categories", "name", "icon", "display_name", "description", "gui_slot");
+            // The candle key spans three columns; both dialects resolve the conflict on the composite key
+            saveCandleSql = backend.upsert("price_candles", "item_ref", "resolution", "bucket_start",
+                "open_price", "high_price", "low_price", "close_price", "volume");
+            saveOrderSql = backend.upsert("market_orders", "id", "player_uuid", "player_name", "item_ref", "material",
+                "side", "price", "amount", "remaining", "created_at");
+            saveClaimSql = backend.upsert("order_claims", "player_uuid", "material", "amount");
+            stockReserved = plugin.getConfigManager().getConfig().getBoolean("sync.stock-reservation.enabled", false);
+            insertItemSql = backend.getInsertIgnore() + " market_items (id, category, material, display_name, lore,"
+                + " buy_price, sell_price, stock, total_sold, total_bought, last_updated) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            updateItemSql = "UPDATE market_items SET category = ?, material = ?, display_name = ?, lore = ?,"
+                + " buy_price = ?, sell_price = ?, total_sold = ?, total_bought = ?, last_updated = ? WHERE id = ?";
             
             // Create tables
             createTables();
-            plugin.getLogger().info("Database initialized successfully!");
+            plugin.getLogger().info("Database initialized successfully! (" + backend.getName()
+                + ", pool size " + backend.getMaximumPoolSize() + ")");
+            for (String setting : backend.describeSettings()) {
+                plugin.getLogger().info("  " + backend.getName() + " " + setting);
+            }
             
-        } catch (SQLException e) {
+        } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to initialize database", e);
         }
     }
     
+    private StorageBackend createBackend() {
+        ConfigurationSection database = plugin.getConfigManager().getConfig().getConfigurationSection("database");
+        String type = database != null ? database.getString("type", "sqlite").toLowerCase() : "sqlite";
+        
+        switch (type) {
+            case "mysql":
+            case "mariadb":
+                ConfigurationSection mysql = database.getConfigurationSection("mysql");
+                if (mysql == null) {
+                    mysql = database.createSection("mysql");
+                }
+                return new MySQLStorageBackend(mysql);
+            case "sqlite":
+                return new SQLiteStorageBackend(new File(databasePath), database != null ? database.getConfigurationSection("sqlite") : null);
+            default:
+                plugin.getLogger().warning("Unknown database type '" + type + "', falling back to sqlite");
+                return new SQLiteStorageBackend(new File(databasePath), database != null ? database.getConfigurationSection("sqlite") : null);
+        }
+    }
+    
     private void createTables() throws SQLException {
         // Create categories table
         String createCategoriesTable = """
             CREATE TABLE IF NOT EXISTS categories (
-                name TEXT PRIMARY KEY,
+                name %s PRIMARY KEY,
                 icon TEXT NOT NULL,
                 display_name TEXT NOT NULL,
                 description TEXT,
                 gui_slot INTEGER NOT NULL
             )
-            """;
+            """.formatted(backend.getKeyType());
         
-        // Create items table
+        // Create items table; category is not a foreign key because the write-behind
+        // flusher may write an item before the category row it belongs to
         String createItemsTable = """
             CREATE TABLE IF NOT EXISTS market_items (
-                id TEXT PRIMARY KEY,
-                category TEXT NOT NULL,
+                id %1$s PRIMARY KEY,
+                category %1$s NOT NULL,
                 material TEXT NOT NULL,
                 display_name TEXT,
                 lore TEXT,
@@ -70,15 +153,14 @@ public class DatabaseManager {
                 stock INTEGER NOT NULL,
                 total_sold INTEGER DEFAULT 0,
                 total_bought INTEGER DEFAULT 0,
-                last_updated INTEGER NOT NULL,
-                FOREIGN KEY (category) REFERENCES categories(name)
+                last_updated BIGINT NOT NULL
             )
-            """;
+            """.formatted(backend.getKeyType());
         
-        // Create transaction history table
+        // Create transaction history table; this is the version 1 layout, upgraded by SchemaMigrations
         String createTransactionsTable = """
             CREATE TABLE IF NOT EXISTS transactions (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                id %s,
                 player_uuid TEXT NOT NULL,
                 player_name TEXT NOT NULL,
                 item_id TEXT NOT NULL,
@@ -86,14 +168,18 @@ public class DatabaseManager {
                 transaction_type TEXT NOT NULL,
                 amount INTEGER NOT NULL,
                 price REAL NOT NULL,
-                timestamp INTEGER NOT NULL
+                timestamp BIGINT NOT NULL
             )
-            """;
+            """.formatted(backend.getAutoIncrementKey());
         
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection connection = backend.getConnection();
+             Statement stmt = connection.createStatement()) {
             stmt.execute(createCategoriesTable);
             stmt.execute(createItemsTable);
             stmt.execute(createTransactionsTable);
+            
+            schemaVersion = new SchemaMigrations(backend, plugin.getLogger()).migrate(connection);
+            plugin.getLogger().info("Database schema version " + schemaVersion);
         }
     }
     
@@ -101,14 +187,17 @@ public class DatabaseManager {
 
     
     public void deleteCategory(String name) {
-        String sql = "DELETE FROM categories WHERE name = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, name);
-            pstmt.executeUpdate();
-            
-            // Also delete all items in this category
-            deleteItemsByCategory(name);
+        try {
+            writeMarket(connection -> {
+                try (PreparedStatement deleteItems = connection.prepareStatement("DELETE FROM market_items WHERE category = ?");
+                     PreparedStatement deleteCategory = connection.prepareStatement("DELETE FROM categories WHERE name = ?")) {
+                    // Also delete all items in this category
+                    deleteItems.setString(1, name);
+                    deleteItems.executeUpdate();
+                    deleteCategory.setString(1, name);
+                    return deleteCategory.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to delete category: " + name, e);
         }
@@ -116,36 +205,503 @@ public class DatabaseManager {
     
     // Item database operations
     public void saveItem(MarketItem item) {
-        String sql = """
-            INSERT OR REPLACE INTO market_items 
-            (id, category, material, display_name, lore, buy_price, sell_price, stock, total_sold, total_bought, last_updated) 
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
+        try {
+            writeMarket(connection -> {
+                writeItems(connection, List.of(item));
+                return 1;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save market item: " + item.getId(), e);
+        }
+    }
+    
+    /**
+     * Writes a batch of items in a single transaction
+     * @return true if the batch was committed
+     */
+    public boolean saveItems(Collection<MarketItem> items) {
+        if (items.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                writeItems(connection, items);
+                bumpGeneration(connection);
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save batch of " + items.size() + " market items", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save batch of " + items.size() + " market items", e);
+            return false;
+        }
+    }
+    
+    private void writeItems(Connection connection, Collection<MarketItem> items) throws SQLException {
+        if (!stockReserved) {
+            try (PreparedStatement pstmt = connection.prepareStatement(saveItemSql)) {
+                for (MarketItem item : items) {
+                    bindItem(pstmt, item, item.snapshot());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            return;
+        }
+        
+        try (PreparedStatement insert = connection.prepareStatement(insertItemSql);
+             PreparedStatement update = connection.prepareStatement(updateItemSql)) {
+            for (MarketItem item : items) {
+                MarketItem.Snapshot snapshot = item.snapshot();
+                bindItem(insert, item, snapshot);
+                insert.addBatch();
+                
+                update.setString(1, item.getCategory());
+                update.setString(2, item.getMaterial().name());
+                update.setString(3, item.getDisplayName());
+                update.setString(4, item.getLore() != null ? String.join("\n", item.getLore()) : null);
+                update.setDouble(5, snapshot.getBuyPrice());
+                update.setDouble(6, snapshot.getSellPrice());
+                update.setInt(7, snapshot.getTotalSold());
+                update.setInt(8, snapshot.getTotalBought());
+                update.setLong(9, snapshot.getLastUpdated());
+                update.setString(10, item.getId());
+                update.addBatch();
+            }
+            insert.executeBatch();
+            update.executeBatch();
+        }
+    }
+    
+    private void bindItem(PreparedStatement pstmt, MarketItem item, MarketItem.Snapshot snapshot) throws SQLException {
+        pstmt.setString(1, item.getId());
+        pstmt.setString(2, item.getCategory());
+        pstmt.setString(3, item.getMaterial().name());
+        pstmt.setString(4, item.getDisplayName());
+        pstmt.setString(5, item.getLore() != null ? String.join("\n", item.getLore()) : null);
+        pstmt.setDouble(6, snapshot.getBuyPrice());
+        pstmt.setDouble(7, snapshot.getSellPrice());
+        pstmt.setInt(8, snapshot.getStock());
+        pstmt.setInt(9, snapshot.getTotalSold());
+        pstmt.setInt(10, snapshot.getTotalBought());
+        pstmt.setLong(11, snapshot.getLastUpdated());
+    }
+    
+    /**
+     * Replaces the categories and items with those of a snapshot file in one transaction.
+     * Only columns every schema version has are copied, so older snapshots restore too.
+     * @return true if the snapshot was copied in
+     */
+    public boolean restoreMarketTables(File snapshot) {
+        if (!"sqlite".equals(backend.getName())) {
+            plugin.getLogger().warning("Snapshots can only be restored into the sqlite backend.");
+            return false;
+        }
+        
+        String itemColumns = "id, category, material, display_name, lore, buy_price, sell_price, stock,"
+            + " total_sold, total_bought, last_updated";
+        String categoryColumns = "name, icon, display_name, description, gui_slot";
+        try (Connection connection = backend.getConnection()) {
+            try (PreparedStatement attach = connection.prepareStatement("ATTACH DATABASE ? AS snapshot")) {
+                attach.setString(1, snapshot.getAbsolutePath());
+                attach.execute();
+            }
+            try (Statement stmt = connection.createStatement()) {
+                try {
+                    connection.setAutoCommit(false);
+                    stmt.execute("DELETE FROM market_items");
+                    stmt.execute("DELETE FROM categories");
+                    stmt.execute("INSERT INTO categories (" + categoryColumns + ") SELECT " + categoryColumns + " FROM snapshot.categories");
+                    stmt.execute("INSERT INTO market_items (" + itemColumns + ") SELECT " + itemColumns + " FROM snapshot.market_items");
+                    bumpGeneration(connection);
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to restore market tables from " + snapshot.getName(), e);
+                    rollbackQuietly(connection);
+                    return false;
+                } finally {
+                    restoreAutoCommit(connection);
+                    // A database cannot be detached inside a transaction, hence after the commit
+                    detachQuietly(stmt);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to restore market tables from " + snapshot.getName(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Identifies the state of the market tables, so a copy taken at shutdown can be checked
+     * against the database. Reads the one generation row that every market write moves on,
+     * never the tables themselves; edits made outside the plugin are not noticed.
+     * @return the fingerprint, or null if it could not be read
+     */
+    public String loadMarketFingerprint() {
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT value FROM market_meta WHERE name = 'generation'");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? backend.getName() + ":v" + schemaVersion + ":" + rs.getLong(1) : null;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to read the market fingerprint", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Moves the market generation on; runs last in the transaction of every write to the
+     * market tables, so the generation row is locked only briefly
+     */
+    private static void bumpGeneration(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("UPDATE market_meta SET value = value + 1 WHERE name = 'generation'");
+        }
+    }
+    
+    /**
+     * Runs a write to the market tables and the generation bump in one transaction
+     * @return what the write returned, usually its update count
+     */
+    private int writeMarket(MarketWrite write) throws SQLException {
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                int result = write.run(connection);
+                bumpGeneration(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException e) {
+                rollbackQuietly(connection);
+                throw e;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        }
+    }
+    
+    private interface MarketWrite {
+        
+        int run(Connection connection) throws SQLException;
+    }
+    
+    // Stock reservation, for several servers selling from one database
+    
+    /**
+     * Current stock and stock version of an item row
+     * @return the level, or null if the row is missing or could not be read
+     */
+    public StockLevel loadStockLevel(String itemId) {
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT stock, stock_version FROM market_items WHERE id = ?")) {
+            pstmt.setString(1, itemId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new StockLevel(rs.getInt("stock"), rs.getLong("stock_version")) : null;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to read stock of " + itemId, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Takes stock from an item row, only if there is enough and nobody changed it since the version
+     * was read, and records the owner's lease of the item in the same transaction
+     * @param leased units the owner holds of the item once this reservation is added
+     * @return true if the stock was taken
+     */
+    public boolean reserveStock(String itemId, int amount, long expectedVersion, String owner, int leased, long expiresAt) {
+        String sql = "UPDATE market_items SET stock = stock - ?, stock_version = stock_version + 1"
+            + " WHERE id = ? AND stock >= ? AND stock_version = ?";
+        try {
+            return writeMarket(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setInt(1, amount);
+                    pstmt.setString(2, itemId);
+                    pstmt.setInt(3, amount);
+                    pstmt.setLong(4, expectedVersion);
+                    if (pstmt.executeUpdate() != 1) {
+                        return 0;
+                    }
+                }
+                writeLeaseRows(connection, owner, Map.of(itemId, leased), expiresAt);
+                return 1;
+            }) == 1;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to reserve stock of " + itemId, e);
+            return false;
+        }
+    }
+    
+    /**
+     * Adds to (or, with negative amounts, takes from) the stock of item rows, never below zero
+     * @return true if the batch was committed
+     */
+    public boolean addStock(Map<String, Integer> amounts) {
+        return returnLeasedStock(null, amounts, Map.of(), 0L);
+    }
+    
+    /**
+     * Puts leased units back into the stock of item rows and records what the owner still
+     * holds of those items, in one transaction
+     * @param owner the lease owner, or null for a stock change outside any lease
+     * @param kept units the owner still holds, by item id
+     * @return true if the batch was committed
+     */
+    public boolean returnLeasedStock(String owner, Map<String, Integer> amounts, Map<String, Integer> kept, long expiresAt) {
+        if (amounts.isEmpty() && kept.isEmpty()) {
+            return true;
+        }
         
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                addStock(connection, amounts);
+                if (owner != null) {
+                    writeLeaseRows(connection, owner, kept, expiresAt);
+                }
+                bumpGeneration(connection);
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to return stock of " + amounts.size() + " items", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to return stock of " + amounts.size() + " items", e);
+            return false;
+        }
+    }
+    
+    private static void addStock(Connection connection, Map<String, Integer> amounts) throws SQLException {
+        String sql = "UPDATE market_items SET stock = CASE WHEN stock + ? < 0 THEN 0 ELSE stock + ? END,"
+            + " stock_version = stock_version + 1 WHERE id = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, item.getId());
-            pstmt.setString(2, item.getCategory());
-            pstmt.setString(3, item.getMaterial().name());
-            pstmt.setString(4, item.getDisplayName());
-            pstmt.setString(5, item.getLore() != null ? String.join("\n", item.getLore()) : null);
-            pstmt.setDouble(6, item.getBuyPrice());
-            pstmt.setDouble(7, item.getSellPrice());
-            pstmt.setInt(8, item.getStock());
-            pstmt.setInt(9, item.getTotalSold());
-            pstmt.setInt(10, item.getTotalBought());
-            pstmt.setLong(11, item.getLastUpdated());
-            pstmt.executeUpdate();
+            for (Map.Entry<String, Integer> entry : amounts.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setInt(2, entry.getValue());
+                pstmt.setString(3, entry.getKey());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
+    /**
+     * Records the units an owner holds of each item and pushes their expiry out; items
+     * held at zero lose their row
+     * @return true if the batch was committed
+     */
+    public boolean writeLeases(String owner, Map<String, Integer> units, long expiresAt) {
+        if (units.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                writeLeaseRows(connection, owner, units, expiresAt);
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to write leases of " + units.size() + " items", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save market item: " + item.getId(), e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to write leases of " + units.size() + " items", e);
+            return false;
+        }
+    }
+    
+    // Delete and insert rather than an upsert, which not every backend has for a two-column key
+    private static void writeLeaseRows(Connection connection, String owner, Map<String, Integer> units, long expiresAt) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM stock_leases WHERE owner = ? AND item_id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO stock_leases (owner, item_id, units, expires_at) VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<String, Integer> entry : units.entrySet()) {
+                delete.setString(1, owner);
+                delete.setString(2, entry.getKey());
+                delete.addBatch();
+                if (entry.getValue() > 0) {
+                    insert.setString(1, owner);
+                    insert.setString(2, entry.getKey());
+                    insert.setInt(3, entry.getValue());
+                    insert.setLong(4, expiresAt);
+                    insert.addBatch();
+                }
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+    }
+    
+    /**
+     * Credits the units of every lease that expired before the given time back to stock and
+     * deletes those leases. A lease only expires when its owner stopped renewing it, so its
+     * server crashed or lost the database. Each row is credited only by the server whose
+     * delete removed it, so servers sweeping at once cannot credit a lease twice.
+     * @return the units credited back, or -1 if the sweep failed
+     */
+    public int reclaimExpiredLeases(long now) {
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                Map<String, Integer> credited = new HashMap<>();
+                try (PreparedStatement select = connection.prepareStatement(
+                         "SELECT owner, item_id, units FROM stock_leases WHERE expires_at < ?");
+                     PreparedStatement delete = connection.prepareStatement(
+                         "DELETE FROM stock_leases WHERE owner = ? AND item_id = ? AND expires_at < ?")) {
+                    select.setLong(1, now);
+                    List<String[]> expired = new ArrayList<>();
+                    List<Integer> units = new ArrayList<>();
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            expired.add(new String[] {rs.getString("owner"), rs.getString("item_id")});
+                            units.add(rs.getInt("units"));
+                        }
+                    }
+                    for (int i = 0; i < expired.size(); i++) {
+                        delete.setString(1, expired.get(i)[0]);
+                        delete.setString(2, expired.get(i)[1]);
+                        delete.setLong(3, now);
+                        if (delete.executeUpdate() == 1) {
+                            credited.merge(expired.get(i)[1], units.get(i), Integer::sum);
+                        }
+                    }
+                }
+                if (!credited.isEmpty()) {
+                    addStock(connection, credited);
+                    bumpGeneration(connection);
+                }
+                connection.commit();
+                return credited.values().stream().mapToInt(Integer::intValue).sum();
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to reclaim expired stock leases", e);
+                rollbackQuietly(connection);
+                return -1;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to reclaim expired stock leases", e);
+            return -1;
+        }
+    }
+    
+    /**
+     * Stock of an item row and the version that changes with every stock update
+     */
+    public static final class StockLevel {
+        
+        private final int stock;
+        private final long version;
+        
+        public StockLevel(int stock, long version) {
+            this.stock = stock;
+            this.version = version;
+        }
+        
+        public int getStock() {
+            return stock;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+    }
+    
+    /**
+     * Deletes a batch of items and categories in a single transaction
+     * @return true if the batch was committed
+     */
+    public boolean deleteBatch(Collection<String> itemIds, Collection<String> categoryNames) {
+        if (itemIds.isEmpty() && categoryNames.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement deleteItem = connection.prepareStatement("DELETE FROM market_items WHERE id = ?");
+                     PreparedStatement deleteCategoryItems = connection.prepareStatement("DELETE FROM market_items WHERE category = ?");
+                     PreparedStatement deleteCategory = connection.prepareStatement("DELETE FROM categories WHERE name = ?")) {
+                    for (String itemId : itemIds) {
+                        deleteItem.setString(1, itemId);
+                        deleteItem.addBatch();
+                    }
+                    for (String name : categoryNames) {
+                        deleteCategoryItems.setString(1, name);
+                        deleteCategoryItems.addBatch();
+                        deleteCategory.setString(1, name);
+                        deleteCategory.addBatch();
+                    }
+                    deleteItem.executeBatch();
+                    deleteCategoryItems.executeBatch();
+                    deleteCategory.executeBatch();
+                }
+                bumpGeneration(connection);
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to delete removed market entries", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to delete removed market entries", e);
+            return false;
+        }
+    }
+    
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to roll back transaction", e);
+        }
+    }
+    
+    private void detachQuietly(Statement stmt) {
+        try {
+            stmt.execute("DETACH DATABASE snapshot");
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to detach restored snapshot", e);
+        }
+    }
+    
+    private void restoreAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to restore auto-commit", e);
         }
     }
     
     public void deleteItem(String itemId) {
         String sql = "DELETE FROM market_items WHERE id = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, itemId);
-            pstmt.executeUpdate();
+        try {
+            writeMarket(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setString(1, itemId);
+                    return pstmt.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to delete market item: " + itemId, e);
         }
@@ -154,9 +710,13 @@ public class DatabaseManager {
     public void deleteItemsByCategory(String category) {
         String sql = "DELETE FROM market_items WHERE category = ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, category);
-            pstmt.executeUpdate();
+        try {
+            writeMarket(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setString(1, category);
+                    return pstmt.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to delete items for category: " + category, e);
         }
@@ -165,98 +725,151 @@ public class DatabaseManager {
     // Transaction logging
     public void logTransaction(String playerUuid, String playerName, String itemId, String category, 
                               String transactionType, int amount, double price) {
+        logTransactions(List.of(new TransactionRecord(playerUuid, playerName, itemId, category,
+            transactionType, amount, price, System.currentTimeMillis())));
+    }
+    
+    /**
+     * Writes a batch of journaled transactions in a single transaction
+     * @return true if the batch was committed
+     */
+    public boolean logTransactions(Collection<TransactionRecord> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        
         String sql = """
             INSERT INTO transactions 
-            (player_uuid, player_name, item_id, category, transaction_type, amount, price, timestamp) 
+            (player_uuid, player_name, item_ref, category_ref, transaction_type, amount, price, timestamp) 
             VALUES (?, ?, ?, ?, ?, ?, ?, ?)
             """;
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, playerUuid);
-            pstmt.setString(2, playerName);
-            pstmt.setString(3, itemId);
-            pstmt.setString(4, category);
-            pstmt.setString(5, transactionType);
-            pstmt.setInt(6, amount);
-            pstmt.setDouble(7, price);
-            pstmt.setLong(8, System.currentTimeMillis());
-            pstmt.executeUpdate();
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    for (TransactionRecord record : records) {
+                        pstmt.setString(1, record.getPlayerUuid());
+                        pstmt.setString(2, record.getPlayerName());
+                        pstmt.setInt(3, intern(connection, itemRefs, "item_refs", record.getItemId()));
+                        pstmt.setInt(4, intern(connection, categoryRefs, "category_refs", record.getCategory()));
+                        pstmt.setInt(5, record.getTypeCode());
+                        pstmt.setInt(6, record.getAmount());
+                        pstmt.setDouble(7, record.getPrice());
+                        pstmt.setLong(8, record.getTimestamp());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to log batch of " + records.size() + " transactions", e);
+                rollbackQuietly(connection);
+                // Names interned by the rolled-back transaction are gone again
+                itemRefs.clear();
+                categoryRefs.clear();
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to log transaction", e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to log batch of " + records.size() + " transactions", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Resolves a name to its id in a lookup table, inserting it on first use
+     */
+    private int intern(Connection connection, Map<String, Integer> cache, String table, String name) throws SQLException {
+        Integer cached = cache.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try (PreparedStatement insert = connection.prepareStatement(backend.getInsertIgnore() + " " + table + " (name) VALUES (?)")) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement select = connection.prepareStatement("SELECT id FROM " + table + " WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Failed to intern '" + name + "' in " + table);
+                }
+                int id = rs.getInt(1);
+                cache.put(name, id);
+                return id;
+            }
         }
     }
     
     // Load data from database
-public List<MarketCategory> loadCategories() {
-    List<MarketCategory> categories = new ArrayList<>();
-    String sql = "SELECT * FROM categories";
-    
-    try (PreparedStatement pstmt = connection.prepareStatement(sql);
-         ResultSet rs = pstmt.executeQuery()) {
-        
-        while (rs.next()) {
-            String name = rs.getString("name");
-            Material icon = Material.valueOf(rs.getString("icon"));
-            String displayName = rs.getString("display_name");
-            String description = rs.getString("description");
-            int guiSlot = rs.getInt("gui_slot");
+    public List<MarketCategory> loadCategories() {
+        List<MarketCategory> categories = new ArrayList<>();
+        String sql = "SELECT * FROM categories";
+        
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             
-            List<String> descriptionList = description != null ? Collections.singletonList(description) : new ArrayList<>();
-            MarketCategory category = new MarketCategory(name, icon, displayName, descriptionList, guiSlot);
-            categories.add(category);
+            while (rs.next()) {
+                String name = rs.getString("name");
+                Material icon = Material.valueOf(rs.getString("icon"));
+                String displayName = rs.getString("display_name");
+                String description = rs.getString("description");
+                int guiSlot = rs.getInt("gui_slot");
+                
+                List<String> descriptionList = description != null ? Collections.singletonList(description) : new ArrayList<>();
+                MarketCategory category = new MarketCategory(name, icon, displayName, descriptionList, guiSlot);
+                categories.add(category);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load categories", e);
         }
-    } catch (SQLException e) {
-        plugin.getLogger().log(Level.SEVERE, "Failed to load categories", e);
+        
+        return categories;
     }
-    
-    return categories;
-}
 
-public List<MarketItem> loadItems() {
-    List<MarketItem> items = new ArrayList<>();
-    String sql = "SELECT * FROM market_items";
-    
-    try (PreparedStatement pstmt = connection.prepareStatement(sql);
-         ResultSet rs = pstmt.executeQuery()) {
-        
-        while (rs.next()) {
-            String id = rs.getString("id");
-            Material material = Material.valueOf(rs.getString("material"));
-            String displayName = rs.getString("display_name");
-            String loreStr = rs.getString("lore");
-            List<String> lore = loreStr != null ? List.of(loreStr.split("\n")) : null;
-            double buyPrice = rs.getDouble("buy_price");
-            double sellPrice = rs.getDouble("sell_price");
-            int stock = rs.getInt("stock");
-            int totalSold = rs.getInt("total_sold");
-            int totalBought = rs.getInt("total_bought");
-            long lastUpdated = rs.getLong("last_updated");
-            
-            String category = rs.getString("category");
-            MarketItem item = new MarketItem(id, material, displayName, lore, buyPrice, sellPrice, stock, category);
-            item.setDisplayName(displayName);
-            item.setLore(lore);
-            item.setBuyPrice(buyPrice);
-            item.setSellPrice(sellPrice);
-            item.setStock(stock);
-            item.setTotalSold(totalSold);
-            item.setTotalBought(totalBought);
-            item.setLastUpdated(lastUpdated);
+    public List<MarketItem> loadItems() {
+        List<MarketItem> items = new ArrayList<>();
+        String sql = "SELECT * FROM market_items";
+        
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             
-            items.add(item);
+            while (rs.next()) {
+                String id = rs.getString("id");
+                Material material = Material.valueOf(rs.getString("material"));
+                String displayName = rs.getString("display_name");
+                String loreStr = rs.getString("lore");
+                List<String> lore = loreStr != null ? List.of(loreStr.split("\n")) : null;
+                double buyPrice = rs.getDouble("buy_price");
+                double sellPrice = rs.getDouble("sell_price");
+                int stock = rs.getInt("stock");
+                int totalSold = rs.getInt("total_sold");
+                int totalBought = rs.getInt("total_bought");
+                long lastUpdated = rs.getLong("last_updated");
+                
+                String category = rs.getString("category");
+                MarketItem.Snapshot state = new MarketItem.Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated);
+                items.add(new MarketItem(id, material, displayName, lore, category, state));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load items", e);
         }
-    } catch (SQLException e) {
-        plugin.getLogger().log(Level.SEVERE, "Failed to load items", e);
+        
+        return items;
     }
-    
-    return items;
-}
 
-// Statistics and analytics
+    // Statistics and analytics
     public int getTotalTransactions() {
         String sql = "SELECT COUNT(*) FROM transactions";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql);
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             
             if (rs.next()) {
@@ -271,18 +884,25 @@ public List<MarketItem> loadItems() {
     
     public List<String> getTopSellingItems(int limit) {
         String sql = """
-            SELECT item_id, SUM(amount) as total_sold 
-            FROM transactions 
-            WHERE transaction_type = 'BUY' 
-            GROUP BY item_id 
-            ORDER BY total_sold DESC 
-            LIMIT ?
+            SELECT i.name AS item_id, t.total_sold 
+            FROM (
+                SELECT item_ref, SUM(amount) AS total_sold 
+                FROM transactions 
+                WHERE transaction_type = ? 
+                GROUP BY item_ref 
+                ORDER BY total_sold DESC 
+                LIMIT ?
+            ) t 
+            JOIN item_refs i ON i.id = t.item_ref 
+            ORDER BY t.total_sold DESC
             """;
         
         List<String> topItems = new ArrayList<>();
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, TransactionRecord.TYPE_BUY);
+            pstmt.setInt(2, limit);
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -296,11 +916,279 @@ public List<MarketItem> loadItems() {
         return topItems;
     }
     
+    /**
+     * Writes changed price candles, replacing stored candles of the same bucket
+     * @return true if the batch was committed
+     */
+    public boolean saveCandles(Map<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> candles) {
+        if (candles.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement pstmt = connection.prepareStatement(saveCandleSql)) {
+                    for (Map.Entry<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> item : candles.entrySet()) {
+                        int itemRef = intern(connection, itemRefs, "item_refs", item.getKey());
+                        for (Map.Entry<PriceHistory.Resolution, List<CandleSeries.Candle>> series : item.getValue().entrySet()) {
+                            for (CandleSeries.Candle candle : series.getValue()) {
+                                pstmt.setInt(1, itemRef);
+                                pstmt.setInt(2, series.getKey().getCode());
+                                pstmt.setLong(3, candle.getStart());
+                                pstmt.setDouble(4, candle.getOpen());
+                                pstmt.setDouble(5, candle.getHigh());
+                                pstmt.setDouble(6, candle.getLow());
+                                pstmt.setDouble(7, candle.getClose());
+                                pstmt.setLong(8, candle.getVolume());
+                                pstmt.addBatch();
+                            }
+                        }
+                    }
+                    pstmt.executeBatch();
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save price history", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save price history", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Loads stored price candles newer than the given start per resolution, oldest first
+     */
+    public Map<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> loadCandles(Map<PriceHistory.Resolution, Long> since) {
+        String sql = """
+            SELECT i.name AS item_id, c.bucket_start, c.open_price, c.high_price, c.low_price, c.close_price, c.volume
+            FROM price_candles c
+            JOIN item_refs i ON i.id = c.item_ref
+            WHERE c.resolution = ? AND c.bucket_start >= ?
+            ORDER BY c.item_ref, c.bucket_start
+            """;
+        
+        Map<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> candles = new HashMap<>();
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (Map.Entry<PriceHistory.Resolution, Long> entry : since.entrySet()) {
+                pstmt.setInt(1, entry.getKey().getCode());
+                pstmt.setLong(2, entry.getValue());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        candles.computeIfAbsent(rs.getString("item_id"), id -> new EnumMap<>(PriceHistory.Resolution.class))
+                            .computeIfAbsent(entry.getKey(), resolution -> new ArrayList<>())
+                            .add(new CandleSeries.Candle(rs.getLong("bucket_start"), rs.getDouble("open_price"),
+                                rs.getDouble("high_price"), rs.getDouble("low_price"), rs.getDouble("close_price"),
+                                rs.getLong("volume")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load price history", e);
+        }
+        return candles;
+    }
+    
+    /**
+     * Deletes candles that fell out of the retention window of their resolution
+     */
+    public void pruneCandles(Map<PriceHistory.Resolution, Long> before) {
+        String sql = "DELETE FROM price_candles WHERE resolution = ? AND bucket_start < ?";
+        
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (Map.Entry<PriceHistory.Resolution, Long> entry : before.entrySet()) {
+                pstmt.setInt(1, entry.getKey().getCode());
+                pstmt.setLong(2, entry.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to prune price history", e);
+        }
+    }
+    
+    /**
+     * Deletes the whole price history of items that left the market
+     */
+    public void deleteCandles(Collection<String> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        String sql = "DELETE FROM price_candles WHERE item_ref IN (SELECT id FROM item_refs WHERE name = ?)";
+        
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (String itemId : itemIds) {
+                pstmt.setString(1, itemId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to delete price history", e);
+        }
+    }
+    
+    /**
+     * Writes changed limit orders; open orders are upserted and closed ones deleted
+     * @return true if the batch was committed
+     */
+    public boolean saveOrders(Collection<Order> orders) {
+        if (orders.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement upsert = connection.prepareStatement(saveOrderSql);
+                     PreparedStatement delete = connection.prepareStatement("DELETE FROM market_orders WHERE id = ?")) {
+                    for (Order order : orders) {
+                        if (!order.isOpen()) {
+                            delete.setLong(1, order.getId());
+                            delete.addBatch();
+                            continue;
+                        }
+                        upsert.setLong(1, order.getId());
+                        upsert.setString(2, order.getPlayerUuid().toString());
+                        upsert.setString(3, order.getPlayerName());
+                        upsert.setInt(4, intern(connection, itemRefs, "item_refs", order.getItemId()));
+                        upsert.setString(5, order.getMaterial().name());
+                        upsert.setInt(6, order.getSide().getCode());
+                        upsert.setLong(7, order.getPrice());
+                        upsert.setInt(8, order.getAmount());
+                        upsert.setInt(9, order.getRemaining());
+                        upsert.setLong(10, order.getCreatedAt());
+                        upsert.addBatch();
+                    }
+                    delete.executeBatch();
+                    upsert.executeBatch();
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save market orders", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save market orders", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Loads every resting limit order, oldest first
+     */
+    public List<Order> loadOrders() {
+        String sql = """
+            SELECT o.id, o.player_uuid, o.player_name, i.name AS item_id, o.material, o.side,
+                o.price, o.amount, o.remaining, o.created_at
+            FROM market_orders o
+            JOIN item_refs i ON i.id = o.item_ref
+            ORDER BY o.id
+            """;
+        
+        List<Order> orders = new ArrayList<>();
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Material material = Material.matchMaterial(rs.getString("material"));
+                if (material == null) {
+                    plugin.getLogger().warning("Skipping order #" + rs.getLong("id") + " with unknown material " + rs.getString("material"));
+                    continue;
+                }
+                orders.add(new Order(rs.getLong("id"), UUID.fromString(rs.getString("player_uuid")),
+                    rs.getString("player_name"), rs.getString("item_id"), material,
+                    Order.Side.fromCode(rs.getInt("side")), rs.getLong("price"), rs.getInt("amount"),
+                    rs.getInt("remaining"), rs.getLong("created_at")));
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load market orders", e);
+        }
+        return orders;
+    }
+    
+    /**
+     * Writes the current claim totals of the given players; zero totals are deleted
+     * @return true if the batch was committed
+     */
+    public boolean saveClaims(Map<UUID, Map<Material, Integer>> claims) {
+        if (claims.isEmpty()) {
+            return true;
+        }
+        
+        try (Connection connection = backend.getConnection()) {
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement upsert = connection.prepareStatement(saveClaimSql);
+                     PreparedStatement delete = connection.prepareStatement("DELETE FROM order_claims WHERE player_uuid = ? AND material = ?")) {
+                    for (Map.Entry<UUID, Map<Material, Integer>> player : claims.entrySet()) {
+                        for (Map.Entry<Material, Integer> claim : player.getValue().entrySet()) {
+                            PreparedStatement pstmt = claim.getValue() > 0 ? upsert : delete;
+                            pstmt.setString(1, player.getKey().toString());
+                            pstmt.setString(2, claim.getKey().name());
+                            if (claim.getValue() > 0) {
+                                pstmt.setInt(3, claim.getValue());
+                            }
+                            pstmt.addBatch();
+                        }
+                    }
+                    delete.executeBatch();
+                    upsert.executeBatch();
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save order claims", e);
+                rollbackQuietly(connection);
+                return false;
+            } finally {
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save order claims", e);
+            return false;
+        }
+    }
+    
+    /**
+     * Loads items bought through the order book that were not delivered yet
+     */
+    public Map<UUID, Map<Material, Integer>> loadClaims() {
+        Map<UUID, Map<Material, Integer>> claims = new HashMap<>();
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement("SELECT player_uuid, material, amount FROM order_claims");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Material material = Material.matchMaterial(rs.getString("material"));
+                if (material != null) {
+                    claims.computeIfAbsent(UUID.fromString(rs.getString("player_uuid")), uuid -> new EnumMap<>(Material.class))
+                        .merge(material, rs.getInt("amount"), Integer::sum);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load order claims", e);
+        }
+        return claims;
+    }
+    
     // Database maintenance
     public void cleanOldTransactions(long olderThanMillis) {
         String sql = "DELETE FROM transactions WHERE timestamp < ?";
         
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(sql)) {
             pstmt.setLong(1, System.currentTimeMillis() - olderThanMillis);
             int deleted = pstmt.executeUpdate();
             
@@ -312,27 +1200,41 @@ public List<MarketItem> loadItems() {
         }
     }
     
-    public void closeConnection() {
+    /**
+     * Runs the backend's periodic maintenance, e.g. a passive WAL checkpoint on SQLite
+     */
+    public void checkpoint() {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                plugin.getLogger().info("Database connection closed.");
-            }
+            backend.checkpoint();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to close database connection", e);
+            plugin.getLogger().log(Level.WARNING, "Failed to checkpoint database", e);
         }
     }
     
-    public boolean isConnected() {
+    public void closeConnection() {
         try {
-            return connection != null && !connection.isClosed();
-        } catch (SQLException e) {
-            return false;
+            if (backend != null && backend.isRunning()) {
+                backend.close();
+                plugin.getLogger().info("Database connection pool closed.");
+            }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to close database connection pool", e);
         }
     }
     
-    public Connection getConnection() {
-        return connection;
+    public boolean isConnected() {
+        return backend != null && backend.isRunning();
+    }
+    
+    /**
+     * Borrows a pooled connection; callers must close it to return it
+     */
+    public Connection getConnection() throws SQLException {
+        return backend.getConnection();
+    }
+    
+    public StorageBackend getBackend() {
+        return backend;
     }
 
 
@@ -346,12 +1248,24 @@ public List<MarketItem> loadItems() {
 
 
     public void resetDatabase() {
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection connection = backend.getConnection();
+             Statement stmt = connection.createStatement()) {
             stmt.execute("DROP TABLE IF EXISTS transactions");
+            stmt.execute("DROP TABLE IF EXISTS price_candles");
+            stmt.execute("DROP TABLE IF EXISTS market_orders");
+            stmt.execute("DROP TABLE IF EXISTS order_claims");
+            stmt.execute("DROP TABLE IF EXISTS stock_leases");
+            stmt.execute("DROP TABLE IF EXISTS item_refs");
+            stmt.execute("DROP TABLE IF EXISTS category_refs");
+            stmt.execute("DROP TABLE IF EXISTS schema_version");
             stmt.execute("DROP TABLE IF EXISTS market_items");
             stmt.execute("DROP TABLE IF EXISTS categories");
+            itemRefs.clear();
+            categoryRefs.clear();
             
             createTables();
+            // market_meta survives, so no snapshot of the old market can match the new one
+            bumpGeneration(connection);
             plugin.getLogger().info("Database has been reset successfully!");
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to reset database", e);
@@ -359,18 +1273,43 @@ public List<MarketItem> loadItems() {
     }
 
     public void saveCategory(MarketCategory category) {
-        String sql = "INSERT OR REPLACE INTO categories (name, icon, display_name, description, gui_slot) VALUES (?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, category.getName());
-            pstmt.setString(2, category.getIcon().name());
-            pstmt.setString(3, category.getDisplayName());
-            pstmt.setString(4, category.getDescription() != null && !category.getDescription().isEmpty() ? 
-                           String.join("\n", category.getDescription()) : null);
-            pstmt.setInt(5, category.getGuiSlot());
-            pstmt.executeUpdate();
+        try {
+            writeMarket(connection -> writeCategories(connection, List.of(category)));
         } catch (SQLException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to save category: " + category.getName(), e);
         }
     }
+    
+    /**
+     * Saves a batch of categories in a single transaction
+     * @return true if the batch was committed
+     */
+    public boolean saveCategories(Collection<MarketCategory> categories) {
+        if (categories.isEmpty()) {
+            return true;
+        }
+        
+        try {
+            writeMarket(connection -> writeCategories(connection, categories));
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save " + categories.size() + " categories", e);
+            return false;
+        }
+    }
+    
+    private int writeCategories(Connection connection, Collection<MarketCategory> categories) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(saveCategorySql)) {
+            for (MarketCategory category : categories) {
+                pstmt.setString(1, category.getName());
+                pstmt.setString(2, category.getIcon().name());
+                pstmt.setString(3, category.getDisplayName());
+                pstmt.setString(4, category.getDescription() != null && !category.getDescription().isEmpty() ? 
+                               String.join("\n", category.getDescription()) : null);
+                pstmt.setInt(5, category.getGuiSlot());
+                pstmt.addBatch();
+            }
+            return pstmt.executeBatch().length;
+        }
+    }
 }
\ No newline at end of file
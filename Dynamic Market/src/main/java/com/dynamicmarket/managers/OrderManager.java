@@ -0,0 +1,528 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.orders.Fill;
+import com.dynamicmarket.orders.MatchingEngine;
+import com.dynamicmarket.orders.Order;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Player-to-player limit orders.
+ * Escrow is taken when an order is placed (money for buys, items for sells) and the
+ * order row is written before the order reaches the book. The matching engine pairs
+ * orders on its own thread; the orders a fill or refund changed are saved first, and
+ * only then is it settled through Vault on the main thread within the tick budget.
+ * A crash therefore never pays out a fill whose orders would come back unfilled.
+ */
+public class OrderManager implements MatchingEngine.Listener {
+    
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final MatchingEngine engine;
+    private final AtomicLong nextOrderId;
+    private volatile boolean shuttingDown;
+    
+    // Engine events waiting for the orders they changed to be saved
+    private final Queue<Fill> unsavedFills = new ConcurrentLinkedQueue<>();
+    private final Queue<Order> unsavedRefunds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    // Taken from the queues above by the flush, kept while saving fails; guarded by this
+    private final List<Fill> heldFills = new ArrayList<>();
+    private final List<Order> heldRefunds = new ArrayList<>();
+    
+    // Engine events whose orders are saved, waiting for the main thread
+    private final Queue<Fill> fills = new ConcurrentLinkedQueue<>();
+    private final Queue<Order> refunds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean settleScheduled = new AtomicBoolean();
+    
+    // Latest state of every order changed since the last save
+    private final Map<Long, Order> changedOrders = new ConcurrentHashMap<>();
+    
+    // Bought items that did not fit in, or could not reach, their buyer's inventory
+    private final Map<UUID, Map<Material, Integer>> claims = new ConcurrentHashMap<>();
+    private final Set<UUID> changedClaims = ConcurrentHashMap.newKeySet();
+    
+    public OrderManager(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        
+        int maxOpenPerPlayer = Math.max(1, plugin.getConfigManager().getConfig().getInt("market.orders.max-open-per-player", 20));
+        this.engine = new MatchingEngine(plugin.getLogger(), this, maxOpenPerPlayer);
+        
+        List<Order> stored = databaseManager.loadOrders();
+        long maxId = 0;
+        for (Order order : stored) {
+            maxId = Math.max(maxId, order.getId());
+        }
+        this.nextOrderId = new AtomicLong(maxId + 1);
+        engine.restore(stored);
+        
+        for (Map.Entry<UUID, Map<Material, Integer>> entry : databaseManager.loadClaims().entrySet()) {
+            claims.put(entry.getKey(), new ConcurrentHashMap<>(entry.getValue()));
+        }
+        
+        if (!stored.isEmpty()) {
+            plugin.getLogger().info("Restored " + stored.size() + " resting market orders.");
+        }
+    }
+    
+    /**
+     * Takes escrow from the player, writes the order row off the main thread and then submits
+     * the order; the result is reported to the player
+     * @return false if the order was rejected before any escrow was taken
+     */
+    public boolean placeOrder(Player player, MarketItem item, Order.Side side, int amount, double price) {
+        long cents = Order.toCents(price);
+        if (amount <= 0 || cents <= 0) {
+            player.sendMessage("§cAmount and price must be positive!");
+            return false;
+        }
+        
+        if (side == Order.Side.BUY) {
+            double escrow = Order.toPrice(cents * amount);
+            if (!plugin.getVaultEconomy().hasBalance(player, escrow)) {
+                player.sendMessage("§cYou need $" + String.format("%.2f", escrow) + " to place this order!");
+                return false;
+            }
+            if (!plugin.getVaultEconomy().withdrawPlayer(player, escrow)) {
+                player.sendMessage("§cTransaction failed! Please try again.");
+                return false;
+            }
+        } else {
+            SellHandler sellHandler = new SellHandler(plugin);
+            if (!sellHandler.hasEnoughItems(player, item, amount)) {
+                player.sendMessage("§cYou don't have " + amount + " " + item.getDisplayName() + " §cto sell!");
+                return false;
+            }
+            if (!sellHandler.removeItemsFromPlayer(player, item, amount)) {
+                player.sendMessage("§cTransaction failed! Please try again.");
+                return false;
+            }
+        }
+        
+        Order order = new Order(nextOrderId.getAndIncrement(), player.getUniqueId(), player.getName(), item.getId(),
+            item.getMaterial(), side, cents, amount, amount, System.currentTimeMillis());
+        UUID playerId = player.getUniqueId();
+        
+        runAsync(() -> {
+            // The row goes in before the order can fill, so no settled fill is ever missing its order
+            if (!databaseManager.saveOrders(List.of(order))) {
+                // Queued like a cancel so shutdown still returns the escrow
+                onCancel(order);
+                runOnMain(() -> notify(playerId, "§cYour order could not be saved! Your escrow will be returned."));
+                return;
+            }
+            engine.submit(order).whenComplete((result, error) -> {
+                if (result == null && error == null) {
+                    // Rejected before matching; drop the row, then return the escrow
+                    onChange(closed(order));
+                    onCancel(order);
+                }
+                runOnMain(() -> report(playerId, item, order, result, error));
+            });
+        });
+        return true;
+    }
+    
+    private static Order closed(Order order) {
+        return new Order(order.getId(), order.getPlayerUuid(), order.getPlayerName(), order.getItemId(), order.getMaterial(),
+            order.getSide(), order.getPrice(), order.getAmount(), 0, order.getCreatedAt());
+    }
+    
+    private void report(UUID playerId, MarketItem item, Order order, Order result, Throwable error) {
+        Player online = Bukkit.getPlayer(playerId);
+        if (error != null) {
+            // Engine state is unknown, so the escrow is left for an administrator to sort out
+            plugin.getLogger().log(Level.SEVERE, "Order #" + order.getId() + " of " + order.getPlayerName() + " failed", error);
+            if (online != null) {
+                online.sendMessage("§cYour order could not be placed! Please contact an administrator.");
+            }
+            return;
+        }
+        if (result == null) {
+            if (online != null) {
+                online.sendMessage("§cYou have too many open orders! Cancel one with §e/market order cancel <id>");
+            }
+            return;
+        }
+        if (online != null) {
+            String verb = result.getSide() == Order.Side.BUY ? "bought" : "sold";
+            online.sendMessage("§aOrder §e#" + result.getId() + " §aplaced: " + verb + " §e" + result.getFilled() + "/"
+                + result.getAmount() + " §a" + item.getDisplayName() + "§a, §e" + result.getRemaining()
+                + " §aresting at §e$" + String.format("%.2f", Order.toPrice(result.getPrice())));
+        }
+    }
+    
+    /**
+     * Cancels one of the player's resting orders; escrow comes back with the next settlement
+     */
+    public void cancelOrder(Player player, long orderId) {
+        UUID playerId = player.getUniqueId();
+        engine.cancel(orderId, playerId).whenComplete((order, error) -> runOnMain(() -> {
+            Player online = Bukkit.getPlayer(playerId);
+            if (online == null) {
+                return;
+            }
+            if (order == null) {
+                online.sendMessage("§cYou have no open order §e#" + orderId + "§c!");
+            } else {
+                online.sendMessage("§aCancelled order §e#" + orderId + "§a; " + order.getRemaining() + " unfilled item(s) refunded.");
+            }
+        }));
+    }
+    
+    /**
+     * Cancels every resting order of an item, e.g. when it leaves the market
+     */
+    public void cancelAll(String itemId) {
+        engine.cancelAll(itemId);
+    }
+    
+    /**
+     * Open orders of a player, handed to the callback on the main thread
+     */
+    public void getOrders(Player player, Consumer<List<Order>> callback) {
+        engine.getOrders(player.getUniqueId()).thenAccept(orders -> runOnMain(() -> callback.accept(orders)));
+    }
+    
+    /**
+     * Best levels of both sides of a book, handed to the callback on the main thread as {bids, asks}
+     */
+    public void getDepth(String itemId, int levels, Consumer<long[][][]> callback) {
+        engine.getDepth(itemId, Order.Side.BUY, levels)
+            .thenCombine(engine.getDepth(itemId, Order.Side.SELL, levels), (bids, asks) -> new long[][][] {bids, asks})
+            .thenAccept(depth -> runOnMain(() -> callback.accept(depth)));
+    }
+    
+    // Engine callbacks, on the engine thread
+    
+    @Override
+    public void onFill(Fill fill) {
+        unsavedFills.add(fill);
+        scheduleFlush(0L);
+    }
+    
+    @Override
+    public void onCancel(Order order) {
+        unsavedRefunds.add(order);
+        scheduleFlush(0L);
+    }
+    
+    @Override
+    public void onChange(Order order) {
+        changedOrders.put(order.getId(), order);
+    }
+    
+    private void scheduleFlush(long delay) {
+        if (!shuttingDown && plugin.isEnabled() && flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::flush, delay);
+        }
+    }
+    
+    /**
+     * Saves changed orders, then hands the fills and refunds queued before the save to the
+     * main thread. The engine reports order changes before the events they caused, so every
+     * event taken here has its changes in the save. Retries every five seconds while saving fails.
+     * @return false if the orders could not be saved and the events are still held
+     */
+    private synchronized boolean flush() {
+        flushScheduled.set(false);
+        drain(unsavedFills, heldFills);
+        drain(unsavedRefunds, heldRefunds);
+        if (heldFills.isEmpty() && heldRefunds.isEmpty()) {
+            return true;
+        }
+        
+        if (saveOrders() < 0) {
+            scheduleFlush(100L);
+            return false;
+        }
+        fills.addAll(heldFills);
+        refunds.addAll(heldRefunds);
+        heldFills.clear();
+        heldRefunds.clear();
+        scheduleSettlement();
+        return true;
+    }
+    
+    private static <T> void drain(Queue<T> queue, List<T> into) {
+        T next;
+        while ((next = queue.poll()) != null) {
+            into.add(next);
+        }
+    }
+    
+    private void runAsync(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+        } else {
+            task.run();
+        }
+    }
+    
+    private void scheduleSettlement() {
+        if (!shuttingDown && settleScheduled.compareAndSet(false, true)) {
+            plugin.getTickBudgetExecutor().submit(this::settleNext);
+        }
+    }
+    
+    /**
+     * Settles one queued fill or refund
+     * @return true once both queues are empty
+     */
+    private boolean settleNext() {
+        Fill fill = fills.poll();
+        if (fill != null) {
+            settleFill(fill);
+            return false;
+        }
+        Order order = refunds.poll();
+        if (order != null) {
+            refund(order);
+            return false;
+        }
+        
+        settleScheduled.set(false);
+        if (fills.isEmpty() && refunds.isEmpty()) {
+            return true;
+        }
+        // Something arrived after the queues were found empty; carry on unless another task took over
+        return !settleScheduled.compareAndSet(false, true);
+    }
+    
+    private void runOnMain(Runnable task) {
+        // Once disabling, shutdown settles whatever is still queued
+        if (!shuttingDown && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+    
+    /**
+     * Pays out every queued fill and refund at once; used on shutdown
+     * @return the number of fills settled
+     */
+    private int settle() {
+        int settled = 0;
+        Fill fill;
+        while ((fill = fills.poll()) != null) {
+            settleFill(fill);
+            settled++;
+        }
+        
+        Order order;
+        while ((order = refunds.poll()) != null) {
+            refund(order);
+        }
+        return settled;
+    }
+    
+    private void settleFill(Fill fill) {
+        OfflinePlayer seller = Bukkit.getOfflinePlayer(fill.getSellerUuid());
+        if (!plugin.getVaultEconomy().depositPlayer(seller, fill.getTotal())) {
+            plugin.getLogger().severe("Failed to pay $" + String.format("%.2f", fill.getTotal()) + " to " + fill.getSellerName()
+                + " for order #" + fill.getSellOrderId());
+        }
+        
+        deliver(fill.getBuyerUuid(), fill.getMaterial(), fill.getAmount());
+        if (fill.getBuyerRefund() > 0) {
+            plugin.getVaultEconomy().depositPlayer(Bukkit.getOfflinePlayer(fill.getBuyerUuid()), fill.getBuyerRefund());
+        }
+        
+        MarketItem item = plugin.getMarketManager().findItemById(fill.getItemId());
+        String category = item != null ? item.getCategory() : "orders";
+        double price = Order.toPrice(fill.getPrice());
+        TransactionJournal journal = plugin.getTransactionJournal();
+        journal.record(fill.getBuyerUuid().toString(), fill.getBuyerName(), fill.getItemId(), category, "ORDER", fill.getAmount(), price);
+        journal.record(fill.getSellerUuid().toString(), fill.getSellerName(), fill.getItemId(), category, "ORDER", fill.getAmount(), price);
+        
+        String itemName = item != null ? item.getDisplayName() : fill.getMaterial().name();
+        notify(fill.getBuyerUuid(), "§aOrder §e#" + fill.getBuyOrderId() + "§a: bought §e" + fill.getAmount() + " §a" + itemName
+            + " §afor §e$" + String.format("%.2f", price) + " §aeach");
+        notify(fill.getSellerUuid(), "§aOrder §e#" + fill.getSellOrderId() + "§a: sold §e" + fill.getAmount() + " §a" + itemName
+            + " §afor §e$" + String.format("%.2f", fill.getTotal()));
+    }
+    
+    // Returns the unfilled escrow of an order that left the book
+    private void refund(Order order) {
+        if (order.getRemaining() <= 0) {
+            return;
+        }
+        if (order.getSide() == Order.Side.BUY) {
+            plugin.getVaultEconomy().depositPlayer(Bukkit.getOfflinePlayer(order.getPlayerUuid()),
+                Order.toPrice(order.getPrice() * order.getRemaining()));
+        } else {
+            deliver(order.getPlayerUuid(), order.getMaterial(), order.getRemaining());
+        }
+    }
+    
+    private void notify(UUID playerId, String message) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (player != null && player.isOnline()) {
+            player.sendMessage(message);
+        }
+    }
+    
+    /**
+     * Gives items to an online player, keeping whatever does not fit as a claim
+     */
+    private void deliver(UUID playerId, Material material, int amount) {
+        Player player = Bukkit.getPlayer(playerId);
+        int left = player != null && player.isOnline() ? give(player, material, amount) : amount;
+        if (left > 0) {
+            claims.computeIfAbsent(playerId, uuid -> new ConcurrentHashMap<>()).merge(material, left, Integer::sum);
+            changedClaims.add(playerId);
+            notify(playerId, "§e" + left + " " + material.name().toLowerCase() + " §7are waiting for you; use §e/market orders claim");
+        }
+    }
+    
+    /**
+     * @return the amount that did not fit
+     */
+    private static int give(Player player, Material material, int amount) {
+        int left = 0;
+        int remaining = amount;
+        while (remaining > 0) {
+            ItemStack stack = new ItemStack(material);
+            int stackSize = Math.min(remaining, stack.getMaxStackSize());
+            stack.setAmount(stackSize);
+            for (ItemStack overflow : player.getInventory().addItem(stack).values()) {
+                left += overflow.getAmount();
+            }
+            remaining -= stackSize;
+        }
+        return left;
+    }
+    
+    /**
+     * Delivers as many claimed items as fit in the player's inventory
+     * @return the number of items delivered
+     */
+    public int claim(Player player) {
+        Map<Material, Integer> owed = claims.get(player.getUniqueId());
+        if (owed == null) {
+            return 0;
+        }
+        
+        int delivered = 0;
+        for (Map.Entry<Material, Integer> entry : owed.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            int left = give(player, entry.getKey(), entry.getValue());
+            delivered += entry.getValue() - left;
+            // Zero totals stay until saved so the stored row gets deleted
+            entry.setValue(left);
+        }
+        if (delivered > 0) {
+            changedClaims.add(player.getUniqueId());
+        }
+        return delivered;
+    }
+    
+    /**
+     * Items waiting for a player
+     */
+    public int getClaimCount(UUID playerId) {
+        Map<Material, Integer> owed = claims.get(playerId);
+        return owed == null ? 0 : owed.values().stream().mapToInt(Integer::intValue).sum();
+    }
+    
+    /**
+     * Writes changed orders and claims
+     * @return the number of order rows written
+     */
+    public synchronized int save() {
+        int written = Math.max(0, saveOrders());
+        
+        Map<UUID, Map<Material, Integer>> changed = new HashMap<>();
+        for (UUID playerId : new ArrayList<>(changedClaims)) {
+            changedClaims.remove(playerId);
+            Map<Material, Integer> owed = claims.get(playerId);
+            if (owed != null) {
+                changed.put(playerId, new HashMap<>(owed));
+            }
+        }
+        if (databaseManager.saveClaims(changed)) {
+            for (Map.Entry<UUID, Map<Material, Integer>> entry : changed.entrySet()) {
+                Map<Material, Integer> owed = claims.get(entry.getKey());
+                entry.getValue().forEach((material, amount) -> {
+                    if (amount == 0) {
+                        owed.remove(material, 0);
+                    }
+                });
+                if (owed.isEmpty()) {
+                    claims.remove(entry.getKey(), owed);
+                }
+            }
+        } else {
+            changedClaims.addAll(changed.keySet());
+        }
+        return written;
+    }
+    
+    /**
+     * Writes changed orders
+     * @return the number of order rows written, or -1 if saving failed
+     */
+    private synchronized int saveOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (Long id : new ArrayList<>(changedOrders.keySet())) {
+            Order order = changedOrders.remove(id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        if (!databaseManager.saveOrders(orders)) {
+            // Keep anything newer that arrived meanwhile
+            orders.forEach(order -> changedOrders.putIfAbsent(order.getId(), order));
+            return -1;
+        }
+        return orders.size();
+    }
+    
+    /**
+     * Stops matching, saves the orders, settles everything whose orders were saved and saves the claims
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        engine.shutdown();
+        synchronized (this) {
+            if (!flush()) {
+                // Their orders still hold the escrow in the database and come back unfilled on restart
+                plugin.getLogger().severe("Could not save market orders; " + heldFills.size() + " fill(s) and "
+                    + heldRefunds.size() + " refund(s) were not settled.");
+            }
+        }
+        int settled = settle();
+        int written = save();
+        plugin.getLogger().info("Order book stopped (" + settled + " fill(s) settled, " + written + " order row(s) saved).");
+    }
+    
+    public MatchingEngine getEngine() {
+        return engine;
+    }
+    
+    public int getPendingSettlementCount() {
+        return unsavedFills.size() + unsavedRefunds.size() + fills.size() + refunds.size();
+    }
+}
@@ -17,6 +17,7 @@ public class PermissionManager {
     public static final String MARKET_USE = "market.use";
     public static final String MARKET_SELL = "market.sell";
     public static final String MARKET_BUY = "market.buy";
+    public static final String MARKET_ORDERS = "market.orders";
     
     // Admin permissions
     public static final String ADMIN_BASE = "market.admin";
@@ -52,6 +53,7 @@ public class PermissionManager {
         registerPermission(MARKET_USE, "Allows access to the market", PermissionDefault.TRUE);
         registerPermission(MARKET_SELL, "Allows selling items to the market", PermissionDefault.TRUE);
         registerPermission(MARKET_BUY, "Allows buying items from the market", PermissionDefault.TRUE);
+        registerPermission(MARKET_ORDERS, "Allows trading with other players through limit orders", PermissionDefault.TRUE);
         
         // Admin permissions
         registerPermission(ADMIN_BASE, "Base admin permission (includes all admin permissions)", PermissionDefault.OP);
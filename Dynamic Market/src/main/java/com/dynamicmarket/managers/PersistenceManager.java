@@ -0,0 +1,216 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Write-behind persistence for market items and categories.
+ * Items flag themselves dirty when they change and only those rows are
+ * written, batched in one transaction on a dedicated thread. Changed
+ * categories are queued explicitly and written the same way.
+ */
+public class PersistenceManager {
+
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final Queue<MarketItem> dirtyItems;
+    private final Queue<MarketCategory> dirtyCategories;
+    private final Queue<String> deletedItems;
+    private final Queue<String> deletedCategories;
+    private final AtomicInteger pending;
+    private final AtomicBoolean flushRequested;
+    private final ScheduledExecutorService executor;
+    private final long flushInterval;
+    private final int maxPending;
+
+    public PersistenceManager(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        this.dirtyItems = new ConcurrentLinkedQueue<>();
+        this.dirtyCategories = new ConcurrentLinkedQueue<>();
+        this.deletedItems = new ConcurrentLinkedQueue<>();
+        this.deletedCategories = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.flushRequested = new AtomicBoolean(false);
+        this.flushInterval = Math.max(50L, plugin.getConfigManager().getConfig().getLong("database.persistence.flush-interval", 2000L));
+        this.maxPending = Math.max(1, plugin.getConfigManager().getConfig().getInt("database.persistence.max-pending", 256));
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DynamicMarket-Persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushSafely, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts tracking an item; changes to it will be queued for the next flush
+     */
+    public void track(MarketItem item) {
+        item.setDirtyListener(this::markDirty);
+        if (item.isDirty()) {
+            markDirty(item);
+        }
+    }
+
+    /**
+     * Stops tracking an item and queues its row for deletion
+     */
+    public void untrackAndDelete(MarketItem item) {
+        item.setDirtyListener(null);
+        item.clearDirty();
+        deletedItems.add(item.getId());
+        requestFlush();
+    }
+
+    /**
+     * Queues the row of a new or changed category; its items are tracked on their own
+     */
+    public void saveCategory(MarketCategory category) {
+        dirtyCategories.add(category);
+        requestFlush();
+    }
+
+    /**
+     * Queues a category and all of its item rows for deletion
+     */
+    public void deleteCategory(String name) {
+        // A pending save would run after the delete and bring the category back
+        dirtyCategories.removeIf(category -> category.getName().equalsIgnoreCase(name));
+        deletedCategories.add(name);
+        requestFlush();
+    }
+
+    public void markDirty(MarketItem item) {
+        dirtyItems.add(item);
+        if (pending.incrementAndGet() >= maxPending) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Schedules an immediate flush on the persistence thread
+     */
+    public void requestFlush() {
+        if (flushRequested.compareAndSet(false, true) && !executor.isShutdown()) {
+            executor.execute(this::flushSafely);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Market persistence flush failed", e);
+        }
+    }
+
+    /**
+     * Writes all pending changes
+     * @return the number of item rows written
+     */
+    public synchronized int flush() {
+        flushRequested.set(false);
+
+        // Deletions go first so a removed and re-added item ends up saved
+        List<String> itemIds = drain(deletedItems);
+        List<String> categoryNames = drain(deletedCategories);
+        if (!databaseManager.deleteBatch(itemIds, categoryNames)) {
+            deletedItems.addAll(itemIds);
+            deletedCategories.addAll(categoryNames);
+        }
+
+        Map<String, MarketCategory> categories = new LinkedHashMap<>();
+        MarketCategory category;
+        while ((category = dirtyCategories.poll()) != null) {
+            categories.put(category.getName().toLowerCase(), category);
+        }
+        if (!databaseManager.saveCategories(categories.values())) {
+            dirtyCategories.addAll(categories.values());
+        }
+
+        Set<MarketItem> batch = new LinkedHashSet<>();
+        MarketItem item;
+        while ((item = dirtyItems.poll()) != null) {
+            pending.decrementAndGet();
+            // Clear before reading so a concurrent change re-queues the item
+            if (item.clearDirty()) {
+                batch.add(item);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        if (!databaseManager.saveItems(batch)) {
+            // Back into the queue as they were; a failed write is not a new change
+            batch.forEach(MarketItem::restoreDirty);
+            dirtyItems.addAll(batch);
+            pending.addAndGet(batch.size());
+            return 0;
+        }
+        return batch.size();
+    }
+
+    /**
+     * Writes what is pending, then replaces the market tables with those of a snapshot file.
+     * Holds the flush lock throughout, so no write of the old state can land after the copy.
+     * @return true if the snapshot was copied in
+     */
+    public synchronized boolean restore(File snapshot) {
+        flush();
+        return databaseManager.restoreMarketTables(snapshot);
+    }
+
+    private static List<String> drain(Queue<String> queue) {
+        List<String> drained = new ArrayList<>();
+        String value;
+        while ((value = queue.poll()) != null) {
+            drained.add(value);
+        }
+        return drained;
+    }
+
+    public int getPendingCount() {
+        return Math.max(0, pending.get());
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Stops the persistence thread and writes everything still pending
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        int written = flush();
+        plugin.getLogger().info("Flushed " + written + " pending market item(s) to the database.");
+    }
+}
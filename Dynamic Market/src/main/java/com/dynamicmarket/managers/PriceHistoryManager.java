@@ -0,0 +1,130 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.CandleSeries;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory price history of every market item.
+ * Items report each change, which is folded into their candles in O(1);
+ * changed candles are written back on every save and restored on startup.
+ */
+public class PriceHistoryManager {
+    
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final Map<PriceHistory.Resolution, Integer> capacities = new EnumMap<>(PriceHistory.Resolution.class);
+    private final Map<String, PriceHistory> histories = new ConcurrentHashMap<>();
+    
+    public PriceHistoryManager(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        
+        capacities.put(PriceHistory.Resolution.MINUTE, Math.max(1, plugin.getConfigManager().getConfig().getInt("market.history.minute-candles", 240)));
+        capacities.put(PriceHistory.Resolution.HOUR, Math.max(1, plugin.getConfigManager().getConfig().getInt("market.history.hour-candles", 168)));
+        capacities.put(PriceHistory.Resolution.DAY, Math.max(1, plugin.getConfigManager().getConfig().getInt("market.history.day-candles", 90)));
+        
+        load();
+    }
+    
+    private void load() {
+        int restored = 0;
+        Map<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> stored = databaseManager.loadCandles(retentionStart(System.currentTimeMillis()));
+        for (Map.Entry<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> item : stored.entrySet()) {
+            PriceHistory history = getOrCreate(item.getKey());
+            for (Map.Entry<PriceHistory.Resolution, List<CandleSeries.Candle>> series : item.getValue().entrySet()) {
+                CandleSeries candles = history.getSeries(series.getKey());
+                for (CandleSeries.Candle candle : series.getValue()) {
+                    candles.restore(candle);
+                    restored++;
+                }
+            }
+        }
+        if (restored > 0) {
+            plugin.getLogger().info("Restored " + restored + " price history candles for " + stored.size() + " items.");
+        }
+    }
+    
+    /**
+     * Oldest bucket each resolution keeps
+     */
+    private Map<PriceHistory.Resolution, Long> retentionStart(long now) {
+        Map<PriceHistory.Resolution, Long> since = new EnumMap<>(PriceHistory.Resolution.class);
+        for (PriceHistory.Resolution resolution : PriceHistory.Resolution.values()) {
+            since.put(resolution, now - resolution.getWidth() * capacities.get(resolution));
+        }
+        return since;
+    }
+    
+    private PriceHistory getOrCreate(String itemId) {
+        return histories.computeIfAbsent(itemId, id -> new PriceHistory(capacities));
+    }
+    
+    /**
+     * Samples an item's current price; called on every change of a tracked item
+     */
+    public void onItemChanged(MarketItem item) {
+        getOrCreate(item.getId()).record(item.snapshot(), System.currentTimeMillis());
+    }
+    
+    /**
+     * History of an item, or null if it was never sampled
+     */
+    public PriceHistory getHistory(String itemId) {
+        return histories.get(itemId);
+    }
+    
+    public void remove(String itemId) {
+        histories.remove(itemId);
+    }
+    
+    public void clear() {
+        histories.clear();
+    }
+    
+    /**
+     * Writes every candle changed since the last save and drops expired ones
+     * @return the number of candles written
+     */
+    public synchronized int save() {
+        Map<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> changed = new HashMap<>();
+        int count = 0;
+        for (Map.Entry<String, PriceHistory> entry : histories.entrySet()) {
+            for (PriceHistory.Resolution resolution : PriceHistory.Resolution.values()) {
+                List<CandleSeries.Candle> candles = entry.getValue().getSeries(resolution).drainDirty();
+                if (!candles.isEmpty()) {
+                    changed.computeIfAbsent(entry.getKey(), id -> new EnumMap<>(PriceHistory.Resolution.class))
+                        .put(resolution, candles);
+                    count += candles.size();
+                }
+            }
+        }
+        
+        if (!databaseManager.saveCandles(changed)) {
+            // Keep the candles pending for the next save
+            for (Map.Entry<String, Map<PriceHistory.Resolution, List<CandleSeries.Candle>>> item : changed.entrySet()) {
+                PriceHistory history = histories.get(item.getKey());
+                if (history == null) {
+                    continue;
+                }
+                for (Map.Entry<PriceHistory.Resolution, List<CandleSeries.Candle>> series : item.getValue().entrySet()) {
+                    history.getSeries(series.getKey()).markDirtyFrom(series.getValue().get(0).getStart());
+                }
+            }
+            return 0;
+        }
+        databaseManager.pruneCandles(retentionStart(System.currentTimeMillis()));
+        return count;
+    }
+    
+    public int getTrackedItemCount() {
+        return histories.size();
+    }
+}
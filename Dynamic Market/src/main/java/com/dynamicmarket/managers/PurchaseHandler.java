@@ -2,9 +2,14 @@ package com.dynamicmarket.managers;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
+import com.dynamicmarket.pricing.PricingEngine;
+import com.dynamicmarket.pricing.PricingModel;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.function.Consumer;
+
 public class PurchaseHandler {
     
     private final DynamicMarket plugin;
@@ -18,15 +23,48 @@ public class PurchaseHandler {
      * @param player The player making the purchase
      * @param marketItem The item being purchased
      * @param amount The amount to purchase
-     * @return true if the purchase was successful, false otherwise
      */
-    public boolean processPurchase(Player player, MarketItem marketItem, int amount) {
-        // Validate purchase
-        if (!validatePurchase(player, marketItem, amount)) {
-            return false;
+    public void processPurchase(Player player, MarketItem marketItem, int amount) {
+        processPurchase(player, marketItem, amount, success -> { });
+    }
+    
+    /**
+     * Processes a purchase transaction. Claiming the stock may need the shared database,
+     * so the purchase can finish on a later tick; the callback runs on the main thread
+     * either way.
+     * @param player The player making the purchase
+     * @param marketItem The item being purchased
+     * @param amount The amount to purchase
+     * @param onComplete Receives true if the purchase was successful, false otherwise
+     */
+    public void processPurchase(Player player, MarketItem marketItem, int amount, Consumer<Boolean> onComplete) {
+        // Validate purchase, and check funds and space before claiming any stock
+        if (!validatePurchase(player, marketItem, amount) || !canCompletePurchase(player, marketItem, amount)) {
+            onComplete.accept(false);
+            return;
         }
-        
-        double totalCost = marketItem.getBuyPrice() * amount;
+
+        // Claim the stock last, so a refused reservation leaves nothing to undo
+        plugin.getStockLedger().reserve(marketItem, amount, reserved -> {
+            if (!reserved) {
+                player.sendMessage(plugin.getConfigManager().getMessage("insufficient-stock",
+                    "available", String.valueOf(marketItem.getStock())));
+                onComplete.accept(false);
+                return;
+            }
+            boolean success = completePurchase(player, marketItem, amount);
+            if (!success) {
+                plugin.getStockLedger().release(marketItem, amount);
+            }
+            onComplete.accept(success);
+        });
+    }
+    
+    /**
+     * Checks the player can pay for and carry the order at the current price
+     */
+    private boolean canCompletePurchase(Player player, MarketItem marketItem, int amount) {
+        double totalCost = plugin.getPricingEngine().quoteBuy(marketItem, amount).getTotal();
         
         // Check if player has enough money
         if (!plugin.getVaultEconomy().hasBalance(player, totalCost)) {
@@ -40,31 +78,53 @@ public class PurchaseHandler {
             player.sendMessage(plugin.getConfigManager().getMessage("insufficient-space"));
             return false;
         }
+        
+        return true;
+    }
+    
+    /**
+     * Charges the player and hands over stock that has already been reserved.
+     * The price is quoted again here, since it may have moved while the stock was claimed.
+     * @return false if nothing was bought; the caller then releases the reservation
+     */
+    private boolean completePurchase(Player player, MarketItem marketItem, int amount) {
+        if (!player.isOnline()) {
+            return false;
+        }
+        
+        // Priced along the curve, so a large order pays for the price it pushes up
+        PricingModel model = plugin.getPricingEngine().getModel(marketItem.getCategory());
+        PriceQuote quote = PricingEngine.quoteBuy(model, marketItem.snapshot(), amount);
+        double totalCost = quote.getTotal();
+        
+        // Funds and space may have changed while the stock was claimed
+        if (!canCompletePurchase(player, marketItem, amount)) {
+            return false;
+        }
 
         // Process the transaction
-        plugin.getVaultEconomy().withdrawPlayer(player, totalCost);
+        if (!plugin.getVaultEconomy().withdrawPlayer(player, totalCost)) {
+            player.sendMessage("§cThe payment could not be completed! Nothing was bought.");
+            return false;
+        }
         
         // Give items to player
         giveItemsToPlayer(player, marketItem.createItemStack(1), amount);
         
-        // Update market item (decrease stock, update prices, record transaction)
-        marketItem.decreaseStock(amount);
-marketItem.updatePriceOnBuy(amount);
+        // Move prices from the quoted snapshot and take the stock in the same update
+        marketItem.applyBuy(quote, model);
         
         // Log transaction
-        plugin.getDataManager().getDatabaseManager().logTransaction(
+        plugin.getTransactionJournal().record(
             player.getUniqueId().toString(),
             player.getName(),
             marketItem.getId(),
             marketItem.getCategory(),
             "BUY",
             amount,
-            marketItem.getBuyPrice()
+            quote.getAveragePrice()
         );
         
-        // Save market data
-        plugin.getMarketManager().saveMarketData();
-        
         // Send success message
         String itemName = marketItem.getDisplayName() != null ? 
             marketItem.getDisplayName() : 
@@ -147,22 +207,23 @@ marketItem.updatePriceOnBuy(amount);
      * Processes a purchase with confirmation dialog
      */
     public void processPurchaseWithConfirmation(Player player, MarketItem marketItem, int amount) {
-        double totalCost = marketItem.getBuyPrice() * amount;
+        PriceQuote quote = plugin.getPricingEngine().quoteBuy(marketItem, amount);
         
         // For small purchases, skip confirmation
-        if (totalCost <= plugin.getConfigManager().getConfig().getDouble("confirmation-threshold", 100.0)) {
+        if (quote.getTotal() <= plugin.getConfigManager().getSettings().getConfirmationThreshold()) {
             processPurchase(player, marketItem, amount);
             return;
         }
         
         // Create confirmation GUI for expensive purchases
-        ConfirmationGUI confirmationGUI = new ConfirmationGUI(plugin, player, marketItem, amount, totalCost);
+        ConfirmationGUI confirmationGUI = new ConfirmationGUI(plugin, player, marketItem, quote);
         confirmationGUI.open();
     }
 
-    public static boolean handlePurchase(DynamicMarket plugin, Player player, MarketItem marketItem, int amount) {
+    public static void handlePurchase(DynamicMarket plugin, Player player, MarketItem marketItem, int amount,
+                                      Consumer<Boolean> onComplete) {
         PurchaseHandler handler = new PurchaseHandler(plugin);
-        return handler.processPurchase(player, marketItem, amount);
+        handler.processPurchase(player, marketItem, amount, onComplete);
     }
     
     /**
@@ -176,15 +237,25 @@ marketItem.updatePriceOnBuy(amount);
             return 0;
         }
         
-        int maxAffordable = (int) Math.floor(balance / itemPrice);
-        return Math.min(maxAffordable, marketItem.getStock());
+        // Totals grow with the amount, so binary search the largest affordable order
+        int low = 0;
+        int high = Math.max(0, marketItem.getStock());
+        while (low < high) {
+            int mid = low + (high - low + 1) / 2;
+            if (plugin.getPricingEngine().quoteBuy(marketItem, mid).getTotal() <= balance) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
     }
     
     /**
      * Calculates the total cost for a purchase
      */
     public double calculateTotalCost(MarketItem marketItem, int amount) {
-        return marketItem.getBuyPrice() * amount;
+        return plugin.getPricingEngine().quoteBuy(marketItem, amount).getTotal();
     }
     
     /**
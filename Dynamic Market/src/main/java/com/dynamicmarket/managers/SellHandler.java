@@ -2,6 +2,9 @@ package com.dynamicmarket.managers;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.pricing.PriceQuote;
+import com.dynamicmarket.pricing.PricingEngine;
+import com.dynamicmarket.pricing.PricingModel;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -98,35 +101,38 @@ public class SellHandler {
             return 0.0;
         }
         
-        double totalEarned = marketItem.getSellPrice() * amount;
+        PricingModel model = plugin.getPricingEngine().getModel(marketItem.getCategory());
+        PriceQuote quote = PricingEngine.quoteSell(model, marketItem.snapshot(), amount);
+        double totalEarned = quote.getTotal();
+        
+        // Pay first, so a failed deposit leaves the items where they are
+        if (!plugin.getVaultEconomy().depositPlayer(player, totalEarned)) {
+            player.sendMessage("§cThe payment could not be completed! Your items were not sold.");
+            return 0.0;
+        }
         
         // Remove items from player inventory
         if (!removeItemsFromPlayer(player, marketItem, amount)) {
+            plugin.getVaultEconomy().withdrawPlayer(player, totalEarned);
             player.sendMessage("§cFailed to remove items from inventory!");
             return 0.0;
         }
         
-        // Give money to player
-        plugin.getVaultEconomy().depositPlayer(player, totalEarned);
-        
-        // Update market item (increase stock, update prices, record transaction)
-        marketItem.increaseStock(amount);
-        marketItem.updatePriceOnSell(amount);
+        // Move prices from the quoted snapshot and add the stock in the same update
+        marketItem.applySell(quote, model);
+        plugin.getStockLedger().release(marketItem, amount);
         
         // Log transaction
-        plugin.getDataManager().getDatabaseManager().logTransaction(
+        plugin.getTransactionJournal().record(
             player.getUniqueId().toString(),
             player.getName(),
             marketItem.getId(),
             marketItem.getCategory(),
             "SELL",
             amount,
-            marketItem.getSellPrice()
+            quote.getAveragePrice()
         );
         
-        // Save market data
-        plugin.getMarketManager().saveMarketData();
-        
         return totalEarned;
     }
     
@@ -212,6 +218,16 @@ public class SellHandler {
         return totalAmount;
     }
 
+    /**
+     * Checks whether a stack can be sold as the given market item
+     */
+    public boolean isSellable(ItemStack item, MarketItem marketItem) {
+        if (item == null || item.getType() != marketItem.getMaterial()) {
+            return false;
+        }
+        return isBasicItem(marketItem.getMaterial()) || itemMatches(item, marketItem);
+    }
+
     private boolean isBasicItem(Material material) {
         return material == Material.OAK_PLANKS || 
                material == Material.SPRUCE_PLANKS ||
@@ -226,7 +242,7 @@ public class SellHandler {
     /**
      * Removes items from player inventory
      */
-    private boolean removeItemsFromPlayer(Player player, MarketItem marketItem, int amount) {
+    boolean removeItemsFromPlayer(Player player, MarketItem marketItem, int amount) {
         int remaining = amount;
         
         // Cerca prima nella GUI di vendita se è aperta
@@ -308,7 +324,7 @@ public class SellHandler {
      * Calculates the total value of selling items
      */
     public double calculateSellValue(MarketItem marketItem, int amount) {
-        return marketItem.getSellPrice() * amount;
+        return plugin.getPricingEngine().quoteSell(marketItem, amount).getTotal();
     }
     
     /**
@@ -340,13 +356,14 @@ public class SellHandler {
     }
     
     /**
-     * Gets a preview of what the player would earn from selling
+     * Gets a preview of what the player would earn from selling everything they hold,
+     * priced along the item's curve like the sale itself
      */
     public SellPreview getSellPreview(Player player, MarketItem marketItem) {
         int availableAmount = getPlayerItemAmount(player, marketItem);
-        double pricePerItem = marketItem.getSellPrice();
+        PriceQuote quote = plugin.getPricingEngine().quoteSell(marketItem, availableAmount);
         
-        return new SellPreview(availableAmount, pricePerItem, availableAmount * pricePerItem);
+        return new SellPreview(availableAmount, quote.getAveragePrice(), quote.getTotal());
     }
     
     /**
@@ -367,6 +384,9 @@ public class SellHandler {
             return availableAmount;
         }
         
+        /**
+         * Average price per item over the whole sale
+         */
         public double getPricePerItem() {
             return pricePerItem;
         }
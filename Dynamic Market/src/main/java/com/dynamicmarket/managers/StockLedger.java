@@ -0,0 +1,381 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps several servers that share one database from selling the same stock twice.
+ * The stock column holds what no server has claimed yet. Each server leases a few
+ * units per item with an optimistic, versioned update and sells from that lease in
+ * memory, so most purchases need no database round-trip. Sales on this server add
+ * to its lease; leases above the limit, and idle ones, go back to the database.
+ *
+ * Leases are also recorded in the database under an id of this run, with an expiry that
+ * a heartbeat keeps pushing out. A server that crashes stops renewing its leases, and once
+ * they expire the sweep of any server credits their units back to stock. Sales since the
+ * last heartbeat are not recorded yet, so a crash can credit back up to a few seconds of
+ * them. Does nothing unless stock reservation is enabled.
+ */
+public class StockLedger {
+
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final boolean enabled;
+    private final int leaseSize;
+    private final int maxAttempts;
+    private final long leaseTtl;
+    // Owner of this run's lease rows; a restarted server does not take over the old ones
+    private final String owner = UUID.randomUUID().toString();
+    private BukkitTask returnTask;
+    private BukkitTask heartbeatTask;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    public StockLedger(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        this.enabled = config.getBoolean("sync.stock-reservation.enabled", false);
+        this.leaseSize = Math.max(1, config.getInt("sync.stock-reservation.lease-size", 16));
+        this.maxAttempts = Math.max(1, config.getInt("sync.stock-reservation.max-attempts", 5));
+        this.leaseTtl = Math.max(60, config.getInt("sync.stock-reservation.lease-ttl-seconds", 300)) * 1000L;
+    }
+
+    /**
+     * Reclaims expired leases now and then starts returning idle leases and sweeping once a
+     * minute, and writing lease changes every five seconds
+     */
+    public void start() {
+        if (enabled && returnTask == null) {
+            returnTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+                reclaimExpiredLeases();
+                returnIdleLeases();
+            }, 0L, 1200L);
+            heartbeatTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::writeLeases, 100L, 100L);
+        }
+    }
+
+    /**
+     * Hands every lease back to the database
+     */
+    public void shutdown() {
+        if (returnTask != null) {
+            returnTask.cancel();
+            returnTask = null;
+        }
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel();
+            heartbeatTask = null;
+        }
+        if (enabled) {
+            returnLeases(0, Long.MAX_VALUE);
+            // Drops the rows of leases that were sold out, which had nothing to return
+            writeLeases();
+        }
+    }
+
+    /**
+     * Claims stock for a purchase on this server. Served from the lease when it can be;
+     * otherwise the database is asked off the main thread, and the callback runs back
+     * on the main thread once the answer is in.
+     * @param callback receives true if the units may be sold; false if no server has them to spare
+     */
+    public void reserve(MarketItem item, int amount, Consumer<Boolean> callback) {
+        if (!enabled) {
+            callback.accept(item.canBuy(amount));
+            return;
+        }
+
+        Lease lease = lease(item);
+        if (lease.take(amount)) {
+            hits.incrementAndGet();
+            refillIfLow(item, lease);
+            callback.accept(true);
+            return;
+        }
+
+        misses.incrementAndGet();
+        runAsync(() -> {
+            // Take what is missing plus a fresh lease, or at least what is missing
+            int missing = Math.max(1, amount - lease.units.get());
+            boolean reserved = lease.take(amount)
+                || (reserveFromDatabase(item, lease, missing + leaseSize, missing) && lease.take(amount));
+            if (!reserved) {
+                // Anything reserved but not taken stays leased for the next purchase
+                refused.incrementAndGet();
+            }
+            runSync(() -> callback.accept(reserved));
+        });
+    }
+
+    /**
+     * Stock sold to the market on this server; it stays leased here until returned
+     */
+    public void release(MarketItem item, int amount) {
+        if (!enabled || amount <= 0) {
+            return;
+        }
+        Lease lease = lease(item);
+        lease.touch();
+        if (lease.units.addAndGet(amount) > leaseSize * 2) {
+            runAsync(() -> returnLeases(leaseSize, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Applies an administrative stock change straight to the database
+     */
+    public void adjust(MarketItem item, int amount) {
+        if (!enabled || amount == 0) {
+            return;
+        }
+        Map<String, Integer> change = Map.of(item.getId(), amount);
+        runAsync(() -> databaseManager.addStock(change));
+    }
+    
+    private void runAsync(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+        } else {
+            // Disabling; the scheduler no longer takes tasks
+            task.run();
+        }
+    }
+
+    private void runSync(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        } else {
+            task.run();
+        }
+    }
+
+    private Lease lease(MarketItem item) {
+        return leases.computeIfAbsent(item.getId(), id -> new Lease());
+    }
+
+    /**
+     * Tops a running-low lease up in the background, so the next purchase is served from memory
+     */
+    private void refillIfLow(MarketItem item, Lease lease) {
+        if (lease.units.get() >= leaseSize / 2 || !lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        runAsync(() -> {
+            try {
+                reserveFromDatabase(item, lease, leaseSize, 1);
+            } finally {
+                lease.refilling.set(false);
+            }
+        });
+    }
+
+    /**
+     * Moves up to the wanted number of units from the database into the lease, retrying with
+     * jittered exponential backoff while other servers win the race for the row.
+     * Blocks, so it only runs off the main thread. Takes no lock: the versioned update
+     * settles races with other servers and with this server's other reservations alike.
+     * @return true if at least the minimum was reserved
+     */
+    private boolean reserveFromDatabase(MarketItem item, Lease lease, int wanted, int minimum) {
+        long version = lease.version;
+        int available = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (version < 0) {
+                DatabaseManager.StockLevel level = databaseManager.loadStockLevel(item.getId());
+                if (level == null) {
+                    return false;
+                }
+                version = level.getVersion();
+                available = level.getStock();
+                lease.version = version;
+            }
+
+            int units = Math.min(wanted, available);
+            if (units < minimum) {
+                return false;
+            }
+            int leased = lease.units.get() + units;
+            long expiresAt = System.currentTimeMillis() + leaseTtl;
+            if (databaseManager.reserveStock(item.getId(), units, version, owner, leased, expiresAt)) {
+                lease.version = version + 1;
+                lease.units.addAndGet(units);
+                lease.written(leased, expiresAt);
+                lease.touch();
+                return true;
+            }
+
+            // Another server changed the row, or the cached version was stale; read it again
+            conflicts.incrementAndGet();
+            version = -1;
+            available = Integer.MAX_VALUE;
+            if (attempt > 0) {
+                sleep(ThreadLocalRandom.current().nextLong(1, (1L << Math.min(attempt, 6)) + 1));
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void returnIdleLeases() {
+        returnLeases(0, System.currentTimeMillis() - 60_000L);
+    }
+
+    /**
+     * Credits back the leases of servers that stopped renewing them
+     */
+    private void reclaimExpiredLeases() {
+        int units = databaseManager.reclaimExpiredLeases(System.currentTimeMillis());
+        if (units > 0) {
+            plugin.getLogger().info("Returned " + units + " leased units to stock from servers that stopped without returning them");
+        }
+    }
+
+    /**
+     * Records the leases whose units changed since they were last written, and renews those
+     * that are halfway to expiring
+     */
+    private void writeLeases() {
+        long now = System.currentTimeMillis();
+        Map<String, Integer> changed = new HashMap<>();
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            int units = lease.units.get();
+            if (units != lease.written || (units > 0 && lease.expiresAt - now < leaseTtl / 2)) {
+                changed.put(entry.getKey(), units);
+            }
+        }
+
+        long expiresAt = now + leaseTtl;
+        if (databaseManager.writeLeases(owner, changed, expiresAt)) {
+            changed.forEach((id, units) -> leases.get(id).written(units, expiresAt));
+        }
+    }
+
+    /**
+     * Returns every lease unit above the kept amount, for leases last used before the cutoff
+     */
+    private void returnLeases(int keep, long usedBefore) {
+        Map<String, Integer> returned = new HashMap<>();
+        Map<String, Integer> kept = new HashMap<>();
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.lastUsed > usedBefore) {
+                continue;
+            }
+            int units;
+            do {
+                units = lease.units.get();
+                if (units <= keep) {
+                    break;
+                }
+            } while (!lease.units.compareAndSet(units, keep));
+            if (units > keep) {
+                returned.put(entry.getKey(), units - keep);
+                kept.put(entry.getKey(), keep);
+            }
+        }
+
+        long expiresAt = System.currentTimeMillis() + leaseTtl;
+        if (databaseManager.returnLeasedStock(owner, returned, kept, expiresAt)) {
+            kept.forEach((id, units) -> leases.get(id).written(units, expiresAt));
+        } else {
+            // Keep the units leased rather than lose them
+            returned.forEach((id, units) -> leases.get(id).units.addAndGet(units));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Units leased by this server across all items
+     */
+    public int getLeasedUnits() {
+        int total = 0;
+        for (Lease lease : leases.values()) {
+            total += lease.units.get();
+        }
+        return total;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getConflictCount() {
+        return conflicts.get();
+    }
+
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    /**
+     * Stock this server has claimed for one item
+     */
+    private static final class Lease {
+
+        private final AtomicInteger units = new AtomicInteger();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        // Last stock version seen for the row, or -1 when it must be read first
+        private volatile long version = -1;
+        private volatile long lastUsed = System.currentTimeMillis();
+        // Units and expiry of the lease row as last written to the database
+        private volatile int written;
+        private volatile long expiresAt;
+
+        private boolean take(int amount) {
+            int current;
+            do {
+                current = units.get();
+                if (current < amount) {
+                    return false;
+                }
+            } while (!units.compareAndSet(current, current - amount));
+            touch();
+            return true;
+        }
+
+        private void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private void written(int units, long expiry) {
+            written = units;
+            expiresAt = expiry;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.sync.MessageBus;
+import com.dynamicmarket.sync.PluginMessageBus;
+import com.dynamicmarket.sync.Replicator;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.UUID;
+
+/**
+ * Replicates price and stock changes to the other servers of a network.
+ * Does nothing unless sync is enabled in the config.
+ */
+public class SyncManager {
+
+    private final DynamicMarket plugin;
+    private final Replicator replicator;
+    private final long flushInterval;
+
+    public SyncManager(DynamicMarket plugin) {
+        this.plugin = plugin;
+
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        this.flushInterval = Math.max(50L, config.getLong("sync.flush-interval", 250L));
+        MessageBus bus = config.getBoolean("sync.enabled", false) ? createBus(config.getString("sync.bus", "plugin-messaging")) : null;
+        // A fresh origin per start, so peers never mistake new packets for repeats of old ones;
+        // price versions come from the clock, so they still outrank those from before the restart
+        this.replicator = bus != null ? new Replicator(UUID.randomUUID(), bus, plugin.getLogger()) : null;
+    }
+
+    private MessageBus createBus(String name) {
+        if ("plugin-messaging".equalsIgnoreCase(name)) {
+            return new PluginMessageBus(plugin);
+        }
+        plugin.getLogger().warning("Unknown sync bus '" + name + "', cross-server sync is disabled.");
+        return null;
+    }
+
+    public void start() {
+        if (replicator != null) {
+            replicator.start(flushInterval);
+            plugin.getLogger().info("Cross-server sync enabled over " + replicator.getBusName() + ".");
+        }
+    }
+
+    public void shutdown() {
+        if (replicator != null) {
+            replicator.shutdown();
+        }
+    }
+
+    public void track(MarketItem item) {
+        if (replicator != null) {
+            replicator.track(item);
+        }
+    }
+
+    public void adopt(MarketItem item) {
+        if (replicator != null) {
+            replicator.adopt(item);
+        }
+    }
+
+    public void untrack(MarketItem item) {
+        if (replicator != null) {
+            replicator.untrack(item);
+        }
+    }
+
+    public void onItemChanged(MarketItem item) {
+        if (replicator != null) {
+            replicator.onItemChanged(item);
+        }
+    }
+
+    public boolean isEnabled() {
+        return replicator != null;
+    }
+
+    /**
+     * @return the replicator, or null when sync is disabled
+     */
+    public Replicator getReplicator() {
+        return replicator;
+    }
+}
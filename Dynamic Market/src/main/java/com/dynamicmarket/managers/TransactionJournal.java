@@ -0,0 +1,231 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.data.TransactionRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Asynchronous write-behind journal for the transactions table.
+ * Trades are queued from the main thread and written in batches by a single writer thread.
+ */
+public class TransactionJournal {
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private final DynamicMarket plugin;
+    private final DatabaseManager databaseManager;
+    private final BlockingQueue<TransactionRecord> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeout;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Thread writer;
+    private volatile boolean running;
+
+    // Backpressure metrics
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+
+    public TransactionJournal(DynamicMarket plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+
+        int capacity = Math.max(16, plugin.getConfigManager().getConfig().getInt("database.journal.capacity", 8192));
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, plugin.getConfigManager().getConfig().getInt("database.journal.batch-size", 512));
+        this.blockTimeout = Math.max(0L, plugin.getConfigManager().getConfig().getLong("database.journal.block-timeout", 50L));
+        this.maxAttempts = Math.max(1, plugin.getConfigManager().getConfig().getInt("database.journal.max-attempts", 5));
+
+        String policy = plugin.getConfigManager().getConfig().getString("database.journal.overflow-policy", "drop");
+        OverflowPolicy parsed;
+        try {
+            parsed = OverflowPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Unknown journal overflow policy '" + policy + "', using DROP");
+            parsed = OverflowPolicy.DROP;
+        }
+        this.overflowPolicy = parsed;
+
+        this.running = true;
+        this.writer = new Thread(this::runWriter, "DynamicMarket-Journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a transaction for writing; never touches the database on the calling thread
+     * @return false if the record was dropped because the journal is full
+     */
+    public boolean record(String playerUuid, String playerName, String itemId, String category,
+                          String transactionType, int amount, double price) {
+        TransactionRecord record = new TransactionRecord(playerUuid, playerName, itemId, category,
+            transactionType, amount, price, System.currentTimeMillis());
+
+        boolean accepted = queue.offer(record);
+        if (!accepted && overflowPolicy == OverflowPolicy.BLOCK && running) {
+            blocked.incrementAndGet();
+            try {
+                accepted = queue.offer(record, blockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!accepted) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        recorded.incrementAndGet();
+        peakDepth.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    private void runWriter() {
+        List<TransactionRecord> batch = new ArrayList<>(batchSize);
+        int failures = 0;
+        while (running) {
+            try {
+                // A batch that failed is kept and retried before anything newer is taken
+                if (batch.isEmpty()) {
+                    TransactionRecord first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                if (databaseManager.logTransactions(batch)) {
+                    written.addAndGet(batch.size());
+                    batch.clear();
+                    failures = 0;
+                } else {
+                    failedBatches.incrementAndGet();
+                    failures++;
+                    // Back off while the database is unavailable; new records wait in the queue
+                    Thread.sleep(backoff(failures));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Transaction journal writer failed", e);
+            }
+        }
+
+        // Shutdown requested: write the held batch and everything still queued
+        int drained = batch.size() + queue.size();
+        writeWithRetries(batch);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeWithRetries(batch);
+        }
+        if (drained > 0) {
+            plugin.getLogger().info("Transaction journal drained " + drained + " pending record(s) on shutdown.");
+        }
+    }
+
+    /**
+     * Writes a batch, retrying with backoff; only a batch that fails every attempt is dropped
+     */
+    private void writeWithRetries(List<TransactionRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (databaseManager.logTransactions(batch)) {
+                written.addAndGet(batch.size());
+                batch.clear();
+                return;
+            }
+            failedBatches.incrementAndGet();
+            if (attempt < maxAttempts) {
+                try {
+                    Thread.sleep(backoff(attempt));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        plugin.getLogger().severe("Dropping " + batch.size() + " journaled transaction(s) after " + maxAttempts + " failed attempts");
+        dropped.addAndGet(batch.size());
+        batch.clear();
+    }
+
+    private static long backoff(int failures) {
+        return Math.min(5000L, 100L << Math.min(failures, 6));
+    }
+
+    /**
+     * Stops the writer thread once it has written every record still queued.
+     * The writer is not interrupted, so a batch in flight is never abandoned;
+     * it notices the stop flag within its one-second poll.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writer.isAlive()) {
+            plugin.getLogger().warning("Transaction journal writer is still busy; " + queue.size()
+                + " record(s) may be written late or lost.");
+        } else {
+            plugin.getLogger().info("Transaction journal stopped (" + written.get() + " written, "
+                + dropped.get() + " dropped this session).");
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public int getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
@@ -0,0 +1,305 @@
+package com.dynamicmarket.market;
+
+import com.dynamicmarket.data.MarketItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds items by the words of their color-stripped display name, their material name
+ * and configured aliases. Words sit in a prefix trie for typed-ahead matches and in a
+ * trigram inverted index for misspelled ones. Kept up to date item by item.
+ *
+ * Every query word must match a word of the item, exactly, as a prefix or fuzzily;
+ * hits are ranked by how well they match, then by shorter name.
+ */
+public class ItemSearchIndex {
+
+    // Share of a query word's trigrams an item must contain to count as a fuzzy match
+    private static final double MIN_FUZZY_MATCH = 0.5;
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    private final Map<String, List<String>> aliases;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Node root = new Node();
+    private final Map<String, Set<Entry>> trigrams = new HashMap<>();
+
+    /**
+     * @param aliases extra search words, by lower-case item id or material name
+     */
+    public ItemSearchIndex(Map<String, List<String>> aliases) {
+        this.aliases = aliases;
+    }
+
+    /**
+     * Indexes an item, or indexes it again after its name changed
+     */
+    public synchronized void add(MarketItem item) {
+        remove(item.getId());
+        Entry entry = new Entry(item, words(item));
+        entries.put(item.getId(), entry);
+        for (String word : entry.words) {
+            root.insert(word, 0, entry);
+            for (String gram : trigrams(word)) {
+                trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(entry);
+            }
+        }
+    }
+
+    public synchronized void remove(String itemId) {
+        Entry entry = entries.remove(itemId);
+        if (entry == null) {
+            return;
+        }
+        for (String word : entry.words) {
+            root.delete(word, 0, entry);
+            for (String gram : trigrams(word)) {
+                Set<Entry> posting = trigrams.get(gram);
+                if (posting != null && posting.remove(entry) && posting.isEmpty()) {
+                    trigrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return up to limit items, best match first
+     */
+    public synchronized List<MarketItem> search(String query, int limit) {
+        List<String> queryWords = new ArrayList<>(tokenize(query));
+        if (queryWords.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // Longer words match fewer items, so starting with them keeps the candidates few
+        queryWords.sort((a, b) -> b.length() - a.length());
+
+        Map<Entry, Double> scores = null;
+        for (String word : queryWords) {
+            Map<Entry, Double> wordScores = match(word);
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                Map<Entry, Double> both = new HashMap<>();
+                for (Map.Entry<Entry, Double> scored : scores.entrySet()) {
+                    Double score = wordScores.get(scored.getKey());
+                    if (score != null) {
+                        both.put(scored.getKey(), scored.getValue() + score);
+                    }
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        // Keep the best hits in a min-heap of the requested size
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1);
+        for (Map.Entry<Entry, Double> scored : scores.entrySet()) {
+            best.add(new Hit(scored.getKey(), scored.getValue()));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        MarketItem[] ranked = new MarketItem[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll().entry.item;
+        }
+        return List.of(ranked);
+    }
+
+    /**
+     * Scores every item matching one query word: 1 for a whole word, less for a prefix
+     * the shorter it is, and at most 0.5 for a fuzzy match
+     */
+    private Map<Entry, Double> match(String word) {
+        Map<Entry, Double> scores = new HashMap<>();
+        Node node = root.find(word, 0);
+        if (node != null) {
+            node.collect(word.length(), word.length(), scores);
+        }
+
+        if (word.length() >= MIN_FUZZY_LENGTH) {
+            Set<String> grams = new HashSet<>(trigrams(word));
+            Map<Entry, int[]> shared = new HashMap<>();
+            for (String gram : grams) {
+                Set<Entry> posting = trigrams.get(gram);
+                if (posting != null) {
+                    for (Entry entry : posting) {
+                        shared.computeIfAbsent(entry, e -> new int[1])[0]++;
+                    }
+                }
+            }
+            for (Map.Entry<Entry, int[]> candidate : shared.entrySet()) {
+                double containment = (double) candidate.getValue()[0] / grams.size();
+                if (containment >= MIN_FUZZY_MATCH) {
+                    scores.merge(candidate.getKey(), 0.5 * containment, Math::max);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private Set<String> words(MarketItem item) {
+        Set<String> words = new LinkedHashSet<>();
+        if (item.getDisplayName() != null) {
+            words.addAll(tokenize(item.getDisplayName()));
+        }
+        words.addAll(tokenize(item.getMaterial().name()));
+        addAliases(words, aliases.get(item.getId().toLowerCase()));
+        addAliases(words, aliases.get(item.getMaterial().name().toLowerCase()));
+        return words;
+    }
+
+    private static void addAliases(Set<String> words, List<String> itemAliases) {
+        if (itemAliases != null) {
+            for (String alias : itemAliases) {
+                words.addAll(tokenize(alias));
+            }
+        }
+    }
+
+    /**
+     * Lower-case words of a text, without color codes
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '§') {
+                // Color code; skip it and the character after it
+                i++;
+            } else if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Trigrams of a word padded with a start and end mark, so short words have some too
+     */
+    private static List<String> trigrams(String word) {
+        String padded = "^" + word + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static final class Entry {
+
+        private final MarketItem item;
+        private final Set<String> words;
+        private final int nameLength;
+
+        private Entry(MarketItem item, Set<String> words) {
+            this.item = item;
+            this.words = words;
+            String name = item.getDisplayName() != null ? item.getDisplayName() : item.getMaterial().name();
+            this.nameLength = name.length();
+        }
+    }
+
+    private static final class Hit implements Comparable<Hit> {
+
+        private final Entry entry;
+        private final double score;
+
+        private Hit(Entry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        /**
+         * Worst first, as the heap drops its head when full
+         */
+        @Override
+        public int compareTo(Hit other) {
+            int order = Double.compare(score, other.score);
+            if (order == 0) {
+                order = Integer.compare(other.entry.nameLength, entry.nameLength);
+            }
+            if (order == 0) {
+                order = other.entry.item.getId().compareTo(entry.item.getId());
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Trie node; items are stored at the node where one of their words ends
+     */
+    private static final class Node {
+
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private Set<Entry> entries;
+
+        private void insert(String word, int depth, Entry entry) {
+            if (depth == word.length()) {
+                if (entries == null) {
+                    entries = new HashSet<>(2);
+                }
+                entries.add(entry);
+                return;
+            }
+            children.computeIfAbsent(word.charAt(depth), c -> new Node()).insert(word, depth + 1, entry);
+        }
+
+        /**
+         * @return true if this node is left empty and can be dropped
+         */
+        private boolean delete(String word, int depth, Entry entry) {
+            if (depth == word.length()) {
+                if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                    entries = null;
+                }
+            } else {
+                Node child = children.get(word.charAt(depth));
+                if (child != null && child.delete(word, depth + 1, entry)) {
+                    children.remove(word.charAt(depth));
+                }
+            }
+            return entries == null && children.isEmpty();
+        }
+
+        private Node find(String word, int depth) {
+            if (depth == word.length()) {
+                return this;
+            }
+            Node child = children.get(word.charAt(depth));
+            return child != null ? child.find(word, depth + 1) : null;
+        }
+
+        private void collect(int prefixLength, int depth, Map<Entry, Double> scores) {
+            if (entries != null) {
+                double score = depth == prefixLength ? 1.0 : 0.5 + 0.4 * prefixLength / depth;
+                for (Entry entry : entries) {
+                    scores.merge(entry, score, Math::max);
+                }
+            }
+            for (Node child : children.values()) {
+                child.collect(prefixLength, depth + 1, scores);
+            }
+        }
+    }
+}
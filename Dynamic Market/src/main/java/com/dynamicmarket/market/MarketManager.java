@@ -3,6 +3,10 @@ package com.dynamicmarket.market;
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketCategory;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.managers.BackupManager;
+import com.dynamicmarket.managers.DatabaseManager;
+import com.dynamicmarket.storage.StartupSnapshot;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -14,55 +18,222 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 
 public class MarketManager {
     
+    private static final String SNAPSHOT_FILE = "market.snapshot";
+    
     private final DynamicMarket plugin;
-    private final Map<String, MarketCategory> categories;
+    // Replaced as a whole on load and restore, so readers never see a half-loaded market
+    private volatile MarketRepository repository = new MarketRepository(Collections.emptyList());
     
     public MarketManager(DynamicMarket plugin) {
         this.plugin = plugin;
-        this.categories = new HashMap<>();
         loadMarketData();
     }
     
     public void loadMarketData() {
-        categories.clear();
-        List<MarketCategory> loadedCategories = plugin.getDataManager().getDatabaseManager().loadCategories();
-        List<MarketItem> loadedItems = plugin.getDataManager().getDatabaseManager().loadItems();
+        Map<String, MarketCategory> snapshot = loadStartupSnapshot();
+        if (snapshot != null) {
+            replaceCategories(snapshot);
+            return;
+        }
+        
+        replaceCategories(readMarket());
+        plugin.getLogger().info("Loaded " + repository.getCategories().size() + " market categories.");
+    }
+    
+    /**
+     * Reads the categories and items from the database, writing the default market if it is empty.
+     * Touches nothing but the database, so it may run on any thread.
+     */
+    private Map<String, MarketCategory> readMarket() {
+        DatabaseManager databaseManager = plugin.getDataManager().getDatabaseManager();
+        Map<String, MarketCategory> loaded = new ConcurrentHashMap<>();
+        List<MarketCategory> loadedCategories = databaseManager.loadCategories();
+        List<MarketItem> loadedItems = databaseManager.loadItems();
         
         if (loadedCategories.isEmpty()) {
-            createDefaultCategories();
-            saveMarketData();
-            return;
+            createDefaultCategories(loaded);
+            writeMarket(loaded.values());
+            return loaded;
         }
         
         for (MarketCategory category : loadedCategories) {
-            categories.put(category.getName().toLowerCase(), category);
+            loaded.put(category.getName().toLowerCase(), category);
         }
         
         for (MarketItem item : loadedItems) {
-            MarketCategory category = categories.get(item.getCategory().toLowerCase());
+            MarketCategory category = loaded.get(item.getCategory().toLowerCase());
             if (category != null) {
                 category.addItem(item);
             }
         }
-        
-        plugin.getLogger().info("Loaded " + categories.size() + " market categories.");
+        return loaded;
+    }
+    
+    /**
+     * Loads the market from the snapshot written at the last clean shutdown, if it still
+     * matches the database. The file is used once, so a crash never brings back an old copy.
+     * @return the categories, or null if the database must be read instead
+     */
+    private Map<String, MarketCategory> loadStartupSnapshot() {
+        File file = new File(plugin.getDataFolder(), SNAPSHOT_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            if (!plugin.getConfigManager().getConfig().getBoolean("performance.startup-snapshot.enabled", true)) {
+                return null;
+            }
+            // The check against the database is part of the cost of loading
+            long start = System.nanoTime();
+            String fingerprint = plugin.getDataManager().getDatabaseManager().loadMarketFingerprint();
+            if (fingerprint == null) {
+                return null;
+            }
+            Map<String, MarketCategory> loaded = StartupSnapshot.read(file, fingerprint);
+            if (loaded == null) {
+                plugin.getLogger().info("Market snapshot is older than the database, loading from the database.");
+                return null;
+            }
+            int items = 0;
+            for (MarketCategory category : loaded.values()) {
+                items += category.getItemCount();
+            }
+            plugin.getLogger().info("Loaded " + loaded.size() + " market categories and " + items + " items from the snapshot in "
+                + (System.nanoTime() - start) / 1_000_000L + " ms.");
+            return loaded;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not read the market snapshot, loading from the database", e);
+            return null;
+        } finally {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not delete the used market snapshot", e);
+            }
+        }
+    }
+    
+    /**
+     * Writes the snapshot the next start loads from; call after the last flush, while the database is open
+     */
+    public void saveStartupSnapshot() {
+        if (!plugin.getConfigManager().getConfig().getBoolean("performance.startup-snapshot.enabled", true)) {
+            return;
+        }
+        Collection<MarketCategory> current = repository.getCategories();
+        for (MarketCategory category : current) {
+            for (MarketItem item : category.getAllItems()) {
+                if (item.isDirty()) {
+                    // The database missed a write; the next start must read what it really holds
+                    return;
+                }
+            }
+        }
+        String fingerprint = plugin.getDataManager().getDatabaseManager().loadMarketFingerprint();
+        if (fingerprint == null) {
+            return;
+        }
+        try {
+            StartupSnapshot.write(new File(plugin.getDataFolder(), SNAPSHOT_FILE), fingerprint, current);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write the market snapshot", e);
+        }
+    }
+    
+    /**
+     * Swaps in a complete market; the previous items stop being saved, rendered and replicated
+     */
+    private void replaceCategories(Map<String, MarketCategory> loaded) {
+        for (MarketItem item : repository.getItems()) {
+            untrack(item);
+        }
+        repository = new MarketRepository(loaded.values(), loadSearchAliases());
+        prepareSearch(repository);
+        plugin.getItemRenderCache().clear();
+        plugin.getPriceChartRenderer().clear();
+        trackAllItems();
+    }
+    
+    /**
+     * Builds the search index of a new market off the main thread, usually before anyone searches
+     */
+    private void prepareSearch(MarketRepository market) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, market::prepareSearch);
     }
     
     public void saveMarketData() {
-        for (MarketCategory category : categories.values()) {
+        writeMarket(repository.getCategories());
+    }
+    
+    private void writeMarket(Collection<MarketCategory> categories) {
+        List<MarketItem> allItems = new ArrayList<>();
+        for (MarketCategory category : categories) {
             plugin.getDataManager().getDatabaseManager().saveCategory(category);
             
             for (MarketItem item : category.getAllItems()) {
-                plugin.getDataManager().getDatabaseManager().saveItem(item);
+                // Written below, so the persistence flusher can skip it
+                item.clearDirty();
+                allItems.add(item);
+            }
+        }
+        
+        if (!plugin.getDataManager().getDatabaseManager().saveItems(allItems)) {
+            allItems.forEach(MarketItem::markDirty);
+        }
+    }
+    
+    /**
+     * Extra search words from the config, by lower-case item id or material name
+     */
+    private Map<String, List<String>> loadSearchAliases() {
+        Map<String, List<String>> aliases = new HashMap<>();
+        ConfigurationSection section = plugin.getConfigManager().getConfig().getConfigurationSection("search.aliases");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                aliases.put(key.toLowerCase(), section.getStringList(key));
             }
         }
+        return aliases;
     }
     
-    private void createDefaultCategories() {
+    private void trackAllItems() {
+        for (MarketItem item : repository.getItems()) {
+            track(item);
+        }
+    }
+    
+    private void track(MarketItem item) {
+        trackLocally(item);
+        plugin.getSyncManager().track(item);
+    }
+    
+    /**
+     * Saves, renders and records an item; replication is set up by the caller
+     */
+    private void trackLocally(MarketItem item) {
+        plugin.getPersistenceManager().track(item);
+        item.setChangeListener(changed -> {
+            plugin.getPriceTicker().onItemChanged(changed);
+            plugin.getPriceHistoryManager().onItemChanged(changed);
+            plugin.getSyncManager().onItemChanged(changed);
+        });
+        // Open the history at the current price
+        plugin.getPriceHistoryManager().onItemChanged(item);
+    }
+    
+    private void untrack(MarketItem item) {
+        item.setDirtyListener(null);
+        item.setChangeListener(null);
+        plugin.getSyncManager().untrack(item);
+    }
+    
+    private void createDefaultCategories(Map<String, MarketCategory> target) {
         // Create default categories
         MarketCategory blocks = new MarketCategory("blocks", Material.STONE, "§6Blocks", 
                 Arrays.asList("§7Building materials", "§7and decorative blocks"), 10);
@@ -141,116 +312,287 @@ public class MarketManager {
 
 
         
-        categories.put("blocks", blocks);
-        categories.put("tools", tools);
-        categories.put("food", food);
-        categories.put("redstone", redstone);
-        categories.put("farming", farming);
-        categories.put("decorations", decorations);
+        target.put("blocks", blocks);
+        target.put("tools", tools);
+        target.put("food", food);
+        target.put("redstone", redstone);
+        target.put("farming", farming);
+        target.put("decorations", decorations);
     }
     
     // Category management methods
     public void addCategory(String name, Material icon, String displayName, List<String> description, int guiSlot) {
         MarketCategory category = new MarketCategory(name, icon, displayName, description, guiSlot);
-        categories.put(name, category);
+        repository.putCategory(category);
+        saveCategory(category);
+    }
+    
+    /**
+     * Queues a new or changed category to be written behind; its items are saved on their own
+     */
+    public void saveCategory(MarketCategory category) {
+        plugin.getPersistenceManager().saveCategory(category);
     }
     
     public void removeCategory(String name) {
-        categories.remove(name);
+        MarketCategory removed = repository.removeCategory(name);
+        if (removed != null) {
+            for (MarketItem item : removed.getAllItems()) {
+                untrack(item);
+                item.clearDirty();
+            }
+            plugin.getPersistenceManager().deleteCategory(removed.getName());
+        }
     }
     
     public MarketCategory getCategory(String name) {
-        return categories.get(name);
+        return repository.getCategory(name);
     }
     
     public boolean hasCategory(String name) {
-        return categories.containsKey(name);
+        return repository.hasCategory(name);
     }
     
     public List<MarketCategory> getAllCategories() {
-        return new ArrayList<>(categories.values());
+        return new ArrayList<>(repository.getCategories());
     }
     
     public List<MarketCategory> getSortedCategories() {
-        List<MarketCategory> sorted = new ArrayList<>(categories.values());
-        sorted.sort(Comparator.comparingInt(MarketCategory::getGuiSlot));
-        return sorted;
+        return repository.getSortedCategories();
     }
     
     // Item management methods
     public void addItemToCategory(String categoryName, MarketItem item) {
-        MarketCategory category = categories.get(categoryName);
-        if (category != null) {
-            category.addItem(item);
+        if (repository.addItem(categoryName, item)) {
+            track(item);
+            item.markDirty();
         }
     }
     
     public void removeItemFromCategory(String categoryName, String itemId) {
-        MarketCategory category = categories.get(categoryName);
-        if (category != null) {
-            category.removeItem(itemId);
+        MarketItem item = repository.removeItem(categoryName, itemId);
+        if (item != null) {
+            item.setChangeListener(null);
+            plugin.getSyncManager().untrack(item);
+            plugin.getPersistenceManager().untrackAndDelete(item);
+            plugin.getPriceHistoryManager().remove(itemId);
+            plugin.getItemRenderCache().invalidate(itemId);
+            plugin.getPriceChartRenderer().invalidate(itemId);
+            plugin.getOrderManager().cancelAll(itemId);
         }
     }
     
     public MarketItem findItem(String categoryName, String itemId) {
-        MarketCategory category = categories.get(categoryName);
-        return category != null ? category.getItem(itemId) : null;
+        return repository.getItem(categoryName, itemId);
+    }
+    
+    public MarketItem findItemById(String itemId) {
+        return repository.getItem(itemId);
     }
     
     public MarketItem findItemByMaterial(Material material) {
-        for (MarketCategory category : categories.values()) {
-            MarketItem item = category.getItemByMaterial(material);
-            if (item != null) {
-                return item;
-            }
+        return repository.getItemByMaterial(material);
+    }
+    
+    /**
+     * All market items for a material, in category slot order
+     */
+    public List<MarketItem> getItemsByMaterial(Material material) {
+        return repository.getItemsByMaterial(material);
+    }
+    
+    /**
+     * Resolves every slot of an inventory against one snapshot of the index
+     * @return the market item for each slot, or null where the slot is empty or not sold here
+     */
+    public MarketItem[] resolveItems(ItemStack[] contents) {
+        return repository.resolveItems(contents);
+    }
+    
+    /**
+     * Gives an item a new display name and redraws it
+     * @return false if there is no such item
+     */
+    public boolean renameItem(String itemId, String displayName) {
+        MarketItem item = repository.renameItem(itemId, displayName);
+        if (item == null) {
+            return false;
         }
-        return null;
+        plugin.getItemRenderCache().invalidate(itemId);
+        item.markDirty();
+        return true;
+    }
+    
+    /**
+     * Items matching a query by name, material or alias, best match first
+     */
+    public List<MarketItem> searchItems(String query, int limit) {
+        return repository.search(query, limit);
     }
     
     public void moveItem(String fromCategory, String toCategory, String itemId) {
-        MarketCategory from = categories.get(fromCategory);
-        MarketCategory to = categories.get(toCategory);
-        
-        if (from != null && to != null && from.hasItem(itemId)) {
-            MarketItem item = from.getItem(itemId);
-            from.removeItem(itemId);
-            to.addItem(item);
+        MarketItem item = repository.moveItem(fromCategory, toCategory, itemId);
+        if (item != null) {
+            item.markDirty();
         }
     }
     
     public void resetMarket() {
-        categories.clear();
-        createDefaultCategories();
-        saveMarketData();
+        Map<String, MarketCategory> defaults = new ConcurrentHashMap<>();
+        createDefaultCategories(defaults);
+        plugin.getPriceHistoryManager().clear();
+        // Queued before the defaults, so no flush can delete rows of the new market
+        for (MarketCategory category : repository.getCategories()) {
+            for (MarketItem item : category.getAllItems()) {
+                item.clearDirty();
+            }
+            plugin.getPersistenceManager().deleteCategory(category.getName());
+        }
+        replaceCategories(defaults);
+        for (MarketCategory category : defaults.values()) {
+            saveCategory(category);
+        }
     }
     
     public Map<String, MarketCategory> getCategories() {
-        return new HashMap<>(categories);
+        Map<String, MarketCategory> copy = new HashMap<>();
+        for (MarketCategory category : repository.getCategories()) {
+            copy.put(category.getName().toLowerCase(), category);
+        }
+        return copy;
     }
 
     public boolean categoryExists(String categoryName) {
-        return categories.containsKey(categoryName);
+        return repository.hasCategory(categoryName);
+    }
+    
+    /**
+     * The in-memory market every manager and command reads through
+     */
+    public MarketRepository getRepository() {
+        return repository;
     }
 
-    public void createBackup() {
-        try {
-            // Save current state to database
-            saveMarketData();
-            plugin.getLogger().info("Market data backup created successfully!");
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not create market data backup", e);
+    /**
+     * Takes a compressed, checksummed snapshot of the database in the background
+     * @param callback receives the backup, or the error, on the main thread
+     */
+    public void createBackup(BiConsumer<BackupManager.Backup, Exception> callback) {
+        plugin.getBackupManager().createBackup(callback);
+    }
+    
+    /**
+     * Restores the categories and items of a snapshot and swaps them in without a restart
+     * @param callback receives the restored backup, or the error, on the main thread
+     */
+    public void restoreFromBackup(String backupId, BiConsumer<BackupManager.Backup, Exception> callback) {
+        plugin.getBackupManager().restore(backupId, callback);
+    }
+    
+    /**
+     * Stops writing the current items to the database, so none of their later changes land on
+     * top of a restored snapshot. Trades go on until the swap, then give way to the snapshot.
+     * Safe off the main thread; the items stay replicated until they are replaced.
+     */
+    public void detachForRestore() {
+        for (MarketItem item : repository.getItems()) {
+            item.setDirtyListener(null);
         }
     }
-
-    public void restoreFromBackup(String backupId) {
-        try {
-            // Restore from database and reload
-            categories.clear();
-            loadMarketData();
-            plugin.getLogger().info("Market data restored successfully!");
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Could not restore from backup: " + backupId, e);
-            throw new RuntimeException("Failed to restore from backup", e);
+    
+    /**
+     * Undoes {@link #detachForRestore()} when the restore is abandoned: the current items are
+     * written again, with any changes they had while detached. Safe off the main thread.
+     */
+    public void reattachAfterFailedRestore() {
+        for (MarketItem item : repository.getItems()) {
+            plugin.getPersistenceManager().track(item);
+        }
+    }
+    
+    /**
+     * Replaces the market tables with those of an unpacked snapshot and reads the market back,
+     * dropping the stored price history of items the snapshot does not have.
+     * Blocks on the database; call off the main thread, after {@link #detachForRestore()}.
+     * @return the market to swap in; an empty one, not copied, if the database was left as it was
+     */
+    public RestoredMarket readSnapshot(File snapshot) {
+        if (!plugin.getPersistenceManager().restore(snapshot)) {
+            return new RestoredMarket(false, Map.of(), Set.of());
+        }
+        Map<String, MarketCategory> loaded = readMarket();
+        
+        Set<String> removed = new HashSet<>();
+        Set<String> kept = new HashSet<>();
+        for (MarketCategory category : loaded.values()) {
+            for (MarketItem item : category.getAllItems()) {
+                kept.add(item.getId());
+            }
+        }
+        for (MarketItem item : repository.getItems()) {
+            if (!kept.contains(item.getId())) {
+                removed.add(item.getId());
+            }
+        }
+        plugin.getDataManager().getDatabaseManager().deleteCandles(removed);
+        return new RestoredMarket(true, loaded, removed);
+    }
+    
+    /**
+     * Swaps a restored market in on the main thread. Resting orders of items that are gone are
+     * cancelled and refunded, their price history is dropped, and the restored state of every
+     * other item is published to the peers over sync.
+     */
+    public void applyRestore(RestoredMarket restored) {
+        for (MarketItem item : repository.getItems()) {
+            item.setChangeListener(null);
+            if (restored.getRemovedItemIds().contains(item.getId())) {
+                plugin.getSyncManager().untrack(item);
+            }
+        }
+        for (String itemId : restored.getRemovedItemIds()) {
+            plugin.getOrderManager().cancelAll(itemId);
+            plugin.getPriceHistoryManager().remove(itemId);
+        }
+        
+        repository = new MarketRepository(restored.getCategories().values(), loadSearchAliases());
+        prepareSearch(repository);
+        plugin.getItemRenderCache().clear();
+        plugin.getPriceChartRenderer().clear();
+        for (MarketItem item : repository.getItems()) {
+            trackLocally(item);
+            plugin.getSyncManager().adopt(item);
+        }
+    }
+    
+    /**
+     * A market read back from a restored snapshot, waiting to be swapped in
+     */
+    public static final class RestoredMarket {
+        
+        private final boolean copied;
+        private final Map<String, MarketCategory> categories;
+        private final Set<String> removedItemIds;
+        
+        private RestoredMarket(boolean copied, Map<String, MarketCategory> categories, Set<String> removedItemIds) {
+            this.copied = copied;
+            this.categories = categories;
+            this.removedItemIds = removedItemIds;
+        }
+        
+        /**
+         * False if the snapshot could not be copied in and the database was left as it was
+         */
+        public boolean isCopied() {
+            return copied;
+        }
+        
+        public Map<String, MarketCategory> getCategories() {
+            return categories;
+        }
+        
+        public Set<String> getRemovedItemIds() {
+            return removedItemIds;
         }
     }
 }
\ No newline at end of file
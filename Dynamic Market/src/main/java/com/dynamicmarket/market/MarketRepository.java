@@ -0,0 +1,297 @@
+package com.dynamicmarket.market;
+
+import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The one in-memory copy of the market. Categories are keyed by lower-case name and hold
+ * their own items; an id index and a material index point into the same item objects.
+ * A search index over the item names is built on first use, so loading a market does
+ * not wait for it. Changes go through here so all of them stay in step. A whole market
+ * is swapped by replacing the repository, never by clearing it.
+ */
+public class MarketRepository {
+
+    private final Map<String, MarketCategory> categories = new ConcurrentHashMap<>();
+    private final Map<String, MarketItem> itemsById = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> searchAliases;
+    private final Object searchLock = new Object();
+    // Null until built; written under searchLock
+    private volatile ItemSearchIndex searchIndex;
+
+    // Rebuilt copy-on-write whenever items are added, removed or moved; lists are in category slot order
+    private volatile Map<Material, List<MarketItem>> materialIndex = new EnumMap<>(Material.class);
+
+    public MarketRepository(Collection<MarketCategory> loaded) {
+        this(loaded, Collections.emptyMap());
+    }
+
+    /**
+     * @param searchAliases extra search words, by lower-case item id or material name
+     */
+    public MarketRepository(Collection<MarketCategory> loaded, Map<String, List<String>> searchAliases) {
+        this.searchAliases = searchAliases;
+        for (MarketCategory category : loaded) {
+            categories.put(key(category.getName()), category);
+            for (MarketItem item : category.getAllItems()) {
+                itemsById.put(item.getId(), item);
+            }
+        }
+        rebuildMaterialIndex();
+    }
+
+    // Categories
+
+    public MarketCategory getCategory(String name) {
+        return name != null ? categories.get(key(name)) : null;
+    }
+
+    public boolean hasCategory(String name) {
+        return getCategory(name) != null;
+    }
+
+    public Collection<MarketCategory> getCategories() {
+        return Collections.unmodifiableCollection(categories.values());
+    }
+
+    public List<MarketCategory> getSortedCategories() {
+        List<MarketCategory> sorted = new ArrayList<>(categories.values());
+        sorted.sort(Comparator.comparingInt(MarketCategory::getGuiSlot));
+        return sorted;
+    }
+
+    public int getCategoryCount() {
+        return categories.size();
+    }
+
+    /**
+     * Adds a category with its items, replacing any category of the same name
+     * @return the replaced category, or null
+     */
+    public MarketCategory putCategory(MarketCategory category) {
+        MarketCategory replaced = categories.put(key(category.getName()), category);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        for (MarketItem item : category.getAllItems()) {
+            itemsById.put(item.getId(), item);
+            indexForSearch(item);
+        }
+        rebuildMaterialIndex();
+        return replaced;
+    }
+
+    /**
+     * @return the removed category with its items, or null
+     */
+    public MarketCategory removeCategory(String name) {
+        MarketCategory removed = categories.remove(key(name));
+        if (removed != null) {
+            unindex(removed);
+            rebuildMaterialIndex();
+        }
+        return removed;
+    }
+
+    // Items
+
+    public MarketItem getItem(String itemId) {
+        return itemId != null ? itemsById.get(itemId) : null;
+    }
+
+    public MarketItem getItem(String categoryName, String itemId) {
+        MarketCategory category = getCategory(categoryName);
+        return category != null ? category.getItem(itemId) : null;
+    }
+
+    public Collection<MarketItem> getItems() {
+        return Collections.unmodifiableCollection(itemsById.values());
+    }
+
+    public int getItemCount() {
+        return itemsById.size();
+    }
+
+    /**
+     * @return false if there is no such category
+     */
+    public boolean addItem(String categoryName, MarketItem item) {
+        MarketCategory category = getCategory(categoryName);
+        if (category == null) {
+            return false;
+        }
+        category.addItem(item);
+        itemsById.put(item.getId(), item);
+        indexForSearch(item);
+        rebuildMaterialIndex();
+        return true;
+    }
+
+    /**
+     * @return the removed item, or null if the category does not hold it
+     */
+    public MarketItem removeItem(String categoryName, String itemId) {
+        MarketCategory category = getCategory(categoryName);
+        MarketItem item = category != null ? category.getItem(itemId) : null;
+        if (item == null) {
+            return null;
+        }
+        category.removeItem(itemId);
+        if (itemsById.remove(itemId, item)) {
+            unindexForSearch(itemId);
+        }
+        rebuildMaterialIndex();
+        return item;
+    }
+
+    /**
+     * @return the moved item, or null if either category is missing or the first does not hold it
+     */
+    public MarketItem moveItem(String fromCategory, String toCategory, String itemId) {
+        MarketCategory from = getCategory(fromCategory);
+        MarketCategory to = getCategory(toCategory);
+        MarketItem item = from != null && to != null ? from.getItem(itemId) : null;
+        if (item == null) {
+            return null;
+        }
+        from.removeItem(itemId);
+        to.addItem(item);
+        item.setCategory(to.getName());
+        rebuildMaterialIndex();
+        return item;
+    }
+
+    /**
+     * Gives an item a new display name, keeping its search words and name order up to date
+     * @return the renamed item, or null if there is no such item
+     */
+    public MarketItem renameItem(String itemId, String displayName) {
+        MarketItem item = getItem(itemId);
+        if (item == null) {
+            return null;
+        }
+        item.setDisplayName(displayName);
+        indexForSearch(item);
+        MarketCategory category = getCategory(item.getCategory());
+        if (category != null) {
+            category.invalidateSortedItems();
+        }
+        return item;
+    }
+
+    // Search
+
+    /**
+     * Items matching the words of a query by name, material or alias, best match first
+     */
+    public List<MarketItem> search(String query, int limit) {
+        return searchIndex().search(query, limit);
+    }
+
+    /**
+     * Builds the search index now rather than on the first search; safe from any thread
+     */
+    public void prepareSearch() {
+        searchIndex();
+    }
+
+    private ItemSearchIndex searchIndex() {
+        ItemSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (searchLock) {
+            if (searchIndex == null) {
+                index = new ItemSearchIndex(searchAliases);
+                for (MarketItem item : itemsById.values()) {
+                    index.add(item);
+                }
+                searchIndex = index;
+            }
+            return searchIndex;
+        }
+    }
+
+    // Changes made while the index is being built are seen by the build or applied after it
+    private void indexForSearch(MarketItem item) {
+        synchronized (searchLock) {
+            if (searchIndex != null) {
+                searchIndex.add(item);
+            }
+        }
+    }
+
+    private void unindexForSearch(String itemId) {
+        synchronized (searchLock) {
+            if (searchIndex != null) {
+                searchIndex.remove(itemId);
+            }
+        }
+    }
+
+    // Material lookups
+
+    /**
+     * The first market item for a material, in category slot order
+     */
+    public MarketItem getItemByMaterial(Material material) {
+        List<MarketItem> items = material != null ? materialIndex.get(material) : null;
+        return items != null ? items.get(0) : null;
+    }
+
+    public List<MarketItem> getItemsByMaterial(Material material) {
+        List<MarketItem> items = material != null ? materialIndex.get(material) : null;
+        return items != null ? items : Collections.emptyList();
+    }
+
+    /**
+     * Resolves every slot of an inventory against one snapshot of the index
+     * @return the market item for each slot, or null where the slot is empty or not sold here
+     */
+    public MarketItem[] resolveItems(ItemStack[] contents) {
+        Map<Material, List<MarketItem>> index = materialIndex;
+        MarketItem[] resolved = new MarketItem[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack stack = contents[i];
+            if (stack != null) {
+                List<MarketItem> items = index.get(stack.getType());
+                resolved[i] = items != null ? items.get(0) : null;
+            }
+        }
+        return resolved;
+    }
+
+    private void unindex(MarketCategory category) {
+        for (MarketItem item : category.getAllItems()) {
+            if (itemsById.remove(item.getId(), item)) {
+                unindexForSearch(item.getId());
+            }
+        }
+    }
+
+    private synchronized void rebuildMaterialIndex() {
+        Map<Material, List<MarketItem>> index = new EnumMap<>(Material.class);
+        for (MarketCategory category : getSortedCategories()) {
+            for (MarketItem item : category.getAllItems()) {
+                index.computeIfAbsent(item.getMaterial(), material -> new ArrayList<>(1)).add(item);
+            }
+        }
+        index.replaceAll((material, items) -> List.copyOf(items));
+        materialIndex = index;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase();
+    }
+}
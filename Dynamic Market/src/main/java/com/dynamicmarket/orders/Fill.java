@@ -0,0 +1,102 @@
+package com.dynamicmarket.orders;
+
+import org.bukkit.Material;
+
+import java.util.UUID;
+
+/**
+ * One match between a buy and a sell order, settled later on the main thread.
+ * Trades happen at the resting order's price; a buyer whose limit was higher
+ * is refunded the difference from their escrow.
+ */
+public final class Fill {
+    
+    private final String itemId;
+    private final Material material;
+    private final long buyOrderId;
+    private final long sellOrderId;
+    private final UUID buyerUuid;
+    private final String buyerName;
+    private final UUID sellerUuid;
+    private final String sellerName;
+    private final long price;
+    private final long buyLimit;
+    private final int amount;
+    private final long timestamp;
+    
+    Fill(Order buy, Order sell, long price, int amount, long timestamp) {
+        this.itemId = buy.getItemId();
+        this.material = buy.getMaterial();
+        this.buyOrderId = buy.getId();
+        this.sellOrderId = sell.getId();
+        this.buyerUuid = buy.getPlayerUuid();
+        this.buyerName = buy.getPlayerName();
+        this.sellerUuid = sell.getPlayerUuid();
+        this.sellerName = sell.getPlayerName();
+        this.price = price;
+        this.buyLimit = buy.getPrice();
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+    
+    public String getItemId() {
+        return itemId;
+    }
+    
+    public Material getMaterial() {
+        return material;
+    }
+    
+    public long getBuyOrderId() {
+        return buyOrderId;
+    }
+    
+    public long getSellOrderId() {
+        return sellOrderId;
+    }
+    
+    public UUID getBuyerUuid() {
+        return buyerUuid;
+    }
+    
+    public String getBuyerName() {
+        return buyerName;
+    }
+    
+    public UUID getSellerUuid() {
+        return sellerUuid;
+    }
+    
+    public String getSellerName() {
+        return sellerName;
+    }
+    
+    /**
+     * Trade price per item in cents
+     */
+    public long getPrice() {
+        return price;
+    }
+    
+    public int getAmount() {
+        return amount;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /**
+     * Money the seller receives
+     */
+    public double getTotal() {
+        return Order.toPrice(price * amount);
+    }
+    
+    /**
+     * Escrow returned to the buyer for price improvement
+     */
+    public double getBuyerRefund() {
+        return Order.toPrice((buyLimit - price) * amount);
+    }
+}
@@ -0,0 +1,299 @@
+package com.dynamicmarket.orders;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Matches limit orders on a dedicated thread.
+ * All books and orders are owned by that thread, so matching needs no locks;
+ * callers get futures with snapshots, and fills, closed orders and changes are
+ * reported through the listener on the engine thread.
+ */
+public class MatchingEngine {
+    
+    /**
+     * Receives engine events on the engine thread; implementations must hand work off quickly.
+     * The changes an operation makes to orders are reported before its fills and cancels.
+     */
+    public interface Listener {
+        
+        void onFill(Fill fill);
+        
+        /**
+         * An order left the book with items or escrow still unfilled
+         */
+        void onCancel(Order order);
+        
+        /**
+         * An order was added, partially filled or removed, or a new order was fully
+         * filled on arrival; used for persistence
+         */
+        void onChange(Order order);
+    }
+    
+    private final Logger logger;
+    private final Listener listener;
+    private final int maxOpenPerPlayer;
+    private final ExecutorService executor;
+    
+    // Engine thread only
+    private final Map<String, OrderBook> books = new HashMap<>();
+    private final Map<Long, Order> orders = new HashMap<>();
+    private final Map<UUID, Integer> openByPlayer = new HashMap<>();
+    
+    // Throughput metrics
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong filled = new AtomicLong();
+    private volatile int openOrders;
+    private volatile int bookCount;
+    
+    public MatchingEngine(Logger logger, Listener listener, int maxOpenPerPlayer) {
+        this.logger = logger;
+        this.listener = listener;
+        this.maxOpenPerPlayer = maxOpenPerPlayer;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DynamicMarket-Matching");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Puts stored resting orders back into their books without matching them
+     */
+    public CompletableFuture<Integer> restore(Collection<Order> stored) {
+        return call(() -> {
+            for (Order order : stored) {
+                if (order.isOpen() && !orders.containsKey(order.getId())) {
+                    book(order.getItemId()).rest(order);
+                    orders.put(order.getId(), order);
+                    openByPlayer.merge(order.getPlayerUuid(), 1, Integer::sum);
+                }
+            }
+            updateGauges();
+            return stored.size();
+        });
+    }
+    
+    /**
+     * Matches a new order and rests whatever is left of it
+     * @return a snapshot of the order after matching, or null if the player has too many open orders
+     */
+    public CompletableFuture<Order> submit(Order order) {
+        return call(() -> {
+            if (openByPlayer.getOrDefault(order.getPlayerUuid(), 0) >= maxOpenPerPlayer) {
+                return null;
+            }
+            inserted.incrementAndGet();
+            
+            OrderBook book = book(order.getItemId());
+            List<Fill> fills = new ArrayList<>();
+            List<Order> selfTrades = new ArrayList<>();
+            book.match(order, System.currentTimeMillis(), fills, selfTrades);
+            
+            // Order changes first, so they can be saved before the fills and refunds are paid out
+            for (Order removed : selfTrades) {
+                Order maker = orders.get(removed.getId());
+                forget(maker);
+                listener.onChange(maker.snapshot());
+            }
+            
+            Set<Long> makers = new LinkedHashSet<>();
+            for (Fill fill : fills) {
+                makers.add(order.getSide() == Order.Side.BUY ? fill.getSellOrderId() : fill.getBuyOrderId());
+            }
+            for (long makerId : makers) {
+                Order maker = orders.get(makerId);
+                if (!maker.isOpen()) {
+                    forget(maker);
+                }
+                listener.onChange(maker.snapshot());
+            }
+            
+            if (order.isOpen()) {
+                book.rest(order);
+                orders.put(order.getId(), order);
+                openByPlayer.merge(order.getPlayerUuid(), 1, Integer::sum);
+            } else if (book.isEmpty()) {
+                books.remove(order.getItemId());
+            }
+            listener.onChange(order.snapshot());
+            
+            for (Order removed : selfTrades) {
+                cancelled.incrementAndGet();
+                listener.onCancel(removed);
+            }
+            for (Fill fill : fills) {
+                filled.incrementAndGet();
+                listener.onFill(fill);
+            }
+            updateGauges();
+            return order.snapshot();
+        });
+    }
+    
+    /**
+     * Cancels a resting order if it belongs to the given player
+     * @return a snapshot of the order as it was before cancelling, or null if not found
+     */
+    public CompletableFuture<Order> cancel(long orderId, UUID requester) {
+        return call(() -> {
+            Order order = orders.get(orderId);
+            if (order == null || (requester != null && !order.getPlayerUuid().equals(requester))) {
+                return null;
+            }
+            return cancelResting(order);
+        });
+    }
+    
+    /**
+     * Cancels every resting order of an item
+     */
+    public CompletableFuture<List<Order>> cancelAll(String itemId) {
+        return call(() -> {
+            List<Order> cancelledOrders = new ArrayList<>();
+            for (Order order : new ArrayList<>(orders.values())) {
+                if (order.getItemId().equals(itemId)) {
+                    cancelledOrders.add(cancelResting(order));
+                }
+            }
+            return cancelledOrders;
+        });
+    }
+    
+    private Order cancelResting(Order order) {
+        Order before = order.snapshot();
+        OrderBook book = books.get(order.getItemId());
+        if (book != null) {
+            book.cancel(order);
+            if (book.isEmpty()) {
+                books.remove(order.getItemId());
+            }
+        }
+        forget(order);
+        cancelled.incrementAndGet();
+        listener.onChange(order.snapshot());
+        listener.onCancel(before);
+        updateGauges();
+        return before;
+    }
+    
+    /**
+     * Open orders of a player, oldest first
+     */
+    public CompletableFuture<List<Order>> getOrders(UUID player) {
+        return call(() -> {
+            List<Order> open = new ArrayList<>();
+            for (Order order : orders.values()) {
+                if (order.getPlayerUuid().equals(player)) {
+                    open.add(order.snapshot());
+                }
+            }
+            open.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+            return open;
+        });
+    }
+    
+    /**
+     * Best bid and ask of an item in cents, -1 where a side is empty
+     */
+    public CompletableFuture<long[]> getSpread(String itemId) {
+        return call(() -> {
+            OrderBook book = books.get(itemId);
+            return book == null ? new long[] {-1, -1} : new long[] {book.getBestBid(), book.getBestAsk()};
+        });
+    }
+    
+    /**
+     * Open amount per price in cents at the best levels of one side
+     */
+    public CompletableFuture<long[][]> getDepth(String itemId, Order.Side side, int levels) {
+        return call(() -> {
+            OrderBook book = books.get(itemId);
+            return book == null ? new long[0][] : book.getDepth(side, levels);
+        });
+    }
+    
+    private OrderBook book(String itemId) {
+        return books.computeIfAbsent(itemId, id -> new OrderBook());
+    }
+    
+    private void forget(Order order) {
+        if (orders.remove(order.getId()) != null) {
+            openByPlayer.computeIfPresent(order.getPlayerUuid(), (uuid, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+    
+    private void updateGauges() {
+        openOrders = orders.size();
+        bookCount = books.size();
+    }
+    
+    private <T> CompletableFuture<T> call(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Matching engine task failed", e);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * Finishes every queued task and stops the engine thread
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public int getOpenOrderCount() {
+        return openOrders;
+    }
+    
+    public int getBookCount() {
+        return bookCount;
+    }
+    
+    public long getInsertedCount() {
+        return inserted.get();
+    }
+    
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+    
+    public long getFillCount() {
+        return filled.get();
+    }
+}
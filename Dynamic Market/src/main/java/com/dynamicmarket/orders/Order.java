@@ -0,0 +1,135 @@
+package com.dynamicmarket.orders;
+
+import org.bukkit.Material;
+
+import java.util.UUID;
+
+/**
+ * A player's limit order for one market item.
+ * Prices are held in whole cents so equal prices always share a book level.
+ * The remaining amount is only changed by the matching engine thread; every
+ * other thread works on snapshots.
+ */
+public final class Order {
+    
+    public enum Side {
+        BUY(0),
+        SELL(1);
+        
+        private final int code;
+        
+        Side(int code) {
+            this.code = code;
+        }
+        
+        public int getCode() {
+            return code;
+        }
+        
+        public static Side fromCode(int code) {
+            return code == SELL.code ? SELL : BUY;
+        }
+    }
+    
+    private final long id;
+    private final UUID playerUuid;
+    private final String playerName;
+    private final String itemId;
+    private final Material material;
+    private final Side side;
+    private final long price;
+    private final int amount;
+    private final long createdAt;
+    private int remaining;
+    
+    public Order(long id, UUID playerUuid, String playerName, String itemId, Material material,
+                 Side side, long price, int amount, int remaining, long createdAt) {
+        this.id = id;
+        this.playerUuid = playerUuid;
+        this.playerName = playerName;
+        this.itemId = itemId;
+        this.material = material;
+        this.side = side;
+        this.price = price;
+        this.amount = amount;
+        this.remaining = remaining;
+        this.createdAt = createdAt;
+    }
+    
+    /**
+     * Converts a price to the cents the book is keyed by
+     */
+    public static long toCents(double price) {
+        return Math.round(price * 100.0);
+    }
+    
+    public static double toPrice(long cents) {
+        return cents / 100.0;
+    }
+    
+    /**
+     * Copy that is safe to hand to other threads
+     */
+    public Order snapshot() {
+        return new Order(id, playerUuid, playerName, itemId, material, side, price, amount, remaining, createdAt);
+    }
+    
+    void fill(int filled) {
+        remaining -= filled;
+    }
+    
+    void close() {
+        remaining = 0;
+    }
+    
+    public boolean isOpen() {
+        return remaining > 0;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+    
+    public String getPlayerName() {
+        return playerName;
+    }
+    
+    public String getItemId() {
+        return itemId;
+    }
+    
+    public Material getMaterial() {
+        return material;
+    }
+    
+    public Side getSide() {
+        return side;
+    }
+    
+    /**
+     * Limit price in cents
+     */
+    public long getPrice() {
+        return price;
+    }
+    
+    public int getAmount() {
+        return amount;
+    }
+    
+    public int getRemaining() {
+        return remaining;
+    }
+    
+    public int getFilled() {
+        return amount - remaining;
+    }
+    
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
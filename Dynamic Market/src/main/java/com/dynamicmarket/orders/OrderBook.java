@@ -0,0 +1,154 @@
+package com.dynamicmarket.orders;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Price-time priority book of one market item.
+ * Levels are kept in sorted maps keyed by price in cents, each holding its orders in
+ * arrival order. Cancelled orders are only unlinked lazily, so inserts and cancels
+ * both stay O(log levels). Not thread safe; owned by the matching engine thread.
+ */
+final class OrderBook {
+    
+    private final TreeMap<Long, PriceLevel> bids = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<Long, PriceLevel> asks = new TreeMap<>();
+    private int openOrders;
+    
+    /**
+     * Matches an incoming order against the opposite side, best price first
+     * @param fills receives every trade made
+     * @param selfTrades receives resting orders of the taker's own player, as they were before being removed
+     */
+    void match(Order taker, long now, List<Fill> fills, List<Order> selfTrades) {
+        boolean buying = taker.getSide() == Order.Side.BUY;
+        TreeMap<Long, PriceLevel> opposite = buying ? asks : bids;
+        
+        while (taker.isOpen() && !opposite.isEmpty()) {
+            Map.Entry<Long, PriceLevel> best = opposite.firstEntry();
+            long price = best.getKey();
+            if (buying ? price > taker.getPrice() : price < taker.getPrice()) {
+                break;
+            }
+            
+            PriceLevel level = best.getValue();
+            while (taker.isOpen() && level.open > 0) {
+                Order maker = level.orders.peekFirst();
+                if (!maker.isOpen()) {
+                    // Cancelled earlier, unlinked only now
+                    level.orders.pollFirst();
+                    level.stale--;
+                    continue;
+                }
+                
+                if (maker.getPlayerUuid().equals(taker.getPlayerUuid())) {
+                    // Never trade a player with themselves; the resting order gives way
+                    level.orders.pollFirst();
+                    level.open -= maker.getRemaining();
+                    selfTrades.add(maker.snapshot());
+                    maker.close();
+                    openOrders--;
+                    continue;
+                }
+                
+                int quantity = Math.min(maker.getRemaining(), taker.getRemaining());
+                maker.fill(quantity);
+                taker.fill(quantity);
+                level.open -= quantity;
+                fills.add(buying
+                    ? new Fill(taker, maker, price, quantity, now)
+                    : new Fill(maker, taker, price, quantity, now));
+                
+                if (!maker.isOpen()) {
+                    level.orders.pollFirst();
+                    openOrders--;
+                }
+            }
+            
+            if (level.open == 0) {
+                opposite.pollFirstEntry();
+            }
+        }
+    }
+    
+    /**
+     * Adds the unfilled rest of an order at the back of its price level
+     */
+    void rest(Order order) {
+        TreeMap<Long, PriceLevel> side = order.getSide() == Order.Side.BUY ? bids : asks;
+        PriceLevel level = side.computeIfAbsent(order.getPrice(), price -> new PriceLevel());
+        level.orders.addLast(order);
+        level.open += order.getRemaining();
+        openOrders++;
+    }
+    
+    /**
+     * Removes a resting order from the book
+     */
+    void cancel(Order order) {
+        TreeMap<Long, PriceLevel> side = order.getSide() == Order.Side.BUY ? bids : asks;
+        PriceLevel level = side.get(order.getPrice());
+        if (level == null || !order.isOpen()) {
+            return;
+        }
+        
+        level.open -= order.getRemaining();
+        order.close();
+        openOrders--;
+        
+        if (level.open == 0) {
+            side.remove(order.getPrice());
+        } else if (++level.stale > level.orders.size() / 2) {
+            // Mostly dead level; compact it so the queue does not grow without bound
+            level.orders.removeIf(resting -> !resting.isOpen());
+            level.stale = 0;
+        }
+    }
+    
+    /**
+     * Highest bid in cents, or -1 if there is none
+     */
+    long getBestBid() {
+        return bids.isEmpty() ? -1 : bids.firstKey();
+    }
+    
+    /**
+     * Lowest ask in cents, or -1 if there is none
+     */
+    long getBestAsk() {
+        return asks.isEmpty() ? -1 : asks.firstKey();
+    }
+    
+    /**
+     * Open amount resting at the best levels of a side, best first
+     */
+    long[][] getDepth(Order.Side side, int levels) {
+        TreeMap<Long, PriceLevel> book = side == Order.Side.BUY ? bids : asks;
+        long[][] depth = new long[Math.min(levels, book.size())][];
+        int i = 0;
+        for (Map.Entry<Long, PriceLevel> entry : book.entrySet()) {
+            if (i == depth.length) {
+                break;
+            }
+            depth[i++] = new long[] {entry.getKey(), entry.getValue().open};
+        }
+        return depth;
+    }
+    
+    int getOpenOrders() {
+        return openOrders;
+    }
+    
+    boolean isEmpty() {
+        return openOrders == 0;
+    }
+    
+    private static final class PriceLevel {
+        private final ArrayDeque<Order> orders = new ArrayDeque<>();
+        private long open;
+        private int stale;
+    }
+}
@@ -0,0 +1,81 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * Constant-product market maker (x * y = k).
+ * The item reserve is the stock plus a virtual depth; a trade moves the reserve
+ * and the spot price follows the square of the reserve ratio. Both prices move by
+ * the same factor, so the spread between them is kept.
+ * Order totals integrate the continuous curve, so even one unit is priced over
+ * the move it causes: buying it costs p * x / (x - 1) rather than p, and selling
+ * it earns p * x / (x + 1).
+ */
+public class ConstantProductPricingModel implements PricingModel {
+    
+    public static final String NAME = "amm";
+    
+    private final double depth;
+    private final double minPrice;
+    private final double maxPrice;
+    
+    public ConstantProductPricingModel(double depth, double minPrice, double maxPrice) {
+        this.depth = Math.max(1.0, depth);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterBuy(MarketItem.Snapshot current, int amount) {
+        double reserve = reserve(current);
+        // Never drain the pool completely, the price would be infinite
+        double after = Math.max(1.0, reserve - amount);
+        return scale(current, reserve / after);
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterSell(MarketItem.Snapshot current, int amount) {
+        double reserve = reserve(current);
+        return scale(current, reserve / (reserve + amount));
+    }
+    
+    @Override
+    public double buyTotal(MarketItem.Snapshot current, int amount) {
+        // Integral of p * (x / (x - k))^2 over k, capped where the curve reaches the maximum price
+        double price = current.getBuyPrice();
+        double reserve = reserve(current);
+        double capped = price >= maxPrice ? 0.0 : reserve * (1 - Math.sqrt(price / maxPrice));
+        double along = Math.min(Math.min(amount, capped), reserve - 1.0);
+        return price * reserve * along / (reserve - along) + (amount - along) * maxPrice;
+    }
+    
+    @Override
+    public double sellTotal(MarketItem.Snapshot current, int amount) {
+        // Integral of p * (x / (x + k))^2 over k, floored where the curve reaches the minimum price
+        double price = current.getSellPrice();
+        double reserve = reserve(current);
+        double floored = price <= minPrice ? 0.0 : reserve * (Math.sqrt(price / minPrice) - 1);
+        double along = Math.min(amount, floored);
+        return price * reserve * along / (reserve + along) + (amount - along) * minPrice;
+    }
+    
+    private double reserve(MarketItem.Snapshot current) {
+        return Math.max(0, current.getStock()) + depth;
+    }
+    
+    private MarketItem.Snapshot scale(MarketItem.Snapshot current, double ratio) {
+        double factor = ratio * ratio;
+        return current.withPrices(
+            clamp(current.getBuyPrice() * factor),
+            clamp(current.getSellPrice() * factor));
+    }
+    
+    private double clamp(double price) {
+        return Math.max(minPrice, Math.min(maxPrice, price));
+    }
+}
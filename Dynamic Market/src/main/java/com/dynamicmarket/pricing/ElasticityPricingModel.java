@@ -0,0 +1,91 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * Exponential elasticity: prices move by e^(rate * amount), with the rate
+ * decaying as stock grows so well-stocked items react less. Unlike the linear
+ * model a large trade can never push a price negative. Units are priced stepwise,
+ * so the first one in an order trades at the current price.
+ */
+public class ElasticityPricingModel implements PricingModel {
+    
+    public static final String NAME = "elasticity";
+    
+    private final double rate;
+    private final double depth;
+    private final double minPrice;
+    private final double maxPrice;
+    
+    public ElasticityPricingModel(double rate, double depth, double minPrice, double maxPrice) {
+        this.rate = rate;
+        this.depth = Math.max(1.0, depth);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterBuy(MarketItem.Snapshot current, int amount) {
+        return scale(current, Math.exp(elasticity(current) * amount));
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterSell(MarketItem.Snapshot current, int amount) {
+        return scale(current, Math.exp(-elasticity(current) * amount));
+    }
+    
+    @Override
+    public double buyTotal(MarketItem.Snapshot current, int amount) {
+        // Geometric series p * q^i with q = e^a, until the maximum price
+        double price = current.getBuyPrice();
+        double a = elasticity(current);
+        long rising = unclampedUnits(amount, a, Math.log(maxPrice / price));
+        return geometricSum(price, a, rising) + (amount - rising) * maxPrice;
+    }
+    
+    @Override
+    public double sellTotal(MarketItem.Snapshot current, int amount) {
+        // Geometric series p * q^i with q = e^-a, until the minimum price
+        double price = current.getSellPrice();
+        double a = elasticity(current);
+        long falling = unclampedUnits(amount, a, Math.log(price / minPrice));
+        return geometricSum(price, -a, falling) + (amount - falling) * minPrice;
+    }
+    
+    private static long unclampedUnits(int amount, double a, double logRange) {
+        if (a <= 0) {
+            return amount;
+        }
+        return Math.max(0L, Math.min(amount, (long) Math.ceil(logRange / a)));
+    }
+    
+    private static double geometricSum(double first, double exponent, long count) {
+        if (count == 0) {
+            return 0.0;
+        }
+        if (Math.abs(exponent) < 1e-12) {
+            return first * count;
+        }
+        // expm1 keeps precision when the exponent is tiny
+        return first * Math.expm1(exponent * count) / Math.expm1(exponent);
+    }
+    
+    private double elasticity(MarketItem.Snapshot current) {
+        return rate * depth / (depth + Math.max(0, current.getStock()));
+    }
+    
+    private MarketItem.Snapshot scale(MarketItem.Snapshot current, double factor) {
+        return current.withPrices(
+            clamp(current.getBuyPrice() * factor),
+            clamp(current.getSellPrice() * factor));
+    }
+    
+    private double clamp(double price) {
+        return Math.max(minPrice, Math.min(maxPrice, price));
+    }
+}
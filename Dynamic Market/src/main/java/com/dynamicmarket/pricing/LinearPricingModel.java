@@ -0,0 +1,68 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * The original model: each unit moves the traded side by the adjustment rate
+ * and the other side by half of it. Units are priced stepwise, so the first one
+ * in an order trades at the current price.
+ */
+public class LinearPricingModel implements PricingModel {
+    
+    public static final String NAME = "linear";
+    
+    private final double rate;
+    private final double minPrice;
+    private final double maxPrice;
+    
+    public LinearPricingModel(double rate, double minPrice, double maxPrice) {
+        this.rate = rate;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterBuy(MarketItem.Snapshot current, int amount) {
+        return current.withPrices(
+            Math.min(maxPrice, current.getBuyPrice() * (1 + amount * rate)),
+            Math.max(minPrice, current.getSellPrice() * (1 - amount * rate / 2)));
+    }
+    
+    @Override
+    public MarketItem.Snapshot afterSell(MarketItem.Snapshot current, int amount) {
+        return current.withPrices(
+            Math.max(minPrice, current.getBuyPrice() * (1 - amount * rate / 2)),
+            Math.max(minPrice, current.getSellPrice() * (1 - amount * rate)));
+    }
+    
+    @Override
+    public double buyTotal(MarketItem.Snapshot current, int amount) {
+        // Unit i costs p * (1 + i * rate) until it reaches the maximum price
+        double price = current.getBuyPrice();
+        long rising = unclampedUnits(amount, (maxPrice / price - 1) / rate);
+        return price * (rising + rate * rising * (rising - 1) / 2) + (amount - rising) * maxPrice;
+    }
+    
+    @Override
+    public double sellTotal(MarketItem.Snapshot current, int amount) {
+        // Unit i earns p * (1 - i * rate) until it reaches the minimum price
+        double price = current.getSellPrice();
+        long falling = unclampedUnits(amount, (1 - minPrice / price) / rate);
+        return price * (falling - rate * falling * (falling - 1) / 2) + (amount - falling) * minPrice;
+    }
+    
+    /**
+     * Number of units, out of amount, whose index is below the clamp point
+     */
+    private long unclampedUnits(int amount, double clampIndex) {
+        if (rate <= 0 || Double.isNaN(clampIndex)) {
+            return amount;
+        }
+        return Math.max(0L, Math.min(amount, (long) Math.ceil(clampIndex)));
+    }
+}
@@ -0,0 +1,77 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * Exact price of an N-unit order along a pricing model's curve, taken from one snapshot
+ */
+public final class PriceQuote {
+    
+    public enum Side {
+        BUY,
+        SELL
+    }
+    
+    private final Side side;
+    private final int amount;
+    private final double total;
+    private final double startPrice;
+    private final double endPrice;
+    private final MarketItem.Snapshot snapshot;
+    
+    public PriceQuote(Side side, int amount, double total, double startPrice, double endPrice, MarketItem.Snapshot snapshot) {
+        this.side = side;
+        this.amount = amount;
+        this.total = total;
+        this.startPrice = startPrice;
+        this.endPrice = endPrice;
+        this.snapshot = snapshot;
+    }
+    
+    public Side getSide() {
+        return side;
+    }
+    
+    public int getAmount() {
+        return amount;
+    }
+    
+    /**
+     * What the player pays for a buy, or receives for a sale
+     */
+    public double getTotal() {
+        return total;
+    }
+    
+    public double getAveragePrice() {
+        return amount > 0 ? total / amount : startPrice;
+    }
+    
+    /**
+     * Price of the first unit, the one shown in the market
+     */
+    public double getStartPrice() {
+        return startPrice;
+    }
+    
+    /**
+     * Price of the next unit once this order has gone through
+     */
+    public double getEndPrice() {
+        return endPrice;
+    }
+    
+    /**
+     * Change between the first unit and the next one after the order, as a fraction
+     */
+    public double getPriceImpact() {
+        return startPrice > 0 ? (endPrice - startPrice) / startPrice : 0.0;
+    }
+    
+    /**
+     * The snapshot this quote was computed from
+     */
+    public MarketItem.Snapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,119 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.config.MarketSettings;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves the pricing model of each category from config.yml.
+ * Models are rebuilt whenever the settings change, so the trade path only does a map lookup.
+ */
+public class PricingEngine {
+    
+    private final DynamicMarket plugin;
+    private volatile PricingModel defaultModel;
+    private volatile Map<String, PricingModel> categoryModels = Collections.emptyMap();
+    
+    public PricingEngine(DynamicMarket plugin) {
+        this.plugin = plugin;
+        reload(plugin.getConfigManager().getSettings());
+        plugin.getConfigManager().addSettingsListener(this::reload);
+    }
+    
+    /**
+     * Rebuilds every model from the current configuration
+     */
+    public void reload(MarketSettings settings) {
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        
+        PricingModel fallback = create(config.getString("market.pricing.default-model", LinearPricingModel.NAME), settings);
+        Map<String, PricingModel> models = new HashMap<>();
+        ConfigurationSection categories = config.getConfigurationSection("market.pricing.categories");
+        if (categories != null) {
+            for (String category : categories.getKeys(false)) {
+                models.put(category.toLowerCase(Locale.ROOT), create(categories.getString(category), settings));
+            }
+        }
+        
+        this.defaultModel = fallback;
+        this.categoryModels = Collections.unmodifiableMap(models);
+    }
+    
+    private PricingModel create(String name, MarketSettings settings) {
+        FileConfiguration config = plugin.getConfigManager().getConfig();
+        String key = name != null ? name.toLowerCase(Locale.ROOT) : LinearPricingModel.NAME;
+        double minPrice = settings.getMinPrice();
+        double maxPrice = settings.getMaxPrice();
+        
+        switch (key) {
+            case LinearPricingModel.NAME:
+                return new LinearPricingModel(settings.getPriceAdjustmentRate(), minPrice, maxPrice);
+            case ConstantProductPricingModel.NAME:
+                return new ConstantProductPricingModel(
+                    config.getDouble("market.pricing.amm.depth", 256.0), minPrice, maxPrice);
+            case ElasticityPricingModel.NAME:
+                return new ElasticityPricingModel(
+                    config.getDouble("market.pricing.elasticity.rate", 0.005),
+                    config.getDouble("market.pricing.elasticity.depth", 64.0), minPrice, maxPrice);
+            default:
+                plugin.getLogger().warning("Unknown pricing model '" + name + "', using " + LinearPricingModel.NAME);
+                return new LinearPricingModel(settings.getPriceAdjustmentRate(), minPrice, maxPrice);
+        }
+    }
+    
+    /**
+     * Model that prices items of the given category
+     */
+    public PricingModel getModel(String category) {
+        if (category != null) {
+            PricingModel model = categoryModels.get(category.toLowerCase(Locale.ROOT));
+            if (model != null) {
+                return model;
+            }
+        }
+        return defaultModel;
+    }
+    
+    /**
+     * Exact cost of buying amount units of the item in one order
+     */
+    public PriceQuote quoteBuy(MarketItem item, int amount) {
+        return quoteBuy(getModel(item.getCategory()), item.snapshot(), amount);
+    }
+    
+    /**
+     * Cost of buying amount units at the given snapshot
+     */
+    public static PriceQuote quoteBuy(PricingModel model, MarketItem.Snapshot snapshot, int amount) {
+        int units = Math.max(0, amount);
+        return new PriceQuote(PriceQuote.Side.BUY, units, model.buyTotal(snapshot, units),
+            snapshot.getBuyPrice(), model.afterBuy(snapshot, units).getBuyPrice(), snapshot);
+    }
+    
+    /**
+     * Exact proceeds of selling amount units of the item in one order
+     */
+    public PriceQuote quoteSell(MarketItem item, int amount) {
+        return quoteSell(getModel(item.getCategory()), item.snapshot(), amount);
+    }
+    
+    /**
+     * Proceeds of selling amount units at the given snapshot
+     */
+    public static PriceQuote quoteSell(PricingModel model, MarketItem.Snapshot snapshot, int amount) {
+        int units = Math.max(0, amount);
+        return new PriceQuote(PriceQuote.Side.SELL, units, model.sellTotal(snapshot, units),
+            snapshot.getSellPrice(), model.afterSell(snapshot, units).getSellPrice(), snapshot);
+    }
+    
+    public PricingModel getDefaultModel() {
+        return defaultModel;
+    }
+}
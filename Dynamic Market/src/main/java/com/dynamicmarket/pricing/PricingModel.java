@@ -0,0 +1,43 @@
+package com.dynamicmarket.pricing;
+
+import com.dynamicmarket.data.MarketItem;
+
+/**
+ * Decides how an item's prices move after a trade.
+ * Implementations are pure functions of the snapshot and are called inside a
+ * compare-and-swap loop, so they may run more than once and must not have side effects.
+ * Only the prices of the returned snapshot are used; stock and counters are
+ * maintained by MarketItem.
+ */
+public interface PricingModel {
+    
+    /**
+     * Name used to select this model in config.yml
+     */
+    String getName();
+    
+    /**
+     * Prices after the market sold amount units to a player
+     */
+    MarketItem.Snapshot afterBuy(MarketItem.Snapshot current, int amount);
+    
+    /**
+     * Prices after a player sold amount units to the market
+     */
+    MarketItem.Snapshot afterSell(MarketItem.Snapshot current, int amount);
+    
+    /**
+     * Exact cost of buying amount units in one order, summed along the price curve
+     * in constant time. How a single unit relates to the current buy price depends
+     * on the model: stepwise models charge it exactly, continuous ones integrate
+     * over the unit and charge slightly more.
+     */
+    double buyTotal(MarketItem.Snapshot current, int amount);
+    
+    /**
+     * Exact proceeds of selling amount units in one order, summed along the price
+     * curve in constant time. As with buyTotal, a single unit earns the current
+     * sell price in stepwise models and slightly less in continuous ones.
+     */
+    double sellTotal(MarketItem.Snapshot current, int amount);
+}
@@ -0,0 +1,69 @@
+package com.dynamicmarket.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Base class for backends pooled with HikariCP
+ */
+public abstract class HikariStorageBackend implements StorageBackend {
+
+    private final HikariDataSource dataSource;
+    private final int maximumPoolSize;
+
+    protected HikariStorageBackend(HikariConfig config, int maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+        config.setMaximumPoolSize(maximumPoolSize);
+        this.dataSource = new HikariDataSource(config);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !dataSource.isClosed();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? pool.getActiveConnections() : 0;
+    }
+
+    @Override
+    public int getIdleConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? pool.getIdleConnections() : 0;
+    }
+
+    @Override
+    public int getTotalConnections() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? pool.getTotalConnections() : 0;
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    @Override
+    public void close() {
+        if (!dataSource.isClosed()) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.dynamicmarket.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared MySQL or MariaDB server, so several servers can run one market
+ */
+public class MySQLStorageBackend extends HikariStorageBackend {
+
+    public MySQLStorageBackend(ConfigurationSection section) {
+        super(createConfig(section), Math.max(1, section.getInt("pool.max-connections", 10)));
+    }
+
+    /**
+     * Pool of another engine that speaks the MySQL dialect, such as H2 in MySQL mode
+     */
+    protected MySQLStorageBackend(HikariConfig config, int maximumPoolSize) {
+        super(config, maximumPoolSize);
+    }
+
+    private static HikariConfig createConfig(ConfigurationSection section) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("DynamicMarket-MySQL");
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setJdbcUrl("jdbc:mysql://" + section.getString("host", "localhost") + ":" + section.getInt("port", 3306)
+            + "/" + section.getString("database", "dynamicmarket"));
+        config.setUsername(section.getString("username", "root"));
+        config.setPassword(section.getString("password", ""));
+        config.setMinimumIdle(Math.max(1, section.getInt("pool.min-idle", 2)));
+        config.setConnectionTimeout(section.getLong("pool.connection-timeout", 30000L));
+        config.setIdleTimeout(section.getLong("pool.idle-timeout", 600000L));
+        config.setMaxLifetime(section.getLong("pool.max-lifetime", 1800000L));
+        config.setKeepaliveTime(section.getLong("pool.keepalive-time", 0L));
+
+        // Driver side prepared statement cache
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(section.getInt("pool.statement-cache-size", 250)));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+        config.addDataSourceProperty("cacheServerConfiguration", "true");
+        config.addDataSourceProperty("elideSetAutoCommits", "true");
+        config.addDataSourceProperty("maintainTimeStats", "false");
+        config.addDataSourceProperty("useSSL", String.valueOf(section.getBoolean("use-ssl", false)));
+        config.addDataSourceProperty("characterEncoding", "utf8");
+        return config;
+    }
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String upsert(String table, String keyColumn, String... columns) {
+        // REPLACE would delete and re-insert the row, so update in place instead
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+            .append(" (").append(keyColumn).append(", ").append(String.join(", ", columns))
+            .append(") VALUES (?").append(", ?".repeat(columns.length))
+            .append(") ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i]).append(" = VALUES(").append(columns[i]).append(')');
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public List<String> describeSettings() {
+        List<String> settings = new ArrayList<>();
+        settings.add("pool size = " + getMaximumPoolSize());
+        settings.add("prepared statement cache = enabled");
+        return settings;
+    }
+
+    @Override
+    public void checkpoint() {
+        // InnoDB checkpoints on its own
+    }
+
+    @Override
+    public void backupTo(File target) throws SQLException {
+        throw new SQLFeatureNotSupportedException("MySQL snapshots are taken with the server's own tools, e.g. mysqldump");
+    }
+
+    @Override
+    public String getInsertIgnore() {
+        return "INSERT IGNORE INTO";
+    }
+
+    @Override
+    public String getKeyType() {
+        return "VARCHAR(64)";
+    }
+
+    @Override
+    public String getAutoIncrementKey() {
+        return "BIGINT PRIMARY KEY AUTO_INCREMENT";
+    }
+}
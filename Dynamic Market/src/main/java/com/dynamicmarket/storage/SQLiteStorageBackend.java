@@ -0,0 +1,118 @@
+package com.dynamicmarket.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local SQLite file. SQLite allows a single writer at a time, so the pool stays
+ * small and writers wait on busy_timeout instead of failing with SQLITE_BUSY.
+ * In WAL mode readers no longer block that writer.
+ */
+public class SQLiteStorageBackend extends HikariStorageBackend {
+
+    private static final String[] REPORTED_PRAGMAS = {
+        "journal_mode", "synchronous", "mmap_size", "cache_size", "temp_store", "busy_timeout"
+    };
+
+    public SQLiteStorageBackend(File databaseFile, ConfigurationSection section) {
+        super(createConfig(databaseFile, section), section != null ? Math.max(1, section.getInt("pool.max-connections", 4)) : 4);
+    }
+
+    private static HikariConfig createConfig(File databaseFile, ConfigurationSection section) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("DynamicMarket-SQLite");
+        config.setDriverClassName("org.sqlite.JDBC");
+        config.setJdbcUrl("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        config.setMinimumIdle(1);
+        config.setConnectionTimeout(section != null ? section.getLong("pool.connection-timeout", 30000L) : 30000L);
+        // SQLite connections are cheap local handles; keep them for the whole session
+        config.setIdleTimeout(0L);
+        config.setMaxLifetime(0L);
+
+        // sqlite-jdbc reads pragmas from the driver properties on every new connection
+        config.addDataSourceProperty("busy_timeout", String.valueOf(section != null ? section.getInt("busy-timeout", 5000) : 5000));
+        config.addDataSourceProperty("journal_mode", pragma(section, "journal-mode", "WAL").toUpperCase());
+        config.addDataSourceProperty("synchronous", pragma(section, "synchronous", "NORMAL").toUpperCase());
+        config.addDataSourceProperty("mmap_size", pragma(section, "mmap-size", "268435456"));
+        // Negative values are KiB rather than pages
+        config.addDataSourceProperty("cache_size", pragma(section, "cache-size", "-16384"));
+        config.addDataSourceProperty("temp_store", pragma(section, "temp-store", "MEMORY").toUpperCase());
+        return config;
+    }
+
+    private static String pragma(ConfigurationSection section, String key, String defaultValue) {
+        return section != null ? section.getString("pragmas." + key, defaultValue) : defaultValue;
+    }
+
+    @Override
+    public List<String> describeSettings() {
+        List<String> settings = new ArrayList<>();
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement()) {
+            for (String pragma : REPORTED_PRAGMAS) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                    settings.add(pragma + " = " + (rs.next() ? rs.getString(1) : "?"));
+                }
+            }
+        } catch (SQLException e) {
+            settings.add("unavailable: " + e.getMessage());
+        }
+        return settings;
+    }
+
+    /**
+     * Copies committed WAL pages back into the database without waiting on readers or writers
+     */
+    @Override
+    public void checkpoint() throws SQLException {
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(PASSIVE)");
+        }
+    }
+
+    /**
+     * VACUUM INTO reads one consistent snapshot; in WAL mode writers carry on meanwhile
+     */
+    @Override
+    public void backupTo(File target) throws SQLException {
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("VACUUM INTO '" + target.getAbsolutePath().replace("'", "''") + "'");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public String upsert(String table, String keyColumn, String... columns) {
+        return "INSERT OR REPLACE INTO " + table + " (" + keyColumn + ", " + String.join(", ", columns)
+            + ") VALUES (?" + ", ?".repeat(columns.length) + ")";
+    }
+
+    @Override
+    public String getInsertIgnore() {
+        return "INSERT OR IGNORE INTO";
+    }
+
+    @Override
+    public String getKeyType() {
+        return "TEXT";
+    }
+
+    @Override
+    public String getAutoIncrementKey() {
+        return "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+}
@@ -0,0 +1,316 @@
+package com.dynamicmarket.storage;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Versioned schema upgrades. The applied version is kept in the schema_version table
+ * and every migration above it runs once, in order.
+ *
+ * MySQL commits every DDL statement on its own, so a migration that fails halfway is
+ * not rolled back there. Each step therefore checks the schema first and is skipped if
+ * its work is already done, which lets a failed migration simply run again.
+ */
+public class SchemaMigrations {
+
+    private final StorageBackend backend;
+    private final Logger logger;
+    private final List<List<Step>> migrations;
+
+    public SchemaMigrations(StorageBackend backend, Logger logger) {
+        this.backend = backend;
+        this.logger = logger;
+        this.migrations = new ArrayList<>();
+
+        // Version 1: the original tables, created by DatabaseManager before migrating
+        migrations.add(List.of());
+
+        // Version 2: compact, indexed transaction log with interned item and category ids
+        migrations.add(List.of(
+            Step.unless(tableExists("item_refs"), """
+                CREATE TABLE item_refs (
+                    id %s,
+                    name %s NOT NULL UNIQUE
+                )
+                """.formatted(backend.getAutoIncrementKey(), backend.getKeyType())),
+            Step.unless(tableExists("category_refs"), """
+                CREATE TABLE category_refs (
+                    id %s,
+                    name %s NOT NULL UNIQUE
+                )
+                """.formatted(backend.getAutoIncrementKey(), backend.getKeyType())),
+            // The copy only runs while the old log, keyed by item name, is still there
+            Step.when(columnExists("transactions", "item_id"),
+                backend.getInsertIgnore() + " item_refs (name) SELECT DISTINCT item_id FROM transactions"),
+            Step.when(columnExists("transactions", "item_id"),
+                backend.getInsertIgnore() + " category_refs (name) SELECT DISTINCT category FROM transactions"),
+            // Throws away a half-made copy from an earlier attempt
+            Step.when(columnExists("transactions", "item_id").and(tableExists("transactions_v2")),
+                "DROP TABLE transactions_v2"),
+            Step.when(columnExists("transactions", "item_id"), """
+                CREATE TABLE transactions_v2 (
+                    id %s,
+                    player_uuid %s NOT NULL,
+                    player_name TEXT NOT NULL,
+                    item_ref INTEGER NOT NULL,
+                    category_ref INTEGER NOT NULL,
+                    transaction_type SMALLINT NOT NULL,
+                    amount INTEGER NOT NULL,
+                    price REAL NOT NULL,
+                    timestamp BIGINT NOT NULL
+                )
+                """.formatted(backend.getAutoIncrementKey(), backend.getKeyType())),
+            Step.when(columnExists("transactions", "item_id"), """
+                INSERT INTO transactions_v2
+                (id, player_uuid, player_name, item_ref, category_ref, transaction_type, amount, price, timestamp)
+                SELECT t.id, t.player_uuid, t.player_name, i.id, c.id,
+                    CASE t.transaction_type WHEN 'BUY' THEN 0 WHEN 'SELL' THEN 1 ELSE 2 END,
+                    t.amount, t.price, t.timestamp
+                FROM transactions t
+                JOIN item_refs i ON i.name = t.item_id
+                JOIN category_refs c ON c.name = t.category
+                """),
+            Step.when(columnExists("transactions", "item_id"), "DROP TABLE transactions"),
+            Step.when(tableExists("transactions_v2").and(tableExists("transactions").negate()),
+                "ALTER TABLE transactions_v2 RENAME TO transactions"),
+            // Trailing amount makes the top-selling aggregate an index-only scan
+            Step.unless(indexExists("transactions", "idx_transactions_item_type_time"),
+                "CREATE INDEX idx_transactions_item_type_time ON transactions (item_ref, transaction_type, timestamp, amount)"),
+            Step.unless(indexExists("transactions", "idx_transactions_player_time"),
+                "CREATE INDEX idx_transactions_player_time ON transactions (player_uuid, timestamp)"),
+            Step.unless(indexExists("transactions", "idx_transactions_time"),
+                "CREATE INDEX idx_transactions_time ON transactions (timestamp)")
+        ));
+
+        // Version 3: rolled-up OHLC price history, one row per item, resolution and bucket
+        migrations.add(List.of(
+            Step.unless(tableExists("price_candles"), """
+                CREATE TABLE price_candles (
+                    item_ref INTEGER NOT NULL,
+                    resolution SMALLINT NOT NULL,
+                    bucket_start BIGINT NOT NULL,
+                    open_price REAL NOT NULL,
+                    high_price REAL NOT NULL,
+                    low_price REAL NOT NULL,
+                    close_price REAL NOT NULL,
+                    volume BIGINT NOT NULL,
+                    PRIMARY KEY (item_ref, resolution, bucket_start)
+                )
+                """),
+            // Lets retention deletes find expired buckets without scanning every item
+            Step.unless(indexExists("price_candles", "idx_price_candles_time"),
+                "CREATE INDEX idx_price_candles_time ON price_candles (resolution, bucket_start)")
+        ));
+
+        // Version 4: resting limit orders of the order book and items waiting for their buyers
+        migrations.add(List.of(
+            Step.unless(tableExists("market_orders"), """
+                CREATE TABLE market_orders (
+                    id BIGINT NOT NULL PRIMARY KEY,
+                    player_uuid %1$s NOT NULL,
+                    player_name TEXT NOT NULL,
+                    item_ref INTEGER NOT NULL,
+                    material TEXT NOT NULL,
+                    side SMALLINT NOT NULL,
+                    price BIGINT NOT NULL,
+                    amount INTEGER NOT NULL,
+                    remaining INTEGER NOT NULL,
+                    created_at BIGINT NOT NULL
+                )
+                """.formatted(backend.getKeyType())),
+            Step.unless(tableExists("order_claims"), """
+                CREATE TABLE order_claims (
+                    player_uuid %1$s NOT NULL,
+                    material %1$s NOT NULL,
+                    amount INTEGER NOT NULL,
+                    PRIMARY KEY (player_uuid, material)
+                )
+                """.formatted(backend.getKeyType()))
+        ));
+
+        // Version 5: stock version for optimistic stock reservation across servers
+        migrations.add(List.of(
+            Step.unless(columnExists("market_items", "stock_version"),
+                "ALTER TABLE market_items ADD COLUMN stock_version BIGINT NOT NULL DEFAULT 0")
+        ));
+
+        // Version 6: market generation, moved on by every write to the market tables
+        migrations.add(List.of(
+            Step.unless(tableExists("market_meta"), """
+                CREATE TABLE market_meta (
+                    name %1$s NOT NULL PRIMARY KEY,
+                    value BIGINT NOT NULL
+                )
+                """.formatted(backend.getKeyType())),
+            Step.when(connection -> true,
+                backend.getInsertIgnore() + " market_meta (name, value) VALUES ('generation', 0)")
+        ));
+
+        // Version 7: stock each server has leased, so a server that never returns it does not lose it
+        migrations.add(List.of(
+            Step.unless(tableExists("stock_leases"), """
+                CREATE TABLE stock_leases (
+                    owner %1$s NOT NULL,
+                    item_id %1$s NOT NULL,
+                    units INTEGER NOT NULL,
+                    expires_at BIGINT NOT NULL,
+                    PRIMARY KEY (owner, item_id)
+                )
+                """.formatted(backend.getKeyType())),
+            Step.unless(indexExists("stock_leases", "idx_stock_leases_expiry"),
+                "CREATE INDEX idx_stock_leases_expiry ON stock_leases (expires_at)")
+        ));
+    }
+
+    public int getLatestVersion() {
+        return migrations.size();
+    }
+
+    /**
+     * Applies every pending migration
+     * @return the schema version after migrating
+     */
+    public int migrate(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INTEGER NOT NULL)");
+        }
+
+        int current = readVersion(connection);
+        for (int version = current + 1; version <= migrations.size(); version++) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                for (Step step : migrations.get(version - 1)) {
+                    if (step.condition.test(connection)) {
+                        stmt.execute(step.sql);
+                    }
+                }
+                writeVersion(connection, version);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Schema migration to version " + version + " failed", e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            logger.info("Database schema migrated to version " + version);
+            current = version;
+        }
+        return current;
+    }
+
+    private int readVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void writeVersion(Connection connection, int version) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM schema_version");
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement("INSERT INTO schema_version (version) VALUES (?)")) {
+            pstmt.setInt(1, version);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static Condition tableExists(String table) {
+        return connection -> findTable(connection, table) != null;
+    }
+
+    private static Condition columnExists(String table, String column) {
+        return connection -> {
+            String stored = findTable(connection, table);
+            if (stored == null) {
+                return false;
+            }
+            try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, stored, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Condition indexExists(String table, String index) {
+        return connection -> {
+            String stored = findTable(connection, table);
+            if (stored == null) {
+                return false;
+            }
+            try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, stored, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * The table's name as the database stores it, which may differ in case
+     * @return null if there is no such table
+     */
+    private static String findTable(Connection connection, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getTables(connection.getCatalog(), null, null, null)) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                if (table.equalsIgnoreCase(name)) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+
+        boolean test(Connection connection) throws SQLException;
+
+        default Condition and(Condition other) {
+            return connection -> test(connection) && other.test(connection);
+        }
+
+        default Condition negate() {
+            return connection -> !test(connection);
+        }
+    }
+
+    /**
+     * One statement of a migration and the schema state it still has to run in
+     */
+    private static final class Step {
+
+        private final Condition condition;
+        private final String sql;
+
+        private Step(Condition condition, String sql) {
+            this.condition = condition;
+            this.sql = sql;
+        }
+
+        static Step when(Condition condition, String sql) {
+            return new Step(condition, sql);
+        }
+
+        static Step unless(Condition done, String sql) {
+            return new Step(done.negate(), sql);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.dynamicmarket.storage;
+
+import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Material;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of the market written on clean shutdown and memory-mapped on the next start,
+ * so the catalog loads without a database pass. The header holds the fingerprint of the
+ * market tables it was taken from; a copy whose fingerprint no longer matches is stale.
+ *
+ * Layout, big-endian: magic, format version, fingerprint, then the material names, the
+ * categories and the items, which refer to materials and categories by index, and a
+ * CRC32 of everything before it.
+ */
+public final class StartupSnapshot {
+
+    private static final int MAGIC = 0x444D4B53; // "DMKS"
+    private static final int FORMAT = 1;
+
+    private StartupSnapshot() {
+    }
+
+    /**
+     * Writes the market to a temporary file and moves it into place
+     */
+    public static void write(File file, String fingerprint, Collection<MarketCategory> categories) throws IOException {
+        List<Material> materials = new ArrayList<>();
+        Map<Material, Integer> materialIndex = new HashMap<>();
+        // Items refer to the category that holds them, by its position in the file
+        List<MarketItem> items = new ArrayList<>();
+        List<Integer> itemCategories = new ArrayList<>();
+        int position = 0;
+        for (MarketCategory category : categories) {
+            index(category.getIcon(), materials, materialIndex);
+            for (MarketItem item : category.getAllItems()) {
+                index(item.getMaterial(), materials, materialIndex);
+                items.add(item);
+                itemCategories.add(position);
+            }
+            position++;
+        }
+
+        File partial = new File(file.getParentFile(), file.getName() + ".part");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partial.toPath()), 65536), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            writeString(out, fingerprint);
+
+            out.writeInt(materials.size());
+            for (Material material : materials) {
+                writeString(out, material.name());
+            }
+
+            out.writeInt(categories.size());
+            for (MarketCategory category : categories) {
+                writeString(out, category.getName());
+                out.writeInt(materialIndex.get(category.getIcon()));
+                writeString(out, category.getDisplayName());
+                writeStrings(out, category.getDescription());
+                out.writeInt(category.getGuiSlot());
+            }
+
+            out.writeInt(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                MarketItem item = items.get(i);
+                MarketItem.Snapshot state = item.snapshot();
+                writeString(out, item.getId());
+                out.writeInt(itemCategories.get(i));
+                out.writeInt(materialIndex.get(item.getMaterial()));
+                writeString(out, item.getDisplayName());
+                writeStrings(out, item.getLore());
+                out.writeDouble(state.getBuyPrice());
+                out.writeDouble(state.getSellPrice());
+                out.writeInt(state.getStock());
+                out.writeInt(state.getTotalSold());
+                out.writeInt(state.getTotalBought());
+                out.writeLong(state.getLastUpdated());
+            }
+
+            out.flush();
+            // Taken before the checksum itself goes through the stream
+            out.writeInt((int) crc.getValue());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial.toPath());
+            throw e;
+        }
+        Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the file and rebuilds the market from it; items come back clean
+     * @return the categories by lower-case name, or null if the file was taken from other data
+     * @throws IOException if the file is unreadable, corrupt or of another format
+     */
+    public static Map<String, MarketCategory> read(File file, String fingerprint) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.limit() < 12 || buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a market snapshot");
+            }
+            int format = buffer.getInt();
+            if (format != FORMAT) {
+                throw new IOException(file.getName() + " has snapshot format " + format + ", expected " + FORMAT);
+            }
+            // One bulk copy out of the mapping: at startup none of this is compiled yet, and
+            // decoding an array costs far less there than a buffer call for every field
+            byte[] data = new byte[buffer.limit() - 4];
+            buffer.get(0, data);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != buffer.getInt(data.length)) {
+                throw new IOException(file.getName() + " does not match its checksum");
+            }
+
+            Reader reader = new Reader(data, buffer.position());
+            if (!fingerprint.equals(reader.string())) {
+                return null;
+            }
+
+            Material[] materials = new Material[reader.count()];
+            for (int i = 0; i < materials.length; i++) {
+                // Null if the server no longer knows the material; its items are skipped
+                materials[i] = Material.getMaterial(reader.string());
+            }
+
+            MarketCategory[] categories = new MarketCategory[reader.count()];
+            Map<String, MarketCategory> loaded = new ConcurrentHashMap<>();
+            for (int i = 0; i < categories.length; i++) {
+                String name = reader.string();
+                Material icon = materials[reader.readInt()];
+                String displayName = reader.string();
+                List<String> description = reader.strings();
+                int guiSlot = reader.readInt();
+                categories[i] = new MarketCategory(name, icon != null ? icon : Material.CHEST, displayName, description, guiSlot);
+                loaded.put(name.toLowerCase(), categories[i]);
+            }
+
+            int itemCount = reader.count();
+            for (int i = 0; i < itemCount; i++) {
+                String id = reader.string();
+                MarketCategory category = categories[reader.readInt()];
+                Material material = materials[reader.readInt()];
+                String displayName = reader.string();
+                List<String> lore = reader.strings();
+                double buyPrice = reader.readDouble();
+                double sellPrice = reader.readDouble();
+                int stock = reader.readInt();
+                int totalSold = reader.readInt();
+                int totalBought = reader.readInt();
+                long lastUpdated = reader.readLong();
+                if (material == null) {
+                    continue;
+                }
+
+                category.addItem(new MarketItem(id, material, displayName, lore, category.getName(),
+                    new MarketItem.Snapshot(buyPrice, sellPrice, stock, totalSold, totalBought, lastUpdated)));
+            }
+            return loaded;
+        } catch (RuntimeException e) {
+            // Out-of-range counts or indexes from a damaged file
+            throw new IOException(file.getName() + " is damaged", e);
+        }
+    }
+
+    private static void index(Material material, List<Material> materials, Map<Material, Integer> materialIndex) {
+        if (materialIndex.putIfAbsent(material, materials.size()) == null) {
+            materials.add(material);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Big-endian fields read in order from the copied bytes of the file
+     */
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private int readInt() {
+            int p = position;
+            position = p + 4;
+            return (data[p] << 24) | ((data[p + 1] & 0xFF) << 16) | ((data[p + 2] & 0xFF) << 8) | (data[p + 3] & 0xFF);
+        }
+
+        private long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        private double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        private int count() throws IOException {
+            int count = readInt();
+            if (count < 0 || count > data.length - position) {
+                throw new IOException("Invalid count " + count);
+            }
+            return count;
+        }
+
+        private String string() throws IOException {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > data.length - position) {
+                throw new IOException("Invalid string length " + length);
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private List<String> strings() throws IOException {
+            int size = readInt();
+            if (size < 0) {
+                return null;
+            }
+            if (size > data.length - position) {
+                throw new IOException("Invalid list size " + size);
+            }
+            List<String> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(string());
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.dynamicmarket.storage;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+/**
+ * Pooled connection source plus the SQL dialect differences of one database engine
+ */
+public interface StorageBackend {
+
+    /**
+     * Short name of the backend, as used in config.yml
+     */
+    String getName();
+
+    /**
+     * Borrows a connection from the pool; callers must close it to return it
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Builds a statement that inserts a row or updates the one with the same key.
+     * Parameters are bound in the order of the key column followed by the columns.
+     */
+    String upsert(String table, String keyColumn, String... columns);
+
+    /**
+     * Statement prefix that inserts a row unless one with the same unique key exists
+     */
+    String getInsertIgnore();
+
+    /**
+     * Column type used for text primary and foreign keys
+     */
+    String getKeyType();
+
+    /**
+     * Column definition of an auto-incrementing integer primary key
+     */
+    String getAutoIncrementKey();
+
+    /**
+     * Effective engine settings, one "name = value" entry each, for the startup report
+     */
+    List<String> describeSettings();
+
+    /**
+     * Runs periodic engine maintenance such as a WAL checkpoint; a no-op where not needed
+     */
+    void checkpoint() throws SQLException;
+
+    /**
+     * Writes a consistent copy of the whole database to a new file without blocking writers
+     * @throws SQLFeatureNotSupportedException where the engine cannot snapshot to a file
+     */
+    void backupTo(File target) throws SQLException;
+
+    boolean isRunning();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getThreadsAwaitingConnection();
+
+    int getMaximumPoolSize();
+
+    void close();
+}
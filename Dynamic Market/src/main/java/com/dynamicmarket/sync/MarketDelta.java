@@ -0,0 +1,68 @@
+package com.dynamicmarket.sync;
+
+/**
+ * Change of one item on one server since its last publish.
+ * Stock and counters are additive, so peers can apply them in any order;
+ * prices are last-writer-wins, ordered by the per-item price version, a hybrid
+ * clock in milliseconds.
+ */
+public final class MarketDelta {
+
+    private final String itemId;
+    private final int stockDelta;
+    private final int soldDelta;
+    private final int boughtDelta;
+    private final long timestamp;
+    // 0 when the prices did not change
+    private final long priceVersion;
+    private final double buyPrice;
+    private final double sellPrice;
+
+    public MarketDelta(String itemId, int stockDelta, int soldDelta, int boughtDelta, long timestamp,
+                       long priceVersion, double buyPrice, double sellPrice) {
+        this.itemId = itemId;
+        this.stockDelta = stockDelta;
+        this.soldDelta = soldDelta;
+        this.boughtDelta = boughtDelta;
+        this.timestamp = timestamp;
+        this.priceVersion = priceVersion;
+        this.buyPrice = buyPrice;
+        this.sellPrice = sellPrice;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public int getStockDelta() {
+        return stockDelta;
+    }
+
+    public int getSoldDelta() {
+        return soldDelta;
+    }
+
+    public int getBoughtDelta() {
+        return boughtDelta;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean hasPrices() {
+        return priceVersion > 0;
+    }
+
+    public long getPriceVersion() {
+        return priceVersion;
+    }
+
+    public double getBuyPrice() {
+        return buyPrice;
+    }
+
+    public double getSellPrice() {
+        return sellPrice;
+    }
+}
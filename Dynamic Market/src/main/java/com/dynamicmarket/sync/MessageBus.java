@@ -0,0 +1,24 @@
+package com.dynamicmarket.sync;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport that carries replication packets between the servers of one network.
+ * Delivery may be lossy or reordered; the replicator detects gaps and duplicates itself.
+ */
+public interface MessageBus {
+
+    /**
+     * Starts listening; received packets are passed to the receiver on any thread
+     */
+    void start(Consumer<byte[]> receiver);
+
+    /**
+     * Sends a packet to every other server; may be called from any thread
+     */
+    void publish(byte[] message);
+
+    void close();
+
+    String getName();
+}
@@ -0,0 +1,119 @@
+package com.dynamicmarket.sync;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Sends packets through the proxy with the BungeeCord "Forward" message, which
+ * Velocity supports as well. Plugin messages travel over a player connection, so
+ * packets published while this server is empty wait for the next player.
+ */
+public class PluginMessageBus implements MessageBus, PluginMessageListener {
+
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "DynamicMarketSync";
+    private static final int MAX_PENDING = 1024;
+
+    private final Plugin plugin;
+    private volatile Consumer<byte[]> receiver;
+
+    // Main thread only, or the sync thread while the plugin is disabling
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+
+    public PluginMessageBus(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        byte[] forward = wrap(message);
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> send(forward));
+        } else {
+            // Last flush while disabling; send straight away if anyone is still connected
+            send(forward);
+        }
+    }
+
+    private void send(byte[] forward) {
+        if (pending.size() >= MAX_PENDING) {
+            // Peers will report the gap
+            pending.pollFirst();
+        }
+        pending.addLast(forward);
+
+        Iterator<? extends Player> players = Bukkit.getOnlinePlayers().iterator();
+        if (!players.hasNext()) {
+            return;
+        }
+        Player carrier = players.next();
+        byte[] next;
+        while ((next = pending.pollFirst()) != null) {
+            carrier.sendPluginMessage(plugin, CHANNEL, next);
+        }
+    }
+
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        Consumer<byte[]> target = receiver;
+        if (!CHANNEL.equals(channel) || target == null) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+            if (!SUBCHANNEL.equals(in.readUTF())) {
+                return;
+            }
+            byte[] payload = new byte[in.readUnsignedShort()];
+            in.readFully(payload);
+            target.accept(payload);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Dropped a malformed market sync message", e);
+        }
+    }
+
+    private static byte[] wrap(byte[] message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(message.length);
+            out.write(message);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin);
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin);
+        receiver = null;
+    }
+
+    @Override
+    public String getName() {
+        return "plugin-messaging";
+    }
+}
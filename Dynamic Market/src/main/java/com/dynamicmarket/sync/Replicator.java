@@ -0,0 +1,364 @@
+package com.dynamicmarket.sync;
+
+import com.dynamicmarket.data.MarketItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the market of this server in step with its peers.
+ * Local changes are found by diffing each changed item against the state last
+ * published for it, so many trades collapse into one delta per flush. Received
+ * deltas move both the item and that baseline, so they are never echoed back.
+ * Price versions come from a hybrid clock, the wall clock or one past the last
+ * version seen, so a server that restarts with no memory of them still wins.
+ * Baselines and peer sequences are owned by the sync thread and need no locks.
+ */
+public class Replicator {
+
+    // Keeps packets well under the 32 KiB plugin message limit
+    private static final int MAX_DELTAS_PER_PACKET = 256;
+
+    private final UUID origin;
+    private final MessageBus bus;
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+    private final LongSupplier clock;
+
+    // Items changed since the last flush; added from any thread
+    private final Set<MarketItem> changed = ConcurrentHashMap.newKeySet();
+
+    // Sync thread only
+    private final Map<String, Baseline> baselines = new HashMap<>();
+    private final Map<UUID, Long> peerSequences = new HashMap<>();
+    private long sequence;
+
+    // Metrics
+    private final AtomicLong publishedPackets = new AtomicLong();
+    private final AtomicLong publishedDeltas = new AtomicLong();
+    private final AtomicLong appliedDeltas = new AtomicLong();
+    private final AtomicLong stalePrices = new AtomicLong();
+    private final AtomicLong gaps = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong unknownItems = new AtomicLong();
+    private volatile int peerCount;
+
+    public Replicator(UUID origin, MessageBus bus, Logger logger) {
+        this(origin, bus, logger, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock milliseconds that keep rising across restarts, the wall clock outside tests
+     */
+    Replicator(UUID origin, MessageBus bus, Logger logger, LongSupplier clock) {
+        this.origin = origin;
+        this.bus = bus;
+        this.logger = logger;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DynamicMarket-Sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long flushIntervalMillis) {
+        bus.start(message -> execute(() -> receive(message)));
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes what is left and closes the bus
+     */
+    public void shutdown() {
+        execute(this::flush);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Market sync did not finish its last flush in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        bus.close();
+    }
+
+    /**
+     * Starts replicating an item from its current state; replaces any item with the same id
+     */
+    public void track(MarketItem item) {
+        execute(() -> baselines.put(item.getId(), new Baseline(item)));
+    }
+
+    /**
+     * Starts replicating an item that replaces the one with the same id, as after a restore.
+     * The baseline keeps what peers last saw, so the next flush publishes the replacement's
+     * state as an ordinary change, with prices that win over any they hold.
+     */
+    public void adopt(MarketItem item) {
+        execute(() -> {
+            Baseline baseline = baselines.get(item.getId());
+            if (baseline == null) {
+                baselines.put(item.getId(), new Baseline(item));
+                return;
+            }
+            baseline.item = item;
+            changed.add(item);
+        });
+    }
+
+    public void untrack(MarketItem item) {
+        execute(() -> {
+            Baseline baseline = baselines.get(item.getId());
+            if (baseline != null && baseline.item == item) {
+                baselines.remove(item.getId());
+            }
+        });
+    }
+
+    /**
+     * Notes a change; cheap enough to call from the item change listener
+     */
+    public void onItemChanged(MarketItem item) {
+        changed.add(item);
+    }
+
+    /**
+     * Flushes now and waits for it and every task queued before it, such as received packets
+     */
+    void flushAndWait() throws InterruptedException, ExecutionException {
+        executor.submit(this::flush).get();
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Market sync task failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nothing more is published
+        }
+    }
+
+    private void flush() {
+        List<MarketDelta> deltas = new ArrayList<>();
+        Iterator<MarketItem> iterator = changed.iterator();
+        while (iterator.hasNext()) {
+            MarketItem item = iterator.next();
+            iterator.remove();
+
+            Baseline baseline = baselines.get(item.getId());
+            if (baseline == null || baseline.item != item) {
+                continue;
+            }
+            MarketDelta delta = baseline.diff(item.snapshot());
+            if (delta != null) {
+                deltas.add(delta);
+            }
+        }
+
+        for (int from = 0; from < deltas.size(); from += MAX_DELTAS_PER_PACKET) {
+            List<MarketDelta> batch = new ArrayList<>(deltas.subList(from, Math.min(deltas.size(), from + MAX_DELTAS_PER_PACKET)));
+            SyncPacket packet = new SyncPacket(origin, ++sequence, batch);
+            try {
+                bus.publish(packet.encode());
+                publishedPackets.incrementAndGet();
+                publishedDeltas.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Could not publish market changes over " + bus.getName(), e);
+            }
+        }
+    }
+
+    private void receive(byte[] message) {
+        SyncPacket packet;
+        try {
+            packet = SyncPacket.decode(message);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Dropped an unreadable market sync packet", e);
+            return;
+        }
+        if (packet.getOrigin().equals(origin)) {
+            return;
+        }
+
+        Long last = peerSequences.get(packet.getOrigin());
+        if (last != null) {
+            if (packet.getSequence() <= last) {
+                duplicates.incrementAndGet();
+                return;
+            }
+            if (packet.getSequence() > last + 1) {
+                // Lost changes stay lost until the next reload from the database
+                gaps.incrementAndGet();
+                logger.warning("Missed " + (packet.getSequence() - last - 1) + " market sync packets from " + packet.getOrigin());
+            }
+        }
+        peerSequences.put(packet.getOrigin(), packet.getSequence());
+        peerCount = peerSequences.size();
+
+        for (MarketDelta delta : packet.getDeltas()) {
+            Baseline baseline = baselines.get(delta.getItemId());
+            if (baseline == null) {
+                unknownItems.incrementAndGet();
+                continue;
+            }
+            baseline.apply(delta, packet.getOrigin());
+            appliedDeltas.incrementAndGet();
+        }
+    }
+
+    public UUID getOrigin() {
+        return origin;
+    }
+
+    public String getBusName() {
+        return bus.getName();
+    }
+
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    public int getPendingCount() {
+        return changed.size();
+    }
+
+    public long getPublishedPacketCount() {
+        return publishedPackets.get();
+    }
+
+    public long getPublishedDeltaCount() {
+        return publishedDeltas.get();
+    }
+
+    public long getAppliedDeltaCount() {
+        return appliedDeltas.get();
+    }
+
+    /**
+     * Received prices that lost to a newer local or peer price
+     */
+    public long getStalePriceCount() {
+        return stalePrices.get();
+    }
+
+    public long getGapCount() {
+        return gaps.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public long getUnknownItemCount() {
+        return unknownItems.get();
+    }
+
+    /**
+     * Item state as last published or received, plus the version of its current prices
+     */
+    private final class Baseline {
+
+        private MarketItem item;
+        private int stock;
+        private int totalSold;
+        private int totalBought;
+        private double buyPrice;
+        private double sellPrice;
+        // Prices with the higher version win; ties go to the higher origin
+        private long priceVersion;
+        private UUID priceOrigin = origin;
+
+        private Baseline(MarketItem item) {
+            this.item = item;
+            MarketItem.Snapshot snapshot = item.snapshot();
+            this.stock = snapshot.getStock();
+            this.totalSold = snapshot.getTotalSold();
+            this.totalBought = snapshot.getTotalBought();
+            this.buyPrice = snapshot.getBuyPrice();
+            this.sellPrice = snapshot.getSellPrice();
+        }
+
+        /**
+         * Takes the local change since the last publish
+         * @return the delta, or null if nothing replicated changed
+         */
+        private MarketDelta diff(MarketItem.Snapshot current) {
+            int stockDelta = current.getStock() - stock;
+            int soldDelta = current.getTotalSold() - totalSold;
+            int boughtDelta = current.getTotalBought() - totalBought;
+            boolean pricesChanged = current.getBuyPrice() != buyPrice || current.getSellPrice() != sellPrice;
+            if (stockDelta == 0 && soldDelta == 0 && boughtDelta == 0 && !pricesChanged) {
+                return null;
+            }
+
+            stock = current.getStock();
+            totalSold = current.getTotalSold();
+            totalBought = current.getTotalBought();
+            long version = 0;
+            if (pricesChanged) {
+                buyPrice = current.getBuyPrice();
+                sellPrice = current.getSellPrice();
+                // Hybrid clock: never behind the wall clock, the persisted change time or any version seen
+                version = Math.max(Math.max(clock.getAsLong(), current.getLastUpdated()), priceVersion + 1);
+                priceVersion = version;
+                priceOrigin = origin;
+            }
+            return new MarketDelta(item.getId(), stockDelta, soldDelta, boughtDelta, current.getLastUpdated(),
+                version, buyPrice, sellPrice);
+        }
+
+        private void apply(MarketDelta delta, UUID from) {
+            boolean pricesWin = delta.hasPrices() && (delta.getPriceVersion() > priceVersion
+                || (delta.getPriceVersion() == priceVersion && from.compareTo(priceOrigin) > 0));
+            if (delta.hasPrices() && !pricesWin) {
+                stalePrices.incrementAndGet();
+            }
+
+            // Stock is clamped at zero, so remember what was really applied
+            int[] appliedStock = new int[1];
+            item.update(s -> {
+                int newStock = Math.max(0, s.getStock() + delta.getStockDelta());
+                appliedStock[0] = newStock - s.getStock();
+                return new MarketItem.Snapshot(
+                    pricesWin ? delta.getBuyPrice() : s.getBuyPrice(),
+                    pricesWin ? delta.getSellPrice() : s.getSellPrice(),
+                    newStock,
+                    s.getTotalSold() + delta.getSoldDelta(),
+                    s.getTotalBought() + delta.getBoughtDelta(),
+                    Math.max(s.getLastUpdated(), delta.getTimestamp()));
+            });
+
+            stock += appliedStock[0];
+            totalSold += delta.getSoldDelta();
+            totalBought += delta.getBoughtDelta();
+            if (pricesWin) {
+                buyPrice = delta.getBuyPrice();
+                sellPrice = delta.getSellPrice();
+                priceVersion = delta.getPriceVersion();
+                priceOrigin = from;
+            }
+        }
+    }
+}
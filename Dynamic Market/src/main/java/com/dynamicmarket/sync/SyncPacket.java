@@ -0,0 +1,99 @@
+package com.dynamicmarket.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Batch of deltas from one server, numbered per origin so peers can spot lost or repeated packets
+ */
+public final class SyncPacket {
+
+    private static final byte FORMAT = 1;
+
+    private final UUID origin;
+    private final long sequence;
+    private final List<MarketDelta> deltas;
+
+    public SyncPacket(UUID origin, long sequence, List<MarketDelta> deltas) {
+        this.origin = origin;
+        this.sequence = sequence;
+        this.deltas = Collections.unmodifiableList(deltas);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + deltas.size() * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(origin.getMostSignificantBits());
+            out.writeLong(origin.getLeastSignificantBits());
+            out.writeLong(sequence);
+            out.writeShort(deltas.size());
+            for (MarketDelta delta : deltas) {
+                out.writeUTF(delta.getItemId());
+                out.writeInt(delta.getStockDelta());
+                out.writeInt(delta.getSoldDelta());
+                out.writeInt(delta.getBoughtDelta());
+                out.writeLong(delta.getTimestamp());
+                out.writeLong(delta.getPriceVersion());
+                if (delta.hasPrices()) {
+                    out.writeDouble(delta.getBuyPrice());
+                    out.writeDouble(delta.getSellPrice());
+                }
+            }
+        } catch (IOException e) {
+            // Cannot happen with an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the packet is truncated or from an unknown format
+     */
+    public static SyncPacket decode(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        byte format = in.readByte();
+        if (format != FORMAT) {
+            throw new IOException("Unsupported sync packet format " + format);
+        }
+        UUID origin = new UUID(in.readLong(), in.readLong());
+        long sequence = in.readLong();
+        int count = in.readUnsignedShort();
+        List<MarketDelta> deltas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String itemId = in.readUTF();
+            int stock = in.readInt();
+            int sold = in.readInt();
+            int bought = in.readInt();
+            long timestamp = in.readLong();
+            long priceVersion = in.readLong();
+            double buyPrice = 0;
+            double sellPrice = 0;
+            if (priceVersion > 0) {
+                buyPrice = in.readDouble();
+                sellPrice = in.readDouble();
+            }
+            deltas.add(new MarketDelta(itemId, stock, sold, bought, timestamp, priceVersion, buyPrice, sellPrice));
+        }
+        return new SyncPacket(origin, sequence, deltas);
+    }
+
+    public UUID getOrigin() {
+        return origin;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<MarketDelta> getDeltas() {
+        return deltas;
+    }
+}
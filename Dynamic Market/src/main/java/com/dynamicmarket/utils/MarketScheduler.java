@@ -1,13 +1,17 @@
 package com.dynamicmarket.utils;
 
 import com.dynamicmarket.DynamicMarket;
-import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.config.MarketSettings;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MarketScheduler {
     
@@ -16,10 +20,25 @@ public class MarketScheduler {
     private BukkitTask autoSaveTask;
     private BukkitTask priceUpdateTask;
     private BukkitTask marketAnalysisTask;
+    private BukkitTask checkpointTask;
+    private int autoSaveInterval;
     
     public MarketScheduler(DynamicMarket plugin) {
         this.plugin = plugin;
         this.priceCalculator = new PriceCalculator(plugin);
+        plugin.getConfigManager().addSettingsListener(this::onSettingsChanged);
+    }
+    
+    /**
+     * Restarts the auto-save task when its interval changes
+     */
+    private void onSettingsChanged(MarketSettings settings) {
+        if (autoSaveTask == null || autoSaveTask.isCancelled() || settings.getAutoSaveInterval() == autoSaveInterval) {
+            return;
+        }
+        autoSaveTask.cancel();
+        startAutoSaveTask();
+        plugin.getLogger().info("Auto-save interval changed to " + autoSaveInterval + " seconds.");
     }
     
     public void startTasks() {
@@ -34,6 +53,7 @@ public class MarketScheduler {
         startAutoSaveTask();
         startPriceUpdateTask();
         startMarketAnalysisTask();
+        startCheckpointTask();
         
         plugin.getLogger().info("Market scheduler tasks started successfully!");
     }
@@ -48,6 +68,9 @@ public class MarketScheduler {
         if (marketAnalysisTask != null) {
             marketAnalysisTask.cancel();
         }
+        if (checkpointTask != null) {
+            checkpointTask.cancel();
+        }
         
         plugin.getLogger().info("Market scheduler tasks stopped.");
     }
@@ -57,16 +80,37 @@ public class MarketScheduler {
      */
     private void startAutoSaveTask() {
         int saveInterval = plugin.getConfigManager().getAutoSaveInterval();
+        autoSaveInterval = saveInterval;
         
         autoSaveTask = new BukkitRunnable() {
             @Override
             public void run() {
-                plugin.getMarketManager().saveMarketData();
-                plugin.getLogger().info("Market data auto-saved.");
+                int written = plugin.getPersistenceManager().flush();
+                int candles = plugin.getPriceHistoryManager().save();
+                int orders = plugin.getOrderManager().save();
+                plugin.getLogger().info("Market data auto-saved (" + written + " changed items, " + candles + " price candles, "
+                    + orders + " orders).");
             }
         }.runTaskTimerAsynchronously(plugin, saveInterval * 20L, saveInterval * 20L);
     }
     
+    /**
+     * Checkpoint the database journal periodically so the WAL file stays small
+     */
+    private void startCheckpointTask() {
+        long interval = plugin.getConfigManager().getConfig().getLong("database.sqlite.checkpoint-interval", 300L);
+        if (interval <= 0) {
+            return;
+        }
+        
+        checkpointTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                plugin.getDataManager().getDatabaseManager().checkpoint();
+            }
+        }.runTaskTimerAsynchronously(plugin, interval * 20L, interval * 20L);
+    }
+    
     /**
      * Update prices based on time decay and market conditions
      */
@@ -96,14 +140,12 @@ public class MarketScheduler {
      */
     private void updateMarketPrices() {
         try {
-            for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-                for (MarketItem item : category.getAllItems()) {
-                    // Apply time-based decay
-                    priceCalculator.applyTimeBasedDecay(item);
-                    
-                    // Apply market condition adjustments
-                    applyMarketConditionAdjustments(item);
-                }
+            for (MarketItem item : plugin.getMarketManager().getRepository().getItems()) {
+                // Apply time-based decay
+                priceCalculator.applyTimeBasedDecay(item);
+                
+                // Apply market condition adjustments
+                applyMarketConditionAdjustments(item);
             }
         } catch (Exception e) {
             plugin.getLogger().warning("Error during price update: " + e.getMessage());
@@ -114,32 +156,34 @@ public class MarketScheduler {
      * Applies market condition adjustments to item prices
      */
     private void applyMarketConditionAdjustments(MarketItem item) {
-        // Check if item needs price adjustment based on stock levels
-        int stock = item.getStock();
-        double currentBuyPrice = item.getBuyPrice();
-        double currentSellPrice = item.getSellPrice();
-        
-        // Adjust prices based on stock scarcity
-        if (stock <= 5) {
-            // Very low stock - increase buy price, decrease sell price
-            double newBuyPrice = currentBuyPrice * 1.02; // 2% increase
-            double newSellPrice = currentSellPrice * 0.98; // 2% decrease
+        MarketSettings settings = plugin.getConfigManager().getSettings();
+        item.update(snapshot -> {
+            // Check if item needs price adjustment based on stock levels
+            int stock = snapshot.getStock();
+            double newBuyPrice = snapshot.getBuyPrice();
+            double newSellPrice = snapshot.getSellPrice();
             
-            item.setBuyPrice(newBuyPrice);
-            item.setSellPrice(newSellPrice);
-        } else if (stock >= 500) {
-            // High stock - decrease buy price, increase sell price
-            double newBuyPrice = currentBuyPrice * 0.99; // 1% decrease
-            double newSellPrice = currentSellPrice * 1.01; // 1% increase
+            // Adjust prices based on stock scarcity
+            if (stock <= 5) {
+                // Very low stock - increase buy price, decrease sell price
+                newBuyPrice = settings.clampPrice(newBuyPrice * 1.02); // 2% increase
+                newSellPrice = settings.clampPrice(newSellPrice * 0.98); // 2% decrease
+            } else if (stock >= 500) {
+                // High stock - decrease buy price, increase sell price
+                newBuyPrice = settings.clampPrice(newBuyPrice * 0.99); // 1% decrease
+                newSellPrice = settings.clampPrice(newSellPrice * 1.01); // 1% increase
+            }
             
-            item.setBuyPrice(newBuyPrice);
-            item.setSellPrice(newSellPrice);
-        }
-        
-        // Ensure sell price is always lower than buy price
-        if (item.getSellPrice() >= item.getBuyPrice()) {
-            item.setSellPrice(item.getBuyPrice() * 0.7);
-        }
+            // Ensure sell price is always lower than buy price
+            if (newSellPrice >= newBuyPrice) {
+                newSellPrice = settings.clampPrice(newBuyPrice * 0.7);
+            }
+            
+            if (newBuyPrice == snapshot.getBuyPrice() && newSellPrice == snapshot.getSellPrice()) {
+                return snapshot;
+            }
+            return snapshot.withPrices(newBuyPrice, newSellPrice);
+        });
     }
     
     /**
@@ -147,26 +191,25 @@ public class MarketScheduler {
      */
     private void performMarketAnalysis() {
         try {
-            int totalCategories = plugin.getMarketManager().getAllCategories().size();
+            int totalCategories = plugin.getMarketManager().getRepository().getCategoryCount();
             int totalItems = 0;
             int lowStockItems = 0;
             int highStockItems = 0;
             double totalMarketValue = 0.0;
             
-            for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-                for (MarketItem item : category.getAllItems()) {
-                    totalItems++;
-                    totalMarketValue += item.getBuyPrice() * item.getStock();
-                    
-                    if (item.getStock() <= 10) {
-                        lowStockItems++;
-                    } else if (item.getStock() >= 200) {
-                        highStockItems++;
-                    }
-                    
-                    // Perform item-specific analysis
-                    analyzeItemPerformance(item);
+            for (MarketItem item : plugin.getMarketManager().getRepository().getItems()) {
+                MarketItem.Snapshot snapshot = item.snapshot();
+                totalItems++;
+                totalMarketValue += snapshot.getBuyPrice() * snapshot.getStock();
+                
+                if (snapshot.getStock() <= 10) {
+                    lowStockItems++;
+                } else if (snapshot.getStock() >= 200) {
+                    highStockItems++;
                 }
+                
+                // Perform item-specific analysis
+                analyzeItemPerformance(item);
             }
             
             // Log market statistics
@@ -189,30 +232,39 @@ public class MarketScheduler {
      * Analyzes individual item performance and suggests adjustments
      */
     private void analyzeItemPerformance(MarketItem item) {
+        MarketItem.Snapshot snapshot = item.snapshot();
+        
         // Calculate trading activity
-        int totalTransactions = item.getTotalBought() + item.getTotalSold();
+        int totalTransactions = snapshot.getTotalBought() + snapshot.getTotalSold();
         long daysSinceLastUpdate = TimeUnit.MILLISECONDS.toDays(
-            System.currentTimeMillis() - item.getLastUpdated()
+            System.currentTimeMillis() - snapshot.getLastUpdated()
         );
         
+        // Units traded over the last week, read from the daily candles
+        PriceHistory history = plugin.getPriceHistoryManager().getHistory(item.getId());
+        long weeklyVolume = history != null
+            ? history.getSeries(PriceHistory.Resolution.DAY).getVolume(System.currentTimeMillis(), 7)
+            : 0;
+        
         // Flag items with unusual activity
-        if (totalTransactions > 1000 && daysSinceLastUpdate <= 7) {
+        if (weeklyVolume > 1000) {
             // High activity item - might need price adjustment
             double[] suggestedPrices = priceCalculator.suggestPriceAdjustment(item);
+            MarketSettings settings = plugin.getConfigManager().getSettings();
             
-            // Apply gradual adjustment (10% of suggested change)
-            double buyAdjustment = (suggestedPrices[0] - item.getBuyPrice()) * 0.1;
-            double sellAdjustment = (suggestedPrices[1] - item.getSellPrice()) * 0.1;
-            
-            item.setBuyPrice(item.getBuyPrice() + buyAdjustment);
-            item.setSellPrice(item.getSellPrice() + sellAdjustment);
+            // Apply gradual adjustment (10% of suggested change) to whatever the prices are when committing
+            item.update(current -> current.withPrices(
+                settings.clampPrice(current.getBuyPrice() + (suggestedPrices[0] - current.getBuyPrice()) * 0.1),
+                settings.clampPrice(current.getSellPrice() + (suggestedPrices[1] - current.getSellPrice()) * 0.1)));
         }
         
         // Flag stagnant items
         if (totalTransactions == 0 && daysSinceLastUpdate > 30) {
             // No activity for 30+ days - reduce prices to stimulate trading
-            item.setBuyPrice(item.getBuyPrice() * 0.95);
-            item.setSellPrice(item.getSellPrice() * 1.05);
+            MarketSettings settings = plugin.getConfigManager().getSettings();
+            item.update(current -> current.withPrices(
+                settings.clampPrice(current.getBuyPrice() * 0.95),
+                settings.clampPrice(current.getSellPrice() * 1.05)));
         }
     }
     
@@ -222,18 +274,26 @@ public class MarketScheduler {
     private void performEmergencyRestock() {
         plugin.getLogger().info("Performing emergency market restock...");
         
-        for (MarketCategory category : plugin.getMarketManager().getAllCategories()) {
-            for (MarketItem item : category.getAllItems()) {
-                if (item.getStock() <= 5) {
-                    // Add emergency stock
-                    int emergencyStock = Math.min(50, item.getStock() * 10);
-                    item.setStock(item.getStock() + emergencyStock);
-                    
-                    // Slightly increase buy price due to restocking cost
-                    item.setBuyPrice(item.getBuyPrice() * 1.01);
-                }
+        List<MarketItem> items = new ArrayList<>(plugin.getMarketManager().getRepository().getItems());
+        MarketSettings settings = plugin.getConfigManager().getSettings();
+        
+        // Restocked items redraw open views and queue writes, so spread them over ticks
+        AtomicInteger restocked = new AtomicInteger();
+        plugin.getTickBudgetExecutor().forEach(items, item -> {
+            int stock = item.getStock();
+            if (stock > 5) {
+                return;
             }
-        }
+            
+            // Add emergency stock
+            int emergencyStock = Math.min(50, stock * 10);
+            
+            // Slightly increase buy price due to restocking cost
+            item.update(snapshot -> snapshot.withStock(snapshot.getStock() + emergencyStock)
+                .withBuyPrice(settings.clampPrice(snapshot.getBuyPrice() * 1.01)));
+            plugin.getStockLedger().adjust(item, emergencyStock);
+            restocked.incrementAndGet();
+        }, () -> plugin.getLogger().info("Emergency restock finished for " + restocked.get() + " items."));
     }
     
     /**
@@ -2,93 +2,32 @@ package com.dynamicmarket.utils;
 
 import com.dynamicmarket.DynamicMarket;
 import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.data.PriceHistory;
 
 public class PriceCalculator {
     
     private final DynamicMarket plugin;
-    private final double priceAdjustmentRate;
-    private final double minPrice;
-    private final double maxPrice;
     
     public PriceCalculator(DynamicMarket plugin) {
         this.plugin = plugin;
-        this.priceAdjustmentRate = plugin.getConfigManager().getPriceAdjustmentRate();
-        this.minPrice = plugin.getConfigManager().getMinPrice();
-        this.maxPrice = plugin.getConfigManager().getMaxPrice();
     }
     
     /**
-     * Calculates the new buy price after a purchase
-     * Buy prices increase when items are frequently purchased
+     * Calculates the new buy price after a purchase, using the pricing model
+     * the trade path applies to the item's category
      */
     public double calculateNewBuyPrice(MarketItem item, int amountBought) {
-        double currentPrice = item.getBuyPrice();
-        double adjustment = currentPrice * (amountBought * priceAdjustmentRate);
-        double newPrice = currentPrice + adjustment;
-        
-        // Apply demand multiplier based on stock levels
-        double demandMultiplier = calculateDemandMultiplier(item);
-        newPrice *= demandMultiplier;
-        
-        return clampPrice(newPrice);
+        return plugin.getPricingEngine().getModel(item.getCategory())
+            .afterBuy(item.snapshot(), amountBought).getBuyPrice();
     }
     
     /**
-     * Calculates the new sell price after a sale to the market
-     * Sell prices decrease when items are frequently sold to the market
+     * Calculates the new sell price after a sale to the market, using the pricing
+     * model the trade path applies to the item's category
      */
     public double calculateNewSellPrice(MarketItem item, int amountSold) {
-        double currentPrice = item.getSellPrice();
-        double adjustment = currentPrice * (amountSold * priceAdjustmentRate);
-        double newPrice = currentPrice - adjustment;
-        
-        // Apply supply multiplier based on stock levels
-        double supplyMultiplier = calculateSupplyMultiplier(item);
-        newPrice *= supplyMultiplier;
-        
-        return clampPrice(newPrice);
-    }
-    
-    /**
-     * Calculates demand multiplier based on current stock levels
-     * Lower stock = higher demand = higher prices
-     */
-    private double calculateDemandMultiplier(MarketItem item) {
-        int stock = item.getStock();
-        int totalBought = item.getTotalBought();
-        
-        if (totalBought == 0) {
-            return 1.0; // No trading history, no adjustment
-        }
-        
-        // Calculate stock ratio (lower stock = higher demand)
-        double stockRatio = Math.max(0.1, (double) stock / (stock + totalBought));
-        
-        // Demand multiplier: 0.8 to 1.5 range
-        // Low stock (high demand) = multiplier closer to 1.5
-        // High stock (low demand) = multiplier closer to 0.8
-        return 0.8 + (0.7 * (1.0 - stockRatio));
-    }
-    
-    /**
-     * Calculates supply multiplier based on how much has been sold to the market
-     * More items sold to market = higher supply = lower sell prices
-     */
-    private double calculateSupplyMultiplier(MarketItem item) {
-        int totalSold = item.getTotalSold();
-        int totalBought = item.getTotalBought();
-        
-        if (totalSold + totalBought == 0) {
-            return 1.0; // No trading history, no adjustment
-        }
-        
-        // Calculate supply ratio (more sold to market = higher supply)
-        double supplyRatio = (double) totalSold / (totalSold + totalBought);
-        
-        // Supply multiplier: 0.7 to 1.2 range
-        // High supply = multiplier closer to 0.7
-        // Low supply = multiplier closer to 1.2
-        return 1.2 - (0.5 * supplyRatio);
+        return plugin.getPricingEngine().getModel(item.getCategory())
+            .afterSell(item.snapshot(), amountSold).getSellPrice();
     }
     
     /**
@@ -125,15 +64,17 @@ public class PriceCalculator {
     }
     
     /**
-     * Calculates trading velocity (transactions per time unit)
+     * Calculates trading velocity (units traded per hour), from the hourly candles
      */
     private double calculateTradingVelocity(MarketItem item) {
-        long timeSinceLastUpdate = System.currentTimeMillis() - item.getLastUpdated();
-        long hoursElapsed = Math.max(1, timeSinceLastUpdate / (1000 * 60 * 60)); // Convert to hours
-        
-        int totalTransactions = item.getTotalBought() + item.getTotalSold();
+        PriceHistory history = plugin.getPriceHistoryManager().getHistory(item.getId());
+        if (history == null) {
+            return 0.0;
+        }
         
-        return Math.min(1.0, (double) totalTransactions / hoursElapsed);
+        // Current and previous hour
+        double perHour = history.getRecentHourlyVolume(System.currentTimeMillis()) / 2.0;
+        return Math.min(1.0, perHour);
     }
     
     /**
@@ -171,15 +112,23 @@ public class PriceCalculator {
      * Applies time-based price decay to simulate market stabilization
      */
     public void applyTimeBasedDecay(MarketItem item) {
-        long timeSinceLastUpdate = System.currentTimeMillis() - item.getLastUpdated();
-        long hoursElapsed = timeSinceLastUpdate / (1000 * 60 * 60);
+        long now = System.currentTimeMillis();
         
-        if (hoursElapsed >= 24) { // Apply decay after 24 hours of no activity
+        // Computed from one snapshot and committed with compare-and-swap, so trades
+        // on the main thread are never overwritten
+        item.update(snapshot -> {
+            long timeSinceLastUpdate = now - snapshot.getLastUpdated();
+            long hoursElapsed = timeSinceLastUpdate / (1000 * 60 * 60);
+            
+            if (hoursElapsed < 24) { // Apply decay after 24 hours of no activity
+                return snapshot;
+            }
+            
             double decayRate = 0.01 * (hoursElapsed / 24); // 1% decay per day
             decayRate = Math.min(0.1, decayRate); // Max 10% decay
             
-            double currentBuyPrice = item.getBuyPrice();
-            double currentSellPrice = item.getSellPrice();
+            double currentBuyPrice = snapshot.getBuyPrice();
+            double currentSellPrice = snapshot.getSellPrice();
             
             // Move prices towards their base values (assuming base is the average)
             double averagePrice = (currentBuyPrice + currentSellPrice) / 2;
@@ -187,17 +136,16 @@ public class PriceCalculator {
             double newBuyPrice = currentBuyPrice - ((currentBuyPrice - averagePrice) * decayRate);
             double newSellPrice = currentSellPrice + ((averagePrice - currentSellPrice) * decayRate);
             
-            item.setBuyPrice(clampPrice(newBuyPrice));
-            item.setSellPrice(clampPrice(newSellPrice));
-            item.setLastUpdated(System.currentTimeMillis());
-        }
+            return snapshot.withPrices(clampPrice(newBuyPrice), clampPrice(newSellPrice))
+                .withLastUpdated(now);
+        });
     }
     
     /**
-     * Ensures price stays within configured bounds
+     * Ensures price stays within the bounds currently configured
      */
     private double clampPrice(double price) {
-        return Math.max(minPrice, Math.min(maxPrice, price));
+        return plugin.getConfigManager().getSettings().clampPrice(price);
     }
     
     /**
@@ -0,0 +1,188 @@
+package com.dynamicmarket.utils;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.config.MarketSettings;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Runs main-thread-only work (inventory edits, GUI updates, Vault calls) in small
+ * steps within a per-tick time budget. Work that does not fit carries over to the
+ * next tick; queued tasks take turns, one step each, so a large job cannot starve a small one.
+ */
+public class TickBudgetExecutor {
+    
+    /**
+     * Resumable main-thread work
+     */
+    public interface Task {
+        
+        /**
+         * Does one small, bounded piece of work
+         * @return true once the task is finished
+         */
+        boolean step();
+    }
+    
+    private final DynamicMarket plugin;
+    
+    // Submitted from any thread, picked up at the start of the next tick
+    private final Queue<Task> submitted = new ConcurrentLinkedQueue<>();
+    // Main thread only
+    private final ArrayDeque<Task> active = new ArrayDeque<>();
+    private volatile long budgetNanos;
+    private BukkitTask task;
+    
+    // Metrics
+    private volatile int queueDepth;
+    private volatile long lastTickNanos;
+    private volatile long peakTickNanos;
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong carriedOver = new AtomicLong();
+    
+    public TickBudgetExecutor(DynamicMarket plugin) {
+        this.plugin = plugin;
+        reload(plugin.getConfigManager().getSettings());
+        plugin.getConfigManager().addSettingsListener(this::reload);
+    }
+    
+    private void reload(MarketSettings settings) {
+        double millis = plugin.getConfigManager().getConfig().getDouble("performance.tick-budget.millis", 5.0);
+        budgetNanos = (long) (Math.max(0.1, millis) * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+    
+    /**
+     * Stops ticking and runs everything still queued to completion
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        drain(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Queues a task; safe to call from any thread
+     */
+    public void submit(Task work) {
+        submitted.add(work);
+    }
+    
+    /**
+     * Applies an action to every element, a few per tick, then runs the completion callback
+     */
+    public <T> void forEach(Iterable<T> elements, Consumer<T> action, Runnable onComplete) {
+        Iterator<T> iterator = elements.iterator();
+        submit(() -> {
+            if (iterator.hasNext()) {
+                action.accept(iterator.next());
+                if (iterator.hasNext()) {
+                    return false;
+                }
+            }
+            if (onComplete != null) {
+                onComplete.run();
+            }
+            return true;
+        });
+    }
+    
+    private void tick() {
+        long start = System.nanoTime();
+        drain(start + budgetNanos);
+        
+        long used = System.nanoTime() - start;
+        lastTickNanos = used;
+        if (used > peakTickNanos) {
+            peakTickNanos = used;
+        }
+    }
+    
+    private void drain(long deadline) {
+        Task work;
+        while ((work = submitted.poll()) != null) {
+            active.addLast(work);
+        }
+        
+        // At least one step per tick, so work always moves forward however small the budget
+        boolean first = true;
+        while (!active.isEmpty() && (first || System.nanoTime() < deadline)) {
+            first = false;
+            work = active.pollFirst();
+            boolean done;
+            try {
+                done = work.step();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Budgeted main-thread task failed", e);
+                done = true;
+            }
+            steps.incrementAndGet();
+            if (done) {
+                completed.incrementAndGet();
+            } else {
+                active.addLast(work);
+            }
+            
+            // Tasks submitted by the steps above join the rotation straight away
+            while ((work = submitted.poll()) != null) {
+                active.addLast(work);
+            }
+        }
+        
+        if (!active.isEmpty()) {
+            carriedOver.incrementAndGet();
+        }
+        queueDepth = active.size();
+    }
+    
+    /**
+     * Tasks still waiting for time, as of the end of the last tick
+     */
+    public int getQueueDepth() {
+        return queueDepth + submitted.size();
+    }
+    
+    public double getBudgetMillis() {
+        return budgetNanos / 1_000_000.0;
+    }
+    
+    public double getLastTickMillis() {
+        return lastTickNanos / 1_000_000.0;
+    }
+    
+    public double getPeakTickMillis() {
+        return peakTickNanos / 1_000_000.0;
+    }
+    
+    public long getStepCount() {
+        return steps.get();
+    }
+    
+    public long getCompletedCount() {
+        return completed.get();
+    }
+    
+    /**
+     * Ticks that ended with work left over
+     */
+    public long getCarriedOverCount() {
+        return carriedOver.get();
+    }
+}
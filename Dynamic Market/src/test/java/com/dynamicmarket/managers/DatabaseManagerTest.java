@@ -0,0 +1,186 @@
+package com.dynamicmarket.managers;
+
+import com.dynamicmarket.DynamicMarket;
+import com.dynamicmarket.config.ConfigManager;
+import com.dynamicmarket.data.MarketCategory;
+import com.dynamicmarket.data.MarketItem;
+import com.dynamicmarket.orders.Order;
+import com.dynamicmarket.storage.H2StorageBackend;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DatabaseManagerTest {
+
+    @TempDir
+    File dataFolder;
+
+    private DynamicMarket plugin;
+    private H2StorageBackend backend;
+    private DatabaseManager database;
+
+    @BeforeEach
+    void setUp() {
+        plugin = mock(DynamicMarket.class);
+        ConfigManager configManager = mock(ConfigManager.class);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("DatabaseManagerTest"));
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(configManager.getConfig()).thenReturn(new YamlConfiguration());
+
+        backend = new H2StorageBackend();
+        database = new DatabaseManager(plugin, backend);
+    }
+
+    @AfterEach
+    void tearDown() {
+        backend.close();
+    }
+
+    @Test
+    void storedItemsLoadBackCleanWithTheirState() {
+        MarketItem.Snapshot state = new MarketItem.Snapshot(12.5, 8.25, 40, 7, 3, 123456L);
+        assertTrue(database.saveItems(List.of(item("stone", state))));
+
+        List<MarketItem> loaded = database.loadItems();
+        assertEquals(1, loaded.size());
+        MarketItem item = loaded.get(0);
+        assertEquals("stone", item.getId());
+        assertEquals(Material.STONE, item.getMaterial());
+        assertEquals("Stone", item.getDisplayName());
+        assertEquals(List.of("Line one", "Line two"), item.getLore());
+        assertEquals("blocks", item.getCategory());
+        MarketItem.Snapshot snapshot = item.snapshot();
+        // REAL may be single precision
+        assertEquals(12.5, snapshot.getBuyPrice(), 1e-4);
+        assertEquals(8.25, snapshot.getSellPrice(), 1e-4);
+        assertEquals(40, snapshot.getStock());
+        assertEquals(7, snapshot.getTotalSold());
+        assertEquals(3, snapshot.getTotalBought());
+        assertEquals(123456L, snapshot.getLastUpdated());
+        assertFalse(item.isDirty());
+    }
+
+    @Test
+    void reopeningTheDatabaseKeepsItsRows() {
+        database.saveItems(List.of(item("stone", new MarketItem.Snapshot(1, 0.5, 10, 0, 0, 1L))));
+
+        DatabaseManager reopened = new DatabaseManager(plugin, backend);
+
+        assertEquals(1, reopened.loadItems().size());
+        assertEquals(database.loadMarketFingerprint(), reopened.loadMarketFingerprint());
+    }
+
+    @Test
+    void fingerprintChangesWithNamesAndLore() {
+        MarketItem item = item("stone", new MarketItem.Snapshot(1, 0.5, 10, 0, 0, 1L));
+        database.saveItems(List.of(item));
+        String original = database.loadMarketFingerprint();
+        assertNotNull(original);
+
+        item.setDisplayName("Smooth Stone");
+        database.saveItems(List.of(item));
+        String renamed = database.loadMarketFingerprint();
+        assertNotEquals(original, renamed);
+
+        item.setLore(List.of("Other lore"));
+        database.saveItems(List.of(item));
+        assertNotEquals(renamed, database.loadMarketFingerprint());
+    }
+
+    @Test
+    void categoriesAreSavedAsABatch() {
+        String before = database.loadMarketFingerprint();
+        assertTrue(database.saveCategories(List.of(
+            new MarketCategory("blocks", Material.STONE, "Blocks", List.of("Building"), 10),
+            new MarketCategory("natural", Material.DIRT, "Natural", List.of(), 11))));
+
+        List<MarketCategory> loaded = database.loadCategories();
+        assertEquals(2, loaded.size());
+        assertNotEquals(before, database.loadMarketFingerprint());
+    }
+
+    @Test
+    void reservingStockNeedsTheCurrentVersion() {
+        database.saveItems(List.of(item("stone", new MarketItem.Snapshot(1, 0.5, 10, 0, 0, 1L))));
+        DatabaseManager.StockLevel level = database.loadStockLevel("stone");
+        assertEquals(10, level.getStock());
+
+        assertTrue(database.reserveStock("stone", 4, level.getVersion(), "a", 4, Long.MAX_VALUE));
+        // Another server's view of the row is now stale
+        assertFalse(database.reserveStock("stone", 4, level.getVersion(), "b", 4, Long.MAX_VALUE));
+        DatabaseManager.StockLevel after = database.loadStockLevel("stone");
+        assertEquals(6, after.getStock());
+        assertFalse(database.reserveStock("stone", 7, after.getVersion(), "b", 7, Long.MAX_VALUE));
+
+        assertTrue(database.addStock(Map.of("stone", 4)));
+        assertEquals(10, database.loadStockLevel("stone").getStock());
+    }
+
+    @Test
+    void expiredLeasesGoBackToStock() {
+        database.saveItems(List.of(item("stone", new MarketItem.Snapshot(1, 0.5, 10, 0, 0, 1L))));
+        assertTrue(database.reserveStock("stone", 4, database.loadStockLevel("stone").getVersion(), "crashed", 4, 1000L));
+        assertTrue(database.reserveStock("stone", 3, database.loadStockLevel("stone").getVersion(), "running", 3, 5000L));
+
+        assertEquals(0, database.reclaimExpiredLeases(500L));
+        assertEquals(3, database.loadStockLevel("stone").getStock());
+
+        // Only the lease that stopped being renewed comes back, and only once
+        assertEquals(4, database.reclaimExpiredLeases(2000L));
+        assertEquals(7, database.loadStockLevel("stone").getStock());
+        assertEquals(0, database.reclaimExpiredLeases(2000L));
+    }
+
+    @Test
+    void returnedLeasesAreNotReclaimedAgain() {
+        database.saveItems(List.of(item("stone", new MarketItem.Snapshot(1, 0.5, 10, 0, 0, 1L))));
+        assertTrue(database.reserveStock("stone", 6, database.loadStockLevel("stone").getVersion(), "a", 6, 1000L));
+
+        // Two units were sold from the lease, two go back and two are kept
+        assertTrue(database.returnLeasedStock("a", Map.of("stone", 2), Map.of("stone", 2), 1000L));
+        assertEquals(6, database.loadStockLevel("stone").getStock());
+
+        assertEquals(2, database.reclaimExpiredLeases(2000L));
+        assertEquals(8, database.loadStockLevel("stone").getStock());
+    }
+
+    @Test
+    void openOrdersAreStoredAndClosedOnesDeleted() {
+        UUID player = UUID.randomUUID();
+        Order open = new Order(1, player, "Alex", "stone", Material.STONE, Order.Side.BUY, 150, 10, 6, 1000L);
+        Order other = new Order(2, player, "Alex", "stone", Material.STONE, Order.Side.SELL, 300, 5, 5, 2000L);
+        assertTrue(database.saveOrders(List.of(open, other)));
+
+        List<Order> loaded = database.loadOrders();
+        assertEquals(2, loaded.size());
+        assertEquals(1, loaded.get(0).getId());
+        assertEquals(6, loaded.get(0).getRemaining());
+        assertEquals(Order.Side.SELL, loaded.get(1).getSide());
+
+        Order filled = new Order(1, player, "Alex", "stone", Material.STONE, Order.Side.BUY, 150, 10, 0, 1000L);
+        assertTrue(database.saveOrders(List.of(filled)));
+        assertEquals(List.of(2L), database.loadOrders().stream().map(Order::getId).toList());
+    }
+
+    private static MarketItem item(String id, MarketItem.Snapshot state) {
+        return new MarketItem(id, Material.STONE, "Stone", List.of("Line one", "Line two"), "blocks", state);
+    }
+}
@@ -0,0 +1,41 @@
+package com.dynamicmarket.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Private in-memory H2 database in MySQL mode, so the MySQL dialect can be tested without a server.
+ * Each instance gets a database of its own, dropped when the pool is closed.
+ */
+public class H2StorageBackend extends MySQLStorageBackend {
+
+    public H2StorageBackend() {
+        this(4);
+    }
+
+    public H2StorageBackend(int maximumPoolSize) {
+        super(createConfig(), maximumPoolSize);
+    }
+
+    private static HikariConfig createConfig() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("DynamicMarket-H2");
+        config.setDriverClassName("org.h2.Driver");
+        // Kept alive between connections until the pool closes
+        config.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        config.setMinimumIdle(1);
+        return config;
+    }
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public List<String> describeSettings() {
+        return List.of("mode = MySQL", "pool size = " + getMaximumPoolSize());
+    }
+}
@@ -0,0 +1,173 @@
+package com.dynamicmarket.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigrationsTest {
+
+    private H2StorageBackend backend;
+    private SchemaMigrations migrations;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        backend = new H2StorageBackend();
+        migrations = new SchemaMigrations(backend, Logger.getLogger("SchemaMigrationsTest"));
+        connection = backend.getConnection();
+        // The version 1 tables, as DatabaseManager creates them before migrating
+        execute("CREATE TABLE market_items (id " + backend.getKeyType() + " PRIMARY KEY, category TEXT NOT NULL,"
+            + " material TEXT NOT NULL, display_name TEXT, lore TEXT, buy_price REAL NOT NULL, sell_price REAL NOT NULL,"
+            + " stock INTEGER NOT NULL, total_sold INTEGER DEFAULT 0, total_bought INTEGER DEFAULT 0, last_updated BIGINT NOT NULL)");
+        execute("CREATE TABLE transactions (id " + backend.getAutoIncrementKey() + ", player_uuid TEXT NOT NULL,"
+            + " player_name TEXT NOT NULL, item_id TEXT NOT NULL, category TEXT NOT NULL, transaction_type TEXT NOT NULL,"
+            + " amount INTEGER NOT NULL, price REAL NOT NULL, timestamp BIGINT NOT NULL)");
+        execute("INSERT INTO transactions (player_uuid, player_name, item_id, category, transaction_type, amount, price, timestamp)"
+            + " VALUES ('u1', 'Alex', 'stone', 'blocks', 'BUY', 4, 1.0, 1000)");
+        execute("INSERT INTO transactions (player_uuid, player_name, item_id, category, transaction_type, amount, price, timestamp)"
+            + " VALUES ('u2', 'Sam', 'dirt', 'blocks', 'SELL', 9, 0.5, 2000)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+        backend.close();
+    }
+
+    @Test
+    void migratesAVersionOneDatabase() throws SQLException {
+        assertEquals(migrations.getLatestVersion(), migrations.migrate(connection));
+
+        assertEquals(List.of("stone:0:4", "dirt:1:9"), transactions());
+        assertTrue(hasTable("price_candles"));
+        assertTrue(hasTable("market_orders"));
+        assertTrue(hasColumn("market_items", "stock_version"));
+        assertEquals(0L, single("SELECT value FROM market_meta WHERE name = 'generation'"));
+        assertTrue(hasTable("stock_leases"));
+    }
+
+    @Test
+    void runningAgainChangesNothing() throws SQLException {
+        migrations.migrate(connection);
+        assertEquals(migrations.getLatestVersion(), migrations.migrate(connection));
+
+        assertEquals(List.of("stone:0:4", "dirt:1:9"), transactions());
+        assertEquals(1L, single("SELECT COUNT(*) FROM schema_version"));
+        assertEquals(1L, single("SELECT COUNT(*) FROM market_meta"));
+    }
+
+    @Test
+    void resumesVersionTwoAfterAHalfMadeCopy() throws SQLException {
+        // MySQL committed the first statements of version 2 before it failed
+        execute("CREATE TABLE schema_version (version INTEGER NOT NULL)");
+        execute("INSERT INTO schema_version (version) VALUES (1)");
+        execute("CREATE TABLE item_refs (id " + backend.getAutoIncrementKey() + ", name " + backend.getKeyType() + " NOT NULL UNIQUE)");
+        execute("INSERT INTO item_refs (name) VALUES ('stone')");
+        execute("CREATE TABLE transactions_v2 (id BIGINT, stray TEXT)");
+        execute("INSERT INTO transactions_v2 (id, stray) VALUES (1, 'half')");
+
+        assertEquals(migrations.getLatestVersion(), migrations.migrate(connection));
+
+        assertEquals(List.of("stone:0:4", "dirt:1:9"), transactions());
+        assertFalse(hasTable("transactions_v2"));
+    }
+
+    @Test
+    void resumesVersionTwoAfterTheOldLogWasDropped() throws SQLException {
+        migrations.migrate(connection);
+        // Back to the moment between dropping the old log and renaming the new one
+        execute("ALTER TABLE transactions RENAME TO transactions_v2");
+        execute("DROP INDEX idx_transactions_time");
+        execute("DELETE FROM schema_version");
+        execute("INSERT INTO schema_version (version) VALUES (1)");
+
+        assertEquals(migrations.getLatestVersion(), migrations.migrate(connection));
+
+        assertEquals(List.of("stone:0:4", "dirt:1:9"), transactions());
+        assertFalse(hasTable("transactions_v2"));
+        assertTrue(hasIndex("transactions", "idx_transactions_time"));
+    }
+
+    @Test
+    void skipsAColumnThatIsAlreadyThere() throws SQLException {
+        migrations.migrate(connection);
+        execute("DELETE FROM schema_version");
+        execute("INSERT INTO schema_version (version) VALUES (4)");
+
+        assertEquals(migrations.getLatestVersion(), migrations.migrate(connection));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private long single(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Migrated log rows as item:type:amount, oldest first
+     */
+    private List<String> transactions() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT i.name, t.transaction_type, t.amount FROM transactions t"
+                 + " JOIN item_refs i ON i.id = t.item_ref ORDER BY t.timestamp")) {
+            while (rs.next()) {
+                rows.add(rs.getString(1) + ":" + rs.getInt(2) + ":" + rs.getInt(3));
+            }
+        }
+        return rows;
+    }
+
+    private boolean hasTable(String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, null, null)) {
+            while (rs.next()) {
+                if (table.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasIndex(String table, String index) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
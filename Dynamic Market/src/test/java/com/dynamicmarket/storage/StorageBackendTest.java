@@ -0,0 +1,112 @@
+package com.dynamicmarket.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageBackendTest {
+
+    private H2StorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        backend = new H2StorageBackend(2);
+        try (Connection connection = backend.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE prices (id " + backend.getKeyType() + " PRIMARY KEY, price DOUBLE NOT NULL, note TEXT)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        backend.close();
+    }
+
+    @Test
+    void upsertInsertsThenUpdatesInPlace() throws SQLException {
+        String upsert = backend.upsert("prices", "id", "price", "note");
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(upsert)) {
+            bind(pstmt, "stone", 1.5, "first");
+            pstmt.executeUpdate();
+            bind(pstmt, "stone", 2.5, "second");
+            pstmt.executeUpdate();
+        }
+
+        assertEquals(List.of("stone=2.5:second"), rows());
+    }
+
+    @Test
+    void insertIgnoreKeepsTheExistingRow() throws SQLException {
+        String insert = backend.getInsertIgnore() + " prices (id, price, note) VALUES (?, ?, ?)";
+        try (Connection connection = backend.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(insert)) {
+            bind(pstmt, "stone", 1.5, "first");
+            pstmt.executeUpdate();
+            bind(pstmt, "stone", 2.5, "second");
+            assertEquals(0, pstmt.executeUpdate());
+        }
+
+        assertEquals(List.of("stone=1.5:first"), rows());
+    }
+
+    @Test
+    void autoIncrementKeyNumbersRows() throws SQLException {
+        try (Connection connection = backend.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE log (id " + backend.getAutoIncrementKey() + ", entry TEXT NOT NULL)");
+            stmt.execute("INSERT INTO log (entry) VALUES ('a')");
+            stmt.execute("INSERT INTO log (entry) VALUES ('b')");
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM log ORDER BY id")) {
+                assertTrue(rs.next());
+                long first = rs.getLong(1);
+                assertTrue(rs.next());
+                assertEquals(first + 1, rs.getLong(1));
+            }
+        }
+    }
+
+    @Test
+    void borrowedConnectionsReturnToThePool() throws SQLException {
+        assertEquals(2, backend.getMaximumPoolSize());
+        try (Connection first = backend.getConnection();
+             Connection second = backend.getConnection()) {
+            assertEquals(2, backend.getActiveConnections());
+        }
+        assertEquals(0, backend.getActiveConnections());
+        assertTrue(backend.isRunning());
+
+        backend.close();
+        assertFalse(backend.isRunning());
+    }
+
+    private static void bind(PreparedStatement pstmt, String id, double price, String note) throws SQLException {
+        pstmt.setString(1, id);
+        pstmt.setDouble(2, price);
+        pstmt.setString(3, note);
+    }
+
+    private List<String> rows() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = backend.getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, price, note FROM prices ORDER BY id")) {
+            while (rs.next()) {
+                rows.add(rs.getString(1) + "=" + rs.getDouble(2) + ":" + rs.getString(3));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dynamicmarket.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus that links servers inside one JVM. Published packets are kept, and are delivered to the
+ * connected peers at once unless held, so a test can drop, repeat or reorder them by hand.
+ */
+class InMemoryMessageBus implements MessageBus {
+
+    private final String name;
+    private final List<InMemoryMessageBus> peers = new CopyOnWriteArrayList<>();
+    private final List<byte[]> published = new CopyOnWriteArrayList<>();
+    private volatile Consumer<byte[]> receiver;
+    private volatile boolean holding;
+
+    InMemoryMessageBus(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Links two buses both ways
+     */
+    void connect(InMemoryMessageBus other) {
+        peers.add(other);
+        other.peers.add(this);
+    }
+
+    /**
+     * Keeps published packets from the peers until they are delivered by hand
+     */
+    void hold() {
+        holding = true;
+    }
+
+    /**
+     * Hands a packet to this server as if a peer had sent it
+     */
+    void deliver(byte[] message) {
+        Consumer<byte[]> current = receiver;
+        if (current != null) {
+            current.accept(message);
+        }
+    }
+
+    List<byte[]> getPublished() {
+        return published;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        published.add(message);
+        if (!holding) {
+            for (InMemoryMessageBus peer : peers) {
+                peer.deliver(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        receiver = null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,249 @@
+package com.dynamicmarket.sync;
+
+import com.dynamicmarket.data.MarketItem;
+import org.bukkit.Material;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicatorTest {
+
+    // Price ties go to the higher origin
+    private static final UUID LOW = new UUID(0, 1);
+    private static final UUID HIGH = new UUID(0, 2);
+
+    private final InMemoryMessageBus busA = new InMemoryMessageBus("a");
+    private final InMemoryMessageBus busB = new InMemoryMessageBus("b");
+    private final List<Replicator> replicators = new ArrayList<>();
+    // Shared clock of all servers, in milliseconds
+    private long now = 1000L;
+
+    @AfterEach
+    void tearDown() {
+        replicators.forEach(Replicator::shutdown);
+    }
+
+    @Test
+    void localChangesReachThePeerWithoutEcho() throws Exception {
+        busA.connect(busB);
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        a.update(s -> new MarketItem.Snapshot(2.0, 1.5, s.getStock() - 4, s.getTotalSold(), s.getTotalBought() + 4,
+            s.getLastUpdated()));
+        ra.onItemChanged(a);
+        ra.flushAndWait();
+        rb.flushAndWait();
+
+        assertEquals(6, b.getStock());
+        assertEquals(4, b.getTotalBought());
+        assertEquals(2.0, b.getBuyPrice(), 1e-9);
+        assertEquals(1.5, b.getSellPrice(), 1e-9);
+        assertEquals(1, rb.getAppliedDeltaCount());
+
+        // The change listener reports the applied delta like any other change
+        rb.onItemChanged(b);
+        rb.flushAndWait();
+        assertEquals(0, rb.getPublishedPacketCount());
+    }
+
+    @Test
+    void packetsApplyInSequence() throws Exception {
+        busA.connect(busB);
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changeStock(ra, a, -3);
+        changeStock(ra, a, 5);
+        rb.flushAndWait();
+
+        assertEquals(12, b.getStock());
+        assertEquals(2, rb.getAppliedDeltaCount());
+        assertEquals(0, rb.getGapCount());
+        assertEquals(0, rb.getDuplicateCount());
+    }
+
+    @Test
+    void duplicatePacketsApplyOnce() throws Exception {
+        busA.hold();
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changeStock(ra, a, -3);
+        byte[] packet = busA.getPublished().get(0);
+        busB.deliver(packet);
+        busB.deliver(packet);
+        rb.flushAndWait();
+
+        assertEquals(7, b.getStock());
+        assertEquals(1, rb.getDuplicateCount());
+    }
+
+    @Test
+    void gapsAreCountedAndLatePacketsDropped() throws Exception {
+        busA.hold();
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changeStock(ra, a, -1);
+        changeStock(ra, a, -2);
+        changeStock(ra, a, -4);
+        List<byte[]> packets = busA.getPublished();
+        assertEquals(3, packets.size());
+
+        busB.deliver(packets.get(0));
+        busB.deliver(packets.get(2));
+        rb.flushAndWait();
+        assertEquals(5, b.getStock());
+        assertEquals(1, rb.getGapCount());
+
+        // Arrives after a later packet, so it is treated as already seen
+        busB.deliver(packets.get(1));
+        rb.flushAndWait();
+        assertEquals(5, b.getStock());
+        assertEquals(1, rb.getDuplicateCount());
+    }
+
+    @Test
+    void stockIsClampedAtZeroAndTheBaselineFollows() throws Exception {
+        busA.connect(busB);
+        MarketItem a = item(10);
+        MarketItem b = item(2);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changeStock(ra, a, -5);
+        rb.flushAndWait();
+        assertEquals(0, b.getStock());
+
+        changeStock(ra, a, 3);
+        rb.flushAndWait();
+        assertEquals(3, b.getStock());
+
+        // Only what was really applied moved the baseline, so nothing is left to publish
+        rb.onItemChanged(b);
+        rb.flushAndWait();
+        assertEquals(0, rb.getPublishedPacketCount());
+    }
+
+    @Test
+    void concurrentPricesGoToTheHigherOrigin() throws Exception {
+        busA.hold();
+        busB.hold();
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changePrices(ra, a, 3.0, 2.0);
+        changePrices(rb, b, 5.0, 4.0);
+        busA.getPublished().forEach(busB::deliver);
+        busB.getPublished().forEach(busA::deliver);
+        ra.flushAndWait();
+        rb.flushAndWait();
+
+        assertEquals(5.0, a.getBuyPrice(), 1e-9);
+        assertEquals(4.0, a.getSellPrice(), 1e-9);
+        assertEquals(5.0, b.getBuyPrice(), 1e-9);
+        assertEquals(4.0, b.getSellPrice(), 1e-9);
+        assertEquals(0, ra.getStalePriceCount());
+        assertEquals(1, rb.getStalePriceCount());
+    }
+
+    @Test
+    void newerPricesWinOverAHigherOrigin() throws Exception {
+        busA.hold();
+        busB.hold();
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        changePrices(ra, a, 3.0, 2.0);
+        changePrices(ra, a, 6.0, 5.0);
+        changePrices(rb, b, 5.0, 4.0);
+        busA.getPublished().forEach(busB::deliver);
+        busB.getPublished().forEach(busA::deliver);
+        ra.flushAndWait();
+        rb.flushAndWait();
+
+        assertEquals(6.0, a.getBuyPrice(), 1e-9);
+        assertEquals(6.0, b.getBuyPrice(), 1e-9);
+        assertEquals(5.0, b.getSellPrice(), 1e-9);
+        assertEquals(1, ra.getStalePriceCount());
+        assertEquals(1, rb.getStalePriceCount());
+    }
+
+    @Test
+    void aRestartedServerStillWinsWithItsNextPrices() throws Exception {
+        busA.connect(busB);
+        MarketItem a = item(10);
+        MarketItem b = item(10);
+        Replicator ra = start(LOW, busA, a);
+        Replicator rb = start(HIGH, busB, b);
+
+        // A burst of moves within one millisecond runs the versions ahead of the clock
+        for (int i = 1; i <= 5; i++) {
+            changePrices(ra, a, 1.0 + i, 0.5 + i);
+        }
+        rb.flushAndWait();
+        assertEquals(6.0, b.getBuyPrice(), 1e-9);
+
+        // Restarts with a new, even lower origin and no memory of its versions
+        ra.shutdown();
+        now += 30_000L;
+        InMemoryMessageBus restarted = new InMemoryMessageBus("a2");
+        restarted.connect(busB);
+        Replicator ra2 = start(new UUID(0, 0), restarted, a);
+
+        changePrices(ra2, a, 9.0, 8.0);
+        rb.flushAndWait();
+
+        assertEquals(9.0, b.getBuyPrice(), 1e-9);
+        assertEquals(8.0, b.getSellPrice(), 1e-9);
+        assertEquals(0, rb.getStalePriceCount());
+    }
+
+    private Replicator start(UUID origin, InMemoryMessageBus bus, MarketItem item) throws Exception {
+        Replicator replicator = new Replicator(origin, bus, Logger.getLogger("ReplicatorTest"), () -> now);
+        replicators.add(replicator);
+        // Flushed by hand
+        replicator.start(TimeUnit.HOURS.toMillis(1));
+        replicator.track(item);
+        // The baseline is taken on the sync thread, before the test changes the item
+        replicator.flushAndWait();
+        return replicator;
+    }
+
+    private static void changeStock(Replicator replicator, MarketItem item, int amount) throws Exception {
+        item.update(s -> s.withStock(s.getStock() + amount));
+        replicator.onItemChanged(item);
+        replicator.flushAndWait();
+    }
+
+    private static void changePrices(Replicator replicator, MarketItem item, double buyPrice, double sellPrice) throws Exception {
+        item.update(s -> s.withPrices(buyPrice, sellPrice));
+        replicator.onItemChanged(item);
+        replicator.flushAndWait();
+    }
+
+    private static MarketItem item(int stock) {
+        return new MarketItem("stone", Material.STONE, "Stone", List.of(), "blocks",
+            new MarketItem.Snapshot(1.0, 0.5, stock, 0, 0, 1000L));
+    }
+}